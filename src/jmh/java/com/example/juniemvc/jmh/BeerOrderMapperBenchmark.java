@@ -0,0 +1,104 @@
+package com.example.juniemvc.jmh;
+
+import com.example.juniemvc.entities.Beer;
+import com.example.juniemvc.entities.BeerOrder;
+import com.example.juniemvc.entities.BeerOrderLine;
+import com.example.juniemvc.entities.enums.LineStatus;
+import com.example.juniemvc.entities.enums.OrderStatus;
+import com.example.juniemvc.mappers.BeerOrderLineMapperImpl;
+import com.example.juniemvc.mappers.BeerOrderMapper;
+import com.example.juniemvc.mappers.BeerOrderMapperImpl;
+import com.example.juniemvc.models.BeerOrderDto;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * BeerOrderMapper entity to DTO and back, for orders of 1, 50 and 1000 lines.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BeerOrderMapperBenchmark {
+
+    @Param({"1", "50", "1000"})
+    int lines;
+
+    private AnnotationConfigApplicationContext context;
+    private BeerOrderMapper mapper;
+    private BeerOrder order;
+    private BeerOrderDto dto;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        // the generated mappers are Spring components wired by field injection
+        context = new AnnotationConfigApplicationContext(BeerOrderMapperImpl.class, BeerOrderLineMapperImpl.class);
+        mapper = context.getBean(BeerOrderMapper.class);
+        order = order(lines);
+        dto = mapper.toDto(order);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public BeerOrderDto toDto() {
+        return mapper.toDto(order);
+    }
+
+    @Benchmark
+    public BeerOrder toEntity() {
+        return mapper.toEntity(dto);
+    }
+
+    static BeerOrder order(int lineCount) {
+        LocalDateTime now = LocalDateTime.now();
+        BeerOrder order = BeerOrder.builder()
+                .id(1)
+                .version(0)
+                .customerRef("JMH")
+                .paymentAmount(new BigDecimal("123.45"))
+                .status(OrderStatus.NEW)
+                .createdDate(now)
+                .updateDate(now)
+                .build();
+        List<BeerOrderLine> orderLines = new ArrayList<>(lineCount);
+        for (int i = 0; i < lineCount; i++) {
+            orderLines.add(BeerOrderLine.builder()
+                    .id(i + 1)
+                    .version(0)
+                    .beerOrder(order)
+                    .beer(Beer.builder().id(i % 100 + 1).build())
+                    .orderQuantity(i % 12 + 1)
+                    .quantityAllocated(0)
+                    .status(LineStatus.NEW)
+                    .createdDate(now)
+                    .updateDate(now)
+                    .build());
+        }
+        order.setBeerOrderLines(orderLines);
+        return order;
+    }
+}
@@ -0,0 +1,89 @@
+package com.example.juniemvc.jmh;
+
+import com.example.juniemvc.mappers.BeerOrderLineMapperImpl;
+import com.example.juniemvc.mappers.BeerOrderMapper;
+import com.example.juniemvc.mappers.BeerOrderMapperImpl;
+import com.example.juniemvc.models.BeerOrderDto;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Jackson serialization of BeerOrderDto: the GET /api/v1/orders page envelope and one NDJSON export line.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BeerOrderSerializationBenchmark {
+
+    private static final int LINES_PER_ORDER = 5;
+
+    @Param({"25", "200"})
+    int pageSize;
+
+    private ObjectMapper objectMapper;
+    private ObjectWriter orderWriter;
+    private Map<String, Object> page;
+    private BeerOrderDto order;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        // configured like the ObjectMapper Spring Boot auto-configures (java.time support, ISO dates)
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        orderWriter = objectMapper.writerFor(BeerOrderDto.class);
+
+        BeerOrderMapper mapper;
+        try (AnnotationConfigApplicationContext context =
+                     new AnnotationConfigApplicationContext(BeerOrderMapperImpl.class, BeerOrderLineMapperImpl.class)) {
+            mapper = context.getBean(BeerOrderMapper.class);
+        }
+        List<BeerOrderDto> content = new ArrayList<>(pageSize);
+        for (int i = 0; i < pageSize; i++) {
+            BeerOrderDto dto = mapper.toDto(BeerOrderMapperBenchmark.order(LINES_PER_ORDER));
+            dto.setId(i + 1);
+            content.add(dto);
+        }
+        order = content.get(0);
+
+        // same envelope as BeerOrderController.list
+        page = new HashMap<>();
+        page.put("content", content);
+        page.put("page", 0);
+        page.put("size", pageSize);
+        page.put("totalElements", 10_000L);
+        page.put("totalPages", 10_000 / pageSize);
+    }
+
+    @Benchmark
+    public byte[] listPage() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(page);
+    }
+
+    @Benchmark
+    public byte[] exportLine() throws JsonProcessingException {
+        return orderWriter.writeValueAsBytes(order);
+    }
+}
@@ -0,0 +1,96 @@
+package com.example.juniemvc.jmh;
+
+import com.example.juniemvc.JuniemvcApplication;
+import com.example.juniemvc.entities.Beer;
+import com.example.juniemvc.repositories.BeerRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Resolving the beers of an order's lines against the in-memory H2 database: the former per-line
+ * findById loop versus the single multi-load BeerOrderServiceImpl uses. Each invocation runs in its
+ * own transaction, so the persistence context starts empty; the second-level cache is on, as configured.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BeerResolutionBenchmark {
+
+    private static final int BEERS = 1000;
+
+    @Param({"1", "50", "1000"})
+    int lines;
+
+    private ConfigurableApplicationContext context;
+    private BeerRepository beerRepository;
+    private TransactionTemplate transactionTemplate;
+    private List<Integer> beerIds;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = new SpringApplicationBuilder(JuniemvcApplication.class)
+                .web(WebApplicationType.NONE)
+                .properties("spring.jpa.show-sql=false", "logging.level.root=WARN")
+                .run();
+        beerRepository = context.getBean(BeerRepository.class);
+        transactionTemplate = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+
+        List<Beer> beers = new ArrayList<>(BEERS);
+        for (int i = 0; i < BEERS; i++) {
+            beers.add(Beer.builder()
+                    .beerName("JMH " + i)
+                    .beerStyle("LAGER")
+                    .upc("JMH-" + i)
+                    .quantityOnHand(100)
+                    .price(new BigDecimal("2.50"))
+                    .build());
+        }
+        List<Integer> ids = beerRepository.saveAll(beers).stream().map(Beer::getId).toList();
+        beerIds = ids.subList(0, lines);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public List<Beer> findByIdPerLine() {
+        return transactionTemplate.execute(status -> {
+            List<Beer> found = new ArrayList<>(beerIds.size());
+            for (Integer id : beerIds) {
+                found.add(beerRepository.findById(id).orElseThrow());
+            }
+            return found;
+        });
+    }
+
+    @Benchmark
+    public List<Beer> multiLoad() {
+        return transactionTemplate.execute(status -> beerRepository.multiLoadById(beerIds));
+    }
+}
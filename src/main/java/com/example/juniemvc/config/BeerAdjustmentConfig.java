@@ -0,0 +1,13 @@
+package com.example.juniemvc.config;
+
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Bulk beer adjustments (POST /api/v1/beers/adjustments): stock deltas and new prices applied by one
+ * set-based statement per chunk, without loading entities.
+ */
+@Configuration(proxyBeanMethods = false)
+@EnableConfigurationProperties(BeerAdjustmentProperties.class)
+class BeerAdjustmentConfig {
+}
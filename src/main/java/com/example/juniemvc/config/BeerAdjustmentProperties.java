@@ -0,0 +1,15 @@
+package com.example.juniemvc.config;
+
+import jakarta.validation.constraints.Min;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.validation.annotation.Validated;
+
+/**
+ * Bulk beer adjustments (juniemvc.beer-adjustment.*).
+ *
+ * @param chunkSize entries applied per statement and transaction
+ */
+@Validated
+@ConfigurationProperties(prefix = "juniemvc.beer-adjustment")
+public record BeerAdjustmentProperties(@Min(1) int chunkSize) {
+}
@@ -0,0 +1,13 @@
+package com.example.juniemvc.config;
+
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Bulk beer import (POST /api/v1/beers/import): CSV or NDJSON bodies are read as a stream and upserted
+ * by upc in chunks, each one JDBC batch per statement and one transaction.
+ */
+@Configuration(proxyBeanMethods = false)
+@EnableConfigurationProperties(BeerImportProperties.class)
+class BeerImportConfig {
+}
@@ -0,0 +1,17 @@
+package com.example.juniemvc.config;
+
+import jakarta.validation.constraints.Min;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.validation.annotation.Validated;
+
+/**
+ * Bulk beer import (juniemvc.beer-import.*).
+ *
+ * @param chunkSize         rows written per JDBC batch and transaction
+ * @param maxReportedErrors failed rows listed in the import report; further ones are only counted
+ */
+@Validated
+@ConfigurationProperties(prefix = "juniemvc.beer-import")
+public record BeerImportProperties(@Min(1) int chunkSize,
+                                   @Min(0) int maxReportedErrors) {
+}
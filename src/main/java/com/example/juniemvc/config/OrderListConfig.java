@@ -0,0 +1,21 @@
+package com.example.juniemvc.config;
+
+import com.example.juniemvc.repositories.BeerOrderRepository;
+import com.example.juniemvc.services.OrderCountEstimates;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Order list (GET /api/v1/orders): estimated totals for pages requested without an exact count.
+ */
+@Configuration(proxyBeanMethods = false)
+@EnableConfigurationProperties(OrderListProperties.class)
+class OrderListConfig {
+
+    @Bean(destroyMethod = "close")
+    OrderCountEstimates orderCountEstimates(BeerOrderRepository orderRepository, OrderListProperties properties) {
+        return new OrderCountEstimates(orderRepository::countMatching, properties.countRefreshInterval(),
+                properties.countCacheEntries(), properties.countConcurrency());
+    }
+}
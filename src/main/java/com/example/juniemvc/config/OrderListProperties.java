@@ -0,0 +1,22 @@
+package com.example.juniemvc.config;
+
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.validation.annotation.Validated;
+
+import java.time.Duration;
+
+/**
+ * Order list (juniemvc.order-list.*).
+ *
+ * @param countRefreshInterval age after which an estimated total is recounted in the background
+ * @param countCacheEntries    filters whose estimated totals are kept per node
+ * @param countConcurrency     background counts running at a time per node
+ */
+@Validated
+@ConfigurationProperties(prefix = "juniemvc.order-list")
+public record OrderListProperties(@NotNull Duration countRefreshInterval,
+                                  @Min(1) int countCacheEntries,
+                                  @Min(1) int countConcurrency) {
+}
@@ -0,0 +1,25 @@
+package com.example.juniemvc.config;
+
+import com.example.juniemvc.services.OrderPipelineRunner;
+import com.example.juniemvc.services.OrderPipelineService;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnBooleanProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Background order pipeline: with juniemvc.pipeline.enabled=true, workers on virtual threads move
+ * new orders through validation and allocation. Stages claim orders with SKIP LOCKED, so any number
+ * of nodes can run them against the same database.
+ */
+@Configuration(proxyBeanMethods = false)
+@EnableConfigurationProperties(OrderPipelineProperties.class)
+class OrderPipelineConfig {
+
+    @Bean
+    @ConditionalOnBooleanProperty("juniemvc.pipeline.enabled")
+    OrderPipelineRunner orderPipelineRunner(OrderPipelineService orderPipelineService, OrderPipelineProperties properties) {
+        return new OrderPipelineRunner(orderPipelineService, properties.workers(), properties.batchSize(),
+                properties.pollInterval());
+    }
+}
@@ -0,0 +1,34 @@
+package com.example.juniemvc.config;
+
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.validation.annotation.Validated;
+
+import java.time.Duration;
+
+/**
+ * Background order pipeline (juniemvc.pipeline.*).
+ *
+ * @param enabled               whether this node runs the pipeline workers
+ * @param batchSize             orders claimed per stage and batch
+ * @param workers               polling workers per stage; with several nodes, per node
+ * @param pollInterval          pause of a worker after a batch that was not full
+ * @param lease                 how long a claimed order may stay in flight before another worker
+ *                              reclaims it
+ * @param allocationParallelism orders allocated at once on this node
+ * @param backorderRetry        wait before allocating a backordered order again, doubled after each
+ *                              further attempt that reserves nothing
+ * @param backorderRetryMax     longest wait between two allocations of a backordered order
+ */
+@Validated
+@ConfigurationProperties(prefix = "juniemvc.pipeline")
+public record OrderPipelineProperties(boolean enabled,
+                                      @Min(1) int batchSize,
+                                      @Min(1) int workers,
+                                      @NotNull Duration pollInterval,
+                                      @NotNull Duration lease,
+                                      @Min(1) int allocationParallelism,
+                                      @NotNull Duration backorderRetry,
+                                      @NotNull Duration backorderRetryMax) {
+}
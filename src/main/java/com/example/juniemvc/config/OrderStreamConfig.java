@@ -0,0 +1,34 @@
+package com.example.juniemvc.config;
+
+import com.example.juniemvc.repositories.OrderChangeRepository;
+import com.example.juniemvc.services.BeerOrderService;
+import com.example.juniemvc.services.OrderChangeLog;
+import com.example.juniemvc.services.OrderStatusFeed;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Order status stream (GET /api/v1/orders/status-stream): the outbox relay logs order changes in
+ * order_change, and the feed of each node tails the log and fans the changes out to server-sent event streams.
+ */
+@Configuration(proxyBeanMethods = false)
+@EnableConfigurationProperties(OrderStreamProperties.class)
+class OrderStreamConfig {
+
+    @Bean
+    OrderChangeLog orderChangeLog(OrderChangeRepository orderChangeRepository, ObjectMapper objectMapper,
+                                  OrderStreamProperties properties) {
+        return new OrderChangeLog(orderChangeRepository, objectMapper, properties.retention());
+    }
+
+    @Bean
+    OrderStatusFeed orderStatusFeed(BeerOrderService beerOrderService, OrderChangeRepository orderChangeRepository,
+                                    MeterRegistry meterRegistry, OrderStreamProperties properties) {
+        return new OrderStatusFeed(beerOrderService, orderChangeRepository, meterRegistry, properties.pollInterval(),
+                properties.bufferSize(), properties.maxSubscribers(), properties.subscriberQueue(),
+                properties.heartbeatInterval(), properties.timeout());
+    }
+}
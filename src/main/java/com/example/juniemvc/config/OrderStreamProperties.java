@@ -0,0 +1,30 @@
+package com.example.juniemvc.config;
+
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.validation.annotation.Validated;
+
+import java.time.Duration;
+
+/**
+ * Server-sent order status stream (juniemvc.order-stream.*).
+ *
+ * @param pollInterval      how often each node reads the order change log
+ * @param retention         how long changes stay in the order change log
+ * @param bufferSize        order changes kept per node for resuming streams (Last-Event-ID)
+ * @param maxSubscribers    open streams per node; further subscriptions get a 503
+ * @param subscriberQueue   changes a stream may fall behind before it is closed (the client resumes)
+ * @param heartbeatInterval idle time after which a stream sends a comment line to keep the connection open
+ * @param timeout           lifetime of a stream; the client reconnects with Last-Event-ID
+ */
+@Validated
+@ConfigurationProperties(prefix = "juniemvc.order-stream")
+public record OrderStreamProperties(@NotNull Duration pollInterval,
+                                    @NotNull Duration retention,
+                                    @Min(1) int bufferSize,
+                                    @Min(1) int maxSubscribers,
+                                    @Min(1) int subscriberQueue,
+                                    @NotNull Duration heartbeatInterval,
+                                    @NotNull Duration timeout) {
+}
@@ -0,0 +1,68 @@
+package com.example.juniemvc.config;
+
+import com.example.juniemvc.outbox.FileOutboxSink;
+import com.example.juniemvc.outbox.InMemoryOutboxSink;
+import com.example.juniemvc.outbox.OutboxListener;
+import com.example.juniemvc.outbox.OutboxSink;
+import com.example.juniemvc.outbox.WebhookOutboxSink;
+import com.example.juniemvc.repositories.OutboxRepository;
+import com.example.juniemvc.services.OutboxRelay;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.transaction.PlatformTransactionManager;
+
+/**
+ * Transactional outbox: services record order and beer changes in outbox_event within their own
+ * transaction, and the relay publishes them to the sink selected by juniemvc.outbox.sink. With
+ * juniemvc.outbox.sink=custom none of the built-in sinks is created and the application supplies its
+ * own OutboxSink bean. The relay bean always exists; it only polls with juniemvc.outbox.relay-enabled=true,
+ * and of the polling relays only the one holding the lease (juniemvc.outbox.relay-lease) publishes.
+ */
+@Configuration(proxyBeanMethods = false)
+@EnableConfigurationProperties(OutboxProperties.class)
+class OutboxConfig {
+
+    @Bean
+    @ConditionalOnProperty(name = "juniemvc.outbox.sink", havingValue = "memory")
+    InMemoryOutboxSink inMemoryOutboxSink(OutboxProperties properties) {
+        return new InMemoryOutboxSink(properties.memoryCapacity());
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "juniemvc.outbox.sink", havingValue = "file")
+    FileOutboxSink fileOutboxSink(OutboxProperties properties, ObjectMapper objectMapper) {
+        return new FileOutboxSink(required(properties.file(), "file"), objectMapper);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "juniemvc.outbox.sink", havingValue = "webhook")
+    WebhookOutboxSink webhookOutboxSink(OutboxProperties properties, ObjectMapper objectMapper) {
+        return new WebhookOutboxSink(required(properties.webhookUrl(), "webhook-url"), properties.webhookTimeout(),
+                objectMapper);
+    }
+
+    @Bean
+    OutboxRelay outboxRelay(OutboxRepository outboxRepository, OutboxSink outboxSink,
+                            ObjectProvider<OutboxListener> outboxListeners,
+                            PlatformTransactionManager transactionManager, MeterRegistry meterRegistry,
+                            OutboxProperties properties) {
+        if (properties.relayLease().compareTo(properties.pollInterval()) <= 0) {
+            throw new IllegalStateException("juniemvc.outbox.relay-lease must exceed juniemvc.outbox.poll-interval");
+        }
+        return new OutboxRelay(outboxRepository, outboxSink, outboxListeners.orderedStream().toList(),
+                transactionManager, meterRegistry,
+                properties.relayEnabled(), properties.batchSize(), properties.pollInterval(), properties.relayLease());
+    }
+
+    private static <T> T required(T value, String property) {
+        if (value == null) {
+            throw new IllegalStateException("juniemvc.outbox.%s is required by the configured sink".formatted(property));
+        }
+        return value;
+    }
+}
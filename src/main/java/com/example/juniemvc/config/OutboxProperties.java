@@ -0,0 +1,41 @@
+package com.example.juniemvc.config;
+
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.validation.annotation.Validated;
+
+import java.net.URI;
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * Transactional outbox relay and sink (juniemvc.outbox.*).
+ *
+ * @param relayEnabled   whether this node relays outbox events; events are recorded either way
+ * @param sink           where events go; custom for an OutboxSink bean of the application
+ * @param batchSize      events claimed and published per batch
+ * @param pollInterval   pause of the relay after a batch that was not full, or failed
+ * @param relayLease     how long the relay lease lasts after a batch; another node's relay takes over
+ *                       once it expires, so it must exceed the poll interval
+ * @param file           NDJSON file appended to by the file sink
+ * @param webhookUrl     URL the webhook sink POSTs batches to
+ * @param webhookTimeout connect and read timeout of the webhook sink
+ * @param memoryCapacity events retained by the in-memory sink
+ */
+@Validated
+@ConfigurationProperties(prefix = "juniemvc.outbox")
+public record OutboxProperties(boolean relayEnabled,
+                               @NotNull Sink sink,
+                               @Min(1) int batchSize,
+                               @NotNull Duration pollInterval,
+                               @NotNull Duration relayLease,
+                               Path file,
+                               URI webhookUrl,
+                               @NotNull Duration webhookTimeout,
+                               @Min(1) int memoryCapacity) {
+
+    public enum Sink {
+        MEMORY, FILE, WEBHOOK, CUSTOM
+    }
+}
@@ -0,0 +1,87 @@
+package com.example.juniemvc.config;
+
+import com.example.juniemvc.repositories.ReadReplicaDataSource;
+import com.example.juniemvc.repositories.ReadReplicaTransactionManager;
+import com.example.juniemvc.services.ReplicaLagMonitor;
+import com.example.juniemvc.web.ReadYourWritesFilter;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnBooleanProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.autoconfigure.transaction.TransactionManagerCustomizers;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.util.StringUtils;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Read replicas: with juniemvc.read-replicas.enabled=true the application DataSource becomes a
+ * {@link ReadReplicaDataSource}, which runs read-only transactions on the replicas that are within the
+ * lag tolerance and everything else on the primary (spring.datasource.*). Clients that have just written
+ * read from the primary for juniemvc.read-replicas.stickiness. Entities read on a replica are kept out of
+ * the second-level cache ({@link ReadReplicaTransactionManager}).
+ */
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnBooleanProperty("juniemvc.read-replicas.enabled")
+@EnableConfigurationProperties(ReadReplicaProperties.class)
+class ReadReplicaConfig {
+
+    @Bean
+    ReadReplicaDataSource dataSource(DataSourceProperties dataSourceProperties, Environment environment,
+                                     ReadReplicaProperties properties, MeterRegistry meterRegistry) {
+        // built like Spring Boot's own pool, which backs off for this bean
+        HikariDataSource primary = dataSourceProperties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        if (StringUtils.hasText(dataSourceProperties.getName())) {
+            primary.setPoolName(dataSourceProperties.getName());
+        }
+        Binder.get(environment).bind("spring.datasource.hikari", Bindable.ofInstance(primary));
+
+        Map<String, HikariDataSource> replicas = new LinkedHashMap<>();
+        for (int i = 0; i < properties.replicas().size(); i++) {
+            ReadReplicaProperties.Replica replica = properties.replicas().get(i);
+            HikariConfig config = new HikariConfig();
+            primary.copyStateTo(config);
+            config.setJdbcUrl(replica.url());
+            config.setUsername(replica.username());
+            config.setPassword(replica.password());
+            config.setPoolName("replica-" + i);
+            // a replica that is down at startup is left out until a probe reaches it
+            config.setInitializationFailTimeout(-1);
+            config.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(meterRegistry));
+            replicas.put(config.getPoolName(), new HikariDataSource(config));
+        }
+        return new ReadReplicaDataSource(primary, replicas, properties.maxLag());
+    }
+
+    // built like Spring Boot's own, which backs off for this bean
+    @Bean
+    ReadReplicaTransactionManager transactionManager(ObjectProvider<TransactionManagerCustomizers> customizers) {
+        ReadReplicaTransactionManager transactionManager = new ReadReplicaTransactionManager();
+        customizers.ifAvailable(available -> available.customize(transactionManager));
+        return transactionManager;
+    }
+
+    @Bean
+    ReplicaLagMonitor replicaLagMonitor(ReadReplicaDataSource dataSource, MeterRegistry meterRegistry,
+                                        ReadReplicaProperties properties) {
+        return new ReplicaLagMonitor(dataSource, meterRegistry, properties.heartbeatInterval());
+    }
+
+    @Bean
+    FilterRegistrationBean<ReadYourWritesFilter> readYourWritesFilter(ReadReplicaProperties properties) {
+        FilterRegistrationBean<ReadYourWritesFilter> registration = new FilterRegistrationBean<>(
+                new ReadYourWritesFilter(properties.stickiness()));
+        registration.addUrlPatterns("/api/*");
+        return registration;
+    }
+}
@@ -0,0 +1,39 @@
+package com.example.juniemvc.config;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.validation.annotation.Validated;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Read replicas (juniemvc.read-replicas.*).
+ *
+ * @param enabled           whether read-only transactions go to the replicas
+ * @param replicas          the replica databases; their pools are configured like the primary's
+ *                          (spring.datasource.hikari.*)
+ * @param maxLag            how far behind the primary a replica may be and still serve reads; include
+ *                          the heartbeat interval, which is the lag of a replica that is fully caught up
+ * @param heartbeatInterval how often the heartbeat is written and the replicas probed
+ * @param stickiness        how long a client reads from the primary after a write
+ */
+@Validated
+@ConfigurationProperties(prefix = "juniemvc.read-replicas")
+public record ReadReplicaProperties(boolean enabled,
+                                    @NotEmpty List<@Valid Replica> replicas,
+                                    @NotNull Duration maxLag,
+                                    @NotNull Duration heartbeatInterval,
+                                    @NotNull Duration stickiness) {
+
+    /**
+     * @param url      JDBC URL
+     * @param username user name, if the URL does not carry it
+     * @param password password, if the URL does not carry it
+     */
+    public record Replica(@NotBlank String url, String username, String password) {
+    }
+}
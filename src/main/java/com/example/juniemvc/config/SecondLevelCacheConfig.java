@@ -0,0 +1,67 @@
+package com.example.juniemvc.config;
+
+import com.example.juniemvc.entities.Beer;
+import com.example.juniemvc.repositories.BeerChangeRepository;
+import com.example.juniemvc.services.BeerCacheInvalidator;
+import com.example.juniemvc.services.BeerChangeLog;
+import com.github.benmanes.caffeine.jcache.configuration.CaffeineConfiguration;
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import javax.cache.spi.CachingProvider;
+import java.net.URI;
+import java.util.OptionalLong;
+import java.util.UUID;
+
+/**
+ * Embedded JCache (Caffeine) manager backing the Hibernate second-level cache.
+ *
+ * Regions are created up front with the bounds from {@link SecondLevelCacheProperties}.
+ * Every cached entity needs its region declared here; Hibernate would otherwise create
+ * an unbounded one (and log a warning).
+ *
+ * A node evicts the beers it changes itself; the beers changed on other nodes reach it through the
+ * beer change log, which the outbox relay writes and the {@link BeerCacheInvalidator} of each node tails.
+ */
+@Configuration(proxyBeanMethods = false)
+@EnableConfigurationProperties(SecondLevelCacheProperties.class)
+class SecondLevelCacheConfig {
+
+    @Bean(destroyMethod = "close")
+    CacheManager hibernateCacheManager(SecondLevelCacheProperties properties) {
+        CachingProvider provider = Caching.getCachingProvider(CaffeineCachingProvider.class.getName());
+        // one manager per application context, never the provider-wide default instance
+        CacheManager cacheManager = provider.getCacheManager(
+                URI.create("juniemvc-hibernate-" + UUID.randomUUID()), getClass().getClassLoader());
+
+        CaffeineConfiguration<Object, Object> beerRegion = new CaffeineConfiguration<>();
+        beerRegion.setMaximumSize(OptionalLong.of(properties.beerMaxEntries()));
+        beerRegion.setExpireAfterWrite(OptionalLong.of(properties.beerTtl().toNanos()));
+        cacheManager.createCache(Beer.CACHE_REGION, beerRegion);
+        return cacheManager;
+    }
+
+    @Bean
+    HibernatePropertiesCustomizer secondLevelCacheManagerCustomizer(CacheManager hibernateCacheManager) {
+        return hibernateProperties -> hibernateProperties.put(ConfigSettings.CACHE_MANAGER, hibernateCacheManager);
+    }
+
+    @Bean
+    BeerChangeLog beerChangeLog(BeerChangeRepository beerChangeRepository, SecondLevelCacheProperties properties) {
+        return new BeerChangeLog(beerChangeRepository, properties.beerChangeRetention());
+    }
+
+    @Bean
+    BeerCacheInvalidator beerCacheInvalidator(BeerChangeRepository beerChangeRepository,
+                                              EntityManagerFactory entityManagerFactory,
+                                              SecondLevelCacheProperties properties) {
+        return new BeerCacheInvalidator(beerChangeRepository, entityManagerFactory, properties.beerChangePollInterval());
+    }
+}
@@ -0,0 +1,25 @@
+package com.example.juniemvc.config;
+
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.validation.annotation.Validated;
+
+import java.time.Duration;
+
+/**
+ * Bounds of the Hibernate second-level cache regions and their invalidation across nodes (juniemvc.cache.*).
+ *
+ * @param beerMaxEntries          maximum number of Beer entries kept in the "beer" region
+ * @param beerTtl                 time-to-live of a cached Beer entry, the bound on staleness while the
+ *                                outbox relay does not run
+ * @param beerChangePollInterval  how often each node reads the beer change log to evict the beers changed elsewhere
+ * @param beerChangeRetention     how long the beer change log keeps a change
+ */
+@Validated
+@ConfigurationProperties(prefix = "juniemvc.cache")
+record SecondLevelCacheProperties(@Min(1) long beerMaxEntries,
+                                  @NotNull Duration beerTtl,
+                                  @NotNull Duration beerChangePollInterval,
+                                  @NotNull Duration beerChangeRetention) {
+}
@@ -0,0 +1,32 @@
+package com.example.juniemvc.config;
+
+import com.example.juniemvc.web.SqlStatementBudgetFilter;
+import com.example.juniemvc.web.SqlStatementCounter;
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Counts the SQL statements Hibernate prepares (SqlStatementCounter) and checks every API request
+ * against its statement budget, to catch N+1 queries behind lazy associations.
+ */
+@Configuration(proxyBeanMethods = false)
+@EnableConfigurationProperties(SqlStatementBudgetProperties.class)
+class SqlStatementBudgetConfig {
+
+    @Bean
+    HibernatePropertiesCustomizer sqlStatementCounterCustomizer() {
+        return hibernateProperties -> hibernateProperties.put(AvailableSettings.STATEMENT_INSPECTOR, new SqlStatementCounter());
+    }
+
+    @Bean
+    FilterRegistrationBean<SqlStatementBudgetFilter> sqlStatementBudgetFilter(SqlStatementBudgetProperties properties) {
+        FilterRegistrationBean<SqlStatementBudgetFilter> registration = new FilterRegistrationBean<>(
+                new SqlStatementBudgetFilter(properties.defaultMaxStatements(), properties.responseHeader()));
+        registration.addUrlPatterns("/api/*");
+        return registration;
+    }
+}
@@ -0,0 +1,16 @@
+package com.example.juniemvc.config;
+
+import jakarta.validation.constraints.Min;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.validation.annotation.Validated;
+
+/**
+ * Per-request SQL statement budget (juniemvc.sql-budget.*).
+ *
+ * @param defaultMaxStatements budget of handlers without @SqlStatementBudget
+ * @param responseHeader       whether responses report their statement count in X-SQL-Statement-Count
+ */
+@Validated
+@ConfigurationProperties(prefix = "juniemvc.sql-budget")
+record SqlStatementBudgetProperties(@Min(1) int defaultMaxStatements, boolean responseHeader) {
+}
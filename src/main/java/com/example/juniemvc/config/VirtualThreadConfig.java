@@ -0,0 +1,33 @@
+package com.example.juniemvc.config;
+
+import com.example.juniemvc.web.RequestConcurrencyLimitFilter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Virtual-thread mode (spring.threads.virtual.enabled, set with VIRTUAL_THREADS=true).
+ *
+ * Tomcat no longer caps concurrency with its worker pool, so without a limit every open connection
+ * becomes a thread queueing on the Hikari pool. The API is put behind a semaphore sized relative to
+ * the pool instead; requests beyond it wait briefly and are then shed with 503.
+ */
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnThreading(Threading.VIRTUAL)
+@EnableConfigurationProperties(VirtualThreadProperties.class)
+class VirtualThreadConfig {
+
+    @Bean
+    FilterRegistrationBean<RequestConcurrencyLimitFilter> requestConcurrencyLimitFilter(VirtualThreadProperties properties,
+                                                                                        ObjectMapper objectMapper) {
+        RequestConcurrencyLimitFilter filter = new RequestConcurrencyLimitFilter(
+                properties.maxConcurrentRequests(), properties.acquireTimeout(), objectMapper);
+        FilterRegistrationBean<RequestConcurrencyLimitFilter> registration = new FilterRegistrationBean<>(filter);
+        registration.addUrlPatterns("/api/*");
+        return registration;
+    }
+}
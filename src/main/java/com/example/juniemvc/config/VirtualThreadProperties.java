@@ -0,0 +1,19 @@
+package com.example.juniemvc.config;
+
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.validation.annotation.Validated;
+
+import java.time.Duration;
+
+/**
+ * Request concurrency limit applied in virtual-thread mode (juniemvc.virtual-threads.*).
+ *
+ * @param maxConcurrentRequests API requests allowed in flight at once
+ * @param acquireTimeout        how long a request waits for a slot before it is rejected with 503
+ */
+@Validated
+@ConfigurationProperties(prefix = "juniemvc.virtual-threads")
+record VirtualThreadProperties(@Min(1) int maxConcurrentRequests, @NotNull Duration acquireTimeout) {
+}
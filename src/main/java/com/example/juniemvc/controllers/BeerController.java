@@ -1,15 +1,32 @@
 package com.example.juniemvc.controllers;
 
+import com.example.juniemvc.models.BeerAdjustment;
+import com.example.juniemvc.models.BeerAdjustmentReport;
 import com.example.juniemvc.models.BeerDto;
+import com.example.juniemvc.models.BeerImportFormat;
+import com.example.juniemvc.models.BeerImportReport;
+import com.example.juniemvc.models.BeerQuery;
+import com.example.juniemvc.models.BeerSort;
+import com.example.juniemvc.models.CursorPage;
+import com.example.juniemvc.services.BeerAdjustmentService;
+import com.example.juniemvc.services.BeerImportService;
 import com.example.juniemvc.services.BeerService;
+import com.example.juniemvc.services.InvalidRequestException;
+import com.example.juniemvc.web.SqlStatementBudget;
 import jakarta.validation.Valid;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.util.UriComponentsBuilder;
 
+import java.io.IOException;
+import java.io.Reader;
 import java.net.URI;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * REST controller exposing CRUD operations for Beer resources.
@@ -19,15 +36,21 @@ import java.util.List;
  * - POST and PUT accept a BeerDto. Server-managed fields (id, version, createdDate, updateDate)
  *   are ignored if provided by clients.
  * - All responses return BeerDto instances or collections thereof.
+ * - The collection endpoint is keyset paginated; clients follow the opaque nextCursor.
  */
 @RestController
 @RequestMapping("/api/v1/beers")
 class BeerController {
 
     private final BeerService beerService;
-    
-    BeerController(BeerService beerService) {
+    private final BeerImportService beerImportService;
+    private final BeerAdjustmentService beerAdjustmentService;
+
+    BeerController(BeerService beerService, BeerImportService beerImportService,
+                   BeerAdjustmentService beerAdjustmentService) {
         this.beerService = beerService;
+        this.beerImportService = beerImportService;
+        this.beerAdjustmentService = beerAdjustmentService;
     }
 
     /**
@@ -49,40 +72,140 @@ class BeerController {
     }
 
     /**
-     * Retrieves a Beer by its identifier.
+     * Imports a supplier catalog in one request: rows are read from the body as a stream, validated
+     * like createBeer and upserted by upc in chunks, each in its own transaction. A bad row does not
+     * stop the import; it is reported with its line number.
+     *
+     * Accepts: text/csv with a header line naming the columns beerName, beerStyle, upc, quantityOnHand
+     * and price; or application/x-ndjson with one BeerDto per line
+     * Returns: BeerImportReport with the counts per outcome and the rejected rows
+     *
+     * @param body the request body
+     * @return 200 OK with the report; 400 when the CSV header names an unknown column
+     */
+    @PostMapping(value = "/import", consumes = "text/csv")
+    // No statement budget: the statements grow with the number of chunks, and they run on JdbcTemplate,
+    // which SqlStatementCounter (a Hibernate StatementInspector) does not count
+    public ResponseEntity<BeerImportReport> importCsv(Reader body) throws IOException {
+        return ResponseEntity.ok(beerImportService.importBeers(body, BeerImportFormat.CSV));
+    }
+
+    @PostMapping(value = "/import", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<BeerImportReport> importNdjson(Reader body) throws IOException {
+        return ResponseEntity.ok(beerImportService.importBeers(body, BeerImportFormat.NDJSON));
+    }
+
+    /**
+     * Applies a batch of restocks and price changes, each naming a beer by id or upc, with one
+     * set-based statement per chunk instead of a load and save per beer. Versions and update dates
+     * are bumped as by updateBeer.
+     *
+     * Accepts: a JSON array of BeerAdjustment (id or upc; quantityDelta, price or both)
+     * Returns: BeerAdjustmentReport with the counts per outcome
+     *
+     * @param adjustments the entries to apply
+     * @return 200 OK with the report; 400 when an entry is invalid, in which case nothing is applied
+     */
+    @PostMapping("/adjustments")
+    // No statement budget, as for the import: one set of JdbcTemplate statements per chunk
+    public ResponseEntity<BeerAdjustmentReport> adjustBeers(@RequestBody List<BeerAdjustment> adjustments) {
+        return ResponseEntity.ok(beerAdjustmentService.adjust(adjustments));
+    }
+
+    /**
+     * Retrieves a Beer by its identifier. The ETag is derived from id and version.
      *
-     * @param id the beer id
-     * @return 200 OK with BeerDto if found, otherwise 404 Not Found
+     * @param id          the beer id
+     * @param ifNoneMatch optional entity tags the client already holds
+     * @return 200 OK with BeerDto and ETag if found, 304 Not Modified if an entity tag still matches,
+     *         otherwise 404 Not Found
      */
     @GetMapping("/{id}")
-    public ResponseEntity<BeerDto> getBeerById(@PathVariable Integer id) {
-        return ResponseEntity.of(beerService.getBeerById(id));
+    @SqlStatementBudget(1)
+    public ResponseEntity<BeerDto> getBeerById(@PathVariable Integer id,
+                                               @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        // Beers come from the second-level cache, so there is no cheaper version probe than the load itself
+        return beerService.getBeerById(id)
+                .map(beer -> {
+                    String etag = VersionETags.of(beer.getId(), beer.getVersion());
+                    if (ifNoneMatch != null && VersionETags.matchesIfNoneMatch(ifNoneMatch, etag)) {
+                        return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).<BeerDto>build();
+                    }
+                    return ResponseEntity.ok().eTag(etag).body(beer);
+                })
+                .orElseGet(() -> ResponseEntity.notFound().build());
     }
 
     /**
-     * Retrieves all Beers.
+     * Lists Beers one keyset-paginated page at a time.
      *
-     * @return 200 OK with a list of BeerDto (possibly empty)
+     * @param beerName  optional beer name prefix filter
+     * @param beerStyle optional beer style prefix filter
+     * @param sort      sort key, "id" (default) or "beerName"; id is always the tie-breaker
+     * @param cursor    opaque cursor from the previous page's nextCursor, omitted for the first page
+     * @param size      page size, capped at 200 on the server side
+     * @return 200 OK with an envelope { content: BeerDto[], size, nextCursor }; nextCursor is null on the last page
      */
     @GetMapping
-    public ResponseEntity<List<BeerDto>> getAllBeers() {
-        return ResponseEntity.ok(beerService.getAllBeers());
+    @SqlStatementBudget(1)
+    public ResponseEntity<Map<String, Object>> listBeers(@RequestParam(required = false) String beerName,
+                                                         @RequestParam(required = false) String beerStyle,
+                                                         @RequestParam(required = false) String sort,
+                                                         @RequestParam(required = false) String cursor,
+                                                         @RequestParam(defaultValue = "25") int size) {
+        BeerQuery query = BeerQuery.builder()
+                .beerName(beerName)
+                .beerStyle(beerStyle)
+                .sort(sortKey(sort))
+                .cursor(cursor)
+                .size(size)
+                .build();
+        CursorPage<BeerDto> result = beerService.listBeers(query);
+        Map<String, Object> body = new HashMap<>();
+        body.put("content", result.getContent());
+        body.put("size", result.getSize());
+        body.put("nextCursor", result.getNextCursor());
+        return ResponseEntity.ok(body);
     }
 
     /**
      * Updates an existing Beer identified by id using values from the request body.
      * Uses Optional semantics: if the id is not recognized, returns 404.
+     * With If-Match the update only applies to the version the client last saw.
      *
-     * Accepts: BeerDto (server-managed fields are ignored)
+     * Accepts: BeerDto (server-managed fields are ignored, the version comes from If-Match only)
      * Returns: BeerDto
      *
-     * @param id   the id of the beer to update
+     * @param id      the id of the beer to update
+     * @param ifMatch optional entity tags the update is conditional on
      * @param beerDto the incoming beer data with updated fields
-     * @return 200 OK with the updated BeerDto if present, otherwise 404 Not Found
+     * @return 200 OK with the updated BeerDto and its new ETag if present, otherwise 404 Not Found;
+     *         412 Precondition Failed if If-Match does not match, 409 Conflict if a concurrent write wins
      */
     @PutMapping("/{id}")
-    public ResponseEntity<BeerDto> updateBeer(@PathVariable Integer id, @Valid @RequestBody BeerDto beerDto) {
-        return ResponseEntity.of(beerService.updateBeer(id, beerDto));
+    public ResponseEntity<BeerDto> updateBeer(@PathVariable Integer id,
+                                              @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+                                              @Valid @RequestBody BeerDto beerDto) {
+        beerDto.setVersion(ifMatch != null ? VersionETags.checkIfMatch(ifMatch, id, beerService.getBeerVersion(id)) : null);
+        return beerService.updateBeer(id, beerDto)
+                .map(updated -> ResponseEntity.ok().eTag(VersionETags.of(updated.getId(), updated.getVersion())).body(updated))
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    /**
+     * Spreads the stock of a Beer over {@code count} inventory slots so concurrent allocations of a
+     * hot beer do not queue on one row; a count of 1 returns to a single counter.
+     *
+     * @param id    the id of the beer
+     * @param count the number of slots, 1 to 64
+     * @return 200 OK with the BeerDto (quantityOnHand is the total over all slots) and its new ETag,
+     *         404 Not Found if the id is unknown, 400 Bad Request if count is out of range
+     */
+    @PutMapping("/{id}/stripes")
+    public ResponseEntity<BeerDto> stripeInventory(@PathVariable Integer id, @RequestParam int count) {
+        return beerService.stripeInventory(id, count)
+                .map(beer -> ResponseEntity.ok().eTag(VersionETags.of(beer.getId(), beer.getVersion())).body(beer))
+                .orElseGet(() -> ResponseEntity.notFound().build());
     }
 
     /**
@@ -96,4 +219,12 @@ class BeerController {
         boolean deleted = beerService.deleteBeerById(id);
         return deleted ? ResponseEntity.noContent().build() : ResponseEntity.notFound().build();
     }
+
+    private static BeerSort sortKey(String sort) {
+        try {
+            return BeerSort.fromParam(sort);
+        } catch (IllegalArgumentException ex) {
+            throw new InvalidRequestException(ex.getMessage(), ex);
+        }
+    }
 }
@@ -1,27 +1,65 @@
 package com.example.juniemvc.controllers;
 
+import com.example.juniemvc.entities.enums.OrderStatus;
 import com.example.juniemvc.models.BeerOrderDto;
 import com.example.juniemvc.models.BeerOrderLineDto;
+import com.example.juniemvc.models.BeerOrderQuery;
+import com.example.juniemvc.models.CursorPage;
+import com.example.juniemvc.models.NumberedPage;
+import com.example.juniemvc.services.AllocationService;
 import com.example.juniemvc.services.BeerOrderService;
+import com.example.juniemvc.services.InvalidRequestException;
+import com.example.juniemvc.services.OrderStatusFeed;
+import com.example.juniemvc.web.SqlStatementBudget;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.ConstraintViolationException;
 import jakarta.validation.Valid;
+import jakarta.validation.Validator;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.format.annotation.DateTimeFormat.ISO;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.net.URI;
-import java.util.HashMap;
-import java.util.Map;
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.Set;
 
 @RestController
 @RequestMapping("/api/v1/orders")
 class BeerOrderController {
 
     private final BeerOrderService beerOrderService;
+    private final AllocationService allocationService;
+    private final OrderStatusFeed orderStatusFeed;
+    private final ObjectMapper objectMapper;
+    private final ObjectWriter orderWriter;
+    private final Validator validator;
 
-    BeerOrderController(BeerOrderService beerOrderService) {
+    BeerOrderController(BeerOrderService beerOrderService, AllocationService allocationService,
+                        OrderStatusFeed orderStatusFeed, ObjectMapper objectMapper, Validator validator) {
         this.beerOrderService = beerOrderService;
+        this.allocationService = allocationService;
+        this.orderStatusFeed = orderStatusFeed;
+        this.objectMapper = objectMapper;
+        this.orderWriter = objectMapper.writerFor(BeerOrderDto.class);
+        this.validator = validator;
     }
 
     @PostMapping
@@ -31,36 +69,229 @@ class BeerOrderController {
                 .body(created);
     }
 
+    // With If-None-Match only the version column is read; the order is loaded and mapped on a miss only,
+    // which makes a miss the one read that takes two statements
     @GetMapping("/{id}")
-    ResponseEntity<BeerOrderDto> getById(@PathVariable Integer id) {
+    @SqlStatementBudget(2)
+    ResponseEntity<BeerOrderDto> getById(@PathVariable Integer id,
+                                         @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        if (ifNoneMatch != null) {
+            Optional<Integer> version = beerOrderService.getVersion(id);
+            if (version.isPresent() && VersionETags.matchesIfNoneMatch(ifNoneMatch, VersionETags.of(id, version.get()))) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(VersionETags.of(id, version.get())).build();
+            }
+        }
         BeerOrderDto dto = beerOrderService.getById(id);
-        return ResponseEntity.ok(dto);
+        return ResponseEntity.ok().eTag(VersionETags.of(dto.getId(), dto.getVersion())).body(dto);
     }
 
-    @GetMapping
-    ResponseEntity<Map<String, Object>> list(@RequestParam(defaultValue = "0") int page,
-                                             @RequestParam(defaultValue = "25") int size) {
+    /**
+     * Lists orders a page at a time, optionally filtered; filters combine with AND. Reads the id page,
+     * the count if the page does not tell it, and the order/line rows.
+     *
+     * With {@code totals=estimated} the count query is skipped and the total comes from a per-node
+     * cache; while the first count of a filter runs in the background, the totals are left out.
+     *
+     * The page order follows the filters: by id with a customerRef or without a date range, else by
+     * (createdDate, id) with a createdDate range, else by (updateDate, id). In updateDate order an order
+     * updated between two requests moves to the end and the orders behind it move up a place; a
+     * createdDate range or cursor paging keeps the order stable.
+     *
+     * @param statuses    order statuses ({@code status}, repeatable); an order matches any of them
+     * @param customerRef exact customer reference
+     * @param createdFrom inclusive lower bound of createdDate (ISO date-time), likewise updatedFrom
+     * @param createdTo   exclusive upper bound of createdDate (ISO date-time), likewise updatedTo
+     * @param totals      "exact" (default) or "estimated"
+     * @return 200 OK with { content, page, size, totalElements, totalPages }; 400 for an unknown status or
+     *         totals value, a malformed date-time, or a range whose from is not before its to
+     */
+    @GetMapping(params = "!cursor")
+    @SqlStatementBudget(3)
+    ResponseEntity<NumberedPage<BeerOrderDto>> list(@RequestParam(name = "status", required = false) Set<OrderStatus> statuses,
+                                                    @RequestParam(required = false) String customerRef,
+                                                    @RequestParam(required = false) @DateTimeFormat(iso = ISO.DATE_TIME) LocalDateTime createdFrom,
+                                                    @RequestParam(required = false) @DateTimeFormat(iso = ISO.DATE_TIME) LocalDateTime createdTo,
+                                                    @RequestParam(required = false) @DateTimeFormat(iso = ISO.DATE_TIME) LocalDateTime updatedFrom,
+                                                    @RequestParam(required = false) @DateTimeFormat(iso = ISO.DATE_TIME) LocalDateTime updatedTo,
+                                                    @RequestParam(required = false) String totals,
+                                                    @RequestParam(defaultValue = "0") int page,
+                                                    @RequestParam(defaultValue = "25") int size) {
+        BeerOrderQuery query = query(statuses, customerRef, createdFrom, createdTo, updatedFrom, updatedTo);
         Pageable pageable = PageRequest.of(page, size);
-        Page<BeerOrderDto> result = beerOrderService.list(pageable);
-        Map<String, Object> body = new HashMap<>();
-        body.put("content", result.getContent());
-        body.put("page", result.getNumber());
-        body.put("size", result.getSize());
-        body.put("totalElements", result.getTotalElements());
-        body.put("totalPages", result.getTotalPages());
-        return ResponseEntity.ok(body);
+        if (!estimatedTotals(totals, false)) {
+            Page<BeerOrderDto> result = beerOrderService.list(query, pageable);
+            return ResponseEntity.ok(NumberedPage.<BeerOrderDto>builder()
+                    .content(result.getContent())
+                    .page(result.getNumber())
+                    .size(result.getSize())
+                    .totalElements(result.getTotalElements())
+                    .totalPages(result.getTotalPages())
+                    .build());
+        }
+        Slice<BeerOrderDto> result = beerOrderService.slice(query, pageable);
+        // the last page tells the exact total; before it the estimate is at least what has been seen
+        long seen = result.getPageable().getOffset() + result.getNumberOfElements();
+        OptionalLong estimate = beerOrderService.estimateCount(query);
+        Long total = !result.hasNext() && result.hasContent()
+                ? Long.valueOf(seen)
+                : estimate.isPresent() ? Long.valueOf(Math.max(estimate.getAsLong(), seen + (result.hasNext() ? 1 : 0))) : null;
+        return ResponseEntity.ok(NumberedPage.<BeerOrderDto>builder()
+                .content(result.getContent())
+                .page(result.getNumber())
+                .size(result.getSize())
+                .totalElements(total)
+                .totalPages(total == null ? null : (int) ((total + result.getSize() - 1) / result.getSize()))
+                .build());
     }
 
+    /**
+     * As {@link #list}, paginated by cursor (empty for the first page): the pages are sought in
+     * (createdDate, id) order and cost the same at any depth.
+     *
+     * @param cursor opaque cursor from the previous page's nextCursor
+     * @param totals "estimated" for a totalElements from the per-node cache (left out while the first
+     *               count of the filter runs); cursor pages have no exact total
+     * @return 200 OK with { content, size, nextCursor[, totalElements] }; 400 as for {@link #list}, for
+     *         totals=exact and for a malformed cursor
+     */
+    @GetMapping(params = "cursor")
+    @SqlStatementBudget(2)
+    ResponseEntity<CursorPage<BeerOrderDto>> scroll(@RequestParam(name = "status", required = false) Set<OrderStatus> statuses,
+                                                    @RequestParam(required = false) String customerRef,
+                                                    @RequestParam(required = false) @DateTimeFormat(iso = ISO.DATE_TIME) LocalDateTime createdFrom,
+                                                    @RequestParam(required = false) @DateTimeFormat(iso = ISO.DATE_TIME) LocalDateTime createdTo,
+                                                    @RequestParam(required = false) @DateTimeFormat(iso = ISO.DATE_TIME) LocalDateTime updatedFrom,
+                                                    @RequestParam(required = false) @DateTimeFormat(iso = ISO.DATE_TIME) LocalDateTime updatedTo,
+                                                    @RequestParam String cursor,
+                                                    @RequestParam(required = false) String totals,
+                                                    @RequestParam(defaultValue = "25") int size) {
+        BeerOrderQuery query = query(statuses, customerRef, createdFrom, createdTo, updatedFrom, updatedTo);
+        boolean estimated = estimatedTotals(totals, true);
+        CursorPage<BeerOrderDto> result = beerOrderService.scroll(query, cursor, size);
+        if (estimated) {
+            OptionalLong estimate = beerOrderService.estimateCount(query);
+            result.setTotalElements(estimate.isPresent() ? estimate.getAsLong() : null);
+        }
+        return ResponseEntity.ok(result);
+    }
+
+    private static BeerOrderQuery query(Set<OrderStatus> statuses, String customerRef,
+                                        LocalDateTime createdFrom, LocalDateTime createdTo,
+                                        LocalDateTime updatedFrom, LocalDateTime updatedTo) {
+        return BeerOrderQuery.builder()
+                .statuses(statuses)
+                .customerRef(customerRef)
+                .createdFrom(createdFrom)
+                .createdTo(createdTo)
+                .updatedFrom(updatedFrom)
+                .updatedTo(updatedTo)
+                .build();
+    }
+
+    private static boolean estimatedTotals(String totals, boolean cursorPaging) {
+        if (totals == null) {
+            return false;
+        }
+        return switch (totals) {
+            case "estimated" -> true;
+            case "exact" -> {
+                if (cursorPaging) {
+                    throw new InvalidRequestException("Cursor pages have no exact total, use totals=estimated");
+                }
+                yield false;
+            }
+            default -> throw new InvalidRequestException("Unknown totals '%s', use exact or estimated".formatted(totals));
+        };
+    }
+
+    /**
+     * Server-sent events with the state of the given orders ({@code id}, repeatable) or of a customer's
+     * orders ({@code customerRef}) after each change, replacing polling of GET /{id}. The stream starts
+     * with the current state of those orders (open ones for a customerRef), or, when Last-Event-ID
+     * names an event this node still buffers, with the changes since.
+     *
+     * @return 200 text/event-stream; 400 without exactly one of id and customerRef or with more than
+     *         100 ids; 503 with Retry-After when this node serves its maximum number of streams
+     */
+    @GetMapping(value = "/status-stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @SqlStatementBudget(2)
+    SseEmitter statusStream(@RequestParam(name = "id", required = false) Set<Integer> ids,
+                            @RequestParam(required = false) String customerRef,
+                            @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) {
+        OrderStatusFeed.Subscription subscription =
+                orderStatusFeed.subscribe(new OrderStatusFeed.Filter(ids, customerRef), lastEventId);
+        return OrderStatusEmitter.start(subscription, orderStatusFeed.heartbeatInterval(), orderStatusFeed.timeout());
+    }
+
+    // One request for the whole table: one BeerOrderDto (with lines) per line, read in pages of orders
+    @GetMapping(value = "/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    ResponseEntity<StreamingResponseBody> export() {
+        StreamingResponseBody body = out -> {
+            try {
+                beerOrderService.exportOrders(dto -> writeNdjsonLine(out, dto));
+            } catch (UncheckedIOException ex) {
+                throw ex.getCause();
+            }
+            out.flush();
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
+    }
+
+    private void writeNdjsonLine(OutputStream out, BeerOrderDto dto) {
+        try {
+            out.write(orderWriter.writeValueAsBytes(dto));
+            out.write('\n');
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    // If-Match is checked against the version column before anything is loaded; the matched
+    // version is then re-checked by the service against the loaded order
     @PutMapping("/{id}")
-    ResponseEntity<BeerOrderDto> update(@PathVariable Integer id, @Valid @RequestBody BeerOrderDto dto) {
+    ResponseEntity<BeerOrderDto> update(@PathVariable Integer id,
+                                        @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+                                        @Valid @RequestBody BeerOrderDto dto) {
+        dto.setVersion(expectedVersion(id, ifMatch));
         BeerOrderDto updated = beerOrderService.update(id, dto);
-        return ResponseEntity.ok(updated);
+        return ResponseEntity.ok().eTag(VersionETags.of(updated.getId(), updated.getVersion())).body(updated);
     }
 
     @PatchMapping("/{id}")
-    ResponseEntity<BeerOrderDto> patch(@PathVariable Integer id, @RequestBody BeerOrderDto dto) {
+    ResponseEntity<BeerOrderDto> patch(@PathVariable Integer id,
+                                       @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+                                       @RequestBody BeerOrderDto dto) {
+        dto.setVersion(expectedVersion(id, ifMatch));
         BeerOrderDto updated = beerOrderService.patch(id, dto);
-        return ResponseEntity.ok(updated);
+        return ResponseEntity.ok().eTag(VersionETags.of(updated.getId(), updated.getVersion())).body(updated);
+    }
+
+    // Merge patch, lines included: applied to the current order and saved like a PUT, so only the
+    // fields and lines that actually change are written
+    @PatchMapping(value = "/{id}", consumes = OrderMergePatch.CONTENT_TYPE)
+    ResponseEntity<BeerOrderDto> mergePatch(@PathVariable Integer id,
+                                            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+                                            @RequestBody JsonNode patch) {
+        BeerOrderDto current = beerOrderService.getById(id);
+        if (ifMatch != null) {
+            VersionETags.checkIfMatch(ifMatch, id, Optional.of(current.getVersion()));
+        }
+        BeerOrderDto patched = OrderMergePatch.apply(objectMapper, current, patch);
+        Set<ConstraintViolation<BeerOrderDto>> violations = validator.validate(patched);
+        if (!violations.isEmpty()) {
+            throw new ConstraintViolationException(violations);
+        }
+        // a change committed since the read fails the version check with 409
+        patched.setVersion(current.getVersion());
+        BeerOrderDto updated = beerOrderService.update(id, patched);
+        return ResponseEntity.ok().eTag(VersionETags.of(updated.getId(), updated.getVersion())).body(updated);
+    }
+
+    // The body version is server-managed and ignored; only If-Match makes a write conditional
+    private Integer expectedVersion(Integer id, String ifMatch) {
+        return ifMatch != null ? VersionETags.checkIfMatch(ifMatch, id, beerOrderService.getVersion(id)) : null;
     }
 
     @DeleteMapping("/{id}")
@@ -69,23 +300,47 @@ class BeerOrderController {
         return ResponseEntity.noContent().build();
     }
 
-    // Line management via parent
+    // Reserves stock for the open lines and returns the order as it is after allocation
+    @PostMapping("/{id}/allocation")
+    ResponseEntity<BeerOrderDto> allocate(@PathVariable Integer id) {
+        allocationService.allocate(id);
+        BeerOrderDto allocated = beerOrderService.getById(id);
+        return ResponseEntity.ok().eTag(VersionETags.of(allocated.getId(), allocated.getVersion())).body(allocated);
+    }
+
+    // Line management via parent: the order is never loaded, and the response holds the line only,
+    // or nothing with Prefer: return=minimal (version bump, beer, sequence, insert)
     @PostMapping("/{orderId}/lines")
-    ResponseEntity<BeerOrderDto> addLine(@PathVariable Integer orderId, @Valid @RequestBody BeerOrderLineDto lineDto) {
-        BeerOrderDto updated = beerOrderService.addLine(orderId, lineDto);
-        return ResponseEntity.created(URI.create("/api/v1/orders/" + orderId))
-                .body(updated);
+    @SqlStatementBudget(4)
+    ResponseEntity<BeerOrderLineDto> addLine(@PathVariable Integer orderId,
+                                             @RequestHeader(value = ReturnPreference.PREFER, required = false) String prefer,
+                                             @Valid @RequestBody BeerOrderLineDto lineDto) {
+        BeerOrderLineDto added = beerOrderService.addLine(orderId, lineDto);
+        ResponseEntity.BodyBuilder response = ResponseEntity.created(
+                URI.create("/api/v1/orders/%d/lines/%d".formatted(orderId, added.getId())));
+        if (ReturnPreference.minimal(prefer)) {
+            return response.header(ReturnPreference.PREFERENCE_APPLIED, ReturnPreference.MINIMAL).build();
+        }
+        return response.body(added);
     }
 
+    // version bump, line, update (a new beer is referenced, not loaded)
     @PutMapping("/{orderId}/lines/{lineId}")
-    ResponseEntity<BeerOrderDto> updateLine(@PathVariable Integer orderId,
-                                            @PathVariable Integer lineId,
-                                            @Valid @RequestBody BeerOrderLineDto lineDto) {
-        BeerOrderDto updated = beerOrderService.updateLine(orderId, lineId, lineDto);
+    @SqlStatementBudget(3)
+    ResponseEntity<BeerOrderLineDto> updateLine(@PathVariable Integer orderId,
+                                                @PathVariable Integer lineId,
+                                                @RequestHeader(value = ReturnPreference.PREFER, required = false) String prefer,
+                                                @Valid @RequestBody BeerOrderLineDto lineDto) {
+        BeerOrderLineDto updated = beerOrderService.updateLine(orderId, lineId, lineDto);
+        if (ReturnPreference.minimal(prefer)) {
+            return ResponseEntity.noContent().header(ReturnPreference.PREFERENCE_APPLIED, ReturnPreference.MINIMAL).build();
+        }
         return ResponseEntity.ok(updated);
     }
 
+    // version bump, delete
     @DeleteMapping("/{orderId}/lines/{lineId}")
+    @SqlStatementBudget(2)
     ResponseEntity<Void> deleteLine(@PathVariable Integer orderId, @PathVariable Integer lineId) {
         beerOrderService.deleteLine(orderId, lineId);
         return ResponseEntity.noContent().build();
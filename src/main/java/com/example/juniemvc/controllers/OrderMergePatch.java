@@ -0,0 +1,82 @@
+package com.example.juniemvc.controllers;
+
+import com.example.juniemvc.models.BeerOrderDto;
+import com.example.juniemvc.models.BeerOrderLineDto;
+import com.example.juniemvc.services.InvalidRequestException;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * JSON Merge Patch (RFC 7396) of an order onto its current representation: members replace fields
+ * and null clears them. "lines" replaces the line list as arrays do, except that an element carrying
+ * the id of a current line is merged onto that line; so one line quantity changes with
+ * {"lines":[{"id":1},{"id":2,"orderQuantity":5}]}. Read-only members (id, version, dates) are ignored.
+ */
+final class OrderMergePatch {
+
+    static final String CONTENT_TYPE = "application/merge-patch+json";
+
+    private static final List<String> READ_ONLY = List.of("id", "version", "createdDate", "updateDate");
+
+    private OrderMergePatch() {
+    }
+
+    /**
+     * @return a new order dto; {@code current} is left unchanged
+     * @throws InvalidRequestException if the patch is not an object or does not fit the order
+     */
+    static BeerOrderDto apply(ObjectMapper objectMapper, BeerOrderDto current, JsonNode patch) {
+        if (!(patch instanceof ObjectNode members)) {
+            throw new InvalidRequestException("A merge patch of an order must be a JSON object");
+        }
+        ObjectNode order = members.deepCopy();
+        order.remove(READ_ONLY);
+        JsonNode lines = order.remove("lines");
+        try {
+            BeerOrderDto patched = objectMapper.readerForUpdating(current.toBuilder().build()).readValue(order);
+            if (lines != null) {
+                patched.setLines(patchLines(objectMapper, current.getLines(), lines));
+            }
+            return patched;
+        } catch (JsonProcessingException ex) {
+            throw new InvalidRequestException("Merge patch does not fit the order: " + ex.getOriginalMessage(), ex);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private static List<BeerOrderLineDto> patchLines(ObjectMapper objectMapper, List<BeerOrderLineDto> current,
+                                                     JsonNode lines) throws IOException {
+        if (lines.isNull()) {
+            return new ArrayList<>();
+        }
+        if (!lines.isArray()) {
+            throw new InvalidRequestException("Merge patch member lines must be an array");
+        }
+        Map<Integer, BeerOrderLineDto> currentById = current.stream()
+                .collect(Collectors.toMap(BeerOrderLineDto::getId, Function.identity()));
+        List<BeerOrderLineDto> patched = new ArrayList<>();
+        for (JsonNode element : lines) {
+            if (!element.isObject()) {
+                throw new InvalidRequestException("Merge patch lines must be JSON objects");
+            }
+            JsonNode id = element.get("id");
+            BeerOrderLineDto base = id != null && id.canConvertToInt() ? currentById.get(id.asInt()) : null;
+            // an unknown id is kept and rejected when the order is saved
+            patched.add(base != null
+                    ? objectMapper.readerForUpdating(base.toBuilder().build()).readValue(element)
+                    : objectMapper.treeToValue(element, BeerOrderLineDto.class));
+        }
+        return patched;
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.juniemvc.controllers;
+
+import com.example.juniemvc.services.OrderStatusFeed.Change;
+import com.example.juniemvc.services.OrderStatusFeed.Subscription;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.MediaType;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Writes an order status subscription as server-sent events: {@code order} with the order as JSON, or
+ * {@code order-deleted} with its id and customerRef, each with the feed's event id for Last-Event-ID.
+ * One virtual thread per stream waits for changes and sends a comment line when the stream was idle
+ * for the heartbeat interval; it ends with the emitter (timeout, client gone, or fallen behind).
+ */
+final class OrderStatusEmitter {
+
+    private static final ThreadFactory STREAM_THREADS = Thread.ofVirtual().name("order-status-stream-", 0).factory();
+    private static final Logger log = LoggerFactory.getLogger(OrderStatusEmitter.class);
+
+    private OrderStatusEmitter() {
+    }
+
+    static SseEmitter start(Subscription subscription, Duration heartbeatInterval, Duration timeout) {
+        SseEmitter emitter = new SseEmitter(timeout.toMillis());
+        Thread sender = STREAM_THREADS.newThread(() -> send(subscription, emitter, heartbeatInterval));
+        emitter.onCompletion(() -> {
+            subscription.close();
+            sender.interrupt();
+        });
+        emitter.onTimeout(emitter::complete);
+        emitter.onError(ex -> subscription.close());
+        sender.start();
+        return emitter;
+    }
+
+    private static void send(Subscription subscription, SseEmitter emitter, Duration heartbeatInterval) {
+        try {
+            for (Change change : subscription.initial()) {
+                emitter.send(event(change));
+            }
+            while (!Thread.currentThread().isInterrupted()) {
+                Change change = subscription.next(heartbeatInterval);
+                if (subscription.overflowed()) {
+                    // changes were dropped: end the stream, the client resumes from its last event id
+                    emitter.complete();
+                    return;
+                }
+                emitter.send(change != null ? event(change) : SseEmitter.event().comment("heartbeat"));
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } catch (IOException | IllegalStateException ex) {
+            // client gone or emitter already completed
+            if (log.isDebugEnabled()) {
+                log.debug("Order status stream ended: {}", ex.getMessage());
+            }
+        } finally {
+            subscription.close();
+        }
+    }
+
+    private static SseEmitter.SseEventBuilder event(Change change) {
+        return SseEmitter.event()
+                .id(change.eventId())
+                .name(change.deleted() ? "order-deleted" : "order")
+                .data(change.order(), MediaType.APPLICATION_JSON);
+    }
+
+}
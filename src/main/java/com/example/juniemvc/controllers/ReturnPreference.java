@@ -0,0 +1,27 @@
+package com.example.juniemvc.controllers;
+
+import java.util.Arrays;
+
+/**
+ * The return preference of a Prefer request header (RFC 7240): {@code return=minimal} asks for a
+ * response without the changed resource, {@code return=representation} (the default) with it.
+ */
+final class ReturnPreference {
+
+    static final String PREFER = "Prefer";
+    static final String PREFERENCE_APPLIED = "Preference-Applied";
+    static final String MINIMAL = "return=minimal";
+
+    private ReturnPreference() {
+    }
+
+    static boolean minimal(String prefer) {
+        if (prefer == null) {
+            return false;
+        }
+        // preferences are comma separated and may carry parameters after ';'
+        return Arrays.stream(prefer.split(","))
+                .map(preference -> preference.split(";", 2)[0].replace(" ", ""))
+                .anyMatch(MINIMAL::equalsIgnoreCase);
+    }
+}
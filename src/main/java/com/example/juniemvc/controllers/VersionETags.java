@@ -0,0 +1,55 @@
+package com.example.juniemvc.controllers;
+
+import com.example.juniemvc.web.PreconditionFailedException;
+
+import java.util.Arrays;
+import java.util.Optional;
+
+/**
+ * Strong entity tags derived from a resource id and its @Version column, e.g. "12-3".
+ */
+final class VersionETags {
+
+    private VersionETags() {
+    }
+
+    static String of(Integer id, Integer version) {
+        return "\"%d-%d\"".formatted(id, version != null ? version : 0);
+    }
+
+    /**
+     * Weak comparison as required for If-None-Match: "W/" prefixes are ignored.
+     */
+    static boolean matchesIfNoneMatch(String header, String etag) {
+        return matches(header, etag, true);
+    }
+
+    /**
+     * Evaluates If-Match against the current version and returns the version the write must apply to.
+     *
+     * @param ifMatch        the If-Match header value
+     * @param id             the resource id
+     * @param currentVersion the current version, empty when the resource does not exist
+     * @return the matched current version
+     * @throws PreconditionFailedException when the resource does not exist or no entity tag matches (strong comparison)
+     */
+    static Integer checkIfMatch(String ifMatch, Integer id, Optional<Integer> currentVersion) {
+        Integer version = currentVersion.orElseThrow(
+                () -> new PreconditionFailedException("Resource %d does not exist".formatted(id)));
+        if (!matches(ifMatch, of(id, version), false)) {
+            throw new PreconditionFailedException("Resource %d has been modified (current ETag %s)".formatted(id, of(id, version)));
+        }
+        return version;
+    }
+
+    private static boolean matches(String header, String etag, boolean weak) {
+        if (header.trim().equals("*")) {
+            return true;
+        }
+        return Arrays.stream(header.split(","))
+                .map(String::trim)
+                .filter(tag -> weak || !tag.startsWith("W/"))
+                .map(tag -> tag.startsWith("W/") ? tag.substring(2) : tag)
+                .anyMatch(etag::equals);
+    }
+}
@@ -1,10 +1,12 @@
 package com.example.juniemvc.entities;
 
+import jakarta.persistence.Cacheable;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.SequenceGenerator;
 import jakarta.persistence.Version;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
@@ -15,7 +17,10 @@ import lombok.ToString;
 import jakarta.persistence.OneToMany;
 import java.util.ArrayList;
 import java.util.List;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.Formula;
 import org.hibernate.annotations.UpdateTimestamp;
 import org.hibernate.proxy.HibernateProxy;
 
@@ -24,6 +29,8 @@ import java.time.LocalDateTime;
 import java.util.Objects;
 
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = Beer.CACHE_REGION)
 @Getter
 @Setter
 @ToString
@@ -32,8 +39,12 @@ import java.util.Objects;
 @AllArgsConstructor
 public class Beer {
 
+    // Second-level cache region; bounded in SecondLevelCacheConfig
+    public static final String CACHE_REGION = "beer";
+
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "beer_seq")
+    @SequenceGenerator(name = "beer_seq", sequenceName = "beer_seq", allocationSize = 50)
     private Integer id;
 
     @Version
@@ -47,6 +58,10 @@ public class Beer {
 
     private Integer quantityOnHand;
 
+    // Stock held in beer_inventory_slot; null unless the beer is striped (see InventorySlotRepository)
+    @Formula("(select sum(s.quantity) from beer_inventory_slot s where s.beer_id = id)")
+    private Integer stripedQuantity;
+
     private BigDecimal price;
 
     @CreationTimestamp
@@ -20,7 +20,8 @@ import java.util.List;
 public class BeerOrder {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "beer_order_seq")
+    @SequenceGenerator(name = "beer_order_seq", sequenceName = "beer_order_seq", allocationSize = 50)
     private Integer id;
 
     @Version
@@ -14,16 +14,27 @@ import org.mapstruct.NullValuePropertyMappingStrategy;
 @Mapper(componentModel = "spring")
 public interface BeerMapper {
 
+    // Striped beers keep their stock in counter slots; clients only ever see the total
+    @Mapping(target = "quantityOnHand", expression = "java(totalQuantityOnHand(source))")
     BeerDto toDto(Beer source);
 
     @Mapping(target = "id", ignore = true)
     @Mapping(target = "createdDate", ignore = true)
     @Mapping(target = "updateDate", ignore = true)
+    @Mapping(target = "stripedQuantity", ignore = true)
     Beer toEntity(BeerDto source);
 
     @BeanMapping(nullValuePropertyMappingStrategy = NullValuePropertyMappingStrategy.IGNORE)
     @Mapping(target = "id", ignore = true)
     @Mapping(target = "createdDate", ignore = true)
     @Mapping(target = "updateDate", ignore = true)
+    @Mapping(target = "stripedQuantity", ignore = true)
     void updateEntityFromDto(BeerDto source, @MappingTarget Beer target);
+
+    default Integer totalQuantityOnHand(Beer source) {
+        if (source.getStripedQuantity() == null) {
+            return source.getQuantityOnHand();
+        }
+        return (source.getQuantityOnHand() != null ? source.getQuantityOnHand() : 0) + source.getStripedQuantity();
+    }
 }
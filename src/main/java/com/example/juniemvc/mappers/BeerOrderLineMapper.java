@@ -2,6 +2,7 @@ package com.example.juniemvc.mappers;
 
 import com.example.juniemvc.entities.BeerOrderLine;
 import com.example.juniemvc.models.BeerOrderLineDto;
+import com.example.juniemvc.repositories.BeerOrderRow;
 import org.mapstruct.BeanMapping;
 import org.mapstruct.Mapper;
 import org.mapstruct.Mapping;
@@ -13,6 +14,14 @@ public interface BeerOrderLineMapper {
     @Mapping(target = "beerId", source = "beer.id")
     BeerOrderLineDto toDto(BeerOrderLine entity);
 
+    // Line columns of a read-path row
+    @Mapping(target = "id", source = "lineId")
+    @Mapping(target = "version", source = "lineVersion")
+    @Mapping(target = "status", source = "lineStatus")
+    @Mapping(target = "createdDate", source = "lineCreatedDate")
+    @Mapping(target = "updateDate", source = "lineUpdateDate")
+    BeerOrderLineDto toDto(BeerOrderRow row);
+
     // Do not load entity from DB here; create reference by id; service may validate
     @BeanMapping(nullValuePropertyMappingStrategy = NullValuePropertyMappingStrategy.IGNORE)
     @Mapping(target = "beer.id", source = "beerId")
@@ -2,6 +2,7 @@ package com.example.juniemvc.mappers;
 
 import com.example.juniemvc.entities.BeerOrder;
 import com.example.juniemvc.models.BeerOrderDto;
+import com.example.juniemvc.repositories.BeerOrderRow;
 import org.mapstruct.BeanMapping;
 import org.mapstruct.Mapper;
 import org.mapstruct.Mapping;
@@ -13,6 +14,10 @@ public interface BeerOrderMapper {
     @Mapping(target = "lines", source = "beerOrderLines")
     BeerOrderDto toDto(BeerOrder entity);
 
+    // Order columns of a read-path row; lines are collected from the rows by the caller
+    @Mapping(target = "lines", ignore = true)
+    BeerOrderDto toDto(BeerOrderRow row);
+
     @BeanMapping(nullValuePropertyMappingStrategy = NullValuePropertyMappingStrategy.IGNORE)
     @Mapping(target = "beerOrderLines", source = "lines")
     BeerOrder toEntity(BeerOrderDto dto);
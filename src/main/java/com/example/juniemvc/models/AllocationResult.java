@@ -0,0 +1,22 @@
+package com.example.juniemvc.models;
+
+import com.example.juniemvc.entities.enums.OrderStatus;
+import lombok.Builder;
+import lombok.Data;
+
+/**
+ * Outcome of one allocation run: the order status it left behind and how many of the lines it
+ * looked at were allocated or backordered.
+ */
+@Data
+@Builder(toBuilder = true)
+public class AllocationResult {
+
+    private Integer orderId;
+
+    private OrderStatus status;
+
+    private int allocatedLines;
+
+    private int backorderedLines;
+}
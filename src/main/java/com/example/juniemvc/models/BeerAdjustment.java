@@ -0,0 +1,30 @@
+package com.example.juniemvc.models;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+/**
+ * One entry of a bulk adjustment: a beer, by id or by upc (exactly one of them), and a change to its
+ * stock, its price or both.
+ */
+@Data
+@Builder(toBuilder = true)
+@NoArgsConstructor
+@AllArgsConstructor
+public class BeerAdjustment {
+
+    private Integer id;
+
+    // matches the oldest beer with this upc
+    private String upc;
+
+    // added to the stock; negative to take stock out
+    private Integer quantityDelta;
+
+    // the new price, null to keep the current one
+    private BigDecimal price;
+}
@@ -0,0 +1,26 @@
+package com.example.juniemvc.models;
+
+import lombok.Builder;
+import lombok.Data;
+
+/**
+ * Outcome of a bulk adjustment. Every entry is counted in exactly one of adjusted, notFound,
+ * insufficientStock and failed.
+ */
+@Data
+@Builder(toBuilder = true)
+public class BeerAdjustmentReport {
+
+    private long requested;
+
+    private long adjusted;
+
+    // no beer with the id or upc
+    private long notFound;
+
+    // the deltas of the beer would have taken its stock below zero
+    private long insufficientStock;
+
+    // in a chunk the database rejected
+    private long failed;
+}
@@ -0,0 +1,22 @@
+package com.example.juniemvc.models;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A rejected row of a bulk beer import: the line it starts on, its upc if it could be read, and why.
+ */
+@Data
+@Builder(toBuilder = true)
+public class BeerImportError {
+
+    private long line;
+
+    private String upc;
+
+    @Builder.Default
+    private List<String> messages = new ArrayList<>();
+}
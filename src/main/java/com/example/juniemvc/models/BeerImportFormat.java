@@ -0,0 +1,13 @@
+package com.example.juniemvc.models;
+
+/**
+ * Body formats of the bulk beer import.
+ *
+ * - CSV: a header line naming the columns (beerName, beerStyle, upc, quantityOnHand, price), then one
+ *   beer per record (RFC 4180 quoting)
+ * - NDJSON: one BeerDto JSON object per line
+ */
+public enum BeerImportFormat {
+    CSV,
+    NDJSON
+}
@@ -0,0 +1,29 @@
+package com.example.juniemvc.models;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Outcome of a bulk beer import. Every row is counted in exactly one of inserted, updated, unchanged
+ * and failed; errors lists the failed rows, up to juniemvc.beer-import.max-reported-errors of them.
+ */
+@Data
+@Builder(toBuilder = true)
+public class BeerImportReport {
+
+    private long rows;
+
+    private long inserted;
+
+    private long updated;
+
+    private long unchanged;
+
+    private long failed;
+
+    @Builder.Default
+    private List<BeerImportError> errors = new ArrayList<>();
+}
@@ -0,0 +1,39 @@
+package com.example.juniemvc.models;
+
+import com.example.juniemvc.entities.enums.OrderStatus;
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+import java.util.Set;
+
+/**
+ * Filters of the order list; every field is optional and an empty query lists all orders.
+ *
+ * - statuses: orders in any of these statuses
+ * - customerRef: exact customer reference
+ * - createdFrom / createdTo, updatedFrom / updatedTo: half-open ranges [from, to) on createdDate / updateDate
+ */
+@Data
+@Builder(toBuilder = true)
+public class BeerOrderQuery {
+
+    private Set<OrderStatus> statuses;
+
+    private String customerRef;
+
+    private LocalDateTime createdFrom;
+
+    private LocalDateTime createdTo;
+
+    private LocalDateTime updatedFrom;
+
+    private LocalDateTime updatedTo;
+
+    public boolean isFiltered() {
+        return (statuses != null && !statuses.isEmpty())
+                || (customerRef != null && !customerRef.isBlank())
+                || createdFrom != null || createdTo != null
+                || updatedFrom != null || updatedTo != null;
+    }
+}
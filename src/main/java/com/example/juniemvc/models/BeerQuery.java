@@ -0,0 +1,29 @@
+package com.example.juniemvc.models;
+
+import lombok.Builder;
+import lombok.Data;
+
+/**
+ * Query object for the keyset-paginated beer catalog.
+ *
+ * - beerName / beerStyle: optional prefix filters
+ * - sort: sort key, the id is always used as tie-breaker
+ * - cursor: opaque continuation token returned by the previous page, null for the first page
+ * - size: requested page size (capped server-side)
+ */
+@Data
+@Builder(toBuilder = true)
+public class BeerQuery {
+
+    private String beerName;
+
+    private String beerStyle;
+
+    @Builder.Default
+    private BeerSort sort = BeerSort.ID;
+
+    private String cursor;
+
+    @Builder.Default
+    private int size = 25;
+}
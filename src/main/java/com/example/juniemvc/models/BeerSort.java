@@ -0,0 +1,39 @@
+package com.example.juniemvc.models;
+
+import java.util.Arrays;
+
+/**
+ * Supported sort keys for the beer catalog listing. The entity id is always
+ * appended as a tie-breaker so that keyset cursors stay unique.
+ */
+public enum BeerSort {
+    ID("id"),
+    BEER_NAME("beerName");
+
+    private final String property;
+
+    BeerSort(String property) {
+        this.property = property;
+    }
+
+    public String getProperty() {
+        return property;
+    }
+
+    /**
+     * Resolves a sort key from its request parameter value (e.g. "beerName").
+     *
+     * @param value the request parameter value, may be null
+     * @return the matching sort key, ID when value is null or blank
+     * @throws IllegalArgumentException when the value is not a supported sort key
+     */
+    public static BeerSort fromParam(String value) {
+        if (value == null || value.isBlank()) {
+            return ID;
+        }
+        return Arrays.stream(values())
+                .filter(s -> s.property.equalsIgnoreCase(value) || s.name().equalsIgnoreCase(value))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("Unsupported sort key '%s'".formatted(value)));
+    }
+}
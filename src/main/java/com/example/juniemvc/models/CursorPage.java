@@ -0,0 +1,27 @@
+package com.example.juniemvc.models;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One page of a cursor (keyset) paginated result. {@code nextCursor} is null on the last page.
+ */
+@Data
+@Builder(toBuilder = true)
+public class CursorPage<T> {
+
+    @Builder.Default
+    private List<T> content = new ArrayList<>();
+
+    private int size;
+
+    private String nextCursor;
+
+    // estimated total, only where asked for and known
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Long totalElements;
+}
@@ -0,0 +1,30 @@
+package com.example.juniemvc.models;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One page of a result paginated by page number. The totals are left out when an estimated total
+ * is not known yet.
+ */
+@Data
+@Builder(toBuilder = true)
+public class NumberedPage<T> {
+
+    @Builder.Default
+    private List<T> content = new ArrayList<>();
+
+    private int page;
+
+    private int size;
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Long totalElements;
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Integer totalPages;
+}
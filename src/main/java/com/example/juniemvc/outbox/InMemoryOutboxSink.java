@@ -0,0 +1,55 @@
+package com.example.juniemvc.outbox;
+
+import com.example.juniemvc.repositories.OutboxEvent;
+
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Keeps the most recent events in memory, for development and tests: nothing leaves the process.
+ * Beyond {@code capacity} events the oldest are dropped.
+ */
+public class InMemoryOutboxSink implements OutboxSink {
+
+    private final int capacity;
+    private final ArrayDeque<OutboxEvent> events;
+    private final ReentrantLock lock = new ReentrantLock();
+
+    public InMemoryOutboxSink(int capacity) {
+        this.capacity = capacity;
+        this.events = new ArrayDeque<>(Math.min(capacity, 1024));
+    }
+
+    @Override
+    public void publish(List<OutboxEvent> batch) {
+        lock.lock();
+        try {
+            for (OutboxEvent event : batch) {
+                if (events.size() == capacity) {
+                    events.removeFirst();
+                }
+                events.addLast(event);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * The retained events, oldest first.
+     */
+    public List<OutboxEvent> events() {
+        lock.lock();
+        try {
+            return List.copyOf(events);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public String name() {
+        return "memory";
+    }
+}
@@ -0,0 +1,33 @@
+package com.example.juniemvc.outbox;
+
+import com.example.juniemvc.repositories.OutboxEvent;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+
+/**
+ * NDJSON encoding of event batches shared by the file and webhook sinks: one JSON object per line.
+ */
+final class OutboxEventJson {
+
+    private OutboxEventJson() {
+    }
+
+    static byte[] ndjson(ObjectMapper objectMapper, List<OutboxEvent> events) {
+        ObjectWriter writer = objectMapper.writerFor(OutboxEvent.class);
+        ByteArrayOutputStream out = new ByteArrayOutputStream(events.size() * 256);
+        try {
+            for (OutboxEvent event : events) {
+                out.write(writer.writeValueAsBytes(event));
+                out.write('\n');
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,15 @@
+package com.example.juniemvc.outbox;
+
+import com.example.juniemvc.repositories.OutboxEvent;
+
+import java.util.List;
+
+/**
+ * Takes part in the batches of the outbox relay: called with every batch after the sink accepted it,
+ * inside the batch transaction and on the node holding the relay lease only. A listener that throws
+ * rolls the batch back, which is then published again like any failed batch.
+ */
+public interface OutboxListener {
+
+    void published(List<OutboxEvent> events);
+}
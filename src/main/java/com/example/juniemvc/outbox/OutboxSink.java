@@ -0,0 +1,29 @@
+package com.example.juniemvc.outbox;
+
+import com.example.juniemvc.repositories.OutboxEvent;
+
+import java.util.List;
+
+/**
+ * Destination of outbox events. The relay hands each batch to the sink and deletes the events only
+ * after {@link #publish} returned, so delivery is at-least-once: after a failure or a crash the batch
+ * is published again, and consumers deduplicate by event id. Within a batch, and across batches,
+ * the events of one aggregate arrive in the order they were recorded.
+ *
+ * OutboxConfig provides a file, in-memory or webhook sink; with juniemvc.outbox.sink=custom the
+ * application defines the OutboxSink bean instead.
+ */
+public interface OutboxSink {
+
+    /**
+     * Publishes the events in list order; throws if any of them may not have been accepted.
+     */
+    void publish(List<OutboxEvent> events);
+
+    /**
+     * Name used in log messages and as the {@code sink} tag of the outbox meters.
+     */
+    default String name() {
+        return getClass().getSimpleName();
+    }
+}
@@ -0,0 +1,51 @@
+package com.example.juniemvc.outbox;
+
+import com.example.juniemvc.repositories.OutboxEvent;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+import org.springframework.web.client.RestClient;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * POSTs each batch as one application/x-ndjson request to a webhook. Any 2xx response acknowledges
+ * the whole batch; other responses, timeouts and connection failures fail it and the relay sends it
+ * again later, so the receiver must tolerate duplicates (event ids are stable).
+ */
+public class WebhookOutboxSink implements OutboxSink {
+
+    static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+
+    private final URI url;
+    private final ObjectMapper objectMapper;
+    private final RestClient restClient;
+
+    public WebhookOutboxSink(URI url, Duration timeout, ObjectMapper objectMapper) {
+        this.url = url;
+        this.objectMapper = objectMapper;
+        JdkClientHttpRequestFactory requestFactory = new JdkClientHttpRequestFactory(HttpClient.newBuilder()
+                .connectTimeout(timeout)
+                .build());
+        requestFactory.setReadTimeout(timeout);
+        this.restClient = RestClient.builder().requestFactory(requestFactory).build();
+    }
+
+    @Override
+    public void publish(List<OutboxEvent> events) {
+        restClient.post()
+                .uri(url)
+                .contentType(NDJSON)
+                .body(OutboxEventJson.ndjson(objectMapper, events))
+                .retrieve()
+                .toBodilessEntity();
+    }
+
+    @Override
+    public String name() {
+        return "webhook";
+    }
+}
@@ -0,0 +1,111 @@
+package com.example.juniemvc.repositories;
+
+import com.example.juniemvc.models.BeerDto;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * SQL of bulk beer adjustments: stock deltas and prices for a whole chunk of beers in one MERGE,
+ * its parameters passed as arrays so the statement text (and its plan) is the same for every chunk.
+ * Like {@link InventorySlotRepository} this bypasses Hibernate, so callers evict adjusted beers from
+ * the second-level cache.
+ */
+@Repository
+public class BeerAdjustmentRepository {
+
+    // Locked in id order, so concurrent adjustments of overlapping beers queue instead of deadlocking
+    private static final String LOCK = """
+            select b.id, b.upc, b.quantity_on_hand,
+                (select sum(s.quantity) from beer_inventory_slot s where s.beer_id = b.id) as striped_quantity
+            from beer b
+            where b.id = any(?)
+                or b.upc = any(?)
+            order by b.id
+            for update
+            """;
+
+    // The final table holds the beers as the merge left them, so no second read is needed
+    private static final String APPLY = """
+            select id, version, beer_name, beer_style, upc, quantity_on_hand, price, created_date, update_date
+            from final table (
+                merge into beer b
+                using unnest(cast(? as integer array), cast(? as integer array), cast(? as decimal(19,2) array))
+                    as v (id, delta, price)
+                on b.id = v.id
+                when matched then update set
+                    quantity_on_hand = coalesce(b.quantity_on_hand, 0) + v.delta,
+                    price = coalesce(v.price, b.price),
+                    version = coalesce(b.version, 0) + 1,
+                    update_date = ?)
+            order by id
+            """;
+
+    /**
+     * A beer an adjustment names; {@code stripedQuantity} is null unless its stock is striped.
+     */
+    public record Target(Integer id, String upc, Integer quantityOnHand, Integer stripedQuantity) {
+    }
+
+    /**
+     * What to apply to one beer: {@code delta} is added to quantity_on_hand, a non-null price replaces
+     * the current one.
+     */
+    public record Change(Integer id, int delta, BigDecimal price) {
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+
+    BeerAdjustmentRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Locks the beers with the given ids and the beers with the given upcs until the end
+     * of the transaction.
+     *
+     * @return the locked beers in id order; ids and upcs without a beer are missing
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public List<Target> lock(Collection<Integer> ids, Collection<String> upcs) {
+        return jdbcTemplate.query(LOCK, (rs, rowNum) -> new Target(
+                        rs.getInt("id"),
+                        rs.getString("upc"),
+                        rs.getObject("quantity_on_hand", Integer.class),
+                        rs.getObject("striped_quantity", Integer.class)),
+                ids.toArray(Integer[]::new), upcs.toArray(String[]::new));
+    }
+
+    /**
+     * Applies the changes in one statement and bumps the version of every changed beer.
+     *
+     * @return the changed beers as they are now, in id order
+     */
+    public List<BeerDto> apply(List<Change> changes, LocalDateTime updateDate) {
+        if (changes.isEmpty()) {
+            return List.of();
+        }
+        return jdbcTemplate.query(APPLY, (rs, rowNum) -> BeerDto.builder()
+                        .id(rs.getInt("id"))
+                        .version(rs.getObject("version", Integer.class))
+                        .beerName(rs.getString("beer_name"))
+                        .beerStyle(rs.getString("beer_style"))
+                        .upc(rs.getString("upc"))
+                        .quantityOnHand(rs.getObject("quantity_on_hand", Integer.class))
+                        .price(rs.getBigDecimal("price"))
+                        .createdDate(rs.getObject("created_date", LocalDateTime.class))
+                        .updateDate(rs.getObject("update_date", LocalDateTime.class))
+                        .build(),
+                changes.stream().map(Change::id).toArray(Integer[]::new),
+                changes.stream().map(Change::delta).toArray(Integer[]::new),
+                changes.stream().map(Change::price).toArray(BigDecimal[]::new),
+                Timestamp.valueOf(updateDate));
+    }
+}
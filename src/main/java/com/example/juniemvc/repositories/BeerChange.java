@@ -0,0 +1,7 @@
+package com.example.juniemvc.repositories;
+
+/**
+ * A relayed change of a beer (table beer_change): {@code id} orders the changes across nodes.
+ */
+public record BeerChange(Long id, Integer beerId) {
+}
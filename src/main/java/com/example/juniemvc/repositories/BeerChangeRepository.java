@@ -0,0 +1,85 @@
+package com.example.juniemvc.repositories;
+
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * SQL of the beer change log (table beer_change), the channel between the outbox relay, which runs on
+ * one node at a time, and the second-level cache invalidators of all nodes. Only the relay lease holder
+ * appends, in its batch transactions, so a reader that remembers the last id it saw misses nothing.
+ */
+@Repository
+public class BeerChangeRepository {
+
+    private static final String INSERT = "insert into beer_change (beer_id) values (:beerId)";
+
+    private static final String SELECT_AFTER = """
+            select id, beer_id from beer_change
+            where id > :lastId
+            order by id
+            fetch first :limit rows only
+            """;
+
+    private static final String SELECT_LAST_ID = "select coalesce(max(id), 0) from beer_change";
+
+    // On the database clock, which also writes created_date
+    private static final String DELETE_EXPIRED = """
+            delete from beer_change where created_date < dateadd(millisecond, -:retentionMillis, localtimestamp)
+            """;
+
+    private static final RowMapper<BeerChange> CHANGE_MAPPER = (rs, rowNum) -> new BeerChange(
+            rs.getLong("id"),
+            rs.getInt("beer_id"));
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    BeerChangeRepository(NamedParameterJdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Appends a change per beer in iteration order, in one JDBC batch, within the relay's batch transaction.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void append(Collection<Integer> beerIds) {
+        SqlParameterSource[] batch = beerIds.stream()
+                .map(beerId -> new MapSqlParameterSource("beerId", beerId))
+                .toArray(SqlParameterSource[]::new);
+        jdbcTemplate.batchUpdate(INSERT, batch);
+    }
+
+    /**
+     * Up to {@code limit} changes after {@code lastId}, in id order.
+     */
+    public List<BeerChange> findAfter(long lastId, int limit) {
+        return jdbcTemplate.query(SELECT_AFTER, new MapSqlParameterSource()
+                .addValue("lastId", lastId)
+                .addValue("limit", limit), CHANGE_MAPPER);
+    }
+
+    /**
+     * The id of the latest change, 0 when there is none.
+     */
+    public long lastId() {
+        return jdbcTemplate.queryForObject(SELECT_LAST_ID, Map.of(), Long.class);
+    }
+
+    /**
+     * Deletes the changes older than {@code retention}.
+     *
+     * @return the number of changes deleted
+     */
+    public int deleteOlderThan(Duration retention) {
+        return jdbcTemplate.update(DELETE_EXPIRED, new MapSqlParameterSource("retentionMillis", retention.toMillis()));
+    }
+}
@@ -0,0 +1,144 @@
+package com.example.juniemvc.repositories;
+
+import com.example.juniemvc.models.BeerDto;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * SQL of the bulk beer import: upsert by upc in JDBC batches. Like {@link InventorySlotRepository}
+ * this bypasses Hibernate, so callers evict updated beers from the second-level cache.
+ *
+ * New ids are taken from beer_seq in blocks the way Hibernate's pooled-lo optimizer does, so imported
+ * and entity-inserted beers never collide. The upc is unique (V9): of two imports inserting the same
+ * new upc, the second fails on uk_beer_upc with a DuplicateKeyException once the first commits.
+ */
+@Repository
+public class BeerImportRepository {
+
+    // allocationSize of Beer's id generator: each sequence value is the low end of a block of ids
+    static final int ID_BLOCK = 50;
+
+    private static final String NEXT_ID_BLOCK = "select next value for beer_seq";
+
+    // Locked in id order, so concurrent imports of overlapping upcs queue instead of deadlocking
+    private static final String LOCK_BY_UPC = """
+            select b.id, b.version, b.beer_name, b.beer_style, b.upc, b.quantity_on_hand, b.price, b.created_date,
+                (select sum(s.quantity) from beer_inventory_slot s where s.beer_id = b.id) as striped_quantity
+            from beer b
+            where b.upc in (:upcs)
+            order by b.id
+            for update
+            """;
+
+    private static final String INSERT = """
+            insert into beer (id, version, beer_name, beer_style, upc, quantity_on_hand, price, created_date, update_date)
+            values (?, 0, ?, ?, ?, ?, ?, ?, ?)
+            """;
+
+    private static final String UPDATE = """
+            update beer set version = coalesce(version, 0) + 1, beer_name = ?, beer_style = ?, quantity_on_hand = ?,
+                price = ?, update_date = ?
+            where id = ?
+            """;
+
+    /**
+     * A beer as the import finds it; {@code stripedQuantity} is null unless its stock is striped.
+     */
+    public record ExistingBeer(Integer id, Integer version, String beerName, String beerStyle, String upc,
+                               Integer quantityOnHand, BigDecimal price, LocalDateTime createdDate,
+                               Integer stripedQuantity) {
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+
+    BeerImportRepository(JdbcTemplate jdbcTemplate, NamedParameterJdbcTemplate namedJdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedJdbcTemplate = namedJdbcTemplate;
+    }
+
+    /**
+     * Locks the beers with the given upcs until the end of the transaction.
+     *
+     * @return per upc, the beer with it; upcs without a beer are missing
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public Map<String, ExistingBeer> lockByUpc(Collection<String> upcs) {
+        Map<String, ExistingBeer> beers = new HashMap<>();
+        if (upcs.isEmpty()) {
+            return beers;
+        }
+        namedJdbcTemplate.query(LOCK_BY_UPC, new MapSqlParameterSource("upcs", upcs), rs -> {
+            ExistingBeer beer = new ExistingBeer(
+                    rs.getInt("id"),
+                    rs.getObject("version", Integer.class),
+                    rs.getString("beer_name"),
+                    rs.getString("beer_style"),
+                    rs.getString("upc"),
+                    rs.getObject("quantity_on_hand", Integer.class),
+                    rs.getBigDecimal("price"),
+                    rs.getObject("created_date", LocalDateTime.class),
+                    rs.getObject("striped_quantity", Integer.class));
+            beers.put(beer.upc(), beer);
+        });
+        return beers;
+    }
+
+    /**
+     * Reserves ids for new beers, one sequence value per {@value #ID_BLOCK} ids.
+     */
+    public List<Integer> nextIds(int count) {
+        List<Integer> ids = new ArrayList<>(count);
+        while (ids.size() < count) {
+            int low = jdbcTemplate.queryForObject(NEXT_ID_BLOCK, Integer.class);
+            for (int id = low; id < low + ID_BLOCK && ids.size() < count; id++) {
+                ids.add(id);
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Inserts the beers, with their ids and dates already set, in one JDBC batch.
+     */
+    public void insert(List<BeerDto> beers) {
+        jdbcTemplate.batchUpdate(INSERT, beers, beers.size(), (ps, beer) -> {
+            ps.setInt(1, beer.getId());
+            ps.setString(2, beer.getBeerName());
+            ps.setString(3, beer.getBeerStyle());
+            ps.setString(4, beer.getUpc());
+            ps.setInt(5, beer.getQuantityOnHand());
+            ps.setBigDecimal(6, beer.getPrice());
+            ps.setTimestamp(7, Timestamp.valueOf(beer.getCreatedDate()));
+            ps.setTimestamp(8, Timestamp.valueOf(beer.getUpdateDate()));
+        });
+    }
+
+    /**
+     * Overwrites name, style, quantity on hand and price of the beers by id and bumps their version,
+     * in one JDBC batch. For a striped beer the quantity on hand must be 0, its stock is set on the slots.
+     */
+    public void update(List<BeerDto> beers) {
+        jdbcTemplate.batchUpdate(UPDATE, beers, beers.size(), (ps, beer) -> {
+            ps.setString(1, beer.getBeerName());
+            ps.setString(2, beer.getBeerStyle());
+            ps.setInt(3, beer.getQuantityOnHand());
+            ps.setBigDecimal(4, beer.getPrice());
+            ps.setTimestamp(5, Timestamp.valueOf(beer.getUpdateDate()));
+            ps.setInt(6, beer.getId());
+        });
+    }
+}
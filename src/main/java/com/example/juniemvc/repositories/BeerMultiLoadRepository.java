@@ -0,0 +1,22 @@
+package com.example.juniemvc.repositories;
+
+import com.example.juniemvc.entities.Beer;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Fragment of {@link BeerRepository} for id lookups that go through Hibernate's multi-load,
+ * so the second-level cache is consulted before the database.
+ */
+public interface BeerMultiLoadRepository {
+
+    /**
+     * Loads the beers with the given ids. Beers found in the persistence context or the
+     * second-level cache are not queried; the rest are fetched with one IN query.
+     *
+     * @param ids the beer ids
+     * @return the beers that exist, unknown ids are skipped
+     */
+    List<Beer> multiLoadById(Collection<Integer> ids);
+}
@@ -0,0 +1,36 @@
+package com.example.juniemvc.repositories;
+
+import com.example.juniemvc.entities.Beer;
+import jakarta.persistence.EntityManager;
+import org.hibernate.CacheMode;
+import org.hibernate.Session;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+
+class BeerMultiLoadRepositoryImpl implements BeerMultiLoadRepository {
+
+    private final EntityManager entityManager;
+
+    BeerMultiLoadRepositoryImpl(EntityManager entityManager) {
+        this.entityManager = entityManager;
+    }
+
+    @Override
+    public List<Beer> multiLoadById(Collection<Integer> ids) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        return entityManager.unwrap(Session.class)
+                .byMultipleIds(Beer.class)
+                // both checks are off unless requested explicitly
+                .enableSessionCheck(true)
+                .with(CacheMode.NORMAL)
+                .multiLoad(new ArrayList<>(ids))
+                .stream()
+                .filter(Objects::nonNull)
+                .toList();
+    }
+}
@@ -2,6 +2,20 @@ package com.example.juniemvc.repositories;
 
 import com.example.juniemvc.entities.BeerOrderLine;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.util.Optional;
+
+// Single-line access for the line endpoints; ownership is part of every query, so the order is never loaded
 public interface BeerOrderLineRepository extends JpaRepository<BeerOrderLine, Integer> {
+
+    // compares the foreign key column; a derived query would join beer_order
+    @Query("select l from BeerOrderLine l where l.id = :id and l.beerOrder.id = :orderId")
+    Optional<BeerOrderLine> findByIdAndOrderId(@Param("id") Integer id, @Param("orderId") Integer orderId);
+
+    @Modifying
+    @Query("delete from BeerOrderLine l where l.id = :id and l.beerOrder.id = :orderId")
+    int deleteByIdAndOrderId(@Param("id") Integer id, @Param("orderId") Integer orderId);
 }
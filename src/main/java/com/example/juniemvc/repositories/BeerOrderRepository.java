@@ -1,13 +1,78 @@
 package com.example.juniemvc.repositories;
 
 import com.example.juniemvc.entities.BeerOrder;
+import com.example.juniemvc.entities.enums.OrderStatus;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
-public interface BeerOrderRepository extends JpaRepository<BeerOrder, Integer> {
+public interface BeerOrderRepository extends JpaRepository<BeerOrder, Integer>, BeerOrderSearchRepository {
 
     @EntityGraph(attributePaths = {"beerOrderLines", "beerOrderLines.beer"})
     Optional<BeerOrder> findWithBeerOrderLinesById(Integer id);
+
+    // Order row locked up front, so writes that also touch its lines lock order before lines like
+    // allocation and the line endpoints do
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select o from BeerOrder o where o.id = :id")
+    Optional<BeerOrder> findForUpdateById(@Param("id") Integer id);
+
+    // Version column only, for conditional requests (ETag) without loading the entity
+    @Query("select o.version from BeerOrder o where o.id = :id")
+    Optional<Integer> findVersionById(@Param("id") Integer id);
+
+    /**
+     * Bumps the aggregate version of an order for a change of one of its lines, without loading it.
+     * The row lock taken here serialises line writes of the order like the order-first locking of
+     * full updates and allocation. Returns 0 when the order does not exist.
+     */
+    @Modifying
+    @Query("update BeerOrder o set o.version = o.version + 1 where o.id = :id")
+    int incrementVersion(@Param("id") Integer id);
+
+    // As incrementVersion, but only when the line belongs to the order
+    @Modifying
+    @Query("""
+            update BeerOrder o set o.version = o.version + 1
+            where o.id = :id and exists (select l.id from BeerOrderLine l where l.id = :lineId and l.beerOrder.id = :id)
+            """)
+    int incrementVersionWithLine(@Param("id") Integer id, @Param("lineId") Integer lineId);
+
+    @Query("select o.status from BeerOrder o where o.id = :id")
+    Optional<OrderStatus> findStatusById(@Param("id") Integer id);
+
+    // First phase of a page fetch: only the ids, so LIMIT/OFFSET never applies to joined line rows
+    @Query("select o.id from BeerOrder o")
+    Page<Integer> findPageOfIds(Pageable pageable);
+
+    // Read path: orders with their lines as flat rows from a single join, no managed entities
+    @Query("""
+            select new com.example.juniemvc.repositories.BeerOrderRow(
+                o.id, o.version, o.customerRef, o.paymentAmount, o.status, o.createdDate, o.updateDate,
+                l.id, l.version, l.beer.id, l.orderQuantity, l.quantityAllocated, l.status, l.createdDate, l.updateDate)
+            from BeerOrder o left join o.beerOrderLines l
+            where o.id in :ids
+            order by o.id, l.id
+            """)
+    List<BeerOrderRow> findRowsByOrderIdIn(@Param("ids") Collection<Integer> ids);
+
+    // Orders of a customer outside the given statuses, newest first (idx_beer_order_customer_ref)
+    @Query("select o.id from BeerOrder o where o.customerRef = :customerRef and o.status not in :excluded order by o.id desc")
+    List<Integer> findIdsByCustomerRef(@Param("customerRef") String customerRef,
+                                       @Param("excluded") Collection<OrderStatus> excluded, Limit limit);
+
+    // Export: the next ids after the given one, a keyset page read from the primary key index
+    @Query("select o.id from BeerOrder o where o.id > :after order by o.id")
+    List<Integer> findIdsAfter(@Param("after") Integer after, Limit limit);
 }
@@ -0,0 +1,29 @@
+package com.example.juniemvc.repositories;
+
+import com.example.juniemvc.entities.enums.LineStatus;
+import com.example.juniemvc.entities.enums.OrderStatus;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Flat, read-only projection of one order joined with one of its lines (line columns are null for
+ * orders without lines). Built by a JPQL constructor expression, so no entity is ever managed.
+ */
+public record BeerOrderRow(
+        Integer id,
+        Integer version,
+        String customerRef,
+        BigDecimal paymentAmount,
+        OrderStatus status,
+        LocalDateTime createdDate,
+        LocalDateTime updateDate,
+        Integer lineId,
+        Integer lineVersion,
+        Integer beerId,
+        Integer orderQuantity,
+        Integer quantityAllocated,
+        LineStatus lineStatus,
+        LocalDateTime lineCreatedDate,
+        LocalDateTime lineUpdateDate) {
+}
@@ -0,0 +1,50 @@
+package com.example.juniemvc.repositories;
+
+import com.example.juniemvc.models.BeerOrderQuery;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Fragment of {@link BeerOrderRepository} for the filtered order list.
+ */
+public interface BeerOrderSearchRepository {
+
+    /**
+     * First phase of a filtered page fetch: the ids of the matching orders. Only the filters that are
+     * set become predicates, and the page order follows the index that serves them: a customerRef
+     * or status alone in id order, a createdDate (else updateDate) range in (date, id) order. Several
+     * statuses are read per status and merged, each in the order of its (status, ...) index. The count
+     * is only queried when the page does not tell the total.
+     *
+     * @param query    the filters
+     * @param pageable page number and size, its sort is not used
+     * @return the page of order ids
+     */
+    Page<Integer> searchPageOfIds(BeerOrderQuery query, Pageable pageable);
+
+    /**
+     * As {@link #searchPageOfIds}, without a count: one more id than the page size is read to tell
+     * whether a next page exists.
+     */
+    Slice<Integer> searchSliceOfIds(BeerOrderQuery query, Pageable pageable);
+
+    /**
+     * First phase of a cursor page: the ids of the matching orders after the given position, in
+     * (createdDate, id) order. The position is sought through the (created_date, id) indexes, so a
+     * page costs the same at any depth; no count is issued.
+     *
+     * @param afterCreatedDate createdDate of the last order of the previous page, null for the first page
+     * @param afterId          id of the last order of the previous page, null for the first page
+     * @param limit            most ids to return
+     */
+    List<Integer> seekIds(BeerOrderQuery query, LocalDateTime afterCreatedDate, Integer afterId, int limit);
+
+    /**
+     * Number of orders matching the query (all orders for an empty one).
+     */
+    long countMatching(BeerOrderQuery query);
+}
@@ -0,0 +1,164 @@
+package com.example.juniemvc.repositories;
+
+import com.example.juniemvc.entities.BeerOrder;
+import com.example.juniemvc.entities.enums.OrderStatus;
+import com.example.juniemvc.models.BeerOrderQuery;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.Tuple;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.support.PageableExecutionUtils;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+
+class BeerOrderSearchRepositoryImpl implements BeerOrderSearchRepository {
+
+    private final EntityManager entityManager;
+
+    BeerOrderSearchRepositoryImpl(EntityManager entityManager) {
+        this.entityManager = entityManager;
+    }
+
+    // Sort key of a page: the page's date (null for id order) and the id
+    private record PageKey(LocalDateTime date, Integer id) {
+    }
+
+    private static final Comparator<PageKey> PAGE_ORDER = Comparator
+            .comparing(PageKey::date, Comparator.nullsFirst(Comparator.<LocalDateTime>naturalOrder()))
+            .thenComparing(PageKey::id);
+
+    @Override
+    public Page<Integer> searchPageOfIds(BeerOrderQuery query, Pageable pageable) {
+        List<Integer> content = ids(query, pageDate(query), null, null, pageable.getOffset(), pageable.getPageSize());
+        return PageableExecutionUtils.getPage(content, pageable, () -> countMatching(query));
+    }
+
+    @Override
+    public Slice<Integer> searchSliceOfIds(BeerOrderQuery query, Pageable pageable) {
+        List<Integer> content = new ArrayList<>(
+                ids(query, pageDate(query), null, null, pageable.getOffset(), pageable.getPageSize() + 1));
+        boolean hasNext = content.size() > pageable.getPageSize();
+        if (hasNext) {
+            content.removeLast();
+        }
+        return new SliceImpl<>(content, pageable, hasNext);
+    }
+
+    @Override
+    public List<Integer> seekIds(BeerOrderQuery query, LocalDateTime afterCreatedDate, Integer afterId, int limit) {
+        return ids(query, "createdDate", afterCreatedDate, afterId, 0, limit);
+    }
+
+    // Several statuses in an order a (status, ...) index yields per status: an IN list would read the
+    // statuses' ranges one after the other and sort them, so each status is read on its own and merged
+    private List<Integer> ids(BeerOrderQuery query, String pageDate, LocalDateTime afterDate, Integer afterId,
+                              long offset, int limit) {
+        Set<OrderStatus> statuses = query.getStatuses();
+        boolean mergeStatuses = statuses != null && statuses.size() > 1 && !byCustomer(query)
+                && !"updateDate".equals(pageDate);
+        if (!mergeStatuses) {
+            return keys(query, pageDate, afterDate, afterId, offset, limit).stream().map(PageKey::id).toList();
+        }
+        return statuses.stream()
+                .flatMap(status -> keys(query.toBuilder().statuses(Set.of(status)).build(), pageDate, afterDate,
+                        afterId, 0, (int) Math.min(offset + limit, Integer.MAX_VALUE)).stream())
+                .sorted(PAGE_ORDER)
+                .skip(offset)
+                .limit(limit)
+                .map(PageKey::id)
+                .toList();
+    }
+
+    private List<PageKey> keys(BeerOrderQuery query, String pageDate, LocalDateTime afterDate, Integer afterId,
+                               long offset, int limit) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> keys = cb.createTupleQuery();
+        Root<BeerOrder> order = keys.from(BeerOrder.class);
+        Path<Integer> id = order.get("id");
+        List<Predicate> predicates = new ArrayList<>(List.of(predicates(query, cb, order)));
+        if (pageDate == null) {
+            keys.multiselect(id).orderBy(cb.asc(id));
+        } else {
+            Path<LocalDateTime> date = order.get(pageDate);
+            if (afterDate != null) {
+                // (date, id) > (d, i), led by date >= d so that it bounds the index range scan
+                predicates.add(cb.greaterThanOrEqualTo(date, afterDate));
+                predicates.add(cb.or(cb.greaterThan(date, afterDate), cb.greaterThan(id, afterId)));
+            }
+            keys.multiselect(id, date).orderBy(cb.asc(date), cb.asc(id));
+        }
+        keys.where(predicates.toArray(Predicate[]::new));
+        return entityManager.createQuery(keys)
+                .setFirstResult((int) offset)
+                .setMaxResults(limit)
+                .getResultStream()
+                .map(key -> new PageKey(pageDate == null ? null : key.get(1, LocalDateTime.class), key.get(0, Integer.class)))
+                .toList();
+    }
+
+    @Override
+    public long countMatching(BeerOrderQuery query) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Long> count = cb.createQuery(Long.class);
+        Root<BeerOrder> order = count.from(BeerOrder.class);
+        count.select(cb.count(order)).where(predicates(query, cb, order));
+        return entityManager.createQuery(count).getSingleResult();
+    }
+
+    // No "(:x is null or ...)" catch-alls: a filter that is not set does not appear in the SQL at all
+    private static Predicate[] predicates(BeerOrderQuery query, CriteriaBuilder cb, Root<BeerOrder> order) {
+        List<Predicate> predicates = new ArrayList<>();
+        if (byCustomer(query)) {
+            predicates.add(cb.equal(order.get("customerRef"), query.getCustomerRef()));
+        }
+        if (query.getStatuses() != null && !query.getStatuses().isEmpty()) {
+            predicates.add(query.getStatuses().size() == 1
+                    ? cb.equal(order.get("status"), query.getStatuses().iterator().next())
+                    : order.get("status").in(query.getStatuses()));
+        }
+        addRange(predicates, cb, order.get("createdDate"), query.getCreatedFrom(), query.getCreatedTo());
+        addRange(predicates, cb, order.get("updateDate"), query.getUpdatedFrom(), query.getUpdatedTo());
+        return predicates.toArray(Predicate[]::new);
+    }
+
+    private static void addRange(List<Predicate> predicates, CriteriaBuilder cb, Path<LocalDateTime> date,
+                                 LocalDateTime from, LocalDateTime to) {
+        if (from != null) {
+            predicates.add(cb.greaterThanOrEqualTo(date, from));
+        }
+        if (to != null) {
+            predicates.add(cb.lessThan(date, to));
+        }
+    }
+
+    // A customer has few orders, read in id order from (customer_ref, id). A createdDate range is read in
+    // the order of its (created_date, id) index, or (status, created_date, id) per status, an updateDate
+    // range in that of (update_date, id) with any status as a filter, so the page needs no sort
+    private static String pageDate(BeerOrderQuery query) {
+        if (byCustomer(query)) {
+            return null;
+        }
+        if (query.getCreatedFrom() != null || query.getCreatedTo() != null) {
+            return "createdDate";
+        }
+        if (query.getUpdatedFrom() != null || query.getUpdatedTo() != null) {
+            return "updateDate";
+        }
+        return null;
+    }
+
+    private static boolean byCustomer(BeerOrderQuery query) {
+        return query.getCustomerRef() != null && !query.getCustomerRef().isBlank();
+    }
+}
@@ -2,8 +2,17 @@ package com.example.juniemvc.repositories;
 
 import com.example.juniemvc.entities.Beer;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Optional;
+
 @Repository
-public interface BeerRepository extends JpaRepository<Beer, Integer> {
+public interface BeerRepository extends JpaRepository<Beer, Integer>, JpaSpecificationExecutor<Beer>, BeerMultiLoadRepository {
+
+    // Version column only, for conditional requests (ETag) without loading the entity
+    @Query("select b.version from Beer b where b.id = :id")
+    Optional<Integer> findVersionById(@Param("id") Integer id);
 }
@@ -0,0 +1,176 @@
+package com.example.juniemvc.repositories;
+
+import com.example.juniemvc.entities.enums.LineStatus;
+import com.example.juniemvc.entities.enums.OrderStatus;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * Set-based SQL behind order allocation. Stock is reserved with guarded atomic decrements
+ * ({@code quantity_on_hand >= ?} in the WHERE clause), so concurrent allocations of the same beer
+ * queue on its row lock instead of racing on {@code @Version}; nothing here reads an entity.
+ *
+ * Every write bumps the version column so ETags and optimistic locks of the JPA write paths stay
+ * honest. Plain JDBC runs on the transaction's connection but bypasses Hibernate: callers must
+ * evict touched beers from the second-level cache and must not hold the rows as managed entities.
+ */
+@Repository
+public class InventoryAllocationRepository {
+
+    // VALIDATED; NEW when it passes the pipeline's validation (OrderPipelineRepository); ALLOCATION_PENDING
+    // only when backordered, not while the pipeline holds it for a first allocation
+    private static final String CLAIM_ORDER = """
+            update beer_order o set status = ?, version = version + 1, update_date = localtimestamp
+            where o.id = ? and (o.status = ?
+                or (o.status = ?
+                    and exists (select 1 from beer_order_line l where l.beer_order_id = o.id)
+                    and not exists (select 1 from beer_order_line l
+                                    where l.beer_order_id = o.id and (l.order_quantity is null or l.order_quantity < 1)))
+                or (o.status = ?
+                    and exists (select 1 from beer_order_line l where l.beer_order_id = o.id and l.status = ?)))
+            """;
+
+    private static final String CLAIM_PENDING_ORDER = """
+            select id from beer_order where id = ? and status = ? for update
+            """;
+
+    private static final String FIND_OPEN_LINES = """
+            select l.id, l.beer_id, l.order_quantity - coalesce(l.quantity_allocated, 0) as quantity,
+                (select count(*) from beer_inventory_slot s where s.beer_id = l.beer_id) as stripes, l.status
+            from beer_order_line l
+            where l.beer_order_id = ? and l.status in (?, ?)
+            order by l.beer_id, l.id
+            """;
+
+    private static final String RESERVE_STOCK = """
+            update beer set quantity_on_hand = quantity_on_hand - ?, version = version + 1, update_date = localtimestamp
+            where id = ? and quantity_on_hand >= ?
+            """;
+
+    private static final String MARK_LINE = """
+            update beer_order_line
+            set status = ?, quantity_allocated = case when ? then order_quantity else quantity_allocated end,
+                version = version + 1, update_date = localtimestamp
+            where id = ?
+            """;
+
+    private static final String SET_ORDER_STATUS = "update beer_order set status = ? where id = ?";
+
+    private static final String SET_ORDER_STATUS_AND_VERSION = """
+            update beer_order set status = ?, version = version + 1, update_date = localtimestamp where id = ?
+            """;
+
+    /**
+     * A line still waiting for stock; {@code quantity} is what remains to be reserved for it,
+     * {@code stripes} the number of inventory slots of its beer (0 when the beer is not striped) and
+     * {@code backordered} whether an earlier allocation already found it short.
+     */
+    public record OpenLine(Integer lineId, Integer beerId, int quantity, int stripes, boolean backordered) {
+
+        public boolean striped() {
+            return stripes > 0;
+        }
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+
+    InventoryAllocationRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Moves an order to ALLOCATION_PENDING for an explicit allocation: a VALIDATED order, a NEW one that
+     * passes the pipeline's validation (explicit allocation validates inline), or a backordered one being
+     * retried. An order the pipeline has claimed and not yet allocated is left to the pipeline. The update
+     * row-locks the order until commit, which serialises allocations of the same order while different
+     * orders proceed in parallel.
+     *
+     * @return false if the order does not exist or cannot be allocated in its status
+     */
+    public boolean claimOrder(Integer orderId) {
+        return jdbcTemplate.update(CLAIM_ORDER,
+                OrderStatus.ALLOCATION_PENDING.name(), orderId,
+                OrderStatus.VALIDATED.name(), OrderStatus.NEW.name(),
+                OrderStatus.ALLOCATION_PENDING.name(), LineStatus.BACKORDERED.name()) == 1;
+    }
+
+    /**
+     * Row-locks an order the pipeline has claimed (ALLOCATION_PENDING) for its allocation, leaving its
+     * version alone: an allocation that changes nothing must not change the order's ETag either.
+     *
+     * @return false if the order does not exist or has left ALLOCATION_PENDING meanwhile
+     */
+    public boolean claimPendingOrder(Integer orderId) {
+        return !jdbcTemplate.queryForList(CLAIM_PENDING_ORDER, Integer.class, orderId,
+                OrderStatus.ALLOCATION_PENDING.name()).isEmpty();
+    }
+
+    /**
+     * NEW and BACKORDERED lines of the order with the slot count of their beer, ordered by beer id
+     * so that concurrent allocations always lock beer rows in the same order and cannot deadlock.
+     */
+    public List<OpenLine> findOpenLines(Integer orderId) {
+        return jdbcTemplate.query(FIND_OPEN_LINES,
+                (rs, rowNum) -> new OpenLine(rs.getInt("id"), rs.getInt("beer_id"), rs.getInt("quantity"), rs.getInt("stripes"),
+                        LineStatus.BACKORDERED.name().equals(rs.getString("status"))),
+                orderId, LineStatus.NEW.name(), LineStatus.BACKORDERED.name());
+    }
+
+    /**
+     * Reserves stock of beer.quantity_on_hand for all (unstriped) lines in one JDBC batch of guarded
+     * decrements, in list order.
+     *
+     * @return per line, whether its whole remaining quantity was reserved
+     */
+    public boolean[] reserve(List<OpenLine> lines) {
+        int[][] counts = jdbcTemplate.batchUpdate(RESERVE_STOCK, lines, lines.size(), (ps, line) -> {
+            ps.setInt(1, line.quantity());
+            ps.setInt(2, line.beerId());
+            ps.setInt(3, line.quantity());
+        });
+        boolean[] reserved = new boolean[lines.size()];
+        int i = 0;
+        for (int[] batch : counts) {
+            for (int count : batch) {
+                reserved[i++] = count == 1;
+            }
+        }
+        return reserved;
+    }
+
+    /**
+     * Marks lines ALLOCATED (allocated quantity set to the ordered quantity) or BACKORDERED in one batch.
+     */
+    public void markLines(List<OpenLine> lines, boolean[] reserved) {
+        jdbcTemplate.batchUpdate(MARK_LINE, new LineStatusSetter(lines, reserved));
+    }
+
+    /**
+     * Sets the outcome of an allocation; {@code bumpVersion} when the claim left the version alone
+     * (claimPendingOrder), as claimOrder already bumped it.
+     */
+    public void setOrderStatus(Integer orderId, OrderStatus status, boolean bumpVersion) {
+        jdbcTemplate.update(bumpVersion ? SET_ORDER_STATUS_AND_VERSION : SET_ORDER_STATUS, status.name(), orderId);
+    }
+
+    private record LineStatusSetter(List<OpenLine> lines, boolean[] reserved)
+            implements BatchPreparedStatementSetter {
+
+        @Override
+        public void setValues(PreparedStatement ps, int i) throws SQLException {
+            ps.setString(1, (reserved[i] ? LineStatus.ALLOCATED : LineStatus.BACKORDERED).name());
+            ps.setBoolean(2, reserved[i]);
+            ps.setInt(3, lines.get(i).lineId());
+        }
+
+        @Override
+        public int getBatchSize() {
+            return lines.size();
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package com.example.juniemvc.repositories;
+
+import com.example.juniemvc.repositories.InventoryAllocationRepository.OpenLine;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * SQL for striped inventory: the stock of a hot beer spread over counter slots in
+ * beer_inventory_slot, so concurrent allocations of that beer lock different rows instead of
+ * queueing on the beer row. A beer is striped while it has slot rows; its quantity_on_hand is then 0.
+ *
+ * Takes are guarded atomic decrements of one slot. Whole-beer operations (striping, rebalancing,
+ * setting the stock) lock all slots of the beer in slot order first. Like
+ * {@link InventoryAllocationRepository} this bypasses Hibernate, so callers evict touched beers
+ * from the second-level cache.
+ */
+@Repository
+public class InventorySlotRepository {
+
+    private static final String TAKE_FROM_SLOT = """
+            update beer_inventory_slot set quantity = quantity - ?
+            where beer_id = ? and slot = ? and quantity >= ?
+            """;
+
+    // The subquery does not lock; the outer guard keeps a slot emptied meanwhile from going negative
+    private static final String TAKE_FROM_ANY_SLOT = """
+            update beer_inventory_slot set quantity = quantity - ?
+            where beer_id = ? and quantity >= ? and slot = (
+                select s.slot from beer_inventory_slot s where s.beer_id = ? and s.quantity >= ?
+                order by s.quantity desc limit 1)
+            """;
+
+    private static final String LOCK_SLOTS = """
+            select quantity from beer_inventory_slot where beer_id = ? order by slot for update
+            """;
+
+    private static final String SET_SLOT = "update beer_inventory_slot set quantity = ? where beer_id = ? and slot = ?";
+
+    private static final String INSERT_SLOT = "insert into beer_inventory_slot (quantity, beer_id, slot) values (?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    InventorySlotRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Takes the remaining quantity of each (striped) line from a randomly picked slot of its beer,
+     * all in one JDBC batch.
+     *
+     * @return per line, whether the picked slot held enough
+     */
+    public boolean[] takeFromRandomSlots(List<OpenLine> lines) {
+        int[][] counts = jdbcTemplate.batchUpdate(TAKE_FROM_SLOT, lines, lines.size(), (ps, line) -> {
+            ps.setInt(1, line.quantity());
+            ps.setInt(2, line.beerId());
+            ps.setInt(3, ThreadLocalRandom.current().nextInt(line.stripes()));
+            ps.setInt(4, line.quantity());
+        });
+        boolean[] taken = new boolean[lines.size()];
+        int i = 0;
+        for (int[] batch : counts) {
+            for (int count : batch) {
+                taken[i++] = count == 1;
+            }
+        }
+        return taken;
+    }
+
+    /**
+     * Fallback when the picked slot ran dry: takes from the fullest slot that holds enough.
+     */
+    public boolean takeFromAnySlot(Integer beerId, int quantity) {
+        return jdbcTemplate.update(TAKE_FROM_ANY_SLOT, quantity, beerId, quantity, beerId, quantity) == 1;
+    }
+
+    /**
+     * Last resort when no single slot holds enough: locks all slots of the beer and, if together
+     * they do, takes the quantity and spreads the rest evenly again.
+     */
+    public boolean rebalanceAndTake(Integer beerId, int quantity) {
+        List<Integer> slots = lockSlots(beerId);
+        int total = slots.stream().mapToInt(Integer::intValue).sum();
+        if (slots.isEmpty() || total < quantity) {
+            return false;
+        }
+        writeSlots(beerId, split(total - quantity, slots.size()));
+        return true;
+    }
+
+    /**
+     * Spreads the stock of a beer (column plus existing slots) over the given number of slots, or
+     * moves it back to beer.quantity_on_hand when {@code stripes} is 1.
+     *
+     * Runs in a transaction of its own unless one is active.
+     *
+     * @return false if the beer does not exist
+     */
+    @Transactional
+    public boolean stripe(Integer beerId, int stripes) {
+        List<Integer> quantityOnHand = jdbcTemplate.queryForList(
+                "select coalesce(quantity_on_hand, 0) from beer where id = ? for update", Integer.class, beerId);
+        if (quantityOnHand.isEmpty()) {
+            return false;
+        }
+        int total = quantityOnHand.getFirst() + lockSlots(beerId).stream().mapToInt(Integer::intValue).sum();
+        jdbcTemplate.update("delete from beer_inventory_slot where beer_id = ?", beerId);
+        if (stripes > 1) {
+            insertSlots(beerId, split(total, stripes));
+        }
+        jdbcTemplate.update("""
+                update beer set quantity_on_hand = ?, version = version + 1, update_date = localtimestamp
+                where id = ?
+                """, stripes > 1 ? 0 : total, beerId);
+        return true;
+    }
+
+    /**
+     * Sets the total stock of a striped beer, spread evenly over its existing slots.
+     */
+    public void setTotal(Integer beerId, int total) {
+        List<Integer> slots = lockSlots(beerId);
+        if (!slots.isEmpty()) {
+            writeSlots(beerId, split(total, slots.size()));
+        }
+    }
+
+    /**
+     * Adds a (possibly negative) delta to the total stock of a striped beer and spreads the new total
+     * evenly over its slots.
+     *
+     * @return the new total, or null if the beer has no slots or the delta would take it below zero
+     */
+    public Integer addToTotal(Integer beerId, int delta) {
+        List<Integer> slots = lockSlots(beerId);
+        int total = slots.stream().mapToInt(Integer::intValue).sum() + delta;
+        if (slots.isEmpty() || total < 0) {
+            return null;
+        }
+        writeSlots(beerId, split(total, slots.size()));
+        return total;
+    }
+
+    private List<Integer> lockSlots(Integer beerId) {
+        return jdbcTemplate.queryForList(LOCK_SLOTS, Integer.class, beerId);
+    }
+
+    private void writeSlots(Integer beerId, int[] quantities) {
+        jdbcTemplate.batchUpdate(SET_SLOT, new SlotValues(beerId, quantities));
+    }
+
+    private void insertSlots(Integer beerId, int[] quantities) {
+        jdbcTemplate.batchUpdate(INSERT_SLOT, new SlotValues(beerId, quantities));
+    }
+
+    // Even split; the first (total % slots) slots get one more
+    static int[] split(int total, int slots) {
+        int[] quantities = new int[slots];
+        for (int i = 0; i < slots; i++) {
+            quantities[i] = total / slots + (i < total % slots ? 1 : 0);
+        }
+        return quantities;
+    }
+
+    // Parameters (quantity, beer_id, slot) for slots 0..n-1
+    private record SlotValues(Integer beerId, int[] quantities)
+            implements BatchPreparedStatementSetter {
+
+        @Override
+        public void setValues(PreparedStatement ps, int i) throws SQLException {
+            ps.setInt(1, quantities[i]);
+            ps.setInt(2, beerId);
+            ps.setInt(3, i);
+        }
+
+        @Override
+        public int getBatchSize() {
+            return quantities.length;
+        }
+    }
+}
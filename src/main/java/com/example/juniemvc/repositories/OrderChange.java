@@ -0,0 +1,8 @@
+package com.example.juniemvc.repositories;
+
+/**
+ * A relayed change of an order (table order_change): {@code id} orders the changes across nodes, and
+ * {@code customerRef} is only kept for deletions, whose order can no longer be read.
+ */
+public record OrderChange(Long id, Integer orderId, String customerRef, boolean deleted) {
+}
@@ -0,0 +1,92 @@
+package com.example.juniemvc.repositories;
+
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * SQL of the order change log (table order_change), the channel between the outbox relay, which runs
+ * on one node at a time, and the order status feeds of all nodes. Only the relay lease holder appends,
+ * in its batch transactions, so a reader that remembers the last id it saw misses nothing.
+ */
+@Repository
+public class OrderChangeRepository {
+
+    private static final String INSERT = """
+            insert into order_change (order_id, customer_ref, deleted)
+            values (:orderId, :customerRef, :deleted)
+            """;
+
+    private static final String SELECT_AFTER = """
+            select id, order_id, customer_ref, deleted from order_change
+            where id > :lastId
+            order by id
+            fetch first :limit rows only
+            """;
+
+    private static final String SELECT_LAST_ID = "select coalesce(max(id), 0) from order_change";
+
+    // On the database clock, which also writes created_date
+    private static final String DELETE_EXPIRED = """
+            delete from order_change where created_date < dateadd(millisecond, -:retentionMillis, localtimestamp)
+            """;
+
+    private static final RowMapper<OrderChange> CHANGE_MAPPER = (rs, rowNum) -> new OrderChange(
+            rs.getLong("id"),
+            rs.getInt("order_id"),
+            rs.getString("customer_ref"),
+            rs.getBoolean("deleted"));
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    OrderChangeRepository(NamedParameterJdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Appends the changes in list order (ids are ignored), in one JDBC batch, within the relay's batch transaction.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void append(List<OrderChange> changes) {
+        SqlParameterSource[] batch = changes.stream()
+                .map(change -> new MapSqlParameterSource()
+                        .addValue("orderId", change.orderId())
+                        .addValue("customerRef", change.customerRef())
+                        .addValue("deleted", change.deleted()))
+                .toArray(SqlParameterSource[]::new);
+        jdbcTemplate.batchUpdate(INSERT, batch);
+    }
+
+    /**
+     * Up to {@code limit} changes after {@code lastId}, in id order.
+     */
+    public List<OrderChange> findAfter(long lastId, int limit) {
+        return jdbcTemplate.query(SELECT_AFTER, new MapSqlParameterSource()
+                .addValue("lastId", lastId)
+                .addValue("limit", limit), CHANGE_MAPPER);
+    }
+
+    /**
+     * The id of the latest change, 0 when there is none.
+     */
+    public long lastId() {
+        return jdbcTemplate.queryForObject(SELECT_LAST_ID, Map.of(), Long.class);
+    }
+
+    /**
+     * Deletes the changes older than {@code retention}.
+     *
+     * @return the number of changes deleted
+     */
+    public int deleteOlderThan(Duration retention) {
+        return jdbcTemplate.update(DELETE_EXPIRED, new MapSqlParameterSource("retentionMillis", retention.toMillis()));
+    }
+}
@@ -0,0 +1,131 @@
+package com.example.juniemvc.repositories;
+
+import com.example.juniemvc.entities.enums.OrderStatus;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Set-based SQL of the background order pipeline. A stage claims a batch of orders in its source
+ * status with FOR UPDATE SKIP LOCKED, so concurrent workers and nodes never wait for or take each
+ * other's orders, and moves them to its in-flight status. In-flight orders can be claimed again
+ * from their next_attempt_date on: when the lease has expired (the worker died), or the back-off of a
+ * backordered allocation has passed. Claiming an order again renews the lease only; its version and
+ * update_date change with its status or lines.
+ */
+@Repository
+public class OrderPipelineRepository {
+
+    // Leases and back-offs are measured on the database clock, which also writes update_date; an order
+    // put in flight outside the pipeline (no next attempt yet) is leased from its last update
+    private static final String SELECT_CLAIMABLE = """
+            select id from beer_order
+            where status = :source
+               or (status = :inFlight
+                   and coalesce(next_attempt_date, dateadd(millisecond, :leaseMillis, update_date)) <= localtimestamp)
+            order by id
+            fetch first :batchSize rows only
+            for update skip locked
+            """;
+
+    private static final String MARK_IN_FLIGHT = """
+            update beer_order
+            set status = :inFlight,
+                version = case when status = :inFlight then version else version + 1 end,
+                update_date = case when status = :inFlight then update_date else localtimestamp end,
+                next_attempt_date = dateadd(millisecond, :leaseMillis, localtimestamp)
+            where id in (:ids)
+            """;
+
+    // The back-off doubles with each attempt in a row that reserved nothing, up to the maximum
+    private static final String DEFER_ALLOCATION = """
+            update beer_order
+            set allocation_attempts = case when :progress then 1 else allocation_attempts + 1 end,
+                next_attempt_date = dateadd(millisecond,
+                    cast(least(:maxMillis, :minMillis * power(2, case when :progress then 0 else allocation_attempts end))
+                         as bigint),
+                    localtimestamp)
+            where id = :id and status = :pending
+            """;
+
+    private static final String SET_STATUS = """
+            update beer_order set status = :to, version = version + 1, update_date = localtimestamp
+            where id in (:ids) and status = :from
+            """;
+
+    // No lines, or a line without a positive quantity; referenced beers exist by foreign key
+    private static final String SELECT_INVALID = """
+            select o.id from beer_order o
+            where o.id in (:ids)
+              and (not exists (select 1 from beer_order_line l where l.beer_order_id = o.id)
+                   or exists (select 1 from beer_order_line l
+                              where l.beer_order_id = o.id and (l.order_quantity is null or l.order_quantity < 1)))
+            """;
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    OrderPipelineRepository(NamedParameterJdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Claims up to {@code batchSize} orders in {@code source} (or in {@code inFlight} and due for another
+     * attempt) and moves them to {@code inFlight} for {@code lease}. Runs in a transaction of its own unless one
+     * is active; the claimed orders stay locked until that transaction ends.
+     *
+     * @return the claimed order ids, in id order
+     */
+    @Transactional
+    public List<Integer> claim(OrderStatus source, OrderStatus inFlight, Duration lease, int batchSize) {
+        List<Integer> ids = jdbcTemplate.queryForList(SELECT_CLAIMABLE, new MapSqlParameterSource()
+                .addValue("source", source.name())
+                .addValue("inFlight", inFlight.name())
+                .addValue("leaseMillis", lease.toMillis())
+                .addValue("batchSize", batchSize), Integer.class);
+        if (!ids.isEmpty()) {
+            jdbcTemplate.update(MARK_IN_FLIGHT, new MapSqlParameterSource()
+                    .addValue("inFlight", inFlight.name())
+                    .addValue("leaseMillis", lease.toMillis())
+                    .addValue("ids", ids));
+        }
+        return ids;
+    }
+
+    /**
+     * Puts off the next allocation of a backordered order (still ALLOCATION_PENDING) by the back-off:
+     * {@code minBackoff} after an attempt that reserved some of its lines, else twice the previous one,
+     * at most {@code maxBackoff}.
+     */
+    public void deferAllocation(Integer orderId, boolean progress, Duration minBackoff, Duration maxBackoff) {
+        jdbcTemplate.update(DEFER_ALLOCATION, new MapSqlParameterSource()
+                .addValue("id", orderId)
+                .addValue("pending", OrderStatus.ALLOCATION_PENDING.name())
+                .addValue("progress", progress)
+                .addValue("minMillis", minBackoff.toMillis())
+                .addValue("maxMillis", maxBackoff.toMillis()));
+    }
+
+    /**
+     * Orders among {@code orderIds} that cannot be fulfilled as placed.
+     */
+    public List<Integer> findInvalid(Collection<Integer> orderIds) {
+        return jdbcTemplate.queryForList(SELECT_INVALID, new MapSqlParameterSource("ids", orderIds), Integer.class);
+    }
+
+    /**
+     * Moves those of {@code orderIds} that are still in {@code from} to {@code to}.
+     *
+     * @return the number of orders moved
+     */
+    public int advance(Collection<Integer> orderIds, OrderStatus from, OrderStatus to) {
+        return jdbcTemplate.update(SET_STATUS, new MapSqlParameterSource()
+                .addValue("ids", orderIds)
+                .addValue("from", from.name())
+                .addValue("to", to.name()));
+    }
+}
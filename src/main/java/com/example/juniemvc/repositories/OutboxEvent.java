@@ -0,0 +1,17 @@
+package com.example.juniemvc.repositories;
+
+import com.fasterxml.jackson.annotation.JsonRawValue;
+
+import java.time.LocalDateTime;
+
+/**
+ * A row of the transactional outbox as handed to sinks: a change of one aggregate (an order or a
+ * beer). {@code payload} is JSON and is written as is when the event is serialised.
+ */
+public record OutboxEvent(Long id,
+                          String aggregateType,
+                          Integer aggregateId,
+                          String eventType,
+                          @JsonRawValue String payload,
+                          LocalDateTime createdDate) {
+}
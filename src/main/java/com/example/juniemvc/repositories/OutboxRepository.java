@@ -0,0 +1,180 @@
+package com.example.juniemvc.repositories;
+
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * SQL of the transactional outbox (table outbox_event). Events are appended on the connection of the
+ * transaction that changes the aggregate, and claimed by the relay in id order with FOR UPDATE SKIP
+ * LOCKED. Only the relay holding the lease (table outbox_relay_lease) claims; renewing it locks the
+ * lease row for the rest of the batch transaction, so batches of several nodes run one at a time.
+ *
+ * Per aggregate, events are handed out in id order: a relay never takes an event while an older one
+ * of the same aggregate is still in the table, claimed by another relay or not.
+ */
+@Repository
+public class OutboxRepository {
+
+    private static final String INSERT = """
+            insert into outbox_event (aggregate_type, aggregate_id, event_type, payload)
+            values (:aggregateType, :aggregateId, :eventType, :payload)
+            """;
+
+    private static final String SELECT_CLAIMABLE = """
+            select id, aggregate_type, aggregate_id, event_type, payload, created_date from outbox_event
+            order by id
+            fetch first :batchSize rows only
+            for update skip locked
+            """;
+
+    private static final String SELECT_OLDEST_PER_AGGREGATE = """
+            select aggregate_type, aggregate_id, min(id) as oldest from outbox_event
+            where (aggregate_type, aggregate_id) in (:aggregates)
+            group by aggregate_type, aggregate_id
+            """;
+
+    private static final String DELETE = "delete from outbox_event where id in (:ids)";
+
+    // Taken over once expired, on the database clock
+    private static final String HOLD_LEASE = """
+            update outbox_relay_lease set holder = :holder, expires_at = dateadd(millisecond, :leaseMillis, localtimestamp)
+            where id = 1 and (holder = :holder or expires_at < localtimestamp)
+            """;
+
+    private static final String RELEASE_LEASE = """
+            update outbox_relay_lease set holder = null, expires_at = localtimestamp
+            where id = 1 and holder = :holder
+            """;
+
+    // Ages on the database clock, which also writes created_date
+    private static final String SELECT_BACKLOG = """
+            select count(*) as pending,
+                coalesce(datediff(millisecond, min(created_date), localtimestamp), 0) as oldest_age_millis,
+                localtimestamp as database_time
+            from outbox_event
+            """;
+
+    private static final RowMapper<OutboxEvent> EVENT_MAPPER = (rs, rowNum) -> new OutboxEvent(
+            rs.getLong("id"),
+            rs.getString("aggregate_type"),
+            rs.getInt("aggregate_id"),
+            rs.getString("event_type"),
+            rs.getString("payload"),
+            rs.getObject("created_date", LocalDateTime.class));
+
+    /**
+     * An event to append; {@code payload} is JSON.
+     */
+    public record NewEvent(String aggregateType, Integer aggregateId, String eventType, String payload) {
+    }
+
+    /**
+     * Events waiting in the outbox, the age of the oldest (zero when empty) and the database's
+     * current time, against which created_date can be compared.
+     */
+    public record Backlog(long pending, Duration oldestAge, LocalDateTime databaseTime) {
+    }
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    OutboxRepository(NamedParameterJdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Appends the events in list order, in one JDBC batch. Only meaningful inside the transaction of
+     * the change they describe, hence MANDATORY.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void append(List<NewEvent> events) {
+        SqlParameterSource[] batch = events.stream()
+                .map(event -> new MapSqlParameterSource()
+                        .addValue("aggregateType", event.aggregateType())
+                        .addValue("aggregateId", event.aggregateId())
+                        .addValue("eventType", event.eventType())
+                        .addValue("payload", event.payload()))
+                .toArray(SqlParameterSource[]::new);
+        jdbcTemplate.batchUpdate(INSERT, batch);
+    }
+
+    /**
+     * Locks up to {@code batchSize} of the oldest unclaimed events. Events of an aggregate that still
+     * has an older event outside the batch (claimed by another relay) are skipped; they stay locked
+     * but untouched until the transaction ends.
+     *
+     * @return the claimed events in id order
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public List<OutboxEvent> claim(int batchSize) {
+        List<OutboxEvent> claimed = jdbcTemplate.query(SELECT_CLAIMABLE,
+                new MapSqlParameterSource("batchSize", batchSize), EVENT_MAPPER);
+        if (claimed.isEmpty()) {
+            return claimed;
+        }
+        Map<List<Object>, Long> oldestClaimed = new HashMap<>();
+        for (OutboxEvent event : claimed) {
+            oldestClaimed.putIfAbsent(List.of(event.aggregateType(), event.aggregateId()), event.id());
+        }
+        List<Object[]> aggregates = oldestClaimed.keySet().stream()
+                .map(List::toArray)
+                .toList();
+        Set<List<Object>> blocked = new HashSet<>();
+        jdbcTemplate.query(SELECT_OLDEST_PER_AGGREGATE, new MapSqlParameterSource("aggregates", aggregates), rs -> {
+            List<Object> aggregate = List.of(rs.getString("aggregate_type"), rs.getInt("aggregate_id"));
+            if (rs.getLong("oldest") < oldestClaimed.get(aggregate)) {
+                blocked.add(aggregate);
+            }
+        });
+        if (blocked.isEmpty()) {
+            return claimed;
+        }
+        return claimed.stream()
+                .filter(event -> !blocked.contains(List.<Object>of(event.aggregateType(), event.aggregateId())))
+                .toList();
+    }
+
+    /**
+     * Takes or renews the relay lease for {@code holder}, unless another holder's lease has not expired.
+     * The lease row stays locked until the transaction ends.
+     *
+     * @return whether {@code holder} holds the lease
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public boolean holdRelayLease(String holder, Duration lease) {
+        return jdbcTemplate.update(HOLD_LEASE, new MapSqlParameterSource()
+                .addValue("holder", holder)
+                .addValue("leaseMillis", lease.toMillis())) == 1;
+    }
+
+    /**
+     * Gives up the relay lease if {@code holder} holds it, so another relay takes over without waiting for it to expire.
+     */
+    public void releaseRelayLease(String holder) {
+        jdbcTemplate.update(RELEASE_LEASE, new MapSqlParameterSource("holder", holder));
+    }
+
+    public void delete(Collection<Long> ids) {
+        jdbcTemplate.update(DELETE, new MapSqlParameterSource("ids", ids));
+    }
+
+    public Backlog backlog() {
+        return jdbcTemplate.queryForObject(SELECT_BACKLOG, Map.of(), (rs, rowNum) -> new Backlog(
+                rs.getLong("pending"),
+                Duration.ofMillis(rs.getLong("oldest_age_millis")),
+                rs.getObject("database_time", LocalDateTime.class)));
+    }
+}
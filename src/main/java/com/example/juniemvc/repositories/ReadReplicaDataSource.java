@@ -0,0 +1,174 @@
+package com.example.juniemvc.repositories;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The application DataSource with read replicas: read-only transactions run on a replica, everything
+ * else on the primary. Connections are fetched lazily (see {@link LazyConnectionDataSourceProxy}), so
+ * the read-only flag of the transaction is known when the database is picked.
+ *
+ * Replicas take turns. A replica is used only while its last probe found it within the lag tolerance;
+ * one that cannot hand out a connection is skipped until its next probe. With no replica usable, or
+ * inside {@link ReadRouting#primaryOnly()}, read-only transactions fall back to the primary.
+ *
+ * Lag is measured with replication_heartbeat on the primary's clock: {@link #writeHeartbeat} stores the
+ * primary's time, {@link #probe} reads it back from each replica and compares it with the primary's time
+ * then. The clocks of the nodes play no part, so any number of them can share the row.
+ */
+public class ReadReplicaDataSource extends LazyConnectionDataSourceProxy implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(ReadReplicaDataSource.class);
+
+    private static final String WRITE_HEARTBEAT = "update replication_heartbeat set beat = localtimestamp where id = 1";
+
+    private static final String READ_HEARTBEAT = "select beat from replication_heartbeat where id = 1";
+
+    private static final String READ_CLOCK = "select localtimestamp";
+
+    // a replica that takes longer to answer the probe counts as unavailable
+    private static final int PROBE_TIMEOUT_SECONDS = 2;
+
+    /**
+     * A replica as of its last probe; {@code lag} is null while it could not be probed.
+     */
+    public record ReplicaStatus(String name, boolean usable, Duration lag) {
+    }
+
+    private static final class Replica {
+
+        private final String name;
+        private final DataSource dataSource;
+        private final JdbcTemplate jdbcTemplate;
+        private volatile boolean usable;
+        private volatile Duration lag;
+
+        private Replica(String name, DataSource dataSource) {
+            this.name = name;
+            this.dataSource = dataSource;
+            this.jdbcTemplate = new JdbcTemplate(dataSource);
+            this.jdbcTemplate.setQueryTimeout(PROBE_TIMEOUT_SECONDS);
+        }
+    }
+
+    private final DataSource primary;
+    private final List<Replica> replicas = new ArrayList<>();
+    private final Duration maxLag;
+    private final AtomicInteger turn = new AtomicInteger();
+
+    /**
+     * @param primary  the database of writes, and of reads when no replica is usable
+     * @param replicas the replica databases by name, taking turns in map order; unusable until the first probe
+     * @param maxLag   how far a replica may fall behind the primary and still serve reads
+     */
+    public ReadReplicaDataSource(DataSource primary, Map<String, ? extends DataSource> replicas, Duration maxLag) {
+        super(primary);
+        this.primary = primary;
+        replicas.forEach((name, dataSource) -> this.replicas.add(new Replica(name, dataSource)));
+        this.maxLag = maxLag;
+        setReadOnlyDataSource(new ReplicaConnections());
+    }
+
+    /**
+     * Stores the primary's current time in its heartbeat row, for replicas to replicate.
+     */
+    public void writeHeartbeat() {
+        new JdbcTemplate(primary).update(WRITE_HEARTBEAT);
+    }
+
+    /**
+     * Measures the lag of every replica and decides whether it serves reads until the next probe. While
+     * the primary's clock cannot be read no lag can be measured, and the replicas are left out.
+     */
+    public void probe() {
+        LocalDateTime now;
+        try {
+            now = new JdbcTemplate(primary).queryForObject(READ_CLOCK, LocalDateTime.class);
+        } catch (DataAccessException ex) {
+            log.warn("Replica lag cannot be measured, the primary's clock cannot be read: {}",
+                    ex.getMostSpecificCause().getMessage());
+            now = null;
+        }
+        for (Replica replica : replicas) {
+            Duration lag;
+            try {
+                LocalDateTime beat = replica.jdbcTemplate.queryForObject(READ_HEARTBEAT, LocalDateTime.class);
+                lag = now != null ? Duration.ofMillis(Math.max(0, Duration.between(beat, now).toMillis())) : null;
+            } catch (DataAccessException ex) {
+                if (replica.usable || replica.lag != null) {
+                    log.warn("Read replica {} cannot be probed: {}", replica.name, ex.getMostSpecificCause().getMessage());
+                }
+                lag = null;
+            }
+            boolean usable = lag != null && lag.compareTo(maxLag) <= 0;
+            if (usable != replica.usable) {
+                log.info("Read replica {} {} reads, lag {}", replica.name, usable ? "serves" : "no longer serves", lag);
+            }
+            replica.lag = lag;
+            replica.usable = usable;
+        }
+    }
+
+    public List<ReplicaStatus> status() {
+        return replicas.stream()
+                .map(replica -> new ReplicaStatus(replica.name, replica.usable, replica.lag))
+                .toList();
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (Replica replica : replicas) {
+            if (replica.dataSource instanceof Closeable closeable) {
+                closeable.close();
+            }
+        }
+        if (primary instanceof Closeable closeable) {
+            closeable.close();
+        }
+    }
+
+    // The read-only side: the next usable replica in turn, else the primary
+    private final class ReplicaConnections extends AbstractDataSource {
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            if (!ReadRouting.primaryRequired()) {
+                int first = Math.floorMod(turn.getAndIncrement(), replicas.size());
+                for (int i = 0; i < replicas.size(); i++) {
+                    Replica replica = replicas.get((first + i) % replicas.size());
+                    if (!replica.usable) {
+                        continue;
+                    }
+                    try {
+                        return replica.dataSource.getConnection();
+                    } catch (SQLException ex) {
+                        replica.usable = false;
+                        log.warn("Read replica {} unavailable until its next probe: {}", replica.name, ex.getMessage());
+                    }
+                }
+            }
+            return primary.getConnection();
+        }
+
+        @Override
+        public Connection getConnection(String username, String password) throws SQLException {
+            throw new SQLException("Read replica connections use the configured credentials");
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.example.juniemvc.repositories;
+
+import jakarta.persistence.CacheStoreMode;
+import org.springframework.orm.jpa.EntityManagerHolder;
+import org.springframework.orm.jpa.JpaTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * The JPA transaction manager with read replicas. A read-only transaction that may run on a replica
+ * (see {@link ReadReplicaDataSource}) reads past the second-level cache's store: entities it loads
+ * may lag behind the primary and must not replace fresher cached ones, which other nodes and the
+ * primary-only reads rely on. Cache hits are still served.
+ *
+ * Transactions inside {@link ReadRouting#primaryOnly()} and all writing ones store as usual.
+ */
+public class ReadReplicaTransactionManager extends JpaTransactionManager {
+
+    @Override
+    protected void doBegin(Object transaction, TransactionDefinition definition) {
+        super.doBegin(transaction, definition);
+        if (definition.isReadOnly() && !ReadRouting.primaryRequired()) {
+            EntityManagerHolder holder = (EntityManagerHolder) TransactionSynchronizationManager.getResource(obtainEntityManagerFactory());
+            holder.getEntityManager().setProperty("jakarta.persistence.cache.storeMode", CacheStoreMode.BYPASS);
+        }
+    }
+}
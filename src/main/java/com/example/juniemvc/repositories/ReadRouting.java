@@ -0,0 +1,56 @@
+package com.example.juniemvc.repositories;
+
+import java.util.function.Supplier;
+
+/**
+ * Pins the read-only transactions of the current thread to the primary database while a scope is open,
+ * for reads that must see the latest commit: those of a client that has just written, and snapshots
+ * taken to line up with the outbox. Without read replicas (juniemvc.read-replicas.enabled=false) every
+ * transaction runs on the primary anyway.
+ *
+ * The database is picked when a transaction first needs a connection, so the scope has to be open by then.
+ */
+public final class ReadRouting {
+
+    private static final ThreadLocal<Scope> CURRENT = new ThreadLocal<>();
+
+    private ReadRouting() {
+    }
+
+    /**
+     * Sends read-only transactions to the primary until the returned scope is closed. Scopes nest.
+     */
+    public static Scope primaryOnly() {
+        Scope scope = new Scope(CURRENT.get());
+        CURRENT.set(scope);
+        return scope;
+    }
+
+    public static <T> T onPrimary(Supplier<T> reads) {
+        try (Scope ignored = primaryOnly()) {
+            return reads.get();
+        }
+    }
+
+    static boolean primaryRequired() {
+        return CURRENT.get() != null;
+    }
+
+    public static final class Scope implements AutoCloseable {
+
+        private final Scope parent;
+
+        private Scope(Scope parent) {
+            this.parent = parent;
+        }
+
+        @Override
+        public void close() {
+            if (parent == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(parent);
+            }
+        }
+    }
+}
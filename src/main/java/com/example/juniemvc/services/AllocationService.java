@@ -0,0 +1,14 @@
+package com.example.juniemvc.services;
+
+import com.example.juniemvc.models.AllocationResult;
+
+public interface AllocationService {
+    // Reserves stock for every NEW or BACKORDERED line of the order. The order becomes ALLOCATED when
+    // no line is left short, otherwise it stays ALLOCATION_PENDING and can be allocated again later.
+    // Already ALLOCATED orders are returned unchanged; PICKED_UP and CANCELLED ones are rejected, and so
+    // are NEW orders that fail validation and orders the pipeline has claimed but not allocated yet.
+    AllocationResult allocate(Integer orderId);
+
+    // Allocates an order the background pipeline has claimed (ALLOCATION_PENDING); for the pipeline only.
+    AllocationResult allocateClaimed(Integer orderId);
+}
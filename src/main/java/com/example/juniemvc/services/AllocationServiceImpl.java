@@ -0,0 +1,180 @@
+package com.example.juniemvc.services;
+
+import com.example.juniemvc.entities.enums.OrderStatus;
+import com.example.juniemvc.models.AllocationResult;
+import com.example.juniemvc.repositories.BeerOrderRepository;
+import com.example.juniemvc.repositories.InventoryAllocationRepository;
+import com.example.juniemvc.repositories.InventoryAllocationRepository.OpenLine;
+import com.example.juniemvc.repositories.InventorySlotRepository;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.EntityNotFoundException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Allocates with set-based SQL only: a fixed number of statements per order (claim, open lines, one
+ * reserve batch, one line batch, status) whatever its line count, and no read-modify-write of Beer,
+ * so a hot beer serialises on its row lock rather than failing with 409s.
+ *
+ * Lines of striped beers take from a random inventory slot in a second batch instead
+ * ({@link InventorySlotRepository}), so they do not even share a row lock; only when that slot is
+ * short do they fall back to another slot and, if no single slot holds enough, to a rebalance of
+ * all slots of the beer. Those paths can deadlock with each other (a row locked by a failed guarded
+ * update stays locked), so an allocation chosen as deadlock victim is retried in a new transaction
+ * after a short random back-off.
+ */
+@Service
+class AllocationServiceImpl implements AllocationService {
+
+    private static final int MAX_ATTEMPTS = 5;
+    private static final long BACKOFF_MILLIS = 20;
+    private static final Logger log = LoggerFactory.getLogger(AllocationServiceImpl.class);
+
+    private final InventoryAllocationRepository allocationRepository;
+    private final InventorySlotRepository slotRepository;
+    private final BeerOrderRepository orderRepository;
+    private final EntityManagerFactory entityManagerFactory;
+    private final OutboxRecorder outboxRecorder;
+    private final TransactionTemplate transactionTemplate;
+
+    AllocationServiceImpl(InventoryAllocationRepository allocationRepository,
+                          InventorySlotRepository slotRepository,
+                          BeerOrderRepository orderRepository,
+                          EntityManagerFactory entityManagerFactory,
+                          OutboxRecorder outboxRecorder,
+                          PlatformTransactionManager transactionManager) {
+        this.allocationRepository = allocationRepository;
+        this.slotRepository = slotRepository;
+        this.orderRepository = orderRepository;
+        this.entityManagerFactory = entityManagerFactory;
+        this.outboxRecorder = outboxRecorder;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @Override
+    public AllocationResult allocate(Integer orderId) {
+        return allocate(orderId, false);
+    }
+
+    @Override
+    public AllocationResult allocateClaimed(Integer orderId) {
+        return allocate(orderId, true);
+    }
+
+    private AllocationResult allocate(Integer orderId, boolean claimedByPipeline) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return transactionTemplate.execute(status -> allocateOnce(orderId, claimedByPipeline));
+            } catch (PessimisticLockingFailureException ex) {
+                if (attempt == MAX_ATTEMPTS) {
+                    throw ex;
+                }
+                if (log.isDebugEnabled()) {
+                    log.debug("Allocation of order {} lost a lock conflict, attempt {}: {}", orderId, attempt, ex.getMessage());
+                }
+                backOff(attempt, ex);
+            }
+        }
+    }
+
+    // Random wait growing with the attempt, so the transactions of a deadlock do not retry in lockstep
+    private static void backOff(int attempt, PessimisticLockingFailureException cause) {
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(1, BACKOFF_MILLIS * attempt + 1));
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw cause;
+        }
+    }
+
+    private AllocationResult allocateOnce(Integer orderId, boolean claimedByPipeline) {
+        boolean claimed = claimedByPipeline
+                ? allocationRepository.claimPendingOrder(orderId)
+                : allocationRepository.claimOrder(orderId);
+        if (!claimed) {
+            OrderStatus status = orderRepository.findStatusById(orderId)
+                    .orElseThrow(() -> new EntityNotFoundException("Order %d not found".formatted(orderId)));
+            if (status != OrderStatus.ALLOCATED) {
+                throw new OrderStatusConflictException(orderId, status, "allocated");
+            }
+            return AllocationResult.builder().orderId(orderId).status(status).build();
+        }
+
+        List<OpenLine> lines = allocationRepository.findOpenLines(orderId);
+        int allocated = 0;
+        // beer id -> quantity reserved, in beer id order like the lines
+        Map<Integer, Integer> reservedByBeer = new LinkedHashMap<>();
+        boolean[] reserved = lines.isEmpty() ? new boolean[0] : reserve(lines);
+        for (int i = 0; i < reserved.length; i++) {
+            if (reserved[i]) {
+                allocated++;
+                reservedByBeer.merge(lines.get(i).beerId(), lines.get(i).quantity(), Integer::sum);
+            }
+        }
+        int backordered = lines.size() - allocated;
+        OrderStatus status = backordered == 0 ? OrderStatus.ALLOCATED : OrderStatus.ALLOCATION_PENDING;
+        AllocationResult result = AllocationResult.builder()
+                .orderId(orderId)
+                .status(status)
+                .allocatedLines(allocated)
+                .backorderedLines(backordered)
+                .build();
+        if (allocated == 0 && !lines.isEmpty() && lines.stream().allMatch(OpenLine::backordered)) {
+            // still short on every line: the outcome of the last attempt, so nothing to write or record
+            log.debug("Order {} is still backordered on all {} open line(s)", orderId, backordered);
+            return result;
+        }
+
+        if (!lines.isEmpty()) {
+            allocationRepository.markLines(lines, reserved);
+            BeerCacheEvictions.evictAfterCommit(entityManagerFactory,
+                    lines.stream().map(OpenLine::beerId).distinct().toList());
+        }
+        allocationRepository.setOrderStatus(orderId, status, claimedByPipeline);
+
+        if (log.isDebugEnabled()) {
+            log.debug("Allocated order {}: {} line(s) allocated, {} backordered", orderId, allocated, backordered);
+        }
+        outboxRecorder.record(backordered == 0 ? OutboxEventType.ORDER_ALLOCATED : OutboxEventType.ORDER_BACKORDERED,
+                orderId, result);
+        // Reservations are deltas: takes from different slots of a striped beer commit in any order,
+        // and so may their events
+        Map<Integer, Map<String, Object>> reservations = new LinkedHashMap<>();
+        reservedByBeer.forEach((beerId, quantity) ->
+                reservations.put(beerId, Map.of("id", beerId, "orderId", orderId, "quantity", quantity)));
+        outboxRecorder.recordAll(OutboxEventType.INVENTORY_RESERVED, reservations);
+        return result;
+    }
+
+    // Results in the order of lines; at most one batch per inventory model
+    private boolean[] reserve(List<OpenLine> lines) {
+        List<OpenLine> plain = lines.stream().filter(line -> !line.striped()).toList();
+        List<OpenLine> striped = lines.stream().filter(OpenLine::striped).toList();
+        boolean[] plainReserved = plain.isEmpty() ? new boolean[0] : allocationRepository.reserve(plain);
+        boolean[] stripedReserved = striped.isEmpty() ? new boolean[0] : slotRepository.takeFromRandomSlots(striped);
+
+        boolean[] reserved = new boolean[lines.size()];
+        int p = 0;
+        int s = 0;
+        for (int i = 0; i < lines.size(); i++) {
+            OpenLine line = lines.get(i);
+            if (!line.striped()) {
+                reserved[i] = plainReserved[p++];
+            } else {
+                reserved[i] = stripedReserved[s++]
+                        || slotRepository.takeFromAnySlot(line.beerId(), line.quantity())
+                        || slotRepository.rebalanceAndTake(line.beerId(), line.quantity());
+            }
+        }
+        return reserved;
+    }
+}
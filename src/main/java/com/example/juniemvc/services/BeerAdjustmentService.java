@@ -0,0 +1,22 @@
+package com.example.juniemvc.services;
+
+import com.example.juniemvc.models.BeerAdjustment;
+import com.example.juniemvc.models.BeerAdjustmentReport;
+
+import java.util.List;
+
+public interface BeerAdjustmentService {
+
+    /**
+     * Applies restocks and price changes to many beers without loading them. Entries are applied in
+     * chunks of juniemvc.beer-adjustment.chunk-size, each one statement and committed on its own, so
+     * entries before a failure stay applied. Entries for the same beer in a chunk are summed, the last
+     * price wins; a beer whose stock they would take below zero is left unchanged.
+     *
+     * @param adjustments the entries, each naming a beer by id or upc
+     * @return counts per outcome
+     * @throws InvalidRequestException when an entry names neither or both of id and upc, changes
+     *                                  nothing or sets a negative price; nothing is applied then
+     */
+    BeerAdjustmentReport adjust(List<BeerAdjustment> adjustments);
+}
@@ -0,0 +1,176 @@
+package com.example.juniemvc.services;
+
+import com.example.juniemvc.config.BeerAdjustmentProperties;
+import com.example.juniemvc.models.BeerAdjustment;
+import com.example.juniemvc.models.BeerAdjustmentReport;
+import com.example.juniemvc.models.BeerDto;
+import com.example.juniemvc.repositories.BeerAdjustmentRepository;
+import com.example.juniemvc.repositories.BeerAdjustmentRepository.Change;
+import com.example.juniemvc.repositories.BeerAdjustmentRepository.Target;
+import com.example.juniemvc.repositories.InventorySlotRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+@Service
+class BeerAdjustmentServiceImpl implements BeerAdjustmentService {
+
+    private static final Logger log = LoggerFactory.getLogger(BeerAdjustmentServiceImpl.class);
+
+    private final BeerAdjustmentRepository adjustmentRepository;
+    private final InventorySlotRepository slotRepository;
+    private final OutboxRecorder outboxRecorder;
+    private final EntityManagerFactory entityManagerFactory;
+    private final TransactionTemplate transactionTemplate;
+    private final BeerAdjustmentProperties properties;
+
+    BeerAdjustmentServiceImpl(BeerAdjustmentRepository adjustmentRepository,
+                              InventorySlotRepository slotRepository,
+                              OutboxRecorder outboxRecorder,
+                              EntityManagerFactory entityManagerFactory,
+                              PlatformTransactionManager transactionManager,
+                              BeerAdjustmentProperties properties) {
+        this.adjustmentRepository = adjustmentRepository;
+        this.slotRepository = slotRepository;
+        this.outboxRecorder = outboxRecorder;
+        this.entityManagerFactory = entityManagerFactory;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.properties = properties;
+    }
+
+    private record ChunkCounts(int adjusted, int notFound, int insufficientStock) {
+    }
+
+    @Override
+    public BeerAdjustmentReport adjust(List<BeerAdjustment> adjustments) {
+        for (int i = 0; i < adjustments.size(); i++) {
+            check(i, adjustments.get(i));
+        }
+        BeerAdjustmentReport report = BeerAdjustmentReport.builder().requested(adjustments.size()).build();
+        for (int from = 0; from < adjustments.size(); from += properties.chunkSize()) {
+            List<BeerAdjustment> chunk = adjustments.subList(from, Math.min(adjustments.size(), from + properties.chunkSize()));
+            try {
+                ChunkCounts counts = transactionTemplate.execute(status -> applyChunk(chunk));
+                report.setAdjusted(report.getAdjusted() + counts.adjusted());
+                report.setNotFound(report.getNotFound() + counts.notFound());
+                report.setInsufficientStock(report.getInsufficientStock() + counts.insufficientStock());
+            } catch (DataAccessException ex) {
+                log.warn("Beer adjustment chunk of {} entries from index {} rolled back: {}", chunk.size(), from,
+                        ex.getMostSpecificCause().getMessage());
+                report.setFailed(report.getFailed() + chunk.size());
+            }
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("Beer adjustment of {} entries: {} adjusted, {} not found, {} insufficient stock, {} failed",
+                    report.getRequested(), report.getAdjusted(), report.getNotFound(), report.getInsufficientStock(),
+                    report.getFailed());
+        }
+        return report;
+    }
+
+    private static void check(int index, BeerAdjustment adjustment) {
+        if (adjustment == null) {
+            throw new InvalidRequestException("adjustments[%d] must not be null".formatted(index));
+        }
+        boolean byUpc = adjustment.getUpc() != null && !adjustment.getUpc().isBlank();
+        if ((adjustment.getId() != null) == byUpc) {
+            throw new InvalidRequestException("adjustments[%d]: exactly one of id and upc is required".formatted(index));
+        }
+        if (adjustment.getQuantityDelta() == null && adjustment.getPrice() == null) {
+            throw new InvalidRequestException("adjustments[%d]: quantityDelta or price is required".formatted(index));
+        }
+        if (adjustment.getPrice() != null && adjustment.getPrice().signum() < 0) {
+            throw new InvalidRequestException("adjustments[%d]: price must not be negative".formatted(index));
+        }
+    }
+
+    // Locks the named beers, so the stock checks below hold until the merge, then applies the whole
+    // chunk with one statement
+    private ChunkCounts applyChunk(List<BeerAdjustment> chunk) {
+        Set<Integer> ids = new LinkedHashSet<>();
+        Set<String> upcs = new LinkedHashSet<>();
+        chunk.forEach(adjustment -> {
+            if (adjustment.getId() != null) {
+                ids.add(adjustment.getId());
+            } else {
+                upcs.add(adjustment.getUpc());
+            }
+        });
+        Map<Integer, Target> byId = new HashMap<>();
+        Map<String, Target> byUpc = new HashMap<>();
+        for (Target target : adjustmentRepository.lock(ids, upcs)) {
+            byId.put(target.id(), target);
+            // in id order, so the first beer of a upc is its oldest
+            byUpc.putIfAbsent(target.upc(), target);
+        }
+
+        // entries per beer, in the order the beers first appear
+        Map<Integer, List<BeerAdjustment>> perBeer = new LinkedHashMap<>();
+        int notFound = 0;
+        for (BeerAdjustment adjustment : chunk) {
+            Target target = adjustment.getId() != null ? byId.get(adjustment.getId()) : byUpc.get(adjustment.getUpc());
+            if (target == null) {
+                notFound++;
+            } else {
+                perBeer.computeIfAbsent(target.id(), id -> new ArrayList<>()).add(adjustment);
+            }
+        }
+
+        List<Change> changes = new ArrayList<>(perBeer.size());
+        Map<Integer, Integer> stripedTotals = new HashMap<>();
+        int adjusted = 0;
+        int insufficientStock = 0;
+        for (Map.Entry<Integer, List<BeerAdjustment>> entry : perBeer.entrySet()) {
+            Target target = byId.get(entry.getKey());
+            int delta = 0;
+            BigDecimal price = null;
+            for (BeerAdjustment adjustment : entry.getValue()) {
+                delta += adjustment.getQuantityDelta() != null ? adjustment.getQuantityDelta() : 0;
+                price = adjustment.getPrice() != null ? adjustment.getPrice() : price;
+            }
+            if (target.stripedQuantity() != null) {
+                // a striped beer keeps 0 on hand, its new stock is spread over its slots
+                Integer total = delta != 0 ? slotRepository.addToTotal(target.id(), delta) : target.stripedQuantity();
+                if (total == null) {
+                    insufficientStock += entry.getValue().size();
+                    continue;
+                }
+                stripedTotals.put(target.id(), total);
+                changes.add(new Change(target.id(), 0, price));
+            } else {
+                int quantityOnHand = target.quantityOnHand() != null ? target.quantityOnHand() : 0;
+                if (quantityOnHand + delta < 0) {
+                    insufficientStock += entry.getValue().size();
+                    continue;
+                }
+                changes.add(new Change(target.id(), delta, price));
+            }
+            adjusted += entry.getValue().size();
+        }
+
+        List<BeerDto> updated = adjustmentRepository.apply(changes, LocalDateTime.now().truncatedTo(ChronoUnit.MICROS));
+        Map<Integer, BeerDto> updatedById = new LinkedHashMap<>();
+        for (BeerDto beer : updated) {
+            beer.setQuantityOnHand(stripedTotals.getOrDefault(beer.getId(), beer.getQuantityOnHand()));
+            updatedById.put(beer.getId(), beer);
+        }
+        outboxRecorder.recordAll(OutboxEventType.BEER_UPDATED, updatedById);
+        BeerCacheEvictions.evictAfterCommit(entityManagerFactory, updatedById.keySet());
+        return new ChunkCounts(adjusted, notFound, insufficientStock);
+    }
+}
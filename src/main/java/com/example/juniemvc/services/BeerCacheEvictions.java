@@ -0,0 +1,35 @@
+package com.example.juniemvc.services;
+
+import com.example.juniemvc.entities.Beer;
+import jakarta.persistence.EntityManagerFactory;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Second-level cache eviction for beers changed with plain SQL, which Hibernate does not see. This
+ * evicts on the local node only; other nodes evict through the {@link BeerCacheInvalidator}.
+ */
+final class BeerCacheEvictions {
+
+    private BeerCacheEvictions() {
+    }
+
+    // Inside a transaction the eviction waits for the commit: evicting earlier would let a concurrent
+    // load cache the pre-commit row again
+    static void evictAfterCommit(EntityManagerFactory entityManagerFactory, Collection<Integer> beerIds) {
+        List<Integer> ids = List.copyOf(beerIds);
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            ids.forEach(id -> entityManagerFactory.getCache().evict(Beer.class, id));
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                ids.forEach(id -> entityManagerFactory.getCache().evict(Beer.class, id));
+            }
+        });
+    }
+}
@@ -0,0 +1,117 @@
+package com.example.juniemvc.services;
+
+import com.example.juniemvc.entities.Beer;
+import com.example.juniemvc.repositories.BeerChange;
+import com.example.juniemvc.repositories.BeerChangeRepository;
+import com.example.juniemvc.repositories.ReadRouting;
+import jakarta.persistence.Cache;
+import jakarta.persistence.EntityManagerFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.SmartLifecycle;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Evicts the beers changed on any node from this node's second-level cache. The node that changes a
+ * beer evicts it on commit (see {@link BeerCacheEvictions}); the others learn of it from the beer change
+ * log, which the outbox relay appends to with every batch, and which this invalidator tails. A beer
+ * cached elsewhere is therefore stale for about the relay's poll interval plus this one's, not until
+ * its entry expires. The writing node evicts a second time, which only costs a reload.
+ *
+ * The log is read from its end at start: the cache is empty then.
+ */
+public class BeerCacheInvalidator implements SmartLifecycle {
+
+    // changes read per query of the log
+    private static final int READ_LIMIT = 1000;
+    private static final Logger log = LoggerFactory.getLogger(BeerCacheInvalidator.class);
+
+    private final BeerChangeRepository beerChangeRepository;
+    private final EntityManagerFactory entityManagerFactory;
+    private final Duration pollInterval;
+    // id of the last change log row read, -1 until the first poll; used by the poll thread only
+    private long lastChangeId = -1;
+
+    private volatile ExecutorService executor;
+
+    public BeerCacheInvalidator(BeerChangeRepository beerChangeRepository, EntityManagerFactory entityManagerFactory,
+                                Duration pollInterval) {
+        this.beerChangeRepository = beerChangeRepository;
+        this.entityManagerFactory = entityManagerFactory;
+        this.pollInterval = pollInterval;
+    }
+
+    /**
+     * Evicts the beers logged since the last call.
+     *
+     * @return the number of change log rows read
+     */
+    int evictChanges() {
+        if (lastChangeId < 0) {
+            lastChangeId = ReadRouting.onPrimary(beerChangeRepository::lastId);
+            return 0;
+        }
+        // on the primary: a replica may not have the change yet
+        List<BeerChange> changes = ReadRouting.onPrimary(() -> beerChangeRepository.findAfter(lastChangeId, READ_LIMIT));
+        if (changes.isEmpty()) {
+            return 0;
+        }
+        Cache cache = entityManagerFactory.getCache();
+        changes.forEach(change -> cache.evict(Beer.class, change.beerId()));
+        lastChangeId = changes.getLast().id();
+        return changes.size();
+    }
+
+    @Override
+    public void start() {
+        ExecutorService started = Executors.newSingleThreadExecutor(Thread.ofVirtual().name("beer-cache-invalidator").factory());
+        started.execute(this::poll);
+        executor = started;
+    }
+
+    private void poll() {
+        while (!Thread.currentThread().isInterrupted()) {
+            int read;
+            try {
+                read = evictChanges();
+            } catch (RuntimeException ex) {
+                log.warn("Reading beer changes failed, retried after {}: {}", pollInterval, ex.getMessage());
+                read = 0;
+            }
+            if (read < READ_LIMIT) {
+                try {
+                    Thread.sleep(pollInterval);
+                } catch (InterruptedException ex) {
+                    return;
+                }
+            }
+        }
+    }
+
+    @Override
+    public void stop() {
+        ExecutorService running = executor;
+        executor = null;
+        if (running == null) {
+            return;
+        }
+        running.shutdownNow();
+        try {
+            if (!running.awaitTermination(30, TimeUnit.SECONDS)) {
+                log.warn("Beer cache invalidator did not stop within 30s");
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return executor != null;
+    }
+}
@@ -0,0 +1,43 @@
+package com.example.juniemvc.services;
+
+import com.example.juniemvc.outbox.OutboxListener;
+import com.example.juniemvc.repositories.BeerChangeRepository;
+import com.example.juniemvc.repositories.OutboxEvent;
+
+import java.time.Duration;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Writes the beers touched by each relayed batch to the beer change log, from which the
+ * {@link BeerCacheInvalidator} of every node reads: one row per beer and batch. Every change of a beer,
+ * through JPA or plain SQL, records a "Beer" event. Changes older than the retention are pruned by the
+ * same transaction.
+ */
+public class BeerChangeLog implements OutboxListener {
+
+    private static final String BEER_AGGREGATE = "Beer";
+
+    private final BeerChangeRepository beerChangeRepository;
+    private final Duration retention;
+
+    public BeerChangeLog(BeerChangeRepository beerChangeRepository, Duration retention) {
+        this.beerChangeRepository = beerChangeRepository;
+        this.retention = retention;
+    }
+
+    @Override
+    public void published(List<OutboxEvent> events) {
+        Set<Integer> beerIds = new LinkedHashSet<>();
+        for (OutboxEvent event : events) {
+            if (BEER_AGGREGATE.equals(event.aggregateType())) {
+                beerIds.add(event.aggregateId());
+            }
+        }
+        if (!beerIds.isEmpty()) {
+            beerChangeRepository.append(beerIds);
+        }
+        beerChangeRepository.deleteOlderThan(retention);
+    }
+}
@@ -0,0 +1,199 @@
+package com.example.juniemvc.services;
+
+import com.example.juniemvc.models.BeerDto;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+/**
+ * Reads the rows of a bulk beer import body one at a time, so only the current row is held in memory.
+ * A row that cannot be read into a BeerDto comes back with an error instead of the beer; only a body
+ * that is unreadable as a whole (an unknown CSV column) fails with InvalidRequestException.
+ */
+abstract class BeerImportRows {
+
+    /**
+     * A row of the body: the line it starts on and either the beer or why it could not be read.
+     */
+    record Row(long line, BeerDto beer, String error) {
+    }
+
+    /**
+     * @return the next row, or null at the end of the body
+     */
+    abstract Row next() throws IOException;
+
+    static BeerImportRows ndjson(Reader body, ObjectMapper objectMapper) {
+        return new Ndjson(new BufferedReader(body), objectMapper.readerFor(BeerDto.class));
+    }
+
+    static BeerImportRows csv(Reader body) throws IOException {
+        return new Csv(new BufferedReader(body));
+    }
+
+    private static final class Ndjson extends BeerImportRows {
+
+        private final BufferedReader in;
+        private final ObjectReader beerReader;
+        private long line;
+
+        private Ndjson(BufferedReader in, ObjectReader beerReader) {
+            this.in = in;
+            this.beerReader = beerReader;
+        }
+
+        @Override
+        Row next() throws IOException {
+            String json;
+            do {
+                json = in.readLine();
+                line++;
+            } while (json != null && json.isBlank());
+            if (json == null) {
+                return null;
+            }
+            try {
+                return new Row(line, beerReader.readValue(json), null);
+            } catch (JsonProcessingException ex) {
+                return new Row(line, null, "Malformed JSON: " + ex.getOriginalMessage());
+            }
+        }
+    }
+
+    // RFC 4180: comma separated, fields optionally in double quotes ("" for a quote), quoted fields may
+    // span lines; CRLF or LF line ends; blank lines are skipped
+    private static final class Csv extends BeerImportRows {
+
+        private static final Map<String, BiConsumer<BeerDto.BeerDtoBuilder, String>> COLUMNS = Map.of(
+                "beerName", BeerDto.BeerDtoBuilder::beerName,
+                "beerStyle", BeerDto.BeerDtoBuilder::beerStyle,
+                "upc", BeerDto.BeerDtoBuilder::upc,
+                "quantityOnHand", (beer, value) -> beer.quantityOnHand(Integer.valueOf(value.trim())),
+                "price", (beer, value) -> beer.price(new BigDecimal(value.trim())));
+
+        private final BufferedReader in;
+        private final List<String> header;
+        private long line = 1;
+        private long recordLine;
+
+        private Csv(BufferedReader in) throws IOException {
+            this.in = in;
+            List<String> columns;
+            try {
+                columns = readRecord();
+            } catch (MalformedRecordException ex) {
+                throw new InvalidRequestException("Malformed CSV header: " + ex.getMessage());
+            }
+            // a byte order mark (spreadsheet exports) is not part of the first column name
+            this.header = columns != null ? columns.stream().map(column -> column.replace("\uFEFF", "").trim()).toList() : List.of();
+            for (String column : header) {
+                if (!COLUMNS.containsKey(column)) {
+                    throw new InvalidRequestException("Unknown CSV column '%s', expected %s"
+                            .formatted(column, Set.copyOf(COLUMNS.keySet())));
+                }
+            }
+            if (Set.copyOf(header).size() != header.size()) {
+                throw new InvalidRequestException("Duplicate CSV column in header " + header);
+            }
+        }
+
+        @Override
+        Row next() throws IOException {
+            List<String> fields;
+            try {
+                fields = readRecord();
+            } catch (MalformedRecordException ex) {
+                return new Row(recordLine, null, ex.getMessage());
+            }
+            if (fields == null) {
+                return null;
+            }
+            if (fields.size() != header.size()) {
+                return new Row(recordLine, null, "Expected %d fields, found %d".formatted(header.size(), fields.size()));
+            }
+            BeerDto.BeerDtoBuilder beer = BeerDto.builder();
+            List<String> errors = new ArrayList<>();
+            for (int i = 0; i < fields.size(); i++) {
+                String value = fields.get(i);
+                if (value.isEmpty()) {
+                    continue;
+                }
+                try {
+                    COLUMNS.get(header.get(i)).accept(beer, value);
+                } catch (NumberFormatException ex) {
+                    errors.add("%s: not a number '%s'".formatted(header.get(i), value));
+                }
+            }
+            return errors.isEmpty()
+                    ? new Row(recordLine, beer.build(), null)
+                    : new Row(recordLine, null, String.join("; ", errors));
+        }
+
+        // The fields of the next non-blank record, or null at the end of the body
+        private List<String> readRecord() throws IOException {
+            int c = in.read();
+            while (c == '\r' || c == '\n') {
+                if (c == '\n') {
+                    line++;
+                }
+                c = in.read();
+            }
+            if (c == -1) {
+                return null;
+            }
+            recordLine = line;
+            List<String> fields = new ArrayList<>();
+            StringBuilder field = new StringBuilder();
+            boolean quoted = false;
+            while (true) {
+                if (quoted) {
+                    if (c == -1) {
+                        throw new MalformedRecordException("Unterminated quoted field");
+                    }
+                    if (c == '"') {
+                        int next = in.read();
+                        if (next != '"') {
+                            quoted = false;
+                            c = next;
+                            continue;
+                        }
+                    } else if (c == '\n') {
+                        line++;
+                    }
+                    field.append((char) c);
+                } else if (c == '"' && field.isEmpty()) {
+                    quoted = true;
+                } else if (c == ',') {
+                    fields.add(field.toString());
+                    field.setLength(0);
+                } else if (c == '\n' || c == -1) {
+                    if (c == '\n') {
+                        line++;
+                    }
+                    fields.add(field.toString());
+                    return fields;
+                } else if (c != '\r') {
+                    field.append((char) c);
+                }
+                c = in.read();
+            }
+        }
+    }
+
+    private static final class MalformedRecordException extends IOException {
+
+        private MalformedRecordException(String message) {
+            super(message);
+        }
+    }
+}
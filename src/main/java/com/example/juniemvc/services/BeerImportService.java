@@ -0,0 +1,25 @@
+package com.example.juniemvc.services;
+
+import com.example.juniemvc.models.BeerImportFormat;
+import com.example.juniemvc.models.BeerImportReport;
+
+import java.io.IOException;
+import java.io.Reader;
+
+public interface BeerImportService {
+
+    /**
+     * Imports beers from a CSV or NDJSON body, read as a stream. Rows are validated like POST
+     * /api/v1/beers and upserted by upc: a new upc inserts a beer, a known one overwrites name,
+     * style, quantity on hand and price of that beer. Valid rows are written in chunks of
+     * juniemvc.beer-import.chunk-size, each committed on its own, so rows before a failure stay
+     * imported. Within a body the last row of a upc wins.
+     *
+     * @param body   the request body
+     * @param format the format of the body
+     * @return counts per outcome and the rejected rows with their line numbers
+     * @throws InvalidRequestException when the body cannot be read at all (e.g. an unknown CSV column)
+     * @throws IOException              when reading the body fails
+     */
+    BeerImportReport importBeers(Reader body, BeerImportFormat format) throws IOException;
+}
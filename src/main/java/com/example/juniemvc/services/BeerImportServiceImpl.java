@@ -0,0 +1,221 @@
+package com.example.juniemvc.services;
+
+import com.example.juniemvc.config.BeerImportProperties;
+import com.example.juniemvc.models.BeerDto;
+import com.example.juniemvc.models.BeerImportError;
+import com.example.juniemvc.models.BeerImportFormat;
+import com.example.juniemvc.models.BeerImportReport;
+import com.example.juniemvc.repositories.BeerImportRepository;
+import com.example.juniemvc.repositories.BeerImportRepository.ExistingBeer;
+import com.example.juniemvc.repositories.InventorySlotRepository;
+import com.example.juniemvc.services.BeerImportRows.Row;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.validation.Validator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+@Service
+class BeerImportServiceImpl implements BeerImportService {
+
+    private static final Logger log = LoggerFactory.getLogger(BeerImportServiceImpl.class);
+
+    // a chunk is retried when a concurrent import inserted one of its new upcs first
+    private static final int CHUNK_ATTEMPTS = 3;
+
+    private final BeerImportRepository importRepository;
+    private final InventorySlotRepository slotRepository;
+    private final OutboxRecorder outboxRecorder;
+    private final Validator validator;
+    private final ObjectMapper objectMapper;
+    private final EntityManagerFactory entityManagerFactory;
+    private final TransactionTemplate transactionTemplate;
+    private final BeerImportProperties properties;
+
+    BeerImportServiceImpl(BeerImportRepository importRepository,
+                          InventorySlotRepository slotRepository,
+                          OutboxRecorder outboxRecorder,
+                          Validator validator,
+                          ObjectMapper objectMapper,
+                          EntityManagerFactory entityManagerFactory,
+                          PlatformTransactionManager transactionManager,
+                          BeerImportProperties properties) {
+        this.importRepository = importRepository;
+        this.slotRepository = slotRepository;
+        this.outboxRecorder = outboxRecorder;
+        this.validator = validator;
+        this.objectMapper = objectMapper;
+        this.entityManagerFactory = entityManagerFactory;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.properties = properties;
+    }
+
+    private record ChunkCounts(int inserted, int updated, int unchanged) {
+    }
+
+    @Override
+    public BeerImportReport importBeers(Reader body, BeerImportFormat format) throws IOException {
+        BeerImportRows rows = format == BeerImportFormat.CSV
+                ? BeerImportRows.csv(body)
+                : BeerImportRows.ndjson(body, objectMapper);
+        BeerImportReport report = BeerImportReport.builder().build();
+        // valid rows not yet written, by upc
+        Map<String, Row> chunk = new LinkedHashMap<>();
+        for (Row row = rows.next(); row != null; row = rows.next()) {
+            report.setRows(report.getRows() + 1);
+            List<String> problems = problems(row);
+            if (!problems.isEmpty()) {
+                fail(report, row, problems);
+                continue;
+            }
+            // a later row of the same upc goes into the next chunk, so it updates what the earlier one wrote
+            if (chunk.containsKey(row.beer().getUpc())) {
+                write(chunk, report);
+            }
+            chunk.put(row.beer().getUpc(), row);
+            if (chunk.size() >= properties.chunkSize()) {
+                write(chunk, report);
+            }
+        }
+        write(chunk, report);
+        if (log.isDebugEnabled()) {
+            log.debug("Beer import of {} rows: {} inserted, {} updated, {} unchanged, {} failed", report.getRows(),
+                    report.getInserted(), report.getUpdated(), report.getUnchanged(), report.getFailed());
+        }
+        return report;
+    }
+
+    private List<String> problems(Row row) {
+        if (row.error() != null) {
+            return List.of(row.error());
+        }
+        return validator.validate(row.beer()).stream()
+                .map(violation -> violation.getPropertyPath() + ": " + violation.getMessage())
+                .sorted()
+                .toList();
+    }
+
+    private void fail(BeerImportReport report, Row row, List<String> messages) {
+        report.setFailed(report.getFailed() + 1);
+        if (report.getErrors().size() < properties.maxReportedErrors()) {
+            report.getErrors().add(BeerImportError.builder()
+                    .line(row.line())
+                    .upc(row.beer() != null ? row.beer().getUpc() : null)
+                    .messages(messages)
+                    .build());
+        }
+    }
+
+    // One transaction per chunk: a chunk the database rejects is rolled back and its rows reported as
+    // failed, earlier chunks stay committed
+    private void write(Map<String, Row> chunk, BeerImportReport report) {
+        if (chunk.isEmpty()) {
+            return;
+        }
+        List<Row> rows = List.copyOf(chunk.values());
+        chunk.clear();
+        try {
+            ChunkCounts counts = writeChunkRetryingNewUpcs(rows);
+            report.setInserted(report.getInserted() + counts.inserted());
+            report.setUpdated(report.getUpdated() + counts.updated());
+            report.setUnchanged(report.getUnchanged() + counts.unchanged());
+        } catch (DataAccessException ex) {
+            String cause = ex.getMostSpecificCause().getMessage();
+            log.warn("Beer import chunk of {} rows from line {} rolled back: {}", rows.size(), rows.getFirst().line(), cause);
+            rows.forEach(row -> fail(report, row, List.of("Not imported, its chunk was rolled back: " + cause)));
+        }
+    }
+
+    // Serialised on the upc by uk_beer_upc: an import that inserts a upc another one inserted meanwhile
+    // fails on the key, and its next attempt finds and locks that beer and updates it
+    private ChunkCounts writeChunkRetryingNewUpcs(List<Row> rows) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return transactionTemplate.execute(status -> writeChunk(rows));
+            } catch (DuplicateKeyException ex) {
+                if (attempt == CHUNK_ATTEMPTS) {
+                    throw ex;
+                }
+                log.debug("Beer import chunk from line {} raced another import for a new upc, retrying", rows.getFirst().line());
+            }
+        }
+    }
+
+    private ChunkCounts writeChunk(List<Row> rows) {
+        Map<String, ExistingBeer> existing = importRepository.lockByUpc(rows.stream()
+                .map(row -> row.beer().getUpc())
+                .toList());
+        LocalDateTime now = LocalDateTime.now().truncatedTo(ChronoUnit.MICROS);
+        List<BeerDto> inserts = new ArrayList<>();
+        List<BeerDto> updates = new ArrayList<>();
+        int unchanged = 0;
+        for (Row row : rows) {
+            BeerDto beer = row.beer();
+            ExistingBeer current = existing.get(beer.getUpc());
+            if (current == null) {
+                inserts.add(beer.toBuilder().version(0).createdDate(now).updateDate(now).build());
+            } else if (sameValues(current, beer)) {
+                unchanged++;
+            } else {
+                updates.add(beer.toBuilder()
+                        .id(current.id())
+                        .version(current.version() != null ? current.version() + 1 : 1)
+                        .createdDate(current.createdDate())
+                        .updateDate(now)
+                        .build());
+            }
+        }
+
+        List<Integer> ids = importRepository.nextIds(inserts.size());
+        for (int i = 0; i < inserts.size(); i++) {
+            inserts.get(i).setId(ids.get(i));
+        }
+        importRepository.insert(inserts);
+
+        // a striped beer keeps 0 on hand, its new stock is spread over its slots
+        List<BeerDto> rowUpdates = new ArrayList<>(updates.size());
+        for (BeerDto beer : updates) {
+            if (existing.get(beer.getUpc()).stripedQuantity() != null) {
+                slotRepository.setTotal(beer.getId(), beer.getQuantityOnHand());
+                rowUpdates.add(beer.toBuilder().quantityOnHand(0).build());
+            } else {
+                rowUpdates.add(beer);
+            }
+        }
+        importRepository.update(rowUpdates);
+
+        outboxRecorder.recordAll(OutboxEventType.BEER_CREATED, byId(inserts));
+        outboxRecorder.recordAll(OutboxEventType.BEER_UPDATED, byId(updates));
+        BeerCacheEvictions.evictAfterCommit(entityManagerFactory, updates.stream().map(BeerDto::getId).toList());
+        return new ChunkCounts(inserts.size(), updates.size(), unchanged);
+    }
+
+    private static boolean sameValues(ExistingBeer current, BeerDto beer) {
+        Integer quantity = current.stripedQuantity() != null ? current.stripedQuantity() : current.quantityOnHand();
+        return Objects.equals(current.beerName(), beer.getBeerName())
+                && Objects.equals(current.beerStyle(), beer.getBeerStyle())
+                && Objects.equals(quantity, beer.getQuantityOnHand())
+                && current.price() != null && current.price().compareTo(beer.getPrice()) == 0;
+    }
+
+    private static Map<Integer, BeerDto> byId(List<BeerDto> beers) {
+        Map<Integer, BeerDto> byId = new LinkedHashMap<>();
+        beers.forEach(beer -> byId.put(beer.getId(), beer));
+        return byId;
+    }
+}
@@ -1,20 +1,48 @@
 package com.example.juniemvc.services;
 
 import com.example.juniemvc.models.BeerOrderDto;
+import com.example.juniemvc.models.BeerOrderQuery;
+import com.example.juniemvc.models.CursorPage;
 import com.example.juniemvc.models.BeerOrderLineDto;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.function.Consumer;
 
 public interface BeerOrderService {
     BeerOrderDto create(BeerOrderDto dto);
     BeerOrderDto getById(Integer id);
-    Page<BeerOrderDto> list(Pageable pageable);
+    // Orders with the given ids, built like getById; unknown ids are left out
+    List<BeerOrderDto> getByIds(Collection<Integer> ids);
+    // Open orders (neither PICKED_UP nor CANCELLED) of a customer, newest first
+    List<BeerOrderDto> findOpenByCustomerRef(String customerRef, int limit);
+    // Current version without loading the order (conditional requests)
+    Optional<Integer> getVersion(Integer id);
+    // Orders matching the query (all for an empty one); see BeerOrderSearchRepository for the page order
+    Page<BeerOrderDto> list(BeerOrderQuery query, Pageable pageable);
+    // As list, without the count query: tells only whether a next page exists
+    Slice<BeerOrderDto> slice(BeerOrderQuery query, Pageable pageable);
+    // Orders matching the query after the cursor (null or blank for the first), in (createdDate, id) order, no count
+    CursorPage<BeerOrderDto> scroll(BeerOrderQuery query, String cursor, int size);
+    // Number of orders matching the query from a per-node cache, counted in the background when missing
+    // or stale; empty while the first count of the query runs
+    OptionalLong estimateCount(BeerOrderQuery query);
+    // update and patch reject (OptimisticLockException) a dto version that is not the current one
     BeerOrderDto update(Integer id, BeerOrderDto dto);
     BeerOrderDto patch(Integer id, BeerOrderDto dto);
     void delete(Integer id);
 
-    // Line management
-    BeerOrderDto addLine(Integer orderId, BeerOrderLineDto lineDto);
-    BeerOrderDto updateLine(Integer orderId, Integer lineId, BeerOrderLineDto lineDto);
+    // Streams every order with its lines to the sink; returns the number of exported orders
+    long exportOrders(Consumer<BeerOrderDto> sink);
+
+    // Line management: each works on the one line and returns it, whatever the size of the order;
+    // the order version is bumped. Deleting a line that is not in the order is a no-op.
+    BeerOrderLineDto addLine(Integer orderId, BeerOrderLineDto lineDto);
+    BeerOrderLineDto updateLine(Integer orderId, Integer lineId, BeerOrderLineDto lineDto);
     void deleteLine(Integer orderId, Integer lineId);
 }
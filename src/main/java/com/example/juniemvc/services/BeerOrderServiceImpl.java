@@ -9,39 +9,82 @@ import com.example.juniemvc.mappers.BeerOrderLineMapper;
 import com.example.juniemvc.mappers.BeerOrderMapper;
 import com.example.juniemvc.models.BeerOrderDto;
 import com.example.juniemvc.models.BeerOrderLineDto;
+import com.example.juniemvc.models.BeerOrderQuery;
+import com.example.juniemvc.models.CursorPage;
+import com.example.juniemvc.repositories.BeerOrderLineRepository;
 import com.example.juniemvc.repositories.BeerOrderRepository;
+import com.example.juniemvc.repositories.BeerOrderRow;
 import com.example.juniemvc.repositories.BeerRepository;
+import jakarta.persistence.EntityManager;
 import jakarta.persistence.EntityNotFoundException;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.OptimisticLockException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 class BeerOrderServiceImpl implements BeerOrderService {
 
     private static final int MAX_PAGE_SIZE = 200;
+    private static final int EXPORT_PAGE_SIZE = 500;
     private static final Logger log = LoggerFactory.getLogger(BeerOrderServiceImpl.class);
 
     private final BeerOrderRepository orderRepository;
+    private final BeerOrderLineRepository lineRepository;
     private final BeerRepository beerRepository;
     private final BeerOrderMapper orderMapper;
     private final BeerOrderLineMapper lineMapper;
+    private final EntityManager entityManager;
+    private final OutboxRecorder outboxRecorder;
+    private final OrderCountEstimates countEstimates;
 
     BeerOrderServiceImpl(BeerOrderRepository orderRepository,
+                         BeerOrderLineRepository lineRepository,
                          BeerRepository beerRepository,
                          BeerOrderMapper orderMapper,
-                         BeerOrderLineMapper lineMapper) {
+                         BeerOrderLineMapper lineMapper,
+                         EntityManager entityManager,
+                         OutboxRecorder outboxRecorder,
+                         OrderCountEstimates countEstimates) {
         this.orderRepository = orderRepository;
+        this.lineRepository = lineRepository;
         this.beerRepository = beerRepository;
         this.orderMapper = orderMapper;
         this.lineMapper = lineMapper;
+        this.entityManager = entityManager;
+        this.outboxRecorder = outboxRecorder;
+        this.countEstimates = countEstimates;
     }
 
     @Override
@@ -54,66 +97,242 @@ class BeerOrderServiceImpl implements BeerOrderService {
         if (entity.getBeerOrderLines() == null) {
             entity.setBeerOrderLines(new ArrayList<>());
         }
-        // Resolve beer references and back-references
+        // Resolve beer references (one query for all lines) and back-references
+        resolveBeers(entity.getBeerOrderLines(), null);
         for (BeerOrderLine line : entity.getBeerOrderLines()) {
-            resolveBeer(line, null);
             if (line.getStatus() == null) {
                 line.setStatus(LineStatus.NEW);
             }
             line.setBeerOrder(entity);
         }
-        BeerOrder saved = orderRepository.save(entity);
-        return orderMapper.toDto(saved);
+        // flush so generated timestamps are part of the response; lines go out as one JDBC batch
+        BeerOrder saved = orderRepository.saveAndFlush(entity);
+        return recorded(OutboxEventType.ORDER_CREATED, orderMapper.toDto(saved));
     }
 
     @Override
     @Transactional(readOnly = true)
     public BeerOrderDto getById(Integer id) {
-        BeerOrder order = orderRepository.findById(id)
-                .orElseThrow(() -> new EntityNotFoundException("BeerOrder %d not found".formatted(id)));
-        return orderMapper.toDto(order);
+        List<BeerOrderDto> found = toDtos(orderRepository.findRowsByOrderIdIn(List.of(id)));
+        if (found.isEmpty()) {
+            throw new EntityNotFoundException("BeerOrder %d not found".formatted(id));
+        }
+        return found.get(0);
     }
 
     @Override
     @Transactional(readOnly = true)
-    public Page<BeerOrderDto> list(Pageable pageable) {
-        int size = Math.min(pageable.getPageSize(), MAX_PAGE_SIZE);
-        Pageable capped = PageRequest.of(pageable.getPageNumber(), size, pageable.getSort());
+    public List<BeerOrderDto> getByIds(Collection<Integer> ids) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        return toDtos(orderRepository.findRowsByOrderIdIn(ids));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<BeerOrderDto> findOpenByCustomerRef(String customerRef, int limit) {
+        List<Integer> ids = orderRepository.findIdsByCustomerRef(customerRef,
+                List.of(OrderStatus.PICKED_UP, OrderStatus.CANCELLED), Limit.of(limit));
+        return getByIds(ids).reversed();
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Optional<Integer> getVersion(Integer id) {
+        return orderRepository.findVersionById(id);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Page<BeerOrderDto> list(BeerOrderQuery query, Pageable pageable) {
+        checkRanges(query);
+        Pageable capped = capped(pageable);
+        // two-phase fetch: page the ids, then read those orders with their lines in one join
+        Page<Integer> ids = query.isFiltered()
+                ? orderRepository.searchPageOfIds(query, capped)
+                : orderRepository.findPageOfIds(capped);
+        return new PageImpl<>(inIdOrder(ids.getContent()), ids.getPageable(), ids.getTotalElements());
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Slice<BeerOrderDto> slice(BeerOrderQuery query, Pageable pageable) {
+        checkRanges(query);
+        Slice<Integer> ids = orderRepository.searchSliceOfIds(query, capped(pageable));
+        return new SliceImpl<>(inIdOrder(ids.getContent()), ids.getPageable(), ids.hasNext());
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public CursorPage<BeerOrderDto> scroll(BeerOrderQuery query, String cursor, int size) {
+        checkRanges(query);
+        if (size < 1) {
+            throw new InvalidRequestException("Page size must be at least 1");
+        }
+        int capped = capped(PageRequest.of(0, size)).getPageSize();
+        SeekPosition after = cursor != null && !cursor.isBlank() ? decodeCursor(cursor) : new SeekPosition(null, null);
+        // one more id than the page tells whether there is a next page, without a count
+        List<Integer> ids = new ArrayList<>(orderRepository.seekIds(query, after.createdDate(), after.id(), capped + 1));
+        boolean hasNext = ids.size() > capped;
+        if (hasNext) {
+            ids.removeLast();
+        }
+        List<BeerOrderDto> content = inIdOrder(ids);
+        return CursorPage.<BeerOrderDto>builder()
+                .content(content)
+                .size(capped)
+                .nextCursor(hasNext && !content.isEmpty() ? encodeCursor(content.getLast()) : null)
+                .build();
+    }
+
+    @Override
+    public OptionalLong estimateCount(BeerOrderQuery query) {
+        checkRanges(query);
+        return countEstimates.estimate(query);
+    }
+
+    private static Pageable capped(Pageable pageable) {
         if (log.isDebugEnabled() && pageable.getPageSize() > MAX_PAGE_SIZE) {
             log.debug("Requested page size {} capped to {}", pageable.getPageSize(), MAX_PAGE_SIZE);
         }
-        return orderRepository.findAll(capped).map(orderMapper::toDto);
+        int size = Math.min(pageable.getPageSize(), MAX_PAGE_SIZE);
+        return PageRequest.of(pageable.getPageNumber(), size, pageable.getSort());
+    }
+
+    // The orders with the given ids, with their lines, in the order of the ids
+    private List<BeerOrderDto> inIdOrder(List<Integer> ids) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        Map<Integer, BeerOrderDto> ordersById = toDtos(orderRepository.findRowsByOrderIdIn(ids)).stream()
+                .collect(Collectors.toMap(BeerOrderDto::getId, Function.identity()));
+        return ids.stream()
+                .map(ordersById::get)
+                .filter(Objects::nonNull)
+                .toList();
+    }
+
+    private static void checkRanges(BeerOrderQuery query) {
+        checkRange("created", query.getCreatedFrom(), query.getCreatedTo());
+        checkRange("updated", query.getUpdatedFrom(), query.getUpdatedTo());
+    }
+
+    private static void checkRange(String name, LocalDateTime from, LocalDateTime to) {
+        if (from != null && to != null && !from.isBefore(to)) {
+            throw new InvalidRequestException("%sFrom must be before %sTo".formatted(name, name));
+        }
+    }
+
+    // Cursor layout (Base64url): "createdDate|<last createdDate>|<last id>"
+    static String encodeCursor(BeerOrderDto last) {
+        String raw = "createdDate|%s|%d".formatted(last.getCreatedDate(), last.getId());
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static SeekPosition decodeCursor(String cursor) {
+        try {
+            String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split("\\|", 3);
+            if (parts.length != 3 || !"createdDate".equals(parts[0])) {
+                throw new InvalidRequestException("Malformed cursor");
+            }
+            return new SeekPosition(LocalDateTime.parse(parts[1]), Integer.valueOf(parts[2]));
+        } catch (IllegalArgumentException | DateTimeParseException ex) {
+            throw new InvalidRequestException("Malformed cursor");
+        }
+    }
+
+    // Last order of the previous cursor page; both null for the first page
+    record SeekPosition(LocalDateTime createdDate, Integer id) {
     }
 
     @Override
     @Transactional
     public BeerOrderDto update(Integer id, BeerOrderDto dto) {
-        BeerOrder existing = orderRepository.findById(id)
+        BeerOrder existing = orderRepository.findForUpdateById(id)
                 .orElseThrow(() -> new EntityNotFoundException("BeerOrder %d not found".formatted(id)));
+        checkVersion(existing, dto.getVersion());
+
+        boolean fieldsChanged = !Objects.equals(existing.getCustomerRef(), dto.getCustomerRef())
+                || !sameAmount(existing.getPaymentAmount(), dto.getPaymentAmount())
+                || (dto.getStatus() != null && dto.getStatus() != existing.getStatus());
+        boolean linesChanged = reconcileLines(existing, dto.getLines() != null ? dto.getLines() : List.of());
+        if (!fieldsChanged && !linesChanged) {
+            return orderMapper.toDto(existing);
+        }
+        if (fieldsChanged) {
+            // a dirty order row gets its version bumped by the update itself
+            existing.setCustomerRef(dto.getCustomerRef());
+            existing.setPaymentAmount(dto.getPaymentAmount());
+            existing.setStatus(dto.getStatus() != null ? dto.getStatus() : existing.getStatus());
+        } else {
+            forceVersionIncrement(existing);
+        }
 
-        // update simple fields
-        existing.setCustomerRef(dto.getCustomerRef());
-        existing.setPaymentAmount(dto.getPaymentAmount());
-        existing.setStatus(dto.getStatus() != null ? dto.getStatus() : existing.getStatus());
+        BeerOrder saved = orderRepository.saveAndFlush(existing);
+        return recorded(OutboxEventType.ORDER_UPDATED, orderMapper.toDto(saved));
+    }
 
-        // rebuild lines according to DTO
-        List<BeerOrderLine> newLines = new ArrayList<>();
-        if (dto.getLines() != null) {
-            for (BeerOrderLineDto lineDto : dto.getLines()) {
+    /**
+     * Matches the wanted lines to the order's lines by id: lines without id are inserted, lines with
+     * the id of an order line update it in place (status and quantityAllocated only when given), and
+     * order lines not listed are deleted. Unchanged lines are left alone and cost no statement.
+     *
+     * @return whether any line was inserted, changed or deleted
+     * @throws EntityNotFoundException if a line id is not one of the order's lines
+     */
+    private boolean reconcileLines(BeerOrder order, List<BeerOrderLineDto> wanted) {
+        Map<Integer, BeerOrderLine> current = order.getBeerOrderLines().stream()
+                .collect(Collectors.toMap(BeerOrderLine::getId, Function.identity()));
+        Set<Integer> kept = new HashSet<>();
+        List<BeerOrderLine> added = new ArrayList<>();
+        List<BeerOrderLine> rebeered = new ArrayList<>();
+        boolean changed = false;
+        for (BeerOrderLineDto lineDto : wanted) {
+            if (lineDto.getId() == null) {
                 BeerOrderLine line = lineMapper.toEntity(lineDto);
-                resolveBeer(line, id);
+                line.setVersion(null);
                 if (line.getStatus() == null) {
                     line.setStatus(LineStatus.NEW);
                 }
-                line.setBeerOrder(existing);
-                newLines.add(line);
+                added.add(line);
+                continue;
+            }
+            BeerOrderLine line = current.get(lineDto.getId());
+            if (line == null) {
+                throw new EntityNotFoundException("BeerOrderLine %d not found in order %d".formatted(lineDto.getId(), order.getId()));
             }
+            if (!kept.add(line.getId())) {
+                throw new InvalidRequestException("BeerOrderLine %d is listed twice".formatted(line.getId()));
+            }
+            if (lineDto.getBeerId() != null && !lineDto.getBeerId().equals(line.getBeer().getId())) {
+                // id-only reference, replaced by resolveBeers below
+                line.setBeer(Beer.builder().id(lineDto.getBeerId()).build());
+                rebeered.add(line);
+            }
+            changed |= setIfChanged(line.getOrderQuantity(), lineDto.getOrderQuantity(), line::setOrderQuantity)
+                    | setIfChanged(line.getQuantityAllocated(), lineDto.getQuantityAllocated(), line::setQuantityAllocated)
+                    | setIfChanged(line.getStatus(), lineDto.getStatus(), line::setStatus);
+        }
+        List<BeerOrderLine> toResolve = new ArrayList<>(added);
+        toResolve.addAll(rebeered);
+        resolveBeers(toResolve, order.getId());
+        boolean removed = order.getBeerOrderLines().removeIf(line -> !kept.contains(line.getId()));
+        added.forEach(order::addLine);
+        return changed || removed || !added.isEmpty() || !rebeered.isEmpty();
+    }
+
+    // null means "keep the current value"
+    private static <T> boolean setIfChanged(T current, T wanted, Consumer<T> setter) {
+        if (wanted == null || wanted.equals(current)) {
+            return false;
         }
-        existing.getBeerOrderLines().clear();
-        existing.getBeerOrderLines().addAll(newLines);
+        setter.accept(wanted);
+        return true;
+    }
 
-        BeerOrder saved = orderRepository.save(existing);
-        return orderMapper.toDto(saved);
+    private static boolean sameAmount(BigDecimal a, BigDecimal b) {
+        return a == null ? b == null : b != null && a.compareTo(b) == 0;
     }
 
     @Override
@@ -121,6 +340,7 @@ class BeerOrderServiceImpl implements BeerOrderService {
     public BeerOrderDto patch(Integer id, BeerOrderDto dto) {
         BeerOrder existing = orderRepository.findById(id)
                 .orElseThrow(() -> new EntityNotFoundException("BeerOrder %d not found".formatted(id)));
+        checkVersion(existing, dto.getVersion());
 
         // only patch provided simple fields
         if (dto.getCustomerRef() != null) {
@@ -134,8 +354,8 @@ class BeerOrderServiceImpl implements BeerOrderService {
         }
         // Note: lines patching is out of scope; use dedicated line endpoints
 
-        BeerOrder saved = orderRepository.save(existing);
-        return orderMapper.toDto(saved);
+        BeerOrder saved = orderRepository.saveAndFlush(existing);
+        return recorded(OutboxEventType.ORDER_UPDATED, orderMapper.toDto(saved));
     }
 
     @Override
@@ -144,64 +364,169 @@ class BeerOrderServiceImpl implements BeerOrderService {
         BeerOrder existing = orderRepository.findById(id)
                 .orElseThrow(() -> new EntityNotFoundException("BeerOrder %d not found".formatted(id)));
         orderRepository.delete(existing);
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("id", id);
+        payload.put("customerRef", existing.getCustomerRef());
+        outboxRecorder.record(OutboxEventType.ORDER_DELETED, id, payload);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public long exportOrders(Consumer<BeerOrderDto> sink) {
+        // keyset pages of order ids, each read with its lines as flat rows: a page ends between two
+        // orders, and no entity is managed, so memory use stays at one page whatever the table size
+        long count = 0;
+        Integer after = 0;
+        List<Integer> ids;
+        do {
+            ids = orderRepository.findIdsAfter(after, Limit.of(EXPORT_PAGE_SIZE));
+            for (BeerOrderDto order : inIdOrder(ids)) {
+                sink.accept(order);
+                count++;
+            }
+            after = ids.isEmpty() ? after : ids.get(ids.size() - 1);
+        } while (ids.size() == EXPORT_PAGE_SIZE);
+        log.debug("Exported {} orders", count);
+        return count;
     }
 
+    // The line endpoints never load the order: its version is bumped (and its row locked) by one
+    // update, and the line is read, written or deleted by id and order id
     @Override
     @Transactional
-    public BeerOrderDto addLine(Integer orderId, BeerOrderLineDto lineDto) {
-        BeerOrder order = orderRepository.findById(orderId)
-                .orElseThrow(() -> new EntityNotFoundException("BeerOrder %d not found".formatted(orderId)));
+    public BeerOrderLineDto addLine(Integer orderId, BeerOrderLineDto lineDto) {
+        if (orderRepository.incrementVersion(orderId) == 0) {
+            throw new EntityNotFoundException("BeerOrder %d not found".formatted(orderId));
+        }
         BeerOrderLine line = lineMapper.toEntity(lineDto);
-        resolveBeer(line, orderId);
+        // always a new line, whatever id the client sent
+        line.setId(null);
+        line.setVersion(null);
+        resolveBeers(List.of(line), orderId);
         if (line.getStatus() == null) line.setStatus(LineStatus.NEW);
-        line.setBeerOrder(order);
-        order.getBeerOrderLines().add(line);
-        BeerOrder saved = orderRepository.save(order);
-        return orderMapper.toDto(saved);
+        line.setBeerOrder(entityManager.getReference(BeerOrder.class, orderId));
+        BeerOrderLine saved = lineRepository.saveAndFlush(line);
+        return recordedLine(OutboxEventType.ORDER_LINE_ADDED, orderId, lineMapper.toDto(saved));
     }
 
     @Override
     @Transactional
-    public BeerOrderDto updateLine(Integer orderId, Integer lineId, BeerOrderLineDto lineDto) {
-        BeerOrder order = orderRepository.findById(orderId)
-                .orElseThrow(() -> new EntityNotFoundException("BeerOrder %d not found".formatted(orderId)));
-        // find line
-        BeerOrderLine line = order.getBeerOrderLines().stream()
-                .filter(l -> lineId.equals(l.getId()))
-                .findFirst()
-                .orElseThrow(() -> new EntityNotFoundException("BeerOrderLine %d not found".formatted(lineId)));
-        // update fields
-        if (lineDto.getBeerId() != null && (line.getBeer() == null || !line.getBeer().getId().equals(lineDto.getBeerId()))) {
-            Beer beer = beerRepository.findById(lineDto.getBeerId())
-                    .orElseThrow(() -> new EntityNotFoundException("Beer %d not found".formatted(lineDto.getBeerId())));
-            line.setBeer(beer);
+    public BeerOrderLineDto updateLine(Integer orderId, Integer lineId, BeerOrderLineDto lineDto) {
+        if (orderRepository.incrementVersionWithLine(orderId, lineId) == 0) {
+            throw lineNotFound(orderId, lineId);
+        }
+        BeerOrderLine line = lineRepository.findByIdAndOrderId(lineId, orderId)
+                .orElseThrow(() -> lineNotFound(orderId, lineId));
+        // update fields; a new beer is only referenced, its foreign key tells whether it exists
+        Integer newBeerId = lineDto.getBeerId();
+        boolean beerChanged = newBeerId != null && (line.getBeer() == null || !line.getBeer().getId().equals(newBeerId));
+        if (beerChanged) {
+            line.setBeer(entityManager.getReference(Beer.class, newBeerId));
         }
         if (lineDto.getOrderQuantity() != null) line.setOrderQuantity(lineDto.getOrderQuantity());
         if (lineDto.getQuantityAllocated() != null) line.setQuantityAllocated(lineDto.getQuantityAllocated());
         if (lineDto.getStatus() != null) line.setStatus(lineDto.getStatus());
-        BeerOrder saved = orderRepository.save(order);
-        return orderMapper.toDto(saved);
+        BeerOrderLine saved;
+        try {
+            saved = lineRepository.saveAndFlush(line);
+        } catch (DataIntegrityViolationException e) {
+            if (beerChanged && isForeignKeyViolation(e)) {
+                throw new BeersNotFoundException(List.of(newBeerId));
+            }
+            throw e;
+        }
+        return recordedLine(OutboxEventType.ORDER_LINE_UPDATED, orderId, lineMapper.toDto(saved));
     }
 
     @Override
     @Transactional
     public void deleteLine(Integer orderId, Integer lineId) {
-        BeerOrder order = orderRepository.findById(orderId)
-                .orElseThrow(() -> new EntityNotFoundException("BeerOrder %d not found".formatted(orderId)));
-        order.getBeerOrderLines().removeIf(l -> lineId.equals(l.getId()));
-        orderRepository.save(order);
+        if (orderRepository.incrementVersionWithLine(orderId, lineId) == 0) {
+            throw lineNotFound(orderId, lineId);
+        }
+        lineRepository.deleteByIdAndOrderId(lineId, orderId);
+        outboxRecorder.record(OutboxEventType.ORDER_LINE_REMOVED, orderId, Map.of("id", lineId));
+    }
+
+    // Tells a missing order from a line that is not one of its lines
+    private EntityNotFoundException lineNotFound(Integer orderId, Integer lineId) {
+        return orderRepository.existsById(orderId)
+                ? new EntityNotFoundException("BeerOrderLine %d not found in order %d".formatted(lineId, orderId))
+                : new EntityNotFoundException("BeerOrder %d not found".formatted(orderId));
+    }
+
+    // A missing referenced row: 23503 on most databases, 23506 on H2
+    private static boolean isForeignKeyViolation(DataIntegrityViolationException e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SQLException sql) {
+                return "23503".equals(sql.getSQLState()) || "23506".equals(sql.getSQLState());
+            }
+        }
+        return false;
+    }
+
+    private BeerOrderLineDto recordedLine(OutboxEventType type, Integer orderId, BeerOrderLineDto line) {
+        outboxRecorder.record(type, orderId, line);
+        return line;
     }
 
-    private void resolveBeer(BeerOrderLine line, Integer contextOrderId) {
-        if (line.getBeer() == null) {
-            throw new EntityNotFoundException("Beer reference is required for line in order %d".formatted(contextOrderId));
+    private BeerOrderDto recorded(OutboxEventType type, BeerOrderDto order) {
+        outboxRecorder.record(type, order.getId(), order);
+        return order;
+    }
+
+    private static void checkVersion(BeerOrder existing, Integer expectedVersion) {
+        if (expectedVersion != null && !expectedVersion.equals(existing.getVersion())) {
+            throw new OptimisticLockException("BeerOrder %d has been modified concurrently".formatted(existing.getId()));
+        }
+    }
+
+    // Line changes never dirty the order row (lines are the owning side), so bump the
+    // order version explicitly: it is the version of the whole aggregate and feeds the ETag
+    private void forceVersionIncrement(BeerOrder order) {
+        entityManager.lock(order, LockModeType.PESSIMISTIC_FORCE_INCREMENT);
+    }
+
+    // Groups flat order/line rows (ordered by order id) into order DTOs
+    private List<BeerOrderDto> toDtos(List<BeerOrderRow> rows) {
+        Map<Integer, BeerOrderDto> orders = new LinkedHashMap<>();
+        for (BeerOrderRow row : rows) {
+            BeerOrderDto order = orders.computeIfAbsent(row.id(), orderId -> orderMapper.toDto(row));
+            if (row.lineId() != null) {
+                order.getLines().add(lineMapper.toDto(row));
+            }
+        }
+        return new ArrayList<>(orders.values());
+    }
+
+    /**
+     * Replaces the id-only beer references of the given lines with managed Beer entities, loading
+     * all distinct beers at once (second-level cache first, then a single IN query). Every unknown id is
+     * reported in one exception.
+     */
+    private void resolveBeers(List<BeerOrderLine> lines, Integer contextOrderId) {
+        Set<Integer> beerIds = new LinkedHashSet<>();
+        for (BeerOrderLine line : lines) {
+            if (line.getBeer() == null) {
+                throw new EntityNotFoundException("Beer reference is required for line in order %d".formatted(contextOrderId));
+            }
+            Integer beerId = line.getBeer().getId();
+            if (beerId == null) {
+                throw new EntityNotFoundException("Beer id is required for line in order %d".formatted(contextOrderId));
+            }
+            beerIds.add(beerId);
+        }
+        if (beerIds.isEmpty()) {
+            return;
         }
-        Integer beerId = line.getBeer().getId();
-        if (beerId == null) {
-            throw new EntityNotFoundException("Beer id is required for line in order %d".formatted(contextOrderId));
+        Map<Integer, Beer> beers = beerRepository.multiLoadById(beerIds).stream()
+                .collect(Collectors.toMap(Beer::getId, Function.identity()));
+        List<Integer> missing = beerIds.stream()
+                .filter(beerId -> !beers.containsKey(beerId))
+                .toList();
+        if (!missing.isEmpty()) {
+            throw new BeersNotFoundException(missing);
         }
-        Beer beer = beerRepository.findById(beerId)
-                .orElseThrow(() -> new EntityNotFoundException("Beer %d not found".formatted(beerId)));
-        line.setBeer(beer);
+        lines.forEach(line -> line.setBeer(beers.get(line.getBeer().getId())));
     }
 }
@@ -1,12 +1,15 @@
 package com.example.juniemvc.services;
 
 import com.example.juniemvc.models.BeerDto;
+import com.example.juniemvc.models.BeerQuery;
+import com.example.juniemvc.models.CursorPage;
 
-import java.util.List;
 import java.util.Optional;
 
 public interface BeerService {
 
+    int MAX_INVENTORY_STRIPES = 64;
+
     /**
      * Persists a new Beer.
      *
@@ -24,21 +27,45 @@ public interface BeerService {
     Optional<BeerDto> getBeerById(Integer id);
 
     /**
-     * Returns all beers.
+     * Returns the current version of a Beer without loading it.
+     *
+     * @param id the beer id
+     * @return Optional containing the version if the beer exists, otherwise empty
+     */
+    Optional<Integer> getBeerVersion(Integer id);
+
+    /**
+     * Returns one keyset-paginated page of the beer catalog.
      *
-     * @return list of BeerDto, possibly empty
+     * @param query filters, sort key, cursor and page size
+     * @return the page of BeerDto and the cursor of the next page (null on the last page)
+     * @throws InvalidRequestException when the cursor or page size is invalid
      */
-    List<BeerDto> getAllBeers();
+    CursorPage<BeerDto> listBeers(BeerQuery query);
 
     /**
      * Updates the Beer identified by id using values from the provided BeerDto.
+     * When beerDto carries a version, it must match the current version.
      *
      * @param id   the id of the Beer to update
      * @param beerDto the new values to apply
      * @return Optional containing the updated BeerDto if the id exists, otherwise empty
+     * @throws jakarta.persistence.OptimisticLockException when the given version is not the current one
      */
     Optional<BeerDto> updateBeer(Integer id, BeerDto beerDto);
 
+    /**
+     * Spreads the stock of a Beer over the given number of inventory slots, so that allocations of a
+     * hot beer lock different rows; 1 moves the stock back to a single counter. quantityOnHand keeps
+     * reporting the total either way.
+     *
+     * @param id      the id of the Beer
+     * @param stripes the number of slots, 1 to {@value #MAX_INVENTORY_STRIPES}
+     * @return Optional containing the BeerDto after striping if the id exists, otherwise empty
+     * @throws InvalidRequestException when stripes is out of range
+     */
+    Optional<BeerDto> stripeInventory(Integer id, int stripes);
+
     /**
      * Deletes a beer by id.
      *
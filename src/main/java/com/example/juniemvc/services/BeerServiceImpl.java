@@ -3,29 +3,62 @@ package com.example.juniemvc.services;
 import com.example.juniemvc.entities.Beer;
 import com.example.juniemvc.mappers.BeerMapper;
 import com.example.juniemvc.models.BeerDto;
+import com.example.juniemvc.models.BeerQuery;
+import com.example.juniemvc.models.BeerSort;
+import com.example.juniemvc.models.CursorPage;
 import com.example.juniemvc.repositories.BeerRepository;
+import com.example.juniemvc.repositories.InventorySlotRepository;
+import jakarta.persistence.CacheRetrieveMode;
+import jakarta.persistence.CacheStoreMode;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.OptimisticLockException;
+import jakarta.persistence.criteria.Predicate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
-import java.util.stream.Collectors;
 
 @Service
 class BeerServiceImpl implements BeerService {
 
+    static final int MAX_PAGE_SIZE = 200;
+    private static final Logger log = LoggerFactory.getLogger(BeerServiceImpl.class);
+
     private final BeerRepository beerRepository;
     private final BeerMapper beerMapper;
+    private final InventorySlotRepository slotRepository;
+    private final EntityManager entityManager;
+    private final OutboxRecorder outboxRecorder;
 
-    BeerServiceImpl(BeerRepository beerRepository, BeerMapper beerMapper) {
+    BeerServiceImpl(BeerRepository beerRepository, BeerMapper beerMapper,
+                    InventorySlotRepository slotRepository, EntityManager entityManager,
+                    OutboxRecorder outboxRecorder) {
         this.beerRepository = beerRepository;
         this.beerMapper = beerMapper;
+        this.slotRepository = slotRepository;
+        this.entityManager = entityManager;
+        this.outboxRecorder = outboxRecorder;
     }
 
     @Override
+    @Transactional
     public BeerDto saveBeer(BeerDto beerDto) {
         Beer toSave = beerMapper.toEntity(beerDto);
         Beer saved = beerRepository.save(toSave);
-        return beerMapper.toDto(saved);
+        return recorded(OutboxEventType.BEER_CREATED, beerMapper.toDto(saved));
     }
 
     @Override
@@ -34,27 +67,154 @@ class BeerServiceImpl implements BeerService {
     }
 
     @Override
-    public List<BeerDto> getAllBeers() {
-        return beerRepository.findAll().stream()
+    public Optional<Integer> getBeerVersion(Integer id) {
+        return beerRepository.findVersionById(id);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public CursorPage<BeerDto> listBeers(BeerQuery query) {
+        if (query.getSize() < 1) {
+            throw new InvalidRequestException("Page size must be at least 1");
+        }
+        int size = Math.min(query.getSize(), MAX_PAGE_SIZE);
+        if (log.isDebugEnabled() && query.getSize() > MAX_PAGE_SIZE) {
+            log.debug("Requested page size {} capped to {}", query.getSize(), MAX_PAGE_SIZE);
+        }
+        BeerSort sortKey = query.getSort() != null ? query.getSort() : BeerSort.ID;
+        // id is always the last sort key so the seek predicate is unique
+        Sort sort = sortKey == BeerSort.ID ? Sort.by("id") : Sort.by(sortKey.getProperty(), "id");
+        ScrollPosition position = decodeCursor(query.getCursor(), sortKey);
+
+        Window<Beer> window = beerRepository.findBy(catalogFilter(query),
+                q -> q.sortBy(sort).limit(size).scroll(position));
+
+        List<BeerDto> content = window.getContent().stream()
                 .map(beerMapper::toDto)
-                .collect(Collectors.toList());
+                .toList();
+        String nextCursor = window.hasNext() && !window.isEmpty()
+                ? encodeCursor(window.getContent().getLast(), sortKey)
+                : null;
+        return CursorPage.<BeerDto>builder()
+                .content(content)
+                .size(size)
+                .nextCursor(nextCursor)
+                .build();
     }
 
     @Override
+    @Transactional
     public Optional<BeerDto> updateBeer(Integer id, BeerDto beerDto) {
         return beerRepository.findById(id).map(existing -> {
+            if (beerDto.getVersion() != null && !beerDto.getVersion().equals(existing.getVersion())) {
+                throw new OptimisticLockException("Beer %d has been modified concurrently".formatted(id));
+            }
             beerMapper.updateEntityFromDto(beerDto, existing);
+            // A striped beer keeps its stock in the slots: the new total is spread over them. The beer
+            // row itself may not change, so its version is bumped explicitly for the new ETag
+            if (existing.getStripedQuantity() != null && beerDto.getQuantityOnHand() != null) {
+                slotRepository.setTotal(id, beerDto.getQuantityOnHand());
+                existing.setQuantityOnHand(0);
+                existing.setStripedQuantity(beerDto.getQuantityOnHand());
+                entityManager.lock(existing, LockModeType.PESSIMISTIC_FORCE_INCREMENT);
+                BeerCacheEvictions.evictAfterCommit(entityManager.getEntityManagerFactory(), List.of(id));
+            }
             Beer updated = beerRepository.save(existing);
-            return beerMapper.toDto(updated);
+            // flush first so the event carries the new version
+            entityManager.flush();
+            return recorded(OutboxEventType.BEER_UPDATED, beerMapper.toDto(updated));
         });
     }
 
     @Override
+    @Transactional
+    public Optional<BeerDto> stripeInventory(Integer id, int stripes) {
+        if (stripes < 1 || stripes > MAX_INVENTORY_STRIPES) {
+            throw new InvalidRequestException("Stripes must be between 1 and %d".formatted(MAX_INVENTORY_STRIPES));
+        }
+        if (!slotRepository.stripe(id, stripes)) {
+            return Optional.empty();
+        }
+        // changed with plain SQL: read the beer back past the second-level cache, which must not see the
+        // uncommitted state either, and drop the cached state once committed
+        BeerCacheEvictions.evictAfterCommit(entityManager.getEntityManagerFactory(), List.of(id));
+        Beer striped = entityManager.find(Beer.class, id, Map.of(
+                "jakarta.persistence.cache.retrieveMode", CacheRetrieveMode.BYPASS,
+                "jakarta.persistence.cache.storeMode", CacheStoreMode.BYPASS));
+        return Optional.ofNullable(striped)
+                .map(beer -> recorded(OutboxEventType.BEER_UPDATED, beerMapper.toDto(beer)));
+    }
+
+    @Override
+    @Transactional
     public boolean deleteBeerById(Integer id) {
         if (beerRepository.existsById(id)) {
             beerRepository.deleteById(id);
+            outboxRecorder.record(OutboxEventType.BEER_DELETED, id, Map.of("id", id));
             return true;
         }
         return false;
     }
+
+    private BeerDto recorded(OutboxEventType type, BeerDto beer) {
+        outboxRecorder.record(type, beer.getId(), beer);
+        return beer;
+    }
+
+    private static Specification<Beer> catalogFilter(BeerQuery query) {
+        return (root, cq, cb) -> {
+            List<Predicate> predicates = new ArrayList<>();
+            if (hasText(query.getBeerName())) {
+                predicates.add(cb.like(root.get("beerName"), prefixPattern(query.getBeerName()), '\\'));
+            }
+            if (hasText(query.getBeerStyle())) {
+                predicates.add(cb.like(root.get("beerStyle"), prefixPattern(query.getBeerStyle()), '\\'));
+            }
+            return cb.and(predicates.toArray(Predicate[]::new));
+        };
+    }
+
+    // Escapes LIKE wildcards so the filter stays a plain, index-friendly prefix match
+    private static String prefixPattern(String prefix) {
+        return prefix.replace("\\", "\\\\")
+                .replace("%", "\\%")
+                .replace("_", "\\_") + "%";
+    }
+
+    private static boolean hasText(String value) {
+        return value != null && !value.isBlank();
+    }
+
+    // Cursor layout (Base64url): "<sort property>|<last id>[|<last sort value>]"
+    static String encodeCursor(Beer last, BeerSort sortKey) {
+        String raw = sortKey == BeerSort.ID
+                ? "%s|%d".formatted(sortKey.getProperty(), last.getId())
+                : "%s|%d|%s".formatted(sortKey.getProperty(), last.getId(), last.getBeerName());
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static ScrollPosition decodeCursor(String cursor, BeerSort sortKey) {
+        if (!hasText(cursor)) {
+            return ScrollPosition.keyset();
+        }
+        String[] parts;
+        try {
+            parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split("\\|", 3);
+        } catch (IllegalArgumentException ex) {
+            throw new InvalidRequestException("Malformed cursor");
+        }
+        if (!sortKey.getProperty().equals(parts[0]) || parts.length != (sortKey == BeerSort.ID ? 2 : 3)) {
+            throw new InvalidRequestException("Cursor does not match sort key '%s'".formatted(sortKey.getProperty()));
+        }
+        Map<String, Object> keys = new HashMap<>();
+        try {
+            keys.put("id", Integer.valueOf(parts[1]));
+        } catch (NumberFormatException ex) {
+            throw new InvalidRequestException("Malformed cursor");
+        }
+        if (sortKey != BeerSort.ID) {
+            keys.put(sortKey.getProperty(), parts[2]);
+        }
+        return ScrollPosition.forward(keys);
+    }
 }
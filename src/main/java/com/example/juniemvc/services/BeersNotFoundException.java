@@ -0,0 +1,23 @@
+package com.example.juniemvc.services;
+
+import jakarta.persistence.EntityNotFoundException;
+
+import java.util.List;
+
+/**
+ * Raised when one or more beers referenced by order lines do not exist.
+ * Carries every missing id so the client can fix the whole request at once.
+ */
+public class BeersNotFoundException extends EntityNotFoundException {
+
+    private final List<Integer> missingBeerIds;
+
+    public BeersNotFoundException(List<Integer> missingBeerIds) {
+        super("Beer(s) %s not found".formatted(missingBeerIds));
+        this.missingBeerIds = List.copyOf(missingBeerIds);
+    }
+
+    public List<Integer> getMissingBeerIds() {
+        return missingBeerIds;
+    }
+}
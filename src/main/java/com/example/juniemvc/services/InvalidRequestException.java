@@ -0,0 +1,17 @@
+package com.example.juniemvc.services;
+
+/**
+ * Raised when a request cannot be served as given, e.g. a malformed cursor, an unknown sort key or
+ * a bulk entry that names neither id nor upc. It is the only exception mapped to 400 with its
+ * message as detail, so an IllegalArgumentException from inside the application stays a 500.
+ */
+public class InvalidRequestException extends RuntimeException {
+
+    public InvalidRequestException(String message) {
+        super(message);
+    }
+
+    public InvalidRequestException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
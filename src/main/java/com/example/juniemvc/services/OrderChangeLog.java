@@ -0,0 +1,62 @@
+package com.example.juniemvc.services;
+
+import com.example.juniemvc.outbox.OutboxListener;
+import com.example.juniemvc.repositories.OrderChange;
+import com.example.juniemvc.repositories.OrderChangeRepository;
+import com.example.juniemvc.repositories.OutboxEvent;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes the orders touched by each relayed batch to the order change log, from which the
+ * {@link OrderStatusFeed} of every node reads: one row per order and batch, in the order of the
+ * batch's events. Changes older than the retention are pruned by the same transaction.
+ */
+public class OrderChangeLog implements OutboxListener {
+
+    private static final String ORDER_AGGREGATE = "BeerOrder";
+
+    private final OrderChangeRepository orderChangeRepository;
+    private final ObjectMapper objectMapper;
+    private final Duration retention;
+
+    public OrderChangeLog(OrderChangeRepository orderChangeRepository, ObjectMapper objectMapper, Duration retention) {
+        this.orderChangeRepository = orderChangeRepository;
+        this.objectMapper = objectMapper;
+        this.retention = retention;
+    }
+
+    @Override
+    public void published(List<OutboxEvent> events) {
+        Map<Integer, OrderChange> changes = new LinkedHashMap<>();
+        for (OutboxEvent event : events) {
+            if (!ORDER_AGGREGATE.equals(event.aggregateType())) {
+                continue;
+            }
+            if (OutboxEventType.ORDER_DELETED.name().equals(event.eventType())) {
+                changes.put(event.aggregateId(), new OrderChange(null, event.aggregateId(), customerRef(event), true));
+            } else {
+                changes.putIfAbsent(event.aggregateId(), new OrderChange(null, event.aggregateId(), null, false));
+            }
+        }
+        if (!changes.isEmpty()) {
+            orderChangeRepository.append(List.copyOf(changes.values()));
+        }
+        orderChangeRepository.deleteOlderThan(retention);
+    }
+
+    private String customerRef(OutboxEvent event) {
+        try {
+            JsonNode customerRef = objectMapper.readTree(event.payload()).get("customerRef");
+            return customerRef == null || customerRef.isNull() ? null : customerRef.asText();
+        } catch (JsonProcessingException ex) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.example.juniemvc.services;
+
+import com.example.juniemvc.models.BeerOrderQuery;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.ToLongFunction;
+
+/**
+ * Estimated order totals for the count-free order list, one per filter. Requests never wait for a
+ * count: the first request of a filter starts one in the background and gets no estimate, later ones
+ * get the cached total, and once it is older than the refresh interval one of them starts a recount
+ * while the old total is still served. The least recently used filters are dropped beyond the maximum
+ * number of entries.
+ *
+ * At most the given number of counts run at a time: a filter whose count would exceed it is counted by
+ * a later request, so a burst of distinct filters neither piles up count queries nor threads. Counts
+ * still running on {@link #close()} are interrupted.
+ */
+public class OrderCountEstimates implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(OrderCountEstimates.class);
+
+    private final ToLongFunction<BeerOrderQuery> counter;
+    private final long refreshNanos;
+    // access-ordered, so reads count as use; guarded by lock
+    private final Map<BeerOrderQuery, Estimate> estimates;
+    private final ReentrantLock lock = new ReentrantLock();
+    // filters being counted, at most one permit each
+    private final Set<BeerOrderQuery> refreshing = ConcurrentHashMap.newKeySet();
+    private final Semaphore permits;
+    private final ExecutorService refresher = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("order-count-refresh-", 0).factory());
+
+    private record Estimate(long count, long countedAt) {
+    }
+
+    public OrderCountEstimates(ToLongFunction<BeerOrderQuery> counter, Duration refreshInterval, int maxEntries,
+                               int maxConcurrentCounts) {
+        this.counter = counter;
+        this.refreshNanos = refreshInterval.toNanos();
+        this.permits = new Semaphore(maxConcurrentCounts);
+        this.estimates = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<BeerOrderQuery, Estimate> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * @return the number of orders matching the filter, as of at most about one refresh interval ago;
+     *         empty until the first count of the filter has finished
+     */
+    public OptionalLong estimate(BeerOrderQuery filter) {
+        // a copy as key: the query is mutable
+        BeerOrderQuery key = filter.toBuilder().build();
+        Estimate cached;
+        lock.lock();
+        try {
+            cached = estimates.get(key);
+        } finally {
+            lock.unlock();
+        }
+        if ((cached == null || System.nanoTime() - cached.countedAt() > refreshNanos) && permits.tryAcquire()) {
+            if (refreshing.add(key)) {
+                refresh(key);
+            } else {
+                permits.release();
+            }
+        }
+        return cached == null ? OptionalLong.empty() : OptionalLong.of(cached.count());
+    }
+
+    // Called with the key's permit held, which the count gives back
+    private void refresh(BeerOrderQuery key) {
+        try {
+            refresher.execute(() -> {
+                try {
+                    count(key);
+                } catch (RuntimeException ex) {
+                    log.warn("Count of orders for {} failed, serving the previous estimate if any: {}", key, ex.getMessage());
+                } finally {
+                    refreshing.remove(key);
+                    permits.release();
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            // closed
+            refreshing.remove(key);
+            permits.release();
+        }
+    }
+
+    private void count(BeerOrderQuery key) {
+        long count = counter.applyAsLong(key);
+        lock.lock();
+        try {
+            estimates.put(key, new Estimate(count, System.nanoTime()));
+        } finally {
+            lock.unlock();
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("Counted {} orders for {}", count, key);
+        }
+    }
+
+    @Override
+    public void close() {
+        refresher.shutdownNow();
+        try {
+            if (!refresher.awaitTermination(10, TimeUnit.SECONDS)) {
+                log.warn("Order counts did not stop within 10s");
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
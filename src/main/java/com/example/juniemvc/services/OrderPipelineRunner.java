@@ -0,0 +1,88 @@
+package com.example.juniemvc.services;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.SmartLifecycle;
+
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntSupplier;
+
+/**
+ * Runs the stages of {@link OrderPipelineService} in polling loops on virtual threads, a number of
+ * workers per stage. A worker goes straight on after a full batch and pauses for the poll interval
+ * otherwise. Started last and stopped first by the application context (see OrderPipelineConfig).
+ */
+public class OrderPipelineRunner implements SmartLifecycle {
+
+    private static final Logger log = LoggerFactory.getLogger(OrderPipelineRunner.class);
+
+    private final OrderPipelineService orderPipelineService;
+    private final int workers;
+    private final int batchSize;
+    private final Duration pollInterval;
+
+    private volatile ExecutorService executor;
+
+    public OrderPipelineRunner(OrderPipelineService orderPipelineService, int workers, int batchSize, Duration pollInterval) {
+        this.orderPipelineService = orderPipelineService;
+        this.workers = workers;
+        this.batchSize = batchSize;
+        this.pollInterval = pollInterval;
+    }
+
+    @Override
+    public void start() {
+        ExecutorService started = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("order-pipeline-", 0).factory());
+        for (int i = 0; i < workers; i++) {
+            started.execute(() -> poll("validation", orderPipelineService::validateBatch));
+            started.execute(() -> poll("allocation", orderPipelineService::allocateBatch));
+        }
+        executor = started;
+        log.info("Order pipeline started: {} worker(s) per stage, batch size {}", workers, batchSize);
+    }
+
+    private void poll(String stage, IntSupplier batch) {
+        while (!Thread.currentThread().isInterrupted()) {
+            int claimed;
+            try {
+                claimed = batch.getAsInt();
+            } catch (RuntimeException ex) {
+                log.warn("Order pipeline {} batch failed: {}", stage, ex.getMessage());
+                claimed = 0;
+            }
+            if (claimed < batchSize) {
+                try {
+                    Thread.sleep(pollInterval);
+                } catch (InterruptedException ex) {
+                    return;
+                }
+            }
+        }
+    }
+
+    @Override
+    public void stop() {
+        ExecutorService running = executor;
+        executor = null;
+        if (running == null) {
+            return;
+        }
+        // workers finish the batch in hand; claims left in flight are picked up again after the lease
+        running.shutdownNow();
+        try {
+            if (!running.awaitTermination(30, TimeUnit.SECONDS)) {
+                log.warn("Order pipeline workers did not stop within 30s");
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return executor != null;
+    }
+}
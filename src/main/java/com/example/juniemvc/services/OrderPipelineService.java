@@ -0,0 +1,11 @@
+package com.example.juniemvc.services;
+
+public interface OrderPipelineService {
+    // Claims up to batch-size NEW orders and checks them in one transaction: valid orders become
+    // VALIDATED, orders without lines or with a non-positive quantity CANCELLED. Returns the number claimed.
+    int validateBatch();
+
+    // Claims up to batch-size VALIDATED orders (plus ALLOCATION_PENDING ones whose lease expired, i.e.
+    // backordered or abandoned) and allocates them in parallel on virtual threads. Returns the number claimed.
+    int allocateBatch();
+}
@@ -0,0 +1,115 @@
+package com.example.juniemvc.services;
+
+import com.example.juniemvc.config.OrderPipelineProperties;
+import com.example.juniemvc.entities.enums.OrderStatus;
+import com.example.juniemvc.models.AllocationResult;
+import com.example.juniemvc.repositories.OrderPipelineRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * The stages of the background order pipeline; OrderPipelineRunner calls them in a loop. Each call
+ * handles one batch and can run on any number of threads and nodes at once.
+ *
+ * Validation is set-based and claims, checks and advances its batch in one transaction. Allocation
+ * commits its claim first (ALLOCATION_PENDING doubles as the lease) and then allocates the orders
+ * one transaction each, in parallel. An order whose allocation fails stays ALLOCATION_PENDING and is
+ * claimed again once the lease has expired; one that ends backordered is put off by the back-off,
+ * which doubles while further attempts reserve nothing (see OrderPipelineRepository#deferAllocation).
+ */
+@Service
+class OrderPipelineServiceImpl implements OrderPipelineService {
+
+    private static final ThreadFactory ALLOCATION_THREADS = Thread.ofVirtual().name("order-allocation-", 0).factory();
+    private static final Logger log = LoggerFactory.getLogger(OrderPipelineServiceImpl.class);
+
+    private final OrderPipelineRepository pipelineRepository;
+    private final AllocationService allocationService;
+    private final OutboxRecorder outboxRecorder;
+    private final OrderPipelineProperties properties;
+    // shared by all allocation workers of this node, so parallel batches stay within the connection pool
+    private final Semaphore allocationPermits;
+
+    OrderPipelineServiceImpl(OrderPipelineRepository pipelineRepository,
+                             AllocationService allocationService,
+                             OutboxRecorder outboxRecorder,
+                             OrderPipelineProperties properties) {
+        this.pipelineRepository = pipelineRepository;
+        this.allocationService = allocationService;
+        this.outboxRecorder = outboxRecorder;
+        this.properties = properties;
+        this.allocationPermits = new Semaphore(properties.allocationParallelism());
+    }
+
+    @Override
+    @Transactional
+    public int validateBatch() {
+        List<Integer> claimed = pipelineRepository.claim(OrderStatus.NEW, OrderStatus.VALIDATION_PENDING,
+                properties.lease(), properties.batchSize());
+        if (claimed.isEmpty()) {
+            return 0;
+        }
+        List<Integer> invalid = pipelineRepository.findInvalid(claimed);
+        List<Integer> valid = new ArrayList<>(claimed);
+        valid.removeAll(invalid);
+        if (!valid.isEmpty()) {
+            pipelineRepository.advance(valid, OrderStatus.VALIDATION_PENDING, OrderStatus.VALIDATED);
+            outboxRecorder.recordAll(OutboxEventType.ORDER_VALIDATED, statusPayloads(valid, OrderStatus.VALIDATED));
+        }
+        if (!invalid.isEmpty()) {
+            pipelineRepository.advance(invalid, OrderStatus.VALIDATION_PENDING, OrderStatus.CANCELLED);
+            outboxRecorder.recordAll(OutboxEventType.ORDER_CANCELLED, statusPayloads(invalid, OrderStatus.CANCELLED));
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("Validated {} order(s), cancelled {}: {}", valid.size(), invalid.size(), invalid);
+        }
+        return claimed.size();
+    }
+
+    @Override
+    public int allocateBatch() {
+        List<Integer> claimed = pipelineRepository.claim(OrderStatus.VALIDATED, OrderStatus.ALLOCATION_PENDING,
+                properties.lease(), properties.batchSize());
+        try (ExecutorService executor = Executors.newThreadPerTaskExecutor(ALLOCATION_THREADS)) {
+            claimed.forEach(orderId -> executor.execute(() -> allocate(orderId)));
+        }
+        return claimed.size();
+    }
+
+    private static Map<Integer, Map<String, Object>> statusPayloads(List<Integer> orderIds, OrderStatus status) {
+        Map<Integer, Map<String, Object>> payloads = new LinkedHashMap<>();
+        orderIds.forEach(orderId -> payloads.put(orderId, Map.of("id", orderId, "status", status)));
+        return payloads;
+    }
+
+    private void allocate(Integer orderId) {
+        try {
+            allocationPermits.acquire();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        try {
+            AllocationResult result = allocationService.allocateClaimed(orderId);
+            if (result.getStatus() == OrderStatus.ALLOCATION_PENDING) {
+                pipelineRepository.deferAllocation(orderId, result.getAllocatedLines() > 0,
+                        properties.backorderRetry(), properties.backorderRetryMax());
+            }
+        } catch (RuntimeException ex) {
+            log.warn("Allocation of order {} failed, retried after the lease: {}", orderId, ex.getMessage());
+        } finally {
+            allocationPermits.release();
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.example.juniemvc.services;
+
+import com.example.juniemvc.entities.enums.OrderStatus;
+
+/**
+ * Raised when an operation is not allowed in the order's current status, e.g. allocating a
+ * cancelled order.
+ */
+public class OrderStatusConflictException extends RuntimeException {
+
+    public OrderStatusConflictException(Integer orderId, OrderStatus status, String operation) {
+        super("Order %d cannot be %s in status %s".formatted(orderId, operation, status));
+    }
+}
@@ -0,0 +1,399 @@
+package com.example.juniemvc.services;
+
+import com.example.juniemvc.models.BeerOrderDto;
+import com.example.juniemvc.repositories.OrderChange;
+import com.example.juniemvc.repositories.OrderChangeRepository;
+import com.example.juniemvc.repositories.ReadRouting;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.SmartLifecycle;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Order changes for the order status stream. The feed tails the order change log, which the outbox
+ * relay (on whichever node holds its lease) appends to with every batch, so every node sees all changes.
+ * Per poll it reads the current state of the orders touched (one query) and appends it to a ring
+ * buffer, from where it fans out to the subscriptions. Clients therefore share one upstream per node
+ * instead of polling an order each.
+ *
+ * Entries are numbered per node and start of the feed; a subscription that resumes from an event id
+ * still in the buffer replays the entries after it, any other one starts with a snapshot of its orders.
+ * While no subscription is open, changes are not read at all, and resuming across them takes a snapshot.
+ * A subscription that falls more than its queue behind is closed and resumes on reconnect.
+ */
+public class OrderStatusFeed implements SmartLifecycle {
+
+    /**
+     * Most orders a subscription may name, and most open orders in the snapshot of a customerRef.
+     */
+    public static final int MAX_ORDERS = 100;
+
+    // changes read per query of the log
+    private static final int READ_LIMIT = 1000;
+    private static final Logger log = LoggerFactory.getLogger(OrderStatusFeed.class);
+
+    private final BeerOrderService beerOrderService;
+    private final OrderChangeRepository orderChangeRepository;
+    private final Duration pollInterval;
+    private final Change[] ring;
+    private final int subscriberQueue;
+    private final Duration heartbeatInterval;
+    private final Duration timeout;
+    private final Semaphore subscriberPermits;
+    private final int maxSubscribers;
+    private final Set<Subscription> subscriptions = ConcurrentHashMap.newKeySet();
+    // distinguishes event ids of this feed from those of another node or an earlier start
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+    // guards ring and head, and the order in which changes reach the subscription queues
+    private final ReentrantLock lock = new ReentrantLock();
+    private long head;
+    // batches after this sequence went unread for lack of subscribers; no resume from before it
+    private long skippedAfter = -1;
+    // id of the last change log row read, -1 until the first poll; used by the poll thread only
+    private long lastChangeId = -1;
+
+    private volatile ExecutorService executor;
+
+    public OrderStatusFeed(BeerOrderService beerOrderService, OrderChangeRepository orderChangeRepository,
+                           MeterRegistry meterRegistry, Duration pollInterval, int bufferSize, int maxSubscribers,
+                           int subscriberQueue, Duration heartbeatInterval, Duration timeout) {
+        this.beerOrderService = beerOrderService;
+        this.orderChangeRepository = orderChangeRepository;
+        this.pollInterval = pollInterval;
+        this.ring = new Change[bufferSize];
+        this.maxSubscribers = maxSubscribers;
+        this.subscriberPermits = new Semaphore(maxSubscribers);
+        this.subscriberQueue = subscriberQueue;
+        this.heartbeatInterval = heartbeatInterval;
+        this.timeout = timeout;
+        Gauge.builder("juniemvc.order-stream.subscribers", subscriptions, Set::size)
+                .description("Open order status streams on this node")
+                .register(meterRegistry);
+    }
+
+    /**
+     * The orders a subscription follows: the given ids, or the orders of a customer.
+     */
+    public record Filter(Set<Integer> orderIds, String customerRef) {
+
+        public Filter {
+            boolean byIds = orderIds != null && !orderIds.isEmpty();
+            boolean byCustomer = customerRef != null && !customerRef.isBlank();
+            if (byIds == byCustomer) {
+                throw new InvalidRequestException("Give either order ids or a customerRef");
+            }
+            if (byIds && orderIds.size() > MAX_ORDERS) {
+                throw new InvalidRequestException("At most %d order ids per stream".formatted(MAX_ORDERS));
+            }
+            orderIds = byIds ? Set.copyOf(orderIds) : Set.of();
+        }
+
+        boolean matches(BeerOrderDto order) {
+            return orderIds.isEmpty() ? Objects.equals(customerRef, order.getCustomerRef()) : orderIds.contains(order.getId());
+        }
+    }
+
+    /**
+     * The state of an order after a change, or its deletion ({@code order} then holds id and customerRef only).
+     */
+    public record Change(long sequence, String eventId, BeerOrderDto order, boolean deleted) {
+    }
+
+    /**
+     * Opens a subscription; the caller must close it.
+     *
+     * @param lastEventId the Last-Event-ID of a reconnecting client, or null
+     * @throws OrderStreamLimitException if this node already serves the maximum number of streams
+     */
+    public Subscription subscribe(Filter filter, String lastEventId) {
+        if (!subscriberPermits.tryAcquire()) {
+            throw new OrderStreamLimitException(maxSubscribers);
+        }
+        Subscription subscription = new Subscription(filter);
+        long resumeFrom = -1;
+        lock.lock();
+        try {
+            subscriptions.add(subscription);
+            long last = resumableSequence(lastEventId);
+            if (last >= 0) {
+                for (long sequence = last + 1; sequence <= head; sequence++) {
+                    Change change = ring[(int) (sequence % ring.length)];
+                    if (filter.matches(change.order())) {
+                        subscription.initial.add(change);
+                    }
+                }
+                resumeFrom = last;
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (resumeFrom < 0) {
+            // registered first, so nothing committed after the snapshot read is missed
+            String eventId = eventId(currentHead());
+            try {
+                snapshot(filter).forEach(order -> subscription.initial.add(new Change(0, eventId, order, false)));
+            } catch (RuntimeException ex) {
+                subscription.close();
+                throw ex;
+            }
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("Order status stream opened for {}: {} initial change(s), resumed: {}",
+                    filter, subscription.initial.size(), resumeFrom >= 0);
+        }
+        return subscription;
+    }
+
+    public Duration heartbeatInterval() {
+        return heartbeatInterval;
+    }
+
+    public Duration timeout() {
+        return timeout;
+    }
+
+    /**
+     * Reads the changes logged since the last call and hands them to the subscriptions.
+     *
+     * @return the number of change log rows read
+     */
+    private int readChanges() {
+        if (lastChangeId < 0 || subscriptions.isEmpty()) {
+            // read before the check below: a subscription opened after it takes its snapshot later
+            long latest = ReadRouting.onPrimary(orderChangeRepository::lastId);
+            if (lastChangeId < 0 || skipWithoutSubscribers(latest)) {
+                lastChangeId = latest;
+                return 0;
+            }
+        }
+        // on the primary: a replica may not have the change yet
+        List<OrderChange> changes = ReadRouting.onPrimary(() -> orderChangeRepository.findAfter(lastChangeId, READ_LIMIT));
+        if (changes.isEmpty()) {
+            return 0;
+        }
+        Map<Integer, String> deletedCustomerRefs = new HashMap<>();
+        Set<Integer> orderIds = new LinkedHashSet<>();
+        for (OrderChange change : changes) {
+            orderIds.add(change.orderId());
+            if (change.deleted()) {
+                deletedCustomerRefs.put(change.orderId(), change.customerRef());
+            }
+        }
+        Map<Integer, BeerOrderDto> current = ReadRouting.onPrimary(() -> beerOrderService.getByIds(orderIds)).stream()
+                .collect(Collectors.toMap(BeerOrderDto::getId, Function.identity()));
+        lock.lock();
+        try {
+            for (Integer orderId : orderIds) {
+                BeerOrderDto order = current.get(orderId);
+                if (order != null) {
+                    append(order, false);
+                } else if (deletedCustomerRefs.containsKey(orderId)) {
+                    append(BeerOrderDto.builder().id(orderId).customerRef(deletedCustomerRefs.get(orderId)).build(), true);
+                }
+                // otherwise deleted by a later change, which is still to come
+            }
+        } finally {
+            lock.unlock();
+        }
+        lastChangeId = changes.getLast().id();
+        return changes.size();
+    }
+
+    // A node without streams does not read the changes at all
+    private boolean skipWithoutSubscribers(long latest) {
+        lock.lock();
+        try {
+            if (subscriptions.isEmpty()) {
+                if (latest > lastChangeId) {
+                    skippedAfter = head;
+                }
+                return true;
+            }
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void append(BeerOrderDto order, boolean deleted) {
+        long sequence = ++head;
+        Change change = new Change(sequence, eventId(sequence), order, deleted);
+        ring[(int) (sequence % ring.length)] = change;
+        for (Subscription subscription : subscriptions) {
+            if (subscription.filter.matches(order) && !subscription.queue.offer(change)) {
+                subscription.overflowed = true;
+            }
+        }
+    }
+
+    // On the primary, so the snapshot is not older than the feed entries that follow it
+    private List<BeerOrderDto> snapshot(Filter filter) {
+        return ReadRouting.onPrimary(() -> filter.orderIds().isEmpty()
+                ? beerOrderService.findOpenByCustomerRef(filter.customerRef(), MAX_ORDERS)
+                : beerOrderService.getByIds(filter.orderIds()));
+    }
+
+    // The sequence to replay after, or -1 if the id is not from this feed or entries after it are gone
+    private long resumableSequence(String lastEventId) {
+        if (lastEventId == null || !lastEventId.startsWith(epoch + "-")) {
+            return -1;
+        }
+        long sequence;
+        try {
+            sequence = Long.parseLong(lastEventId.substring(epoch.length() + 1));
+        } catch (NumberFormatException ex) {
+            return -1;
+        }
+        long oldest = Math.max(1, head - ring.length + 1);
+        return sequence >= oldest - 1 && sequence <= head && sequence > skippedAfter ? sequence : -1;
+    }
+
+    private long currentHead() {
+        lock.lock();
+        try {
+            return head;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private String eventId(long sequence) {
+        return epoch + "-" + sequence;
+    }
+
+    @Override
+    public void start() {
+        ExecutorService started = Executors.newSingleThreadExecutor(Thread.ofVirtual().name("order-status-feed").factory());
+        started.execute(this::poll);
+        executor = started;
+    }
+
+    private void poll() {
+        while (!Thread.currentThread().isInterrupted()) {
+            int read;
+            try {
+                read = readChanges();
+            } catch (RuntimeException ex) {
+                log.warn("Reading order changes failed, retried after {}: {}", pollInterval, ex.getMessage());
+                read = 0;
+            }
+            if (read < READ_LIMIT) {
+                try {
+                    Thread.sleep(pollInterval);
+                } catch (InterruptedException ex) {
+                    return;
+                }
+            }
+        }
+    }
+
+    @Override
+    public void stop() {
+        ExecutorService running = executor;
+        executor = null;
+        if (running == null) {
+            return;
+        }
+        running.shutdownNow();
+        try {
+            if (!running.awaitTermination(30, TimeUnit.SECONDS)) {
+                log.warn("Order status feed did not stop within 30s");
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return executor != null;
+    }
+
+    /**
+     * An open stream: its initial changes (replay or snapshot), then live ones. Changes that would
+     * take an order back to an older version than already handed out are skipped.
+     */
+    public final class Subscription implements AutoCloseable {
+
+        private final Filter filter;
+        private final BlockingQueue<Change> queue = new ArrayBlockingQueue<>(subscriberQueue);
+        private final List<Change> initial = new ArrayList<>();
+        // order id -> last version handed out; used by the one thread that drains the subscription
+        private final Map<Integer, Integer> versions = new LinkedHashMap<>();
+        private volatile boolean overflowed;
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        private Subscription(Filter filter) {
+            this.filter = filter;
+        }
+
+        public List<Change> initial() {
+            return initial.stream().filter(this::fresh).toList();
+        }
+
+        /**
+         * Waits up to {@code wait} for the next live change.
+         *
+         * @return the change, or null if none arrived in time
+         */
+        public Change next(Duration wait) throws InterruptedException {
+            long deadline = System.nanoTime() + wait.toNanos();
+            Change change;
+            do {
+                change = queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+            } while (change != null && !fresh(change));
+            return change;
+        }
+
+        /**
+         * Whether the subscription fell so far behind that changes were dropped; it must then be closed.
+         */
+        public boolean overflowed() {
+            return overflowed;
+        }
+
+        private boolean fresh(Change change) {
+            if (change.deleted()) {
+                versions.remove(change.order().getId());
+                return true;
+            }
+            Integer version = change.order().getVersion();
+            Integer previous = versions.get(change.order().getId());
+            if (previous != null && version != null && version <= previous) {
+                return false;
+            }
+            versions.put(change.order().getId(), version);
+            return true;
+        }
+
+        @Override
+        public void close() {
+            if (closed.compareAndSet(false, true)) {
+                subscriptions.remove(this);
+                subscriberPermits.release();
+            }
+        }
+    }
+}
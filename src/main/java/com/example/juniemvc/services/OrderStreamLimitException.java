@@ -0,0 +1,11 @@
+package com.example.juniemvc.services;
+
+/**
+ * Thrown when a node already serves its maximum number of order status streams.
+ */
+public class OrderStreamLimitException extends RuntimeException {
+
+    public OrderStreamLimitException(int maxSubscribers) {
+        super("This node already serves %d order status streams".formatted(maxSubscribers));
+    }
+}
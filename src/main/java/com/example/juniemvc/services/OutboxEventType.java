@@ -0,0 +1,37 @@
+package com.example.juniemvc.services;
+
+/**
+ * Change events written to the outbox, with the type of aggregate they belong to.
+ */
+enum OutboxEventType {
+
+    ORDER_CREATED(Aggregates.ORDER),
+    ORDER_UPDATED(Aggregates.ORDER),
+    ORDER_DELETED(Aggregates.ORDER),
+    ORDER_LINE_ADDED(Aggregates.ORDER),
+    ORDER_LINE_UPDATED(Aggregates.ORDER),
+    ORDER_LINE_REMOVED(Aggregates.ORDER),
+    ORDER_VALIDATED(Aggregates.ORDER),
+    ORDER_CANCELLED(Aggregates.ORDER),
+    ORDER_ALLOCATED(Aggregates.ORDER),
+    ORDER_BACKORDERED(Aggregates.ORDER),
+    BEER_CREATED(Aggregates.BEER),
+    BEER_UPDATED(Aggregates.BEER),
+    BEER_DELETED(Aggregates.BEER),
+    INVENTORY_RESERVED(Aggregates.BEER);
+
+    private final String aggregateType;
+
+    OutboxEventType(String aggregateType) {
+        this.aggregateType = aggregateType;
+    }
+
+    String aggregateType() {
+        return aggregateType;
+    }
+
+    private static final class Aggregates {
+        static final String ORDER = "BeerOrder";
+        static final String BEER = "Beer";
+    }
+}
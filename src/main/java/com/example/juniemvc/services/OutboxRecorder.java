@@ -0,0 +1,52 @@
+package com.example.juniemvc.services;
+
+import com.example.juniemvc.repositories.OutboxRepository;
+import com.example.juniemvc.repositories.OutboxRepository.NewEvent;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes change events to the outbox in the transaction of the change, so an event exists if and only
+ * if its change committed; OutboxRelay delivers them later. Services record an event after they have
+ * read or locked the aggregate: a competing change then either fails or commits first, which keeps
+ * the ids, and with them the delivery order, of one aggregate's events in commit order.
+ */
+@Component
+class OutboxRecorder {
+
+    private final OutboxRepository outboxRepository;
+    private final ObjectMapper objectMapper;
+
+    OutboxRecorder(OutboxRepository outboxRepository, ObjectMapper objectMapper) {
+        this.outboxRepository = outboxRepository;
+        this.objectMapper = objectMapper;
+    }
+
+    void record(OutboxEventType type, Integer aggregateId, Object payload) {
+        outboxRepository.append(List.of(event(type, aggregateId, payload)));
+    }
+
+    /**
+     * Records one event of the given type per aggregate, in one batch and in map iteration order.
+     */
+    void recordAll(OutboxEventType type, Map<Integer, ?> payloadsByAggregateId) {
+        if (payloadsByAggregateId.isEmpty()) {
+            return;
+        }
+        outboxRepository.append(payloadsByAggregateId.entrySet().stream()
+                .map(entry -> event(type, entry.getKey(), entry.getValue()))
+                .toList());
+    }
+
+    private NewEvent event(OutboxEventType type, Integer aggregateId, Object payload) {
+        try {
+            return new NewEvent(type.aggregateType(), aggregateId, type.name(), objectMapper.writeValueAsString(payload));
+        } catch (JsonProcessingException ex) {
+            throw new IllegalStateException("Cannot serialise %s payload of %s %d".formatted(type, type.aggregateType(), aggregateId), ex);
+        }
+    }
+}
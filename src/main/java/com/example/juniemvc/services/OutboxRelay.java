@@ -0,0 +1,190 @@
+package com.example.juniemvc.services;
+
+import com.example.juniemvc.outbox.OutboxListener;
+import com.example.juniemvc.outbox.OutboxSink;
+import com.example.juniemvc.repositories.OutboxEvent;
+import com.example.juniemvc.repositories.OutboxRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Drains the outbox to an {@link OutboxSink}. Each batch is claimed, published and deleted in one
+ * transaction: events are deleted only after the sink accepted them, and a failed batch is rolled
+ * back and published again after the poll interval (at-least-once). With relays on several nodes only
+ * the one holding the lease publishes: each batch transaction renews it first, and a relay whose lease
+ * was taken over (after it expired, e.g. in a long pause) publishes nothing. The lease is released on
+ * stop. The {@link OutboxListener}s take part in the batch transaction, after the sink.
+ *
+ * Meters: juniemvc.outbox.lag (recording to publication, per event), juniemvc.outbox.published
+ * (events), juniemvc.outbox.failures (batches), and the gauges juniemvc.outbox.pending and
+ * juniemvc.outbox.oldest.age. The gauges are sampled after each batch rather than queried per scrape;
+ * between samples the oldest event keeps ageing, so a stuck relay shows a growing age. They read NaN
+ * until this node has relayed a batch, and on nodes that never held the lease. Times are taken on the
+ * database clock, which writes created_date.
+ */
+public class OutboxRelay implements SmartLifecycle {
+
+    private static final Logger log = LoggerFactory.getLogger(OutboxRelay.class);
+
+    private final OutboxRepository outboxRepository;
+    private final OutboxSink sink;
+    private final List<OutboxListener> listeners;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean autoStartup;
+    private final int batchSize;
+    private final Duration pollInterval;
+    private final Duration lease;
+    // identifies this relay in the lease row
+    private final String holder = UUID.randomUUID().toString();
+    private final Timer lag;
+    private final Counter published;
+    private final Counter failures;
+
+    private volatile ExecutorService executor;
+    // null until the first batch
+    private volatile BacklogSample backlog;
+
+    private record BacklogSample(OutboxRepository.Backlog backlog, long sampledNanos) {
+
+        double oldestAgeMillis() {
+            if (backlog.pending() == 0) {
+                return 0;
+            }
+            return backlog.oldestAge().toMillis() + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - sampledNanos);
+        }
+    }
+
+    public OutboxRelay(OutboxRepository outboxRepository, OutboxSink sink, List<OutboxListener> listeners,
+                       PlatformTransactionManager transactionManager, MeterRegistry meterRegistry,
+                       boolean autoStartup, int batchSize, Duration pollInterval, Duration lease) {
+        this.outboxRepository = outboxRepository;
+        this.sink = sink;
+        this.listeners = List.copyOf(listeners);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.autoStartup = autoStartup;
+        this.batchSize = batchSize;
+        this.pollInterval = pollInterval;
+        this.lease = lease;
+        this.lag = Timer.builder("juniemvc.outbox.lag")
+                .description("Time from recording an outbox event to its publication")
+                .tag("sink", sink.name())
+                .register(meterRegistry);
+        this.published = Counter.builder("juniemvc.outbox.published").tag("sink", sink.name()).register(meterRegistry);
+        this.failures = Counter.builder("juniemvc.outbox.failures").tag("sink", sink.name()).register(meterRegistry);
+        Gauge.builder("juniemvc.outbox.pending", this, relay -> relay.backlog == null ? Double.NaN : relay.backlog.backlog().pending())
+                .description("Outbox events not yet published, as of the last batch")
+                .register(meterRegistry);
+        TimeGauge.builder("juniemvc.outbox.oldest.age", this, TimeUnit.MILLISECONDS,
+                        relay -> relay.backlog == null ? Double.NaN : relay.backlog.oldestAgeMillis())
+                .description("Age of the oldest outbox event not yet published")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Publishes one batch, if this relay holds the lease.
+     *
+     * @return the number of events published
+     */
+    public int relayBatch() {
+        List<OutboxEvent> events;
+        try {
+            events = transactionTemplate.execute(status -> {
+                if (!outboxRepository.holdRelayLease(holder, lease)) {
+                    return null;
+                }
+                List<OutboxEvent> claimed = outboxRepository.claim(batchSize);
+                if (!claimed.isEmpty()) {
+                    sink.publish(claimed);
+                    listeners.forEach(listener -> listener.published(claimed));
+                    outboxRepository.delete(claimed.stream().map(OutboxEvent::id).toList());
+                }
+                return claimed;
+            });
+        } catch (RuntimeException ex) {
+            failures.increment();
+            throw ex;
+        }
+        if (events == null) {
+            return 0;
+        }
+        OutboxRepository.Backlog remaining = outboxRepository.backlog();
+        backlog = new BacklogSample(remaining, System.nanoTime());
+        events.forEach(event -> lag.record(Duration.between(event.createdDate(), remaining.databaseTime())));
+        published.increment(events.size());
+        return events.size();
+    }
+
+    @Override
+    public void start() {
+        ExecutorService started = Executors.newSingleThreadExecutor(Thread.ofVirtual().name("outbox-relay").factory());
+        started.execute(this::poll);
+        executor = started;
+        log.info("Outbox relay started: sink {}, batch size {}, lease holder {}", sink.name(), batchSize, holder);
+    }
+
+    private void poll() {
+        while (!Thread.currentThread().isInterrupted()) {
+            int relayed;
+            try {
+                relayed = relayBatch();
+            } catch (RuntimeException ex) {
+                log.warn("Outbox batch to {} failed, retried after {}: {}", sink.name(), pollInterval, ex.getMessage());
+                relayed = 0;
+            }
+            if (relayed < batchSize) {
+                try {
+                    Thread.sleep(pollInterval);
+                } catch (InterruptedException ex) {
+                    return;
+                }
+            }
+        }
+    }
+
+    @Override
+    public void stop() {
+        ExecutorService running = executor;
+        executor = null;
+        if (running != null) {
+            // a batch cut short is rolled back and published again by the next relay
+            running.shutdownNow();
+            try {
+                if (!running.awaitTermination(30, TimeUnit.SECONDS)) {
+                    log.warn("Outbox relay did not stop within 30s");
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        try {
+            outboxRepository.releaseRelayLease(holder);
+        } catch (RuntimeException ex) {
+            log.warn("Outbox relay lease not released, it expires after {}: {}", lease, ex.getMessage());
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return executor != null;
+    }
+
+    @Override
+    public boolean isAutoStartup() {
+        return autoStartup;
+    }
+}
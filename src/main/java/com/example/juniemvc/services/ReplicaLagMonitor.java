@@ -0,0 +1,114 @@
+package com.example.juniemvc.services;
+
+import com.example.juniemvc.repositories.ReadReplicaDataSource;
+import com.example.juniemvc.repositories.ReadReplicaDataSource.ReplicaStatus;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.dao.DataAccessException;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Every heartbeat interval writes the heartbeat on the primary and probes the lag of the read replicas,
+ * which decides whether they serve reads until the next round. Every node runs one; their heartbeats
+ * all go to the same row, timed by the primary's clock.
+ *
+ * Meters, per replica: juniemvc.replica.lag (NaN while it cannot be probed) and juniemvc.replica.usable
+ * (1 while it serves reads).
+ */
+public class ReplicaLagMonitor implements SmartLifecycle {
+
+    private static final Logger log = LoggerFactory.getLogger(ReplicaLagMonitor.class);
+
+    private final ReadReplicaDataSource dataSource;
+    private final Duration interval;
+
+    private volatile ExecutorService executor;
+
+    public ReplicaLagMonitor(ReadReplicaDataSource dataSource, MeterRegistry meterRegistry, Duration interval) {
+        this.dataSource = dataSource;
+        this.interval = interval;
+        List<ReplicaStatus> replicas = dataSource.status();
+        for (int i = 0; i < replicas.size(); i++) {
+            int replica = i;
+            TimeGauge.builder("juniemvc.replica.lag", dataSource, TimeUnit.MILLISECONDS, ds -> lagMillis(ds, replica))
+                    .description("Lag of the read replica behind the primary, as of its last probe")
+                    .tag("replica", replicas.get(i).name())
+                    .register(meterRegistry);
+            Gauge.builder("juniemvc.replica.usable", dataSource, ds -> ds.status().get(replica).usable() ? 1 : 0)
+                    .description("Whether the read replica serves read-only transactions")
+                    .tag("replica", replicas.get(i).name())
+                    .register(meterRegistry);
+        }
+    }
+
+    /**
+     * One round: heartbeat, then probe. A failed heartbeat leaves the replicas to age out of use.
+     */
+    public void check() {
+        try {
+            dataSource.writeHeartbeat();
+        } catch (DataAccessException ex) {
+            log.warn("Replication heartbeat failed: {}", ex.getMostSpecificCause().getMessage());
+        }
+        dataSource.probe();
+    }
+
+    private static double lagMillis(ReadReplicaDataSource dataSource, int replica) {
+        Duration lag = dataSource.status().get(replica).lag();
+        return lag != null ? lag.toMillis() : Double.NaN;
+    }
+
+    @Override
+    public void start() {
+        ExecutorService started = Executors.newSingleThreadExecutor(Thread.ofVirtual().name("replica-lag-monitor").factory());
+        started.execute(this::poll);
+        executor = started;
+        log.info("Replica lag monitor started: {} replicas, every {}", dataSource.status().size(), interval);
+    }
+
+    private void poll() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                check();
+            } catch (RuntimeException ex) {
+                log.warn("Replica lag check failed: {}", ex.getMessage());
+            }
+            try {
+                Thread.sleep(interval);
+            } catch (InterruptedException ex) {
+                return;
+            }
+        }
+    }
+
+    @Override
+    public void stop() {
+        ExecutorService running = executor;
+        executor = null;
+        if (running == null) {
+            return;
+        }
+        running.shutdownNow();
+        try {
+            if (!running.awaitTermination(10, TimeUnit.SECONDS)) {
+                log.warn("Replica lag monitor did not stop within 10s");
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return executor != null;
+    }
+}
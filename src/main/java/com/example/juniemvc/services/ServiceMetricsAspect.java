@@ -0,0 +1,76 @@
+package com.example.juniemvc.services;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.persistence.EntityNotFoundException;
+import jakarta.persistence.OptimisticLockException;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+
+import java.util.Optional;
+
+/**
+ * Times every public method of the @Service classes in this package as juniemvc.service, tagged with
+ * service, operation and outcome:
+ * - success
+ * - not_found: Optional.empty(), false (delete of an unknown id) or EntityNotFoundException
+ * - conflict: optimistic lock failures and OrderStatusConflictException
+ * - error: any other exception
+ *
+ * Runs outside the transaction, so commit time and failures at flush are included. Percentile histograms
+ * are configured in application.properties (management.metrics.distribution.*).
+ */
+@Aspect
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+class ServiceMetricsAspect {
+
+    static final String METRIC = "juniemvc.service";
+
+    private final MeterRegistry meterRegistry;
+
+    ServiceMetricsAspect(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Around("within(com.example.juniemvc.services..*) && @within(org.springframework.stereotype.Service) && execution(public * *(..))")
+    Object time(ProceedingJoinPoint joinPoint) throws Throwable {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "error";
+        try {
+            Object result = joinPoint.proceed();
+            outcome = outcomeOf(result);
+            return result;
+        } catch (EntityNotFoundException ex) {
+            outcome = "not_found";
+            throw ex;
+        } catch (OptimisticLockException | OptimisticLockingFailureException | OrderStatusConflictException ex) {
+            outcome = "conflict";
+            throw ex;
+        } finally {
+            sample.stop(Timer.builder(METRIC)
+                    .tag("service", serviceName(joinPoint.getSignature().getDeclaringType()))
+                    .tag("operation", joinPoint.getSignature().getName())
+                    .tag("outcome", outcome)
+                    .register(meterRegistry));
+        }
+    }
+
+    private static String outcomeOf(Object result) {
+        if (result instanceof Optional<?> optional && optional.isEmpty() || Boolean.FALSE.equals(result)) {
+            return "not_found";
+        }
+        return "success";
+    }
+
+    // BeerServiceImpl -> BeerService
+    private static String serviceName(Class<?> type) {
+        String name = type.getSimpleName();
+        return name.endsWith("Impl") ? name.substring(0, name.length() - "Impl".length()) : name;
+    }
+}
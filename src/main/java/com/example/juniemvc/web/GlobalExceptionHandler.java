@@ -1,19 +1,36 @@
 package com.example.juniemvc.web;
 
+import com.example.juniemvc.services.BeersNotFoundException;
+import com.example.juniemvc.services.InvalidRequestException;
+import com.example.juniemvc.services.OrderStatusConflictException;
+import com.example.juniemvc.services.OrderStreamLimitException;
 import jakarta.persistence.EntityNotFoundException;
 import jakarta.validation.ConstraintViolationException;
+import org.springframework.beans.TypeMismatchException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ProblemDetail;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.HttpMediaTypeNotSupportedException;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
 
+import java.sql.SQLException;
 import java.util.HashMap;
+import java.util.Locale;
 import java.util.Map;
 
 @RestControllerAdvice
 class GlobalExceptionHandler {
 
+    private static final String UNIQUE_VIOLATION = "23505";
+    private static final String FOREIGN_KEY_VIOLATION = "23503";
+    private static final String BEER_UPC_CONSTRAINT = "uk_beer_upc";
+
     @ExceptionHandler(MethodArgumentNotValidException.class)
     ProblemDetail handleValidation(MethodArgumentNotValidException ex) {
         ProblemDetail pd = ProblemDetail.forStatus(HttpStatus.BAD_REQUEST);
@@ -32,6 +49,41 @@ class GlobalExceptionHandler {
         return pd;
     }
 
+    // Only requests the application rejected on purpose; any other IllegalArgumentException is a bug
+    @ExceptionHandler(InvalidRequestException.class)
+    ProblemDetail handleBadRequest(InvalidRequestException ex) {
+        ProblemDetail pd = ProblemDetail.forStatus(HttpStatus.BAD_REQUEST);
+        pd.setTitle("Bad request");
+        pd.setDetail(ex.getMessage());
+        return pd;
+    }
+
+    // Query parameters that do not convert, e.g. an unknown order status or a malformed date-time
+    @ExceptionHandler(TypeMismatchException.class)
+    ProblemDetail handleTypeMismatch(TypeMismatchException ex) {
+        ProblemDetail pd = ProblemDetail.forStatus(HttpStatus.BAD_REQUEST);
+        pd.setTitle("Bad request");
+        pd.setDetail("Invalid value for %s: %s".formatted(ex.getPropertyName(), ex.getValue()));
+        return pd;
+    }
+
+    // A body in a format the endpoint does not read, e.g. an import that is neither CSV nor NDJSON
+    @ExceptionHandler(HttpMediaTypeNotSupportedException.class)
+    ResponseEntity<ProblemDetail> handleUnsupportedMediaType(HttpMediaTypeNotSupportedException ex) {
+        return ResponseEntity.status(HttpStatus.UNSUPPORTED_MEDIA_TYPE)
+                .headers(ex.getHeaders())
+                .body(ex.getBody());
+    }
+
+    @ExceptionHandler(BeersNotFoundException.class)
+    ProblemDetail handleBeersNotFound(BeersNotFoundException ex) {
+        ProblemDetail pd = ProblemDetail.forStatus(HttpStatus.NOT_FOUND);
+        pd.setTitle("Resource not found");
+        pd.setDetail(ex.getMessage());
+        pd.setProperty("missingBeerIds", ex.getMissingBeerIds());
+        return pd;
+    }
+
     @ExceptionHandler(EntityNotFoundException.class)
     ProblemDetail handleNotFound(EntityNotFoundException ex) {
         ProblemDetail pd = ProblemDetail.forStatus(HttpStatus.NOT_FOUND);
@@ -40,13 +92,66 @@ class GlobalExceptionHandler {
         return pd;
     }
 
-    @ExceptionHandler(jakarta.persistence.OptimisticLockException.class)
-    ProblemDetail handleConflict(jakarta.persistence.OptimisticLockException ex) {
+    @ExceptionHandler({jakarta.persistence.OptimisticLockException.class, OptimisticLockingFailureException.class})
+    ProblemDetail handleConflict(Exception ex) {
         ProblemDetail pd = ProblemDetail.forStatus(HttpStatus.CONFLICT);
         pd.setTitle("Optimistic lock conflict");
         return pd;
     }
 
+    // Told apart by the SQLState of the database error (Hibernate's and JdbcTemplate's alike): a taken
+    // unique value or a reference still in use conflicts with existing data; any other violated
+    // constraint, e.g. a check, means the application wrote what it should not have
+    @ExceptionHandler(DataIntegrityViolationException.class)
+    ProblemDetail handleDataIntegrityViolation(DataIntegrityViolationException ex) {
+        SQLException cause = sqlCause(ex);
+        String sqlState = cause != null && cause.getSQLState() != null ? cause.getSQLState() : "";
+        if (ex instanceof DuplicateKeyException || sqlState.equals(UNIQUE_VIOLATION)) {
+            ProblemDetail pd = ProblemDetail.forStatus(HttpStatus.CONFLICT);
+            pd.setTitle("Conflicts with existing data");
+            pd.setDetail(cause != null && cause.getMessage().toLowerCase(Locale.ROOT).contains(BEER_UPC_CONSTRAINT)
+                    ? "Another beer already has the upc"
+                    : "A unique value is already taken");
+            return pd;
+        }
+        if (sqlState.equals(FOREIGN_KEY_VIOLATION)) {
+            ProblemDetail pd = ProblemDetail.forStatus(HttpStatus.CONFLICT);
+            pd.setTitle("Conflicts with existing data");
+            pd.setDetail("Still referenced by other data, e.g. a beer by order lines");
+            return pd;
+        }
+        ProblemDetail pd = ProblemDetail.forStatus(HttpStatus.INTERNAL_SERVER_ERROR);
+        pd.setTitle("Internal Server Error");
+        pd.setDetail("Data integrity violation" + (sqlState.isEmpty() ? "" : " (SQLState %s)".formatted(sqlState)));
+        return pd;
+    }
+
+    @ExceptionHandler(OrderStatusConflictException.class)
+    ProblemDetail handleOrderStatusConflict(OrderStatusConflictException ex) {
+        ProblemDetail pd = ProblemDetail.forStatus(HttpStatus.CONFLICT);
+        pd.setTitle("Order status conflict");
+        pd.setDetail(ex.getMessage());
+        return pd;
+    }
+
+    @ExceptionHandler(PreconditionFailedException.class)
+    ProblemDetail handlePreconditionFailed(PreconditionFailedException ex) {
+        ProblemDetail pd = ProblemDetail.forStatus(HttpStatus.PRECONDITION_FAILED);
+        pd.setTitle("Precondition failed");
+        pd.setDetail(ex.getMessage());
+        return pd;
+    }
+
+    @ExceptionHandler(OrderStreamLimitException.class)
+    ResponseEntity<ProblemDetail> handleOrderStreamLimit(OrderStreamLimitException ex) {
+        ProblemDetail pd = ProblemDetail.forStatus(HttpStatus.SERVICE_UNAVAILABLE);
+        pd.setTitle("Too many order status streams");
+        pd.setDetail(ex.getMessage());
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "5")
+                .body(pd);
+    }
+
     @ExceptionHandler(Exception.class)
     ProblemDetail handleGeneric(Exception ex) {
         ProblemDetail pd = ProblemDetail.forStatus(HttpStatus.INTERNAL_SERVER_ERROR);
@@ -54,4 +159,13 @@ class GlobalExceptionHandler {
         pd.setDetail(ex.getMessage());
         return pd;
     }
+
+    private static SQLException sqlCause(Throwable ex) {
+        for (Throwable cause = ex; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SQLException sql) {
+                return sql;
+            }
+        }
+        return null;
+    }
 }
@@ -0,0 +1,11 @@
+package com.example.juniemvc.web;
+
+/**
+ * Raised when a conditional write (If-Match) does not match the current version of the resource.
+ */
+public class PreconditionFailedException extends RuntimeException {
+
+    public PreconditionFailedException(String message) {
+        super(message);
+    }
+}
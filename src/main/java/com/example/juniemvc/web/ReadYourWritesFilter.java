@@ -0,0 +1,77 @@
+package com.example.juniemvc.web;
+
+import com.example.juniemvc.repositories.ReadRouting;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Set;
+
+/**
+ * Read-your-writes with read replicas: a client that has just written reads from the primary for a while,
+ * so it does not miss its own change on a lagging replica. Writing requests (anything but GET, HEAD and
+ * OPTIONS) run on the primary and leave a cookie with the time of the write; requests carrying a cookie
+ * younger than the stickiness window run on the primary as well.
+ */
+public final class ReadYourWritesFilter extends OncePerRequestFilter {
+
+    public static final String COOKIE = "juniemvc-last-write";
+
+    private static final Set<String> READ_METHODS = Set.of("GET", "HEAD", "OPTIONS");
+
+    private final Duration stickiness;
+
+    public ReadYourWritesFilter(Duration stickiness) {
+        this.stickiness = stickiness;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        long now = System.currentTimeMillis();
+        boolean write = !READ_METHODS.contains(request.getMethod());
+        if (write) {
+            // set up front: the response may be committed by the time the chain returns
+            response.addCookie(lastWrite(now));
+        }
+        if (write || wroteSince(request, now - stickiness.toMillis())) {
+            try (ReadRouting.Scope ignored = ReadRouting.primaryOnly()) {
+                filterChain.doFilter(request, response);
+            }
+        } else {
+            filterChain.doFilter(request, response);
+        }
+    }
+
+    private Cookie lastWrite(long now) {
+        Cookie cookie = new Cookie(COOKIE, Long.toString(now));
+        cookie.setPath("/api");
+        cookie.setHttpOnly(true);
+        cookie.setAttribute("SameSite", "Lax");
+        // the value decides; the cookie only has to outlive the window
+        cookie.setMaxAge((int) Math.max(1, (stickiness.toMillis() + 999) / 1000));
+        return cookie;
+    }
+
+    private static boolean wroteSince(HttpServletRequest request, long since) {
+        Cookie[] cookies = request.getCookies();
+        if (cookies == null) {
+            return false;
+        }
+        for (Cookie cookie : cookies) {
+            if (COOKIE.equals(cookie.getName())) {
+                try {
+                    return Long.parseLong(cookie.getValue()) > since;
+                } catch (NumberFormatException ex) {
+                    return false;
+                }
+            }
+        }
+        return false;
+    }
+}
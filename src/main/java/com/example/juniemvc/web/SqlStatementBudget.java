@@ -0,0 +1,20 @@
+package com.example.juniemvc.web;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Maximum number of SQL statements one request to the annotated handler method is expected to execute.
+ * Requests going over it are logged by SqlStatementBudgetFilter; handlers without the annotation get
+ * juniemvc.sql-budget.default-max-statements.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface SqlStatementBudget {
+
+    int value();
+}
@@ -0,0 +1,118 @@
+package com.example.juniemvc.web;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+
+/**
+ * Counts the SQL statements of each request and logs a warning when a handler goes over its
+ * {@link SqlStatementBudget}. Optionally reports the count in the X-SQL-Statement-Count response header,
+ * set just before the response is committed.
+ */
+public final class SqlStatementBudgetFilter extends OncePerRequestFilter {
+
+    public static final String HEADER = "X-SQL-Statement-Count";
+
+    private static final Logger log = LoggerFactory.getLogger(SqlStatementBudgetFilter.class);
+
+    private final int defaultMaxStatements;
+    private final boolean responseHeader;
+
+    public SqlStatementBudgetFilter(int defaultMaxStatements, boolean responseHeader) {
+        this.defaultMaxStatements = defaultMaxStatements;
+        this.responseHeader = responseHeader;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        try (SqlStatementCounter.Scope scope = SqlStatementCounter.open()) {
+            if (responseHeader) {
+                CountHeaderResponse wrapped = new CountHeaderResponse(response, scope);
+                filterChain.doFilter(request, wrapped);
+                wrapped.writeHeader();
+            } else {
+                filterChain.doFilter(request, response);
+            }
+            checkBudget(request, scope.counts());
+        }
+    }
+
+    private void checkBudget(HttpServletRequest request, SqlStatementCounts counts) {
+        Object handler = request.getAttribute(HandlerMapping.BEST_MATCHING_HANDLER_ATTRIBUTE);
+        int budget = defaultMaxStatements;
+        if (handler instanceof HandlerMethod method && method.hasMethodAnnotation(SqlStatementBudget.class)) {
+            budget = method.getMethodAnnotation(SqlStatementBudget.class).value();
+        }
+        if (counts.total() > budget) {
+            log.warn("{} {} ({}) executed {} SQL statements, budget {}", request.getMethod(), request.getRequestURI(),
+                    handler instanceof HandlerMethod method ? method.getShortLogMessage() : "no handler", counts, budget);
+        }
+    }
+
+    // Adds the header when the body starts or the response is otherwise about to be committed
+    private static final class CountHeaderResponse extends HttpServletResponseWrapper {
+
+        private final SqlStatementCounter.Scope scope;
+        private boolean headerWritten;
+
+        CountHeaderResponse(HttpServletResponse response, SqlStatementCounter.Scope scope) {
+            super(response);
+            this.scope = scope;
+        }
+
+        void writeHeader() {
+            if (!headerWritten && !isCommitted()) {
+                setHeader(HEADER, Long.toString(scope.counts().total()));
+            }
+            headerWritten = true;
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() throws IOException {
+            writeHeader();
+            return super.getOutputStream();
+        }
+
+        @Override
+        public PrintWriter getWriter() throws IOException {
+            writeHeader();
+            return super.getWriter();
+        }
+
+        @Override
+        public void flushBuffer() throws IOException {
+            writeHeader();
+            super.flushBuffer();
+        }
+
+        @Override
+        public void sendError(int sc) throws IOException {
+            writeHeader();
+            super.sendError(sc);
+        }
+
+        @Override
+        public void sendError(int sc, String msg) throws IOException {
+            writeHeader();
+            super.sendError(sc, msg);
+        }
+
+        @Override
+        public void sendRedirect(String location) throws IOException {
+            writeHeader();
+            super.sendRedirect(location);
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.juniemvc.web;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * StatementInspector counting every SQL statement Hibernate prepares, by kind.
+ *
+ * Counts go to process-wide totals and, when one is open on the calling thread, to a {@link Scope}
+ * (one per HTTP request, see SqlStatementBudgetFilter). Statements run on other threads, such as the
+ * body of a streaming response, only reach the totals.
+ */
+public final class SqlStatementCounter implements StatementInspector {
+
+    private static final Map<String, LongAdder> TOTALS = new ConcurrentHashMap<>();
+    private static final ThreadLocal<Scope> CURRENT = new ThreadLocal<>();
+
+    @Override
+    public String inspect(String sql) {
+        String kind = kindOf(sql);
+        TOTALS.computeIfAbsent(kind, k -> new LongAdder()).increment();
+        Scope scope = CURRENT.get();
+        if (scope != null) {
+            scope.increment(kind);
+        }
+        return sql;
+    }
+
+    /**
+     * Snapshot of the process-wide totals; subtract two snapshots to count what ran in between.
+     */
+    public static SqlStatementCounts totals() {
+        Map<String, Long> counts = new HashMap<>();
+        TOTALS.forEach((kind, adder) -> counts.put(kind, adder.sum()));
+        return new SqlStatementCounts(counts);
+    }
+
+    /**
+     * Starts counting the statements of the current thread until the returned scope is closed.
+     * Scopes nest; an inner scope hides its statements from the outer one.
+     */
+    public static Scope open() {
+        Scope scope = new Scope(CURRENT.get());
+        CURRENT.set(scope);
+        return scope;
+    }
+
+    static String kindOf(String sql) {
+        String normalized = sql.stripLeading().toLowerCase(Locale.ROOT);
+        if (normalized.contains("next value for")) {
+            return "sequence";
+        }
+        int end = normalized.indexOf(' ');
+        return end < 0 ? normalized : normalized.substring(0, end);
+    }
+
+    public static final class Scope implements AutoCloseable {
+
+        private final Scope parent;
+        private final Map<String, Long> counts = new HashMap<>();
+
+        private Scope(Scope parent) {
+            this.parent = parent;
+        }
+
+        private void increment(String kind) {
+            counts.merge(kind, 1L, Long::sum);
+        }
+
+        public SqlStatementCounts counts() {
+            return new SqlStatementCounts(counts);
+        }
+
+        @Override
+        public void close() {
+            if (parent == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(parent);
+            }
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.example.juniemvc.web;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Numbers of prepared SQL statements by kind: select, insert, update, delete, sequence (id allocation)
+ * or the leading keyword of anything else. A batched insert counts once per prepared statement, not per row.
+ */
+public record SqlStatementCounts(Map<String, Long> byKind) {
+
+    public static final SqlStatementCounts NONE = new SqlStatementCounts(Map.of());
+
+    public SqlStatementCounts {
+        byKind = Map.copyOf(byKind);
+    }
+
+    public long total() {
+        return byKind.values().stream().mapToLong(Long::longValue).sum();
+    }
+
+    public long count(String kind) {
+        return byKind.getOrDefault(kind, 0L);
+    }
+
+    public long selects() {
+        return count("select");
+    }
+
+    /**
+     * The statements counted since {@code earlier}, a snapshot of the same counter.
+     */
+    public SqlStatementCounts minus(SqlStatementCounts earlier) {
+        Map<String, Long> delta = new HashMap<>();
+        byKind.forEach((kind, count) -> {
+            long diff = count - earlier.count(kind);
+            if (diff != 0) {
+                delta.put(kind, diff);
+            }
+        });
+        return new SqlStatementCounts(delta);
+    }
+
+    @Override
+    public String toString() {
+        return total() + " " + byKind;
+    }
+}
@@ -0,0 +1,46 @@
+package db.migration;
+
+import org.flywaydb.core.api.migration.BaseJavaMigration;
+import org.flywaydb.core.api.migration.Context;
+
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One beer per upc (uk_beer_upc), which also backs the upc lookup of the bulk beer import. The import
+ * upserts by upc, and without the constraint two imports could both insert a upc that neither found.
+ *
+ * A upc is the supplier's barcode, so beers already sharing one are not renamed here: the migration
+ * fails and lists them, to be resolved on purpose before it runs again.
+ */
+public class V9__beer_upc_unique extends BaseJavaMigration {
+
+    private static final String DUPLICATES = """
+            select b.upc, b.id from beer b
+            where b.upc in (select d.upc from beer d where d.upc is not null group by d.upc having count(*) > 1)
+            order by b.upc, b.id
+            """;
+
+    @Override
+    public void migrate(Context context) throws Exception {
+        try (Statement statement = context.getConnection().createStatement()) {
+            Map<String, List<Integer>> duplicates = new LinkedHashMap<>();
+            try (ResultSet rs = statement.executeQuery(DUPLICATES)) {
+                while (rs.next()) {
+                    duplicates.computeIfAbsent(rs.getString(1), upc -> new ArrayList<>()).add(rs.getInt(2));
+                }
+            }
+            if (!duplicates.isEmpty()) {
+                throw new IllegalStateException("""
+                        Beer upcs must be unique, but %d upcs are shared by several beers (upc=[beer ids]): %s. \
+                        Give each of those beers its own upc, or delete the extra ones, and migrate again."""
+                        .formatted(duplicates.size(), duplicates));
+            }
+            statement.execute("ALTER TABLE beer ADD CONSTRAINT uk_beer_upc UNIQUE (upc)");
+        }
+    }
+}
@@ -0,0 +1,11 @@
+-- Replica lag probe for read-replica routing (juniemvc.read-replicas.*): the nodes set beat to the primary's
+-- localtimestamp in the single row, and a replica is as stale as the value replicated to it, measured
+-- against the primary's clock too, so clock skew between the nodes does not read as lag.
+
+CREATE TABLE replication_heartbeat (
+    id INTEGER NOT NULL,
+    beat TIMESTAMP NOT NULL,
+    CONSTRAINT pk_replication_heartbeat PRIMARY KEY (id)
+);
+
+INSERT INTO replication_heartbeat (id, beat) VALUES (1, TIMESTAMP '1970-01-01 00:00:00');
@@ -0,0 +1,24 @@
+-- Outbox relay lease: only the node holding it relays. Every batch transaction first renews the lease
+-- in this row, which keeps the row locked until the batch commits, so batches never overlap across nodes.
+
+CREATE TABLE outbox_relay_lease (
+    id INTEGER NOT NULL,
+    holder VARCHAR(64),
+    expires_at TIMESTAMP NOT NULL,
+    CONSTRAINT pk_outbox_relay_lease PRIMARY KEY (id)
+);
+
+INSERT INTO outbox_relay_lease (id, holder, expires_at) VALUES (1, NULL, TIMESTAMP '1970-01-01 00:00:00');
+
+-- Order changes as relayed, tailed by the order status feed of every node. Rows are written by the lease
+-- holder's batch transactions one after the other, so they become visible in id order.
+CREATE TABLE order_change (
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    order_id INTEGER NOT NULL,
+    customer_ref VARCHAR(255),
+    deleted BOOLEAN NOT NULL,
+    created_date TIMESTAMP DEFAULT LOCALTIMESTAMP NOT NULL
+);
+
+-- Pruning by age
+CREATE INDEX idx_order_change_created ON order_change (created_date);
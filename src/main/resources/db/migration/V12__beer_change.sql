@@ -0,0 +1,11 @@
+-- Beer changes as relayed, tailed by every node to evict the beers from its second-level cache. Like
+-- order_change, rows are written by the relay lease holder's batch transactions one after the other,
+-- so they become visible in id order.
+CREATE TABLE beer_change (
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    beer_id INTEGER NOT NULL,
+    created_date TIMESTAMP DEFAULT LOCALTIMESTAMP NOT NULL
+);
+
+-- Pruning by age
+CREATE INDEX idx_beer_change_created ON beer_change (created_date);
@@ -0,0 +1,5 @@
+-- Indexes backing the keyset-paginated beer catalog (GET /api/v1/beers)
+-- Prefix filters on style/name; id is included so the seek on id is served from the index
+
+CREATE INDEX idx_beer_style_id ON beer (beer_style, id);
+CREATE INDEX idx_beer_name_id ON beer (beer_name, id);
@@ -0,0 +1,18 @@
+-- Switch id generation from IDENTITY to sequences so Hibernate can batch inserts.
+-- Sequences increment by 50 to match allocationSize (pooled-lo optimizer: each value is the low end of a block of 50).
+-- Each sequence restarts above the current max id; ids also default to the sequence for plain SQL inserts.
+
+CREATE SEQUENCE beer_seq START WITH 1 INCREMENT BY 50;
+ALTER SEQUENCE beer_seq RESTART WITH (SELECT COALESCE(MAX(id), 0) + 1 FROM beer);
+ALTER TABLE beer ALTER COLUMN id DROP IDENTITY;
+ALTER TABLE beer ALTER COLUMN id SET DEFAULT NEXT VALUE FOR beer_seq;
+
+CREATE SEQUENCE beer_order_seq START WITH 1 INCREMENT BY 50;
+ALTER SEQUENCE beer_order_seq RESTART WITH (SELECT COALESCE(MAX(id), 0) + 1 FROM beer_order);
+ALTER TABLE beer_order ALTER COLUMN id DROP IDENTITY;
+ALTER TABLE beer_order ALTER COLUMN id SET DEFAULT NEXT VALUE FOR beer_order_seq;
+
+CREATE SEQUENCE beer_order_line_seq START WITH 1 INCREMENT BY 50;
+ALTER SEQUENCE beer_order_line_seq RESTART WITH (SELECT COALESCE(MAX(id), 0) + 1 FROM beer_order_line);
+ALTER TABLE beer_order_line ALTER COLUMN id DROP IDENTITY;
+ALTER TABLE beer_order_line ALTER COLUMN id SET DEFAULT NEXT VALUE FOR beer_order_line_seq;
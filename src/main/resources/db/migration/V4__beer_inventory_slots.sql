@@ -0,0 +1,12 @@
+-- Optional striped inventory for hot beers: the stock of a striped beer is spread over N counter slots
+-- so concurrent allocations lock different rows. A beer is striped while it has slot rows; its
+-- beer.quantity_on_hand is then 0 and the reported stock is the sum of its slots.
+
+CREATE TABLE beer_inventory_slot (
+    beer_id INTEGER NOT NULL,
+    slot INTEGER NOT NULL,
+    quantity INTEGER NOT NULL,
+    CONSTRAINT pk_beer_inventory_slot PRIMARY KEY (beer_id, slot),
+    CONSTRAINT fk_bis_beer FOREIGN KEY (beer_id) REFERENCES beer (id) ON DELETE CASCADE,
+    CONSTRAINT ck_bis_quantity CHECK (quantity >= 0)
+);
@@ -0,0 +1,8 @@
+-- Backs the order pipeline's claim query (SKIP LOCKED batches of orders in one status, in id order)
+CREATE INDEX idx_beer_order_status_id ON beer_order (status, id);
+
+-- When an order in flight (VALIDATION_PENDING, ALLOCATION_PENDING) may be claimed again: the end of
+-- its lease, or of the back-off after a backordered allocation, which doubles with every allocation
+-- attempt in a row that reserved nothing. Written by the pipeline only, so not mapped on BeerOrder.
+ALTER TABLE beer_order ADD COLUMN next_attempt_date TIMESTAMP;
+ALTER TABLE beer_order ADD COLUMN allocation_attempts INT DEFAULT 0 NOT NULL;
@@ -0,0 +1,15 @@
+-- Transactional outbox: change events of orders and beers, written in the transaction of the change and
+-- deleted once the relay has handed them to the configured sink. Identity ids are assigned at insert
+-- time, so a later change of an aggregate always gets a higher id (no pooled id blocks here).
+
+CREATE TABLE outbox_event (
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    aggregate_type VARCHAR(50) NOT NULL,
+    aggregate_id INTEGER NOT NULL,
+    event_type VARCHAR(50) NOT NULL,
+    payload CLOB NOT NULL,
+    created_date TIMESTAMP DEFAULT LOCALTIMESTAMP NOT NULL
+);
+
+-- The relay's check for older events of the claimed aggregates
+CREATE INDEX idx_outbox_event_aggregate ON outbox_event (aggregate_type, aggregate_id, id);
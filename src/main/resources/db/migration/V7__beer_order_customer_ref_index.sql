@@ -0,0 +1,2 @@
+-- Backs lookups of a customer's orders by customer_ref, newest first (order status stream snapshots)
+CREATE INDEX idx_beer_order_customer_ref ON beer_order (customer_ref, id);
@@ -0,0 +1,9 @@
+-- Indexes backing the filtered order list (GET /api/v1/orders?status=&customerRef=&createdFrom=...)
+-- A date range is read in (date, id) order, so the range scan of the index also yields the page order;
+-- status alone uses idx_beer_order_status_id (V5), customerRef idx_beer_order_customer_ref (V7). An
+-- updateDate range is read from idx_beer_order_updated with any status as a filter: a (status, update_date,
+-- id) index would only cost every order update a second update_date index entry.
+
+CREATE INDEX idx_beer_order_status_created ON beer_order (status, created_date, id);
+CREATE INDEX idx_beer_order_created ON beer_order (created_date, id);
+CREATE INDEX idx_beer_order_updated ON beer_order (update_date, id);
@@ -0,0 +1,75 @@
+package com.example.juniemvc;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.asm.ClassReader;
+import org.springframework.asm.ClassVisitor;
+import org.springframework.asm.MethodVisitor;
+import org.springframework.asm.Opcodes;
+import org.springframework.asm.SpringAsmInfo;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * On Java 21 a virtual thread that blocks inside a synchronized method or block pins its carrier thread.
+ * Scans the compiled application classes (including Lombok and MapStruct output) for monitors.
+ */
+class VirtualThreadPinningTest {
+
+    @Test
+    void application_code_should_not_use_monitors() throws IOException, URISyntaxException {
+        Path classes = Path.of(JuniemvcApplication.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+        List<String> monitors = new ArrayList<>();
+        try (Stream<Path> files = Files.walk(classes)) {
+            for (Path file : files.filter(f -> f.toString().endsWith(".class")).toList()) {
+                try (InputStream in = Files.newInputStream(file)) {
+                    new ClassReader(in).accept(new MonitorFinder(monitors), ClassReader.SKIP_DEBUG);
+                }
+            }
+        }
+
+        assertThat(monitors)
+                .as("synchronized pins virtual threads; use a java.util.concurrent lock instead")
+                .isEmpty();
+    }
+
+    private static final class MonitorFinder extends ClassVisitor {
+
+        private final List<String> monitors;
+        private String className;
+
+        MonitorFinder(List<String> monitors) {
+            super(SpringAsmInfo.ASM_VERSION);
+            this.monitors = monitors;
+        }
+
+        @Override
+        public void visit(int version, int access, String name, String signature, String superName, String[] interfaces) {
+            this.className = name.replace('/', '.');
+        }
+
+        @Override
+        public MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions) {
+            String method = className + "." + name;
+            if ((access & Opcodes.ACC_SYNCHRONIZED) != 0) {
+                monitors.add(method + " (synchronized method)");
+            }
+            return new MethodVisitor(SpringAsmInfo.ASM_VERSION) {
+                @Override
+                public void visitInsn(int opcode) {
+                    if (opcode == Opcodes.MONITORENTER) {
+                        monitors.add(method + " (synchronized block)");
+                    }
+                }
+            };
+        }
+    }
+}
@@ -1,23 +1,38 @@
 package com.example.juniemvc.controllers;
 
+import com.example.juniemvc.models.BeerAdjustment;
+import com.example.juniemvc.models.BeerAdjustmentReport;
 import com.example.juniemvc.models.BeerDto;
+import com.example.juniemvc.models.BeerImportFormat;
+import com.example.juniemvc.models.BeerImportReport;
+import com.example.juniemvc.models.BeerQuery;
+import com.example.juniemvc.models.BeerSort;
+import com.example.juniemvc.models.CursorPage;
+import com.example.juniemvc.services.BeerAdjustmentService;
+import com.example.juniemvc.services.BeerImportService;
 import com.example.juniemvc.services.BeerService;
+import com.example.juniemvc.services.InvalidRequestException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.servlet.MockMvc;
 
 import java.math.BigDecimal;
+import java.sql.SQLException;
 import java.util.List;
 import java.util.Optional;
 
 import static org.hamcrest.Matchers.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
@@ -39,6 +54,12 @@ class BeerControllerTest {
     @MockitoBean
     BeerService beerService;
 
+    @MockitoBean
+    BeerImportService beerImportService;
+
+    @MockitoBean
+    BeerAdjustmentService beerAdjustmentService;
+
     private BeerDto sampleBeer(Integer id) {
         return BeerDto.builder()
                 .id(id)
@@ -78,6 +99,35 @@ class BeerControllerTest {
                 .andExpect(status().isBadRequest());
     }
 
+    @Test
+    void testCreateBeerWithTakenUpcIsConflict() throws Exception {
+        given(beerService.saveBeer(any(BeerDto.class)))
+                .willThrow(new DataIntegrityViolationException("could not execute statement",
+                        new SQLException("Unique index or primary key violation: \"PUBLIC.UK_BEER_UPC_INDEX_1\"", "23505")));
+
+        mockMvc.perform(post("/api/v1/beers")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(sampleBeer(null))))
+                .andExpect(status().isConflict())
+                .andExpect(jsonPath("$.title", is("Conflicts with existing data")))
+                .andExpect(jsonPath("$.detail", is("Another beer already has the upc")));
+    }
+
+    @Test
+    void testOtherIntegrityViolationsAreNotReportedAsTakenUpcs() throws Exception {
+        given(beerService.deleteBeerById(eq(8))).willThrow(new DataIntegrityViolationException("could not execute statement",
+                new SQLException("Referential integrity constraint violation: \"FK_BOL_BEER\"", "23503")));
+        given(beerService.stripeInventory(eq(8), eq(2))).willThrow(new DataIntegrityViolationException("could not execute statement",
+                new SQLException("Check constraint invalid: \"CK_BIS_QUANTITY\"", "23513")));
+
+        mockMvc.perform(delete("/api/v1/beers/{id}", 8))
+                .andExpect(status().isConflict())
+                .andExpect(jsonPath("$.detail", is("Still referenced by other data, e.g. a beer by order lines")));
+        mockMvc.perform(put("/api/v1/beers/{id}/stripes", 8).param("count", "2"))
+                .andExpect(status().isInternalServerError())
+                .andExpect(jsonPath("$.detail", is("Data integrity violation (SQLState 23513)")));
+    }
+
     @Test
     void testGetBeerByIdFound() throws Exception {
         BeerDto beer = sampleBeer(2);
@@ -89,6 +139,27 @@ class BeerControllerTest {
                 .andExpect(jsonPath("$.beerStyle", is("IPA")));
     }
 
+    @Test
+    void testGetBeerByIdSetsETag() throws Exception {
+        BeerDto beer = sampleBeer(2).toBuilder().version(3).build();
+        given(beerService.getBeerById(eq(2))).willReturn(Optional.of(beer));
+
+        mockMvc.perform(get("/api/v1/beers/{id}", 2))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"2-3\""));
+    }
+
+    @Test
+    void testGetBeerByIdNotModified() throws Exception {
+        BeerDto beer = sampleBeer(2).toBuilder().version(3).build();
+        given(beerService.getBeerById(eq(2))).willReturn(Optional.of(beer));
+
+        mockMvc.perform(get("/api/v1/beers/{id}", 2).header("If-None-Match", "W/\"2-3\""))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string("ETag", "\"2-3\""))
+                .andExpect(content().string(""));
+    }
+
     @Test
     void testGetBeerByIdNotFound() throws Exception {
         given(beerService.getBeerById(eq(99))).willReturn(Optional.empty());
@@ -98,17 +169,48 @@ class BeerControllerTest {
     }
 
     @Test
-    void testGetAllBeers() throws Exception {
+    void testListBeers() throws Exception {
         BeerDto b1 = sampleBeer(1);
         BeerDto b2 = sampleBeer(2).toBuilder().beerName("Space Dog").build();
-        given(beerService.getAllBeers()).willReturn(List.of(b1, b2));
+        given(beerService.listBeers(any(BeerQuery.class))).willReturn(CursorPage.<BeerDto>builder()
+                .content(List.of(b1, b2))
+                .size(2)
+                .nextCursor("abc")
+                .build());
 
-        mockMvc.perform(get("/api/v1/beers"))
+        mockMvc.perform(get("/api/v1/beers").param("size", "2"))
                 .andExpect(status().isOk())
                 .andExpect(content().contentType(MediaType.APPLICATION_JSON))
-                .andExpect(jsonPath("$", hasSize(2)))
-                .andExpect(jsonPath("$[0].id", is(1)))
-                .andExpect(jsonPath("$[1].beerName", is("Space Dog")));
+                .andExpect(jsonPath("$.content", hasSize(2)))
+                .andExpect(jsonPath("$.content[0].id", is(1)))
+                .andExpect(jsonPath("$.content[1].beerName", is("Space Dog")))
+                .andExpect(jsonPath("$.size", is(2)))
+                .andExpect(jsonPath("$.nextCursor", is("abc")));
+    }
+
+    @Test
+    void testListBeersPassesFiltersAndSort() throws Exception {
+        given(beerService.listBeers(any(BeerQuery.class))).willReturn(CursorPage.<BeerDto>builder().size(25).build());
+
+        mockMvc.perform(get("/api/v1/beers")
+                        .param("beerStyle", "IPA")
+                        .param("beerName", "Gal")
+                        .param("sort", "beerName")
+                        .param("cursor", "xyz"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content", hasSize(0)));
+
+        verify(beerService).listBeers(argThat(q -> "IPA".equals(q.getBeerStyle())
+                && "Gal".equals(q.getBeerName())
+                && q.getSort() == BeerSort.BEER_NAME
+                && "xyz".equals(q.getCursor())
+                && q.getSize() == 25));
+    }
+
+    @Test
+    void testListBeersUnknownSortIsBadRequest() throws Exception {
+        mockMvc.perform(get("/api/v1/beers").param("sort", "price"))
+                .andExpect(status().isBadRequest());
     }
 
     @Test
@@ -127,6 +229,36 @@ class BeerControllerTest {
                 .andExpect(jsonPath("$.beerName", is("Updated Cat")));
     }
 
+    @Test
+    void testUpdateBeerIfMatchPassesVersion() throws Exception {
+        BeerDto updated = sampleBeer(5).toBuilder().version(4).build();
+        given(beerService.getBeerVersion(eq(5))).willReturn(Optional.of(3));
+        given(beerService.updateBeer(eq(5), any(BeerDto.class))).willReturn(Optional.of(updated));
+
+        mockMvc.perform(put("/api/v1/beers/{id}", 5)
+                        .header("If-Match", "\"5-3\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(sampleBeer(null))))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"5-4\""));
+
+        verify(beerService).updateBeer(eq(5), argThat(dto -> Integer.valueOf(3).equals(dto.getVersion())));
+    }
+
+    @Test
+    void testUpdateBeerIfMatchStaleIsPreconditionFailed() throws Exception {
+        given(beerService.getBeerVersion(eq(5))).willReturn(Optional.of(4));
+
+        mockMvc.perform(put("/api/v1/beers/{id}", 5)
+                        .header("If-Match", "\"5-3\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(sampleBeer(null))))
+                .andExpect(status().isPreconditionFailed())
+                .andExpect(jsonPath("$.title", is("Precondition failed")));
+
+        verify(beerService, never()).updateBeer(any(), any());
+    }
+
     @Test
     void testUpdateBeerNotFound() throws Exception {
         BeerDto update = sampleBeer(null);
@@ -138,6 +270,34 @@ class BeerControllerTest {
                 .andExpect(status().isNotFound());
     }
 
+    @Test
+    void testStripeInventory() throws Exception {
+        BeerDto striped = sampleBeer(5);
+        striped.setVersion(2);
+        given(beerService.stripeInventory(eq(5), eq(8))).willReturn(Optional.of(striped));
+
+        mockMvc.perform(put("/api/v1/beers/{id}/stripes", 5).param("count", "8"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"5-2\""))
+                .andExpect(jsonPath("$.quantityOnHand", is(striped.getQuantityOnHand())));
+    }
+
+    @Test
+    void testStripeInventoryOutOfRangeIsBadRequest() throws Exception {
+        given(beerService.stripeInventory(eq(5), eq(0))).willThrow(new InvalidRequestException("Stripes must be between 1 and 64"));
+
+        mockMvc.perform(put("/api/v1/beers/{id}/stripes", 5).param("count", "0"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void testInternalIllegalArgumentIsNotABadRequest() throws Exception {
+        given(beerService.stripeInventory(eq(6), eq(2))).willThrow(new IllegalArgumentException("bug"));
+
+        mockMvc.perform(put("/api/v1/beers/{id}/stripes", 6).param("count", "2"))
+                .andExpect(status().isInternalServerError());
+    }
+
     @Test
     void testDeleteBeerNoContent() throws Exception {
         given(beerService.deleteBeerById(eq(7))).willReturn(true);
@@ -153,4 +313,44 @@ class BeerControllerTest {
         mockMvc.perform(delete("/api/v1/beers/{id}", 77))
                 .andExpect(status().isNotFound());
     }
+
+    @Test
+    void import_should_pick_the_format_from_the_content_type() throws Exception {
+        given(beerImportService.importBeers(any(), eq(BeerImportFormat.CSV)))
+                .willReturn(BeerImportReport.builder().rows(1).inserted(1).build());
+
+        mockMvc.perform(post("/api/v1/beers/import")
+                        .contentType("text/csv")
+                        .content("beerName,beerStyle,upc,quantityOnHand,price\nGalaxy Cat,IPA,12345,12,9.99\n"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.inserted", is(1)));
+        mockMvc.perform(post("/api/v1/beers/import")
+                        .contentType(MediaType.APPLICATION_XML)
+                        .content("<beers/>"))
+                .andExpect(status().isUnsupportedMediaType());
+    }
+
+    @Test
+    void adjustments_should_return_the_counts_and_reject_invalid_entries() throws Exception {
+        List<BeerAdjustment> adjustments = List.of(
+                BeerAdjustment.builder().id(1).quantityDelta(24).build(),
+                BeerAdjustment.builder().upc("12345").price(new BigDecimal("10.49")).build());
+        given(beerAdjustmentService.adjust(eq(adjustments)))
+                .willReturn(BeerAdjustmentReport.builder().requested(2).adjusted(1).notFound(1).build());
+
+        mockMvc.perform(post("/api/v1/beers/adjustments")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(adjustments)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.adjusted", is(1)))
+                .andExpect(jsonPath("$.notFound", is(1)));
+
+        given(beerAdjustmentService.adjust(eq(List.of(BeerAdjustment.builder().id(1).build()))))
+                .willThrow(new InvalidRequestException("adjustments[0]: quantityDelta or price is required"));
+        mockMvc.perform(post("/api/v1/beers/adjustments")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[{\"id\":1}]"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.detail", is("adjustments[0]: quantityDelta or price is required")));
+    }
 }
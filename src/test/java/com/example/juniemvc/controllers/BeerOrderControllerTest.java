@@ -2,23 +2,43 @@ package com.example.juniemvc.controllers;
 
 import com.example.juniemvc.models.BeerOrderDto;
 import com.example.juniemvc.models.BeerOrderLineDto;
+import com.example.juniemvc.models.BeerOrderQuery;
+import com.example.juniemvc.models.CursorPage;
+import com.example.juniemvc.entities.enums.OrderStatus;
+import com.example.juniemvc.services.AllocationService;
 import com.example.juniemvc.services.BeerOrderService;
+import com.example.juniemvc.services.OrderStatusConflictException;
+import com.example.juniemvc.services.OrderStatusFeed;
+import com.example.juniemvc.services.OrderStreamLimitException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.context.TestConfiguration;
 import org.springframework.context.annotation.Bean;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.SliceImpl;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.function.Consumer;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.hamcrest.Matchers.is;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
 @WebMvcTest(controllers = BeerOrderController.class)
@@ -33,12 +53,28 @@ class BeerOrderControllerTest {
     @Autowired
     BeerOrderService beerOrderService;
 
+    @Autowired
+    AllocationService allocationService;
+
+    @Autowired
+    OrderStatusFeed orderStatusFeed;
+
     @TestConfiguration
     static class Config {
         @Bean
         BeerOrderService beerOrderService() {
             return Mockito.mock(BeerOrderService.class);
         }
+
+        @Bean
+        AllocationService allocationService() {
+            return Mockito.mock(AllocationService.class);
+        }
+
+        @Bean
+        OrderStatusFeed orderStatusFeed() {
+            return Mockito.mock(OrderStatusFeed.class);
+        }
     }
 
     @Test
@@ -85,6 +121,255 @@ class BeerOrderControllerTest {
 
         mockMvc.perform(get("/api/v1/orders/5"))
                 .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"5-0\""))
                 .andExpect(jsonPath("$.id", is(5)));
     }
+
+    @Test
+    void get_with_matching_if_none_match_should_return_304_without_loading() throws Exception {
+        Mockito.when(beerOrderService.getVersion(6)).thenReturn(Optional.of(2));
+
+        mockMvc.perform(get("/api/v1/orders/6").header("If-None-Match", "\"6-1\", \"6-2\""))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string("ETag", "\"6-2\""));
+
+        Mockito.verify(beerOrderService, Mockito.never()).getById(6);
+    }
+
+    @Test
+    void patch_with_stale_if_match_should_return_412() throws Exception {
+        Mockito.when(beerOrderService.getVersion(7)).thenReturn(Optional.of(3));
+
+        mockMvc.perform(patch("/api/v1/orders/7")
+                        .header("If-Match", "\"7-2\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"customerRef\":\"X\"}"))
+                .andExpect(status().isPreconditionFailed());
+
+        Mockito.verify(beerOrderService, Mockito.never()).patch(Mockito.any(), Mockito.any());
+    }
+
+    @Test
+    void export_should_stream_ndjson() throws Exception {
+        Mockito.when(beerOrderService.exportOrders(Mockito.any())).thenAnswer(inv -> {
+            Consumer<BeerOrderDto> sink = inv.getArgument(0);
+            sink.accept(BeerOrderDto.builder().id(1).customerRef("A").build());
+            sink.accept(BeerOrderDto.builder().id(2).customerRef("B").build());
+            return 2L;
+        });
+
+        MvcResult started = mockMvc.perform(get("/api/v1/orders/export"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        String body = mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON))
+                .andReturn().getResponse().getContentAsString();
+
+        String[] lines = body.split("\n");
+        assertThat(lines).hasSize(2);
+        assertThat(objectMapper.readValue(lines[1], BeerOrderDto.class).getCustomerRef())
+                .isEqualTo("B");
+    }
+
+    @Test
+    void allocate_should_return_allocated_order() throws Exception {
+        BeerOrderDto allocated = BeerOrderDto.builder().id(8).version(2).status(OrderStatus.ALLOCATED).build();
+        Mockito.when(beerOrderService.getById(8)).thenReturn(allocated);
+
+        mockMvc.perform(post("/api/v1/orders/8/allocation"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"8-2\""))
+                .andExpect(jsonPath("$.status", is("ALLOCATED")));
+
+        Mockito.verify(allocationService).allocate(8);
+    }
+
+    @Test
+    void allocate_cancelled_order_should_return_409() throws Exception {
+        Mockito.when(allocationService.allocate(9))
+                .thenThrow(new OrderStatusConflictException(9, OrderStatus.CANCELLED, "allocated"));
+
+        mockMvc.perform(post("/api/v1/orders/9/allocation"))
+                .andExpect(status().isConflict())
+                .andExpect(jsonPath("$.title", is("Order status conflict")));
+    }
+
+    @Test
+    void list_should_pass_the_filters_to_the_service() throws Exception {
+        Mockito.clearInvocations(beerOrderService);
+        Mockito.when(beerOrderService.list(Mockito.any(), Mockito.any())).thenReturn(Page.empty());
+
+        mockMvc.perform(get("/api/v1/orders?status=NEW&status=ALLOCATION_PENDING&customerRef=C1"
+                        + "&createdFrom=2026-01-01T00:00:00&updatedTo=2026-02-01T00:00:00"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.totalElements", is(0)));
+
+        ArgumentCaptor<BeerOrderQuery> query = ArgumentCaptor.forClass(BeerOrderQuery.class);
+        Mockito.verify(beerOrderService).list(query.capture(), Mockito.any());
+        assertThat(query.getValue().getStatuses()).containsExactlyInAnyOrder(OrderStatus.NEW, OrderStatus.ALLOCATION_PENDING);
+        assertThat(query.getValue().getCustomerRef()).isEqualTo("C1");
+        assertThat(query.getValue().getCreatedFrom()).isEqualTo(LocalDateTime.of(2026, 1, 1, 0, 0));
+        assertThat(query.getValue().getUpdatedTo()).isEqualTo(LocalDateTime.of(2026, 2, 1, 0, 0));
+    }
+
+    @Test
+    void list_with_unknown_status_should_return_400() throws Exception {
+        mockMvc.perform(get("/api/v1/orders?status=SHIPPED"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.detail", is("Invalid value for status: SHIPPED")));
+    }
+
+    @Test
+    void list_with_cursor_should_return_a_cursor_page_with_the_estimated_total() throws Exception {
+        BeerOrderDto order = BeerOrderDto.builder().id(7).customerRef("C1").build();
+        Mockito.when(beerOrderService.scroll(Mockito.any(), Mockito.eq(""), Mockito.eq(1)))
+                .thenReturn(CursorPage.<BeerOrderDto>builder().content(List.of(order)).size(1).nextCursor("next").build());
+        Mockito.when(beerOrderService.estimateCount(Mockito.any())).thenReturn(OptionalLong.of(40));
+
+        mockMvc.perform(get("/api/v1/orders?cursor=&size=1&totals=estimated"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content[0].id", is(7)))
+                .andExpect(jsonPath("$.nextCursor", is("next")))
+                .andExpect(jsonPath("$.totalElements", is(40)))
+                .andExpect(jsonPath("$.page").doesNotExist());
+        mockMvc.perform(get("/api/v1/orders?cursor=&totals=exact"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void list_with_estimated_totals_should_not_count() throws Exception {
+        Mockito.clearInvocations(beerOrderService);
+        BeerOrderDto order = BeerOrderDto.builder().id(7).customerRef("C1").build();
+        Mockito.when(beerOrderService.slice(Mockito.any(), Mockito.any()))
+                .thenReturn(new SliceImpl<>(List.of(order, order), PageRequest.of(1, 2), true));
+        Mockito.when(beerOrderService.estimateCount(Mockito.any())).thenReturn(OptionalLong.of(41));
+
+        mockMvc.perform(get("/api/v1/orders?page=1&size=2&totals=estimated"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.page", is(1)))
+                .andExpect(jsonPath("$.totalElements", is(41)))
+                .andExpect(jsonPath("$.totalPages", is(21)));
+
+        Mockito.verify(beerOrderService, Mockito.never()).list(Mockito.any(), Mockito.any());
+    }
+
+    @Test
+    void list_with_estimated_totals_should_leave_out_a_total_not_yet_counted() throws Exception {
+        BeerOrderDto order = BeerOrderDto.builder().id(7).customerRef("C1").build();
+        Mockito.when(beerOrderService.slice(Mockito.any(), Mockito.any()))
+                .thenReturn(new SliceImpl<>(List.of(order, order), PageRequest.of(0, 2), true));
+        Mockito.when(beerOrderService.estimateCount(Mockito.any())).thenReturn(OptionalLong.empty());
+
+        mockMvc.perform(get("/api/v1/orders?size=2&totals=estimated"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content.length()", is(2)))
+                .andExpect(jsonPath("$.totalElements").doesNotExist())
+                .andExpect(jsonPath("$.totalPages").doesNotExist());
+    }
+
+    @Test
+    void status_stream_without_exactly_one_filter_should_return_400() throws Exception {
+        mockMvc.perform(get("/api/v1/orders/status-stream").accept(MediaType.TEXT_EVENT_STREAM))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/api/v1/orders/status-stream?id=1&customerRef=C1").accept(MediaType.TEXT_EVENT_STREAM))
+                .andExpect(status().isBadRequest());
+
+        Mockito.verify(orderStatusFeed, Mockito.never()).subscribe(Mockito.any(), Mockito.any());
+    }
+
+    @Test
+    void status_stream_over_subscriber_limit_should_return_503_with_retry_after() throws Exception {
+        Mockito.when(orderStatusFeed.subscribe(Mockito.any(), Mockito.any()))
+                .thenThrow(new OrderStreamLimitException(1000));
+
+        mockMvc.perform(get("/api/v1/orders/status-stream?customerRef=C1").accept(MediaType.TEXT_EVENT_STREAM))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string("Retry-After", "5"))
+                .andExpect(jsonPath("$.title", is("Too many order status streams")));
+    }
+
+    @Test
+    void add_line_should_return_the_line_or_nothing_with_prefer_minimal() throws Exception {
+        BeerOrderLineDto line = BeerOrderLineDto.builder().beerId(1).orderQuantity(2).build();
+        Mockito.when(beerOrderService.addLine(Mockito.eq(5), Mockito.any()))
+                .thenReturn(line.toBuilder().id(40).version(0).build());
+
+        mockMvc.perform(post("/api/v1/orders/5/lines")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(line)))
+                .andExpect(status().isCreated())
+                .andExpect(header().string("Location", "/api/v1/orders/5/lines/40"))
+                .andExpect(jsonPath("$.id", is(40)))
+                .andExpect(jsonPath("$.lines").doesNotExist());
+
+        mockMvc.perform(post("/api/v1/orders/5/lines")
+                        .header("Prefer", "return=minimal")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(line)))
+                .andExpect(status().isCreated())
+                .andExpect(header().string("Location", "/api/v1/orders/5/lines/40"))
+                .andExpect(header().string("Preference-Applied", "return=minimal"))
+                .andExpect(content().string(""));
+    }
+
+    @Test
+    void update_line_with_prefer_minimal_should_return_204() throws Exception {
+        BeerOrderLineDto line = BeerOrderLineDto.builder().beerId(1).orderQuantity(3).build();
+        Mockito.when(beerOrderService.updateLine(Mockito.eq(5), Mockito.eq(40), Mockito.any()))
+                .thenReturn(line.toBuilder().id(40).version(1).build());
+
+        mockMvc.perform(put("/api/v1/orders/5/lines/40")
+                        .header("Prefer", "respond-async, return=minimal")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(line)))
+                .andExpect(status().isNoContent())
+                .andExpect(header().string("Preference-Applied", "return=minimal"));
+    }
+
+    @Test
+    void merge_patch_should_merge_lines_by_id_and_save_like_put() throws Exception {
+        BeerOrderDto current = BeerOrderDto.builder()
+                .id(8).version(3).customerRef("MERGE").status(OrderStatus.NEW)
+                .lines(List.of(
+                        BeerOrderLineDto.builder().id(1).beerId(1).orderQuantity(2).build(),
+                        BeerOrderLineDto.builder().id(2).beerId(1).orderQuantity(3).build(),
+                        BeerOrderLineDto.builder().id(3).beerId(1).orderQuantity(4).build()))
+                .build();
+        Mockito.when(beerOrderService.getById(8)).thenReturn(current);
+        Mockito.when(beerOrderService.update(Mockito.eq(8), Mockito.any()))
+                .thenAnswer(invocation -> invocation.<BeerOrderDto>getArgument(1).toBuilder().version(4).build());
+
+        mockMvc.perform(patch("/api/v1/orders/8")
+                        .contentType("application/merge-patch+json")
+                        .content("{\"customerRef\":null,\"version\":99,\"lines\":[{\"id\":1},{\"id\":2,\"orderQuantity\":5},{\"beerId\":1,\"orderQuantity\":1}]}"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"8-4\""));
+
+        ArgumentCaptor<BeerOrderDto> saved = ArgumentCaptor.forClass(BeerOrderDto.class);
+        Mockito.verify(beerOrderService).update(Mockito.eq(8), saved.capture());
+        assertThat(saved.getValue().getCustomerRef()).isNull();
+        assertThat(saved.getValue().getVersion()).isEqualTo(3);
+        assertThat(saved.getValue().getLines()).extracting(BeerOrderLineDto::getId).containsExactly(1, 2, null);
+        assertThat(saved.getValue().getLines()).extracting(BeerOrderLineDto::getOrderQuantity).containsExactly(2, 5, 1);
+    }
+
+    @Test
+    void merge_patch_leaving_an_invalid_order_should_return_400() throws Exception {
+        Mockito.when(beerOrderService.getById(9)).thenReturn(BeerOrderDto.builder()
+                .id(9).version(0)
+                .lines(List.of(BeerOrderLineDto.builder().id(1).beerId(1).orderQuantity(2).build()))
+                .build());
+
+        mockMvc.perform(patch("/api/v1/orders/9")
+                        .contentType("application/merge-patch+json")
+                        .content("{\"lines\":[{\"id\":1,\"orderQuantity\":0}]}"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(patch("/api/v1/orders/9")
+                        .contentType("application/merge-patch+json")
+                        .content("[]"))
+                .andExpect(status().isBadRequest());
+        Mockito.verify(beerOrderService, Mockito.never()).update(Mockito.eq(9), Mockito.any());
+    }
 }
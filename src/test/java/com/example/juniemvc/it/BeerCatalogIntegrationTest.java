@@ -0,0 +1,83 @@
+package com.example.juniemvc.it;
+
+import com.example.juniemvc.models.BeerDto;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class BeerCatalogIntegrationTest {
+
+    @LocalServerPort
+    int port;
+
+    @Autowired
+    TestRestTemplate restTemplate;
+
+    private String url(String path) {
+        return "http://localhost:" + port + path;
+    }
+
+    private void createBeer(String name, String style) {
+        BeerDto beer = BeerDto.builder()
+                .beerName(name)
+                .beerStyle(style)
+                .upc("CAT-" + name)
+                .quantityOnHand(10)
+                .price(new BigDecimal("4.50"))
+                .build();
+        ResponseEntity<BeerDto> resp = restTemplate.postForEntity(url("/api/v1/beers"), beer, BeerDto.class);
+        assertThat(resp.getStatusCode()).isEqualTo(HttpStatus.CREATED);
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<String> walkPages(String query) {
+        List<String> names = new ArrayList<>();
+        String cursor = null;
+        int pages = 0;
+        do {
+            String path = "/api/v1/beers?" + query + (cursor != null ? "&cursor=" + cursor : "");
+            ResponseEntity<Map> resp = restTemplate.getForEntity(url(path), Map.class);
+            assertThat(resp.getStatusCode()).isEqualTo(HttpStatus.OK);
+            List<Map<String, Object>> content = (List<Map<String, Object>>) resp.getBody().get("content");
+            content.forEach(b -> names.add((String) b.get("beerName")));
+            cursor = (String) resp.getBody().get("nextCursor");
+            pages++;
+        } while (cursor != null && pages < 10);
+        return names;
+    }
+
+    @Test
+    void walk_catalog_with_prefix_filters_and_cursor() {
+        createBeer("Kcat Delta", "KCAT-IPA");
+        createBeer("Kcat Alpha", "KCAT-IPA");
+        createBeer("Kcat Charlie", "KCAT-IPA");
+        createBeer("Kcat Bravo", "KCAT-STOUT");
+        createBeer("Kcat Echo", "KCAT-IPA");
+
+        // id order, style prefix, two per page
+        assertThat(walkPages("beerStyle=KCAT-IPA&size=2"))
+                .containsExactly("Kcat Delta", "Kcat Alpha", "Kcat Charlie", "Kcat Echo");
+
+        // name order, name prefix covers both styles
+        assertThat(walkPages("beerName=Kcat&sort=beerName&size=2"))
+                .containsExactly("Kcat Alpha", "Kcat Bravo", "Kcat Charlie", "Kcat Delta", "Kcat Echo");
+    }
+
+    @Test
+    void malformed_cursor_returns_400() {
+        ResponseEntity<Map> resp = restTemplate.getForEntity(url("/api/v1/beers?cursor=%%%"), Map.class);
+        assertThat(resp.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+    }
+}
@@ -13,6 +13,7 @@ import org.springframework.http.*;
 import java.math.BigDecimal;
 import java.util.List;
 import java.util.Map;
+import java.util.UUID;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -35,7 +36,7 @@ class BeerOrderIntegrationTest {
         BeerDto beerReq = BeerDto.builder()
                 .beerName("Int Lager")
                 .beerStyle("LAGER")
-                .upc("INT-UPC-1")
+                .upc("INT-UPC-1-" + UUID.randomUUID())
                 .quantityOnHand(100)
                 .price(new BigDecimal("3.21"))
                 .build();
@@ -72,4 +73,29 @@ class BeerOrderIntegrationTest {
         Object sizeReturned = pageResp.getBody().get("size");
         assertThat(Integer.valueOf(sizeReturned.toString())).isLessThanOrEqualTo(200);
     }
+
+    @Test
+    void a_taken_upc_and_a_beer_still_ordered_should_conflict_each_with_its_own_reason() {
+        BeerDto beer = BeerDto.builder()
+                .beerName("Int Stout")
+                .beerStyle("STOUT")
+                .upc("INT-UPC-2-" + UUID.randomUUID())
+                .quantityOnHand(10)
+                .price(new BigDecimal("4.00"))
+                .build();
+        Integer beerId = restTemplate.postForEntity(url("/api/v1/beers"), beer, BeerDto.class).getBody().getId();
+        restTemplate.postForEntity(url("/api/v1/orders"), BeerOrderDto.builder()
+                .customerRef("INT-REF-2")
+                .lines(List.of(BeerOrderLineDto.builder().beerId(beerId).orderQuantity(1).build()))
+                .build(), BeerOrderDto.class);
+
+        ResponseEntity<ProblemDetail> taken = restTemplate.postForEntity(url("/api/v1/beers"), beer, ProblemDetail.class);
+        ResponseEntity<ProblemDetail> ordered = restTemplate.exchange(url("/api/v1/beers/" + beerId),
+                HttpMethod.DELETE, null, ProblemDetail.class);
+
+        assertThat(taken.getStatusCode()).isEqualTo(HttpStatus.CONFLICT);
+        assertThat(taken.getBody().getDetail()).isEqualTo("Another beer already has the upc");
+        assertThat(ordered.getStatusCode()).isEqualTo(HttpStatus.CONFLICT);
+        assertThat(ordered.getBody().getDetail()).isEqualTo("Still referenced by other data, e.g. a beer by order lines");
+    }
 }
@@ -0,0 +1,43 @@
+package com.example.juniemvc.it;
+
+import org.flywaydb.core.Flyway;
+import org.flywaydb.core.api.FlywayException;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+// The unique upc migration on a catalog that already has duplicates, without a Spring context
+class BeerUpcMigrationIntegrationTest {
+
+    @Test
+    void shared_upcs_should_fail_the_migration_and_be_listed_untouched() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource("jdbc:h2:mem:beer-upc-migration;DB_CLOSE_DELAY=-1", "sa", "");
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        Flyway.configure().dataSource(dataSource).target("8").load().migrate();
+        jdbcTemplate.update("""
+                insert into beer (id, version, beer_name, beer_style, upc, quantity_on_hand, price)
+                values (1, 0, 'A', 'IPA', 'DUP-1', 1, 1.00), (2, 0, 'B', 'IPA', 'DUP-1', 1, 1.00),
+                       (3, 0, 'C', 'IPA', 'DUP-2', 1, 1.00), (4, 0, 'D', 'IPA', 'DUP-2', 1, 1.00),
+                       (5, 0, 'E', 'IPA', 'DUP-2', 1, 1.00), (6, 0, 'F', 'IPA', 'OWN', 1, 1.00)""");
+
+        assertThatThrownBy(() -> Flyway.configure().dataSource(dataSource).load().migrate())
+                .isInstanceOf(FlywayException.class)
+                .rootCause()
+                .hasMessageContaining("2 upcs are shared by several beers")
+                .hasMessageContaining("DUP-1=[1, 2], DUP-2=[3, 4, 5]");
+        assertThat(jdbcTemplate.queryForList("select upc from beer order by id", String.class))
+                .containsExactly("DUP-1", "DUP-1", "DUP-2", "DUP-2", "DUP-2", "OWN");
+
+        jdbcTemplate.update("update beer set upc = upc || '-B' where id in (2, 4)");
+        jdbcTemplate.update("delete from beer where id = 5");
+        Flyway.configure().dataSource(dataSource).load().repair();
+        Flyway.configure().dataSource(dataSource).load().migrate();
+
+        assertThat(jdbcTemplate.queryForObject("""
+                select count(*) from information_schema.table_constraints where constraint_name = 'UK_BEER_UPC'""",
+                Integer.class)).isOne();
+    }
+}
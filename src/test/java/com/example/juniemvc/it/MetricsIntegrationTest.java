@@ -0,0 +1,78 @@
+package com.example.juniemvc.it;
+
+import com.example.juniemvc.models.BeerDto;
+import com.example.juniemvc.services.BeerService;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.OptimisticLockException;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@AutoConfigureObservability(tracing = false)
+class MetricsIntegrationTest {
+
+    @Autowired
+    TestRestTemplate restTemplate;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @Autowired
+    BeerService beerService;
+
+    @Test
+    void service_operations_should_be_timed_by_outcome() {
+        BeerDto beer = beerService.saveBeer(BeerDto.builder()
+                .beerName("Metrics Lager")
+                .beerStyle("LAGER")
+                .upc("METRICS-1-" + UUID.randomUUID())
+                .quantityOnHand(1)
+                .price(new BigDecimal("1.00"))
+                .build());
+
+        restTemplate.getForEntity("/api/v1/beers/" + beer.getId(), BeerDto.class);
+        restTemplate.getForEntity("/api/v1/beers/999999", BeerDto.class);
+        BeerDto stale = beer.toBuilder().version(beer.getVersion() + 1).build();
+        assertThatThrownBy(() -> beerService.updateBeer(beer.getId(), stale))
+                .isInstanceOf(OptimisticLockException.class);
+
+        assertThat(count("getBeerById", "success")).isPositive();
+        assertThat(count("getBeerById", "not_found")).isPositive();
+        assertThat(count("updateBeer", "conflict")).isPositive();
+    }
+
+    @Test
+    void prometheus_should_expose_service_hibernate_and_pool_meters() {
+        restTemplate.getForEntity("/api/v1/beers?size=1", String.class);
+
+        ResponseEntity<String> scrape = restTemplate.getForEntity("/actuator/prometheus", String.class);
+
+        assertThat(scrape.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(scrape.getBody())
+                .contains("juniemvc_service_seconds_bucket{")
+                .contains("operation=\"listBeers\"")
+                .contains("hibernate_sessions_open_total")
+                .contains("hibernate_entities_loads_total")
+                .contains("hibernate_entities_fetches_total")
+                .contains("hikaricp_connections_acquire_seconds_bucket{");
+    }
+
+    private long count(String operation, String outcome) {
+        return meterRegistry.find("juniemvc.service")
+                .tags("service", "BeerService", "operation", operation, "outcome", outcome)
+                .timers().stream()
+                .mapToLong(timer -> timer.count())
+                .sum();
+    }
+}
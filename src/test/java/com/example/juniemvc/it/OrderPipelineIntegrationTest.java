@@ -0,0 +1,74 @@
+package com.example.juniemvc.it;
+
+import com.example.juniemvc.entities.Beer;
+import com.example.juniemvc.entities.enums.OrderStatus;
+import com.example.juniemvc.models.BeerDto;
+import com.example.juniemvc.models.BeerOrderDto;
+import com.example.juniemvc.models.BeerOrderLineDto;
+import com.example.juniemvc.repositories.BeerRepository;
+import com.example.juniemvc.services.OrderPipelineRunner;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "juniemvc.pipeline.enabled=true",
+        "juniemvc.pipeline.poll-interval=50ms"
+})
+class OrderPipelineIntegrationTest {
+
+    @Autowired
+    TestRestTemplate restTemplate;
+
+    @Autowired
+    BeerRepository beerRepository;
+
+    @Autowired
+    OrderPipelineRunner orderPipelineRunner;
+
+    @Test
+    void posted_orders_should_be_validated_and_allocated_in_the_background() throws Exception {
+        Integer beerId = beerRepository.save(Beer.builder()
+                .beerName("Async Amber")
+                .beerStyle("AMBER")
+                .upc("ASYNC-1-" + UUID.randomUUID())
+                .quantityOnHand(10)
+                .price(new BigDecimal("4.80"))
+                .build()).getId();
+        BeerOrderDto request = BeerOrderDto.builder()
+                .customerRef("ASYNC")
+                .lines(List.of(BeerOrderLineDto.builder().beerId(beerId).orderQuantity(4).build()))
+                .build();
+
+        ResponseEntity<BeerOrderDto> created = restTemplate.postForEntity("/api/v1/orders", request, BeerOrderDto.class);
+
+        assertThat(created.getStatusCode()).isEqualTo(HttpStatus.CREATED);
+        assertThat(orderPipelineRunner.isRunning()).isTrue();
+        Integer orderId = created.getBody().getId();
+        assertThat(awaitStatus(orderId, OrderStatus.ALLOCATED, Duration.ofSeconds(10))).isEqualTo(OrderStatus.ALLOCATED);
+        assertThat(restTemplate.getForObject("/api/v1/beers/" + beerId, BeerDto.class).getQuantityOnHand()).isEqualTo(6);
+    }
+
+    private OrderStatus awaitStatus(Integer orderId, OrderStatus expected, Duration timeout) throws InterruptedException {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        OrderStatus status;
+        do {
+            status = restTemplate.getForObject("/api/v1/orders/" + orderId, BeerOrderDto.class).getStatus();
+            if (status == expected) {
+                break;
+            }
+            Thread.sleep(50);
+        } while (System.nanoTime() < deadline);
+        return status;
+    }
+}
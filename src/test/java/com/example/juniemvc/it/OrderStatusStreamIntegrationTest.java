@@ -0,0 +1,214 @@
+package com.example.juniemvc.it;
+
+import com.example.juniemvc.entities.enums.LineStatus;
+import com.example.juniemvc.entities.enums.OrderStatus;
+import com.example.juniemvc.models.BeerDto;
+import com.example.juniemvc.models.BeerOrderDto;
+import com.example.juniemvc.models.BeerOrderLineDto;
+import com.example.juniemvc.services.OrderStatusFeed;
+import com.example.juniemvc.services.OrderStatusFeed.Filter;
+import com.example.juniemvc.services.OrderStatusFeed.Subscription;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.boot.test.web.server.LocalServerPort;
+
+import java.math.BigDecimal;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "juniemvc.outbox.poll-interval=50ms",
+        "juniemvc.order-stream.poll-interval=50ms",
+        "juniemvc.order-stream.heartbeat-interval=300ms"
+})
+class OrderStatusStreamIntegrationTest {
+
+    @LocalServerPort
+    int port;
+
+    @Autowired
+    TestRestTemplate restTemplate;
+
+    @Autowired
+    ObjectMapper objectMapper;
+
+    @Autowired
+    OrderStatusFeed feed;
+
+    @Test
+    void stream_should_push_status_changes_and_resume_after_last_event_id() throws Exception {
+        String customerRef = "SSE-" + UUID.randomUUID();
+        BeerOrderDto order = newOrder(customerRef);
+
+        String lastEventId;
+        String replayedId;
+        // another client keeps following the order while the first one is disconnected
+        try (SseClient other = SseClient.open(port, "id=" + order.getId(), null)) {
+            try (SseClient stream = SseClient.open(port, "id=" + order.getId(), null)) {
+                // starts with the current state
+                Map<String, String> snapshot = stream.nextEvent();
+                assertThat(snapshot.get("event")).isEqualTo("order");
+                assertThat(read(snapshot).getStatus()).isEqualTo(OrderStatus.NEW);
+
+                restTemplate.postForEntity("/api/v1/orders/" + order.getId() + "/allocation", null, BeerOrderDto.class);
+
+                Map<String, String> allocated = stream.nextEvent();
+                assertThat(read(allocated).getStatus()).isEqualTo(OrderStatus.ALLOCATED);
+                assertThat(read(allocated).getLines()).extracting(BeerOrderLineDto::getStatus).containsOnly(LineStatus.ALLOCATED);
+                lastEventId = allocated.get("id");
+                // idle streams get heartbeats
+                assertThat(stream.nextLine(line -> line.startsWith(":"))).isNotNull();
+            }
+
+            // changed while disconnected
+            BeerOrderDto picked = restTemplate.patchForObject("/api/v1/orders/" + order.getId(),
+                    BeerOrderDto.builder().status(OrderStatus.PICKED_UP).build(), BeerOrderDto.class);
+            awaitRelayed(order.getId(), lastEventId, picked.getVersion());
+
+            try (SseClient resumed = SseClient.open(port, "customerRef=" + customerRef, lastEventId)) {
+                // replays the change after the last event instead of a snapshot (which would leave out PICKED_UP orders)
+                Map<String, String> replayed = resumed.nextEvent();
+                assertThat(read(replayed).getStatus()).isEqualTo(OrderStatus.PICKED_UP);
+                assertThat(read(replayed).getVersion()).isEqualTo(picked.getVersion());
+                assertThat(replayed.get("id")).isNotEqualTo(lastEventId);
+                replayedId = replayed.get("id");
+            }
+        }
+
+        // changed while nobody follows the node's orders: the feed skips it, resuming still shows it
+        restTemplate.patchForObject("/api/v1/orders/" + order.getId(),
+                BeerOrderDto.builder().paymentAmount(new BigDecimal("9.99")).build(), BeerOrderDto.class);
+        try (SseClient resumed = SseClient.open(port, "id=" + order.getId(), replayedId)) {
+            assertThat(read(resumed.nextEvent()).getPaymentAmount()).isEqualByComparingTo("9.99");
+        }
+    }
+
+    @Test
+    void customer_stream_should_start_with_open_orders_and_report_deletions() throws Exception {
+        String customerRef = "SSE-" + UUID.randomUUID();
+        BeerOrderDto first = newOrder(customerRef);
+        BeerOrderDto second = newOrder(customerRef);
+
+        try (SseClient stream = SseClient.open(port, "customerRef=" + customerRef, null)) {
+            assertThat(List.of(read(stream.nextEvent()).getId(), read(stream.nextEvent()).getId()))
+                    .containsExactly(second.getId(), first.getId());
+
+            restTemplate.delete("/api/v1/orders/" + first.getId());
+
+            Map<String, String> deleted = stream.nextEvent();
+            assertThat(deleted.get("event")).isEqualTo("order-deleted");
+            assertThat(read(deleted).getId()).isEqualTo(first.getId());
+        }
+    }
+
+    // the replay only holds what the feed has read from the change log
+    private void awaitRelayed(Integer orderId, String lastEventId, Integer version) throws Exception {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        do {
+            try (Subscription probe = feed.subscribe(new Filter(Set.of(orderId), null), lastEventId)) {
+                if (probe.initial().stream().anyMatch(change -> version.equals(change.order().getVersion()))) {
+                    return;
+                }
+            }
+            Thread.sleep(50);
+        } while (System.nanoTime() < deadline);
+        throw new AssertionError("Version %d not relayed".formatted(version));
+    }
+
+    private BeerOrderDto read(Map<String, String> event) throws Exception {
+        return objectMapper.readValue(event.get("data"), BeerOrderDto.class);
+    }
+
+    private BeerOrderDto newOrder(String customerRef) {
+        BeerDto beer = restTemplate.postForEntity("/api/v1/beers", BeerDto.builder()
+                .beerName("Stream Stout")
+                .beerStyle("STOUT")
+                .upc("SSE-1-" + UUID.randomUUID())
+                .quantityOnHand(10)
+                .price(new BigDecimal("5.10"))
+                .build(), BeerDto.class).getBody();
+        return restTemplate.postForEntity("/api/v1/orders", BeerOrderDto.builder()
+                .customerRef(customerRef)
+                .lines(List.of(BeerOrderLineDto.builder().beerId(beer.getId()).orderQuantity(2).build()))
+                .build(), BeerOrderDto.class).getBody();
+    }
+
+    // Minimal text/event-stream reader: lines are read on a virtual thread into a queue
+    static final class SseClient implements AutoCloseable {
+
+        private final BlockingQueue<String> lines = new LinkedBlockingQueue<>();
+        private final Stream<String> body;
+
+        private SseClient(Stream<String> body) {
+            this.body = body;
+            Thread.ofVirtual().start(() -> {
+                try {
+                    body.forEach(lines::add);
+                } catch (RuntimeException ex) {
+                    // closed
+                }
+            });
+        }
+
+        static SseClient open(int port, String query, String lastEventId) throws Exception {
+            HttpRequest.Builder request = HttpRequest.newBuilder(
+                            URI.create("http://localhost:%d/api/v1/orders/status-stream?%s".formatted(port, query)))
+                    .header("Accept", "text/event-stream");
+            if (lastEventId != null) {
+                request.header("Last-Event-ID", lastEventId);
+            }
+            HttpResponse<Stream<String>> response = HttpClient.newHttpClient()
+                    .send(request.build(), HttpResponse.BodyHandlers.ofLines());
+            assertThat(response.statusCode()).isEqualTo(200);
+            return new SseClient(response.body());
+        }
+
+        // The next event (fields up to a blank line), skipping comment lines
+        Map<String, String> nextEvent() throws InterruptedException {
+            Map<String, String> fields = new HashMap<>();
+            while (true) {
+                String line = lines.poll(10, TimeUnit.SECONDS);
+                assertThat(line).as("event within 10s").isNotNull();
+                if (line.isEmpty()) {
+                    if (!fields.isEmpty()) {
+                        return fields;
+                    }
+                } else if (!line.startsWith(":")) {
+                    int colon = line.indexOf(':');
+                    fields.merge(line.substring(0, colon), line.substring(colon + 1), (a, b) -> a + "\n" + b);
+                }
+            }
+        }
+
+        String nextLine(Predicate<String> matching) throws InterruptedException {
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            String line;
+            do {
+                line = lines.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+            } while (line != null && !matching.test(line));
+            return line;
+        }
+
+        @Override
+        public void close() {
+            body.close();
+        }
+    }
+}
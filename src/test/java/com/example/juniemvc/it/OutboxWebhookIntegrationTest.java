@@ -0,0 +1,122 @@
+package com.example.juniemvc.it;
+
+import com.example.juniemvc.models.BeerDto;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "juniemvc.outbox.sink=webhook",
+        "juniemvc.outbox.poll-interval=50ms"
+})
+class OutboxWebhookIntegrationTest {
+
+    // Local stand-in for the downstream webhook: rejects the first batch, then accepts and keeps the events
+    static final List<String> received = new CopyOnWriteArrayList<>();
+    static final AtomicInteger requests = new AtomicInteger();
+    static final HttpServer receiver = startReceiver();
+
+    @Autowired
+    TestRestTemplate restTemplate;
+
+    @Autowired
+    ObjectMapper objectMapper;
+
+    @DynamicPropertySource
+    static void webhookUrl(DynamicPropertyRegistry registry) {
+        registry.add("juniemvc.outbox.webhook-url",
+                () -> "http://localhost:%d/events".formatted(receiver.getAddress().getPort()));
+    }
+
+    @AfterAll
+    static void stopReceiver() {
+        receiver.stop(0);
+    }
+
+    @Test
+    void beer_changes_should_reach_the_webhook_in_order_despite_a_failed_delivery() throws Exception {
+        BeerDto created = restTemplate.postForEntity("/api/v1/beers", BeerDto.builder()
+                .beerName("Hook Hefe")
+                .beerStyle("WHEAT")
+                .upc("HOOK-1-" + UUID.randomUUID())
+                .quantityOnHand(12)
+                .price(new BigDecimal("3.70"))
+                .build(), BeerDto.class).getBody();
+        created.setQuantityOnHand(24);
+        restTemplate.put("/api/v1/beers/" + created.getId(), created);
+
+        List<JsonNode> events = awaitEvents(created.getId(), 2, Duration.ofSeconds(10));
+
+        assertThat(events).extracting(event -> event.get("eventType").asText())
+                .containsExactly("BEER_CREATED", "BEER_UPDATED");
+        assertThat(events.get(1).get("payload").get("quantityOnHand").asInt()).isEqualTo(24);
+        assertThat(events.get(0).get("id").asLong()).isLessThan(events.get(1).get("id").asLong());
+        // the first batch was rejected and published again
+        assertThat(requests.get()).isGreaterThan(1);
+    }
+
+    private List<JsonNode> awaitEvents(Integer beerId, int count, Duration timeout) throws Exception {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        List<JsonNode> events;
+        do {
+            events = received.stream()
+                    .map(this::parse)
+                    .filter(event -> event.get("aggregateType").asText().equals("Beer")
+                            && event.get("aggregateId").asInt() == beerId)
+                    .toList();
+            if (events.size() >= count) {
+                break;
+            }
+            Thread.sleep(50);
+        } while (System.nanoTime() < deadline);
+        return events;
+    }
+
+    private JsonNode parse(String line) {
+        try {
+            return objectMapper.readTree(line);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private static HttpServer startReceiver() {
+        try {
+            HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+            server.createContext("/events", exchange -> {
+                String body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+                if (requests.incrementAndGet() > 1) {
+                    body.lines().filter(line -> !line.isBlank()).forEach(received::add);
+                    exchange.sendResponseHeaders(204, -1);
+                } else {
+                    exchange.sendResponseHeaders(503, -1);
+                }
+                exchange.close();
+            });
+            server.start();
+            return server;
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+}
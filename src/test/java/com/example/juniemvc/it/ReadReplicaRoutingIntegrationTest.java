@@ -0,0 +1,148 @@
+package com.example.juniemvc.it;
+
+import com.example.juniemvc.entities.Beer;
+import com.example.juniemvc.models.BeerDto;
+import com.example.juniemvc.models.BeerOrderDto;
+import com.example.juniemvc.models.BeerOrderLineDto;
+import com.example.juniemvc.repositories.ReadRouting;
+import com.example.juniemvc.services.BeerOrderService;
+import com.example.juniemvc.services.BeerService;
+import com.example.juniemvc.services.ReplicaLagMonitor;
+import com.example.juniemvc.web.ReadYourWritesFilter;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.EntityNotFoundException;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+// Two H2 instances without replication between them: what a read finds tells where it ran
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "juniemvc.read-replicas.enabled=true",
+        "juniemvc.read-replicas.replicas[0].url=" + ReadReplicaRoutingIntegrationTest.REPLICA_URL,
+        "juniemvc.read-replicas.replicas[0].username=sa",
+        // probed when the tests call check()
+        "juniemvc.read-replicas.heartbeat-interval=1h",
+        "juniemvc.read-replicas.max-lag=1m",
+        "juniemvc.read-replicas.stickiness=1m",
+        // the relayed creation of a test's beer would evict it from the second-level cache mid-test
+        "juniemvc.cache.beer-change-poll-interval=1h"
+})
+class ReadReplicaRoutingIntegrationTest {
+
+    static final String REPLICA_URL = "jdbc:h2:mem:read-replica-routing;DB_CLOSE_DELAY=-1";
+
+    static final JdbcTemplate replica = new JdbcTemplate(new DriverManagerDataSource(REPLICA_URL, "sa", ""));
+
+    @Autowired
+    TestRestTemplate restTemplate;
+
+    @Autowired
+    BeerOrderService beerOrderService;
+
+    @Autowired
+    BeerService beerService;
+
+    @Autowired
+    ReplicaLagMonitor replicaLagMonitor;
+
+    @Autowired
+    EntityManagerFactory entityManagerFactory;
+
+    @BeforeAll
+    static void migrateReplica() {
+        Flyway.configure().dataSource(replica.getDataSource()).load().migrate();
+    }
+
+    @Test
+    void read_only_transactions_should_run_on_a_current_replica_and_fall_back_to_the_primary() {
+        BeerOrderDto order = newOrder().getBody();
+        replicatedHeartbeat(Duration.ZERO);
+
+        // not on the replica
+        assertThatThrownBy(() -> beerOrderService.getById(order.getId())).isInstanceOf(EntityNotFoundException.class);
+        assertThat(ReadRouting.onPrimary(() -> beerOrderService.getById(order.getId())).getId()).isEqualTo(order.getId());
+
+        replicatedHeartbeat(Duration.ofMinutes(2));
+
+        assertThat(beerOrderService.getById(order.getId()).getId()).isEqualTo(order.getId());
+    }
+
+    @Test
+    void a_client_should_read_its_own_writes_from_the_primary() {
+        ResponseEntity<BeerOrderDto> created = newOrder();
+        String lastWrite = created.getHeaders().getFirst(HttpHeaders.SET_COOKIE);
+        assertThat(lastWrite).startsWith(ReadYourWritesFilter.COOKIE + "=");
+        replicatedHeartbeat(Duration.ZERO);
+
+        String path = "/api/v1/orders/" + created.getBody().getId();
+        HttpHeaders sticky = new HttpHeaders();
+        sticky.add(HttpHeaders.COOKIE, lastWrite.substring(0, lastWrite.indexOf(';')));
+        assertThat(restTemplate.exchange(path, HttpMethod.GET, new HttpEntity<>(sticky), BeerOrderDto.class)
+                .getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(restTemplate.getForEntity(path, String.class).getStatusCode()).isEqualTo(HttpStatus.NOT_FOUND);
+    }
+
+    @Test
+    void a_beer_read_on_a_replica_should_stay_out_of_the_second_level_cache() {
+        BeerDto beer = newBeer();
+        // the replica has an older version of the beer
+        replica.update("""
+                insert into beer (id, version, beer_name, beer_style, upc, quantity_on_hand, price, created_date, update_date)
+                values (?, ?, 'Stale Red', ?, ?, ?, ?, localtimestamp, localtimestamp)""",
+                beer.getId(), beer.getVersion(), beer.getBeerStyle(), beer.getUpc(), beer.getQuantityOnHand(), beer.getPrice());
+        entityManagerFactory.getCache().evict(Beer.class, beer.getId());
+        replicatedHeartbeat(Duration.ZERO);
+
+        assertThat(beerService.getBeerById(beer.getId())).get().extracting(BeerDto::getBeerName).isEqualTo("Stale Red");
+        assertThat(entityManagerFactory.getCache().contains(Beer.class, beer.getId())).isFalse();
+
+        assertThat(ReadRouting.onPrimary(() -> beerService.getBeerById(beer.getId()))).get()
+                .extracting(BeerDto::getBeerName).isEqualTo("Replica Red");
+        assertThat(entityManagerFactory.getCache().contains(Beer.class, beer.getId())).isTrue();
+        // served from the cache now, and the replica has not replaced it
+        assertThat(beerService.getBeerById(beer.getId())).get().extracting(BeerDto::getBeerName).isEqualTo("Replica Red");
+    }
+
+    // What replication would have brought over from the primary that long ago; both databases run in this JVM
+    private void replicatedHeartbeat(Duration ago) {
+        replica.update("update replication_heartbeat set beat = dateadd(millisecond, ?, localtimestamp) where id = 1",
+                -ago.toMillis());
+        replicaLagMonitor.check();
+    }
+
+    private BeerDto newBeer() {
+        return restTemplate.postForEntity("/api/v1/beers", BeerDto.builder()
+                .beerName("Replica Red")
+                .beerStyle("RED")
+                .upc("RR-" + UUID.randomUUID())
+                .quantityOnHand(10)
+                .price(new BigDecimal("4.20"))
+                .build(), BeerDto.class).getBody();
+    }
+
+    private ResponseEntity<BeerOrderDto> newOrder() {
+        BeerDto beer = newBeer();
+        return restTemplate.postForEntity("/api/v1/orders", BeerOrderDto.builder()
+                .customerRef("RR-" + UUID.randomUUID())
+                .lines(List.of(BeerOrderLineDto.builder().beerId(beer.getId()).orderQuantity(1).build()))
+                .build(), BeerOrderDto.class);
+    }
+}
@@ -0,0 +1,192 @@
+package com.example.juniemvc.it;
+
+import com.example.juniemvc.models.BeerDto;
+import com.example.juniemvc.models.BeerOrderDto;
+import com.example.juniemvc.models.BeerOrderLineDto;
+import com.example.juniemvc.web.SqlStatementBudget;
+import com.example.juniemvc.web.SqlStatementBudgetExtension;
+import com.example.juniemvc.web.SqlStatementBudgetFilter;
+import com.example.juniemvc.web.SqlStatementRecorder;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// statements are counted on all threads; the outbox relay would add the reads of the order status feed
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "juniemvc.sql-budget.response-header=true",
+        "juniemvc.outbox.relay-enabled=false"
+})
+@ExtendWith(SqlStatementBudgetExtension.class)
+class SqlStatementBudgetIntegrationTest {
+
+    @Autowired
+    TestRestTemplate restTemplate;
+
+    @Test
+    void order_read_should_run_one_statement_and_report_it(SqlStatementRecorder sql) {
+        BeerDto beer = restTemplate.postForEntity("/api/v1/beers", BeerDto.builder()
+                .beerName("Budget Lager")
+                .beerStyle("LAGER")
+                .upc("BUDGET-1-" + UUID.randomUUID())
+                .quantityOnHand(10)
+                .price(new BigDecimal("2.00"))
+                .build(), BeerDto.class).getBody();
+        BeerOrderDto order = restTemplate.postForEntity("/api/v1/orders", BeerOrderDto.builder()
+                .customerRef("BUDGET")
+                .lines(List.of(
+                        BeerOrderLineDto.builder().beerId(beer.getId()).orderQuantity(1).build(),
+                        BeerOrderLineDto.builder().beerId(beer.getId()).orderQuantity(2).build()))
+                .build(), BeerOrderDto.class).getBody();
+
+        ResponseEntity<BeerOrderDto> response = sql.expectAtMost(1,
+                () -> restTemplate.getForEntity("/api/v1/orders/" + order.getId(), BeerOrderDto.class));
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(response.getBody().getLines()).hasSize(2);
+        assertThat(response.getHeaders().getFirst(SqlStatementBudgetFilter.HEADER)).isEqualTo("1");
+    }
+
+    @Test
+    void conditional_order_read_should_check_the_version_first(SqlStatementRecorder sql) {
+        BeerDto beer = restTemplate.postForEntity("/api/v1/beers", BeerDto.builder()
+                .beerName("Budget Lager")
+                .beerStyle("LAGER")
+                .upc("BUDGET-4-" + UUID.randomUUID())
+                .quantityOnHand(10)
+                .price(new BigDecimal("2.00"))
+                .build(), BeerDto.class).getBody();
+        BeerOrderDto order = restTemplate.postForEntity("/api/v1/orders", BeerOrderDto.builder()
+                .customerRef("BUDGET-ETAG")
+                .lines(List.of(BeerOrderLineDto.builder().beerId(beer.getId()).orderQuantity(1).build()))
+                .build(), BeerOrderDto.class).getBody();
+        HttpHeaders current = new HttpHeaders();
+        current.setIfNoneMatch("\"%d-%d\"".formatted(order.getId(), order.getVersion()));
+        HttpHeaders stale = new HttpHeaders();
+        stale.setIfNoneMatch("\"%d-%d\"".formatted(order.getId(), order.getVersion() - 1));
+
+        ResponseEntity<BeerOrderDto> hit = sql.expectAtMost(1, () -> restTemplate.exchange(
+                "/api/v1/orders/" + order.getId(), HttpMethod.GET, new HttpEntity<>(current), BeerOrderDto.class));
+        ResponseEntity<BeerOrderDto> miss = sql.expectAtMost(2, () -> restTemplate.exchange(
+                "/api/v1/orders/" + order.getId(), HttpMethod.GET, new HttpEntity<>(stale), BeerOrderDto.class));
+
+        assertThat(hit.getStatusCode()).isEqualTo(HttpStatus.NOT_MODIFIED);
+        assertThat(hit.getHeaders().getFirst(SqlStatementBudgetFilter.HEADER)).isEqualTo("1");
+        // the version check, then the order with its lines
+        assertThat(miss.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(miss.getBody().getLines()).hasSize(1);
+        assertThat(miss.getHeaders().getFirst(SqlStatementBudgetFilter.HEADER)).isEqualTo("2");
+    }
+
+    @Test
+    void line_writes_should_not_depend_on_the_size_of_the_order(SqlStatementRecorder sql) {
+        BeerDto beer = restTemplate.postForEntity("/api/v1/beers", BeerDto.builder()
+                .beerName("Budget Lager")
+                .beerStyle("LAGER")
+                .upc("BUDGET-2-" + UUID.randomUUID())
+                .quantityOnHand(10)
+                .price(new BigDecimal("2.00"))
+                .build(), BeerDto.class).getBody();
+        List<BeerOrderLineDto> lines = IntStream.rangeClosed(1, 60)
+                .mapToObj(quantity -> BeerOrderLineDto.builder().beerId(beer.getId()).orderQuantity(quantity).build())
+                .toList();
+        BeerOrderDto order = restTemplate.postForEntity("/api/v1/orders", BeerOrderDto.builder()
+                .customerRef("BUDGET-LINES")
+                .lines(lines)
+                .build(), BeerOrderDto.class).getBody();
+        BeerOrderLineDto line = BeerOrderLineDto.builder().beerId(beer.getId()).orderQuantity(61).build();
+        HttpHeaders minimal = new HttpHeaders();
+        minimal.set("Prefer", "return=minimal");
+
+        ResponseEntity<Void> added = sql.expectAtMost(4, () -> restTemplate.exchange(
+                "/api/v1/orders/" + order.getId() + "/lines", HttpMethod.POST, new HttpEntity<>(line, minimal), Void.class));
+        String lineUrl = added.getHeaders().getLocation().toString();
+        ResponseEntity<BeerOrderLineDto> updated = sql.expectAtMost(3, () -> restTemplate.exchange(
+                lineUrl, HttpMethod.PUT, new HttpEntity<>(line.toBuilder().orderQuantity(62).build()), BeerOrderLineDto.class));
+        ResponseEntity<Void> deleted = sql.expectAtMost(2, () -> restTemplate.exchange(
+                lineUrl, HttpMethod.DELETE, null, Void.class));
+
+        assertThat(added.getStatusCode()).isEqualTo(HttpStatus.CREATED);
+        assertThat(added.getHeaders().getFirst("Preference-Applied")).isEqualTo("return=minimal");
+        assertThat(updated.getBody().getOrderQuantity()).isEqualTo(62);
+        assertThat(deleted.getStatusCode()).isEqualTo(HttpStatus.NO_CONTENT);
+        assertThat(restTemplate.getForObject("/api/v1/orders/" + order.getId(), BeerOrderDto.class))
+                .satisfies(after -> {
+                    assertThat(after.getLines()).hasSize(60);
+                    assertThat(after.getVersion()).isEqualTo(order.getVersion() + 3);
+                });
+    }
+
+    @Test
+    void merge_patch_of_one_line_should_update_that_line_only(SqlStatementRecorder sql) {
+        BeerDto beer = restTemplate.postForEntity("/api/v1/beers", BeerDto.builder()
+                .beerName("Budget Lager")
+                .beerStyle("LAGER")
+                .upc("BUDGET-3-" + UUID.randomUUID())
+                .quantityOnHand(10)
+                .price(new BigDecimal("2.00"))
+                .build(), BeerDto.class).getBody();
+        BeerOrderDto order = restTemplate.postForEntity("/api/v1/orders", BeerOrderDto.builder()
+                .customerRef("BUDGET-MERGE")
+                .lines(IntStream.rangeClosed(1, 60)
+                        .mapToObj(quantity -> BeerOrderLineDto.builder().beerId(beer.getId()).orderQuantity(quantity).build())
+                        .toList())
+                .build(), BeerOrderDto.class).getBody();
+        List<Map<String, Integer>> lines = order.getLines().stream()
+                .map(line -> line == order.getLines().get(7)
+                        ? Map.of("id", line.getId(), "orderQuantity", 99)
+                        : Map.of("id", line.getId()))
+                .toList();
+        HttpHeaders mergePatch = new HttpHeaders();
+        mergePatch.setContentType(MediaType.valueOf("application/merge-patch+json"));
+
+        sql.reset();
+        ResponseEntity<BeerOrderDto> patched = restTemplate.exchange("/api/v1/orders/" + order.getId(), HttpMethod.PATCH,
+                new HttpEntity<>(Map.of("lines", lines), mergePatch), BeerOrderDto.class);
+
+        assertThat(patched.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(patched.getBody().getLines()).extracting(BeerOrderLineDto::getId)
+                .containsExactlyElementsOf(order.getLines().stream().map(BeerOrderLineDto::getId).toList());
+        assertThat(patched.getBody().getLines().get(7).getOrderQuantity()).isEqualTo(99);
+        // the line, and the order version; no delete and re-insert of the other 59 lines
+        assertThat(sql.counts().count("update")).isEqualTo(2);
+        assertThat(sql.counts().count("insert") + sql.counts().count("delete")).isZero();
+        assertThat(sql.counts().total()).isLessThanOrEqualTo(5);
+    }
+
+    @Test
+    @SqlStatementBudget(1)
+    void beer_page_should_fit_its_budget() {
+        ResponseEntity<Map<String, Object>> response = restTemplate.exchange("/api/v1/beers?size=5", HttpMethod.GET,
+                null, new ParameterizedTypeReference<>() {
+                });
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(response.getHeaders().getFirst(SqlStatementBudgetFilter.HEADER)).isEqualTo("1");
+    }
+
+    @Test
+    void responses_without_body_should_carry_the_header() {
+        ResponseEntity<Void> response = restTemplate.exchange("/api/v1/beers/999999",
+                HttpMethod.DELETE, null, Void.class);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.NOT_FOUND);
+        assertThat(response.getHeaders().getFirst(SqlStatementBudgetFilter.HEADER)).isNotNull();
+    }
+}
@@ -0,0 +1,178 @@
+package com.example.juniemvc.it;
+
+import com.example.juniemvc.JuniemvcApplication;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Throughput and latency of platform-thread Tomcat versus virtual-thread mode under many concurrent clients.
+ *
+ * Not part of the regular build; run with {@code mvn -Pbenchmark test}. Tunables (system properties):
+ * benchmark.clients (2000), benchmark.warmup (10s), benchmark.duration (30s).
+ * The profile also turns on -Djdk.tracePinnedThreads=short, so carrier-thread pinning shows up in the output.
+ */
+class ThreadModelBenchmark {
+
+    private static final int CLIENTS = Integer.getInteger("benchmark.clients", 2000);
+    private static final Duration WARMUP = Duration.parse("PT" + System.getProperty("benchmark.warmup", "10s"));
+    private static final Duration DURATION = Duration.parse("PT" + System.getProperty("benchmark.duration", "30s"));
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void compare_platform_and_virtual_threads() throws Exception {
+        Result platform = run("platform");
+        Result virtual = run("virtual-threads");
+
+        System.out.printf("%n%d clients, %ds measured%n", CLIENTS, DURATION.toSeconds());
+        System.out.printf("%-16s %10s %10s %10s %10s %10s%n", "mode", "req/s", "p50 ms", "p99 ms", "max ms", "errors");
+        for (Result result : List.of(platform, virtual)) {
+            System.out.printf("%-16s %10.0f %10.1f %10.1f %10.1f %10d%n", result.mode(), result.throughput(),
+                    result.percentileMillis(50), result.percentileMillis(99), result.percentileMillis(100), result.errors());
+        }
+
+        assertThat(platform.requests()).isPositive();
+        assertThat(virtual.requests()).isPositive();
+    }
+
+    private Result run(String mode) throws Exception {
+        SpringApplicationBuilder builder = new SpringApplicationBuilder(JuniemvcApplication.class)
+                .properties("server.port=0",
+                        "spring.jpa.show-sql=false",
+                        "logging.level.root=WARN",
+                        // leave room for every client to hold a connection
+                        "server.tomcat.max-connections=" + (CLIENTS + 100));
+        if (!mode.equals("platform")) {
+            builder.properties("spring.threads.virtual.enabled=true");
+        }
+        try (ConfigurableApplicationContext context = builder.run();
+             ExecutorService clientThreads = Executors.newVirtualThreadPerTaskExecutor()) {
+            String base = "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+            HttpClient http = HttpClient.newBuilder()
+                    .executor(clientThreads)
+                    .connectTimeout(Duration.ofSeconds(10))
+                    .build();
+            URI order = URI.create(base + "/api/v1/orders/" + seedOrder(http, base));
+            URI beers = URI.create(base + "/api/v1/beers?size=20");
+
+            load(http, clientThreads, order, beers, WARMUP, null);
+            Recorder recorder = new Recorder();
+            load(http, clientThreads, order, beers, DURATION, recorder);
+            return recorder.result(mode, DURATION);
+        }
+    }
+
+    private Integer seedOrder(HttpClient http, String base) throws IOException, InterruptedException {
+        JsonNode beer = post(http, base + "/api/v1/beers",
+                "{\"beerName\":\"Bench Lager\",\"beerStyle\":\"LAGER\",\"upc\":\"BENCH-%s\",\"quantityOnHand\":100,\"price\":2.50}"
+                        .formatted(UUID.randomUUID()));
+        String line = "{\"beerId\":%d,\"orderQuantity\":1}".formatted(beer.get("id").asInt());
+        JsonNode order = post(http, base + "/api/v1/orders",
+                "{\"customerRef\":\"BENCH\",\"lines\":[%s]}".formatted(String.join(",", List.of(line, line, line, line, line))));
+        return order.get("id").asInt();
+    }
+
+    private JsonNode post(HttpClient http, String uri, String json) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(uri))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(json))
+                .build();
+        HttpResponse<String> response = http.send(request, HttpResponse.BodyHandlers.ofString());
+        assertThat(response.statusCode()).isEqualTo(201);
+        return objectMapper.readTree(response.body());
+    }
+
+    // Every client alternates an order read (projection join) with a catalog page until the deadline
+    private void load(HttpClient http, ExecutorService clientThreads, URI order, URI beers,
+                      Duration duration, Recorder recorder) throws InterruptedException {
+        long deadline = System.nanoTime() + duration.toNanos();
+        CountDownLatch done = new CountDownLatch(CLIENTS);
+        for (int c = 0; c < CLIENTS; c++) {
+            clientThreads.execute(() -> {
+                List<Long> latencies = new ArrayList<>();
+                long errors = 0;
+                try {
+                    for (int i = 0; System.nanoTime() < deadline; i++) {
+                        HttpRequest request = HttpRequest.newBuilder(i % 2 == 0 ? order : beers).GET().build();
+                        long start = System.nanoTime();
+                        try {
+                            HttpResponse<Void> response = http.send(request, HttpResponse.BodyHandlers.discarding());
+                            if (response.statusCode() != 200) {
+                                errors++;
+                            }
+                        } catch (IOException ex) {
+                            errors++;
+                        }
+                        latencies.add(System.nanoTime() - start);
+                    }
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    if (recorder != null) {
+                        recorder.add(latencies, errors);
+                    }
+                    done.countDown();
+                }
+            });
+        }
+        done.await();
+    }
+
+    private static final class Recorder {
+
+        private final Queue<List<Long>> latencies = new ConcurrentLinkedQueue<>();
+        private final LongAdder errors = new LongAdder();
+
+        void add(List<Long> clientLatencies, long clientErrors) {
+            errors.add(clientErrors);
+            latencies.add(clientLatencies);
+        }
+
+        Result result(String mode, Duration duration) {
+            long[] all = latencies.stream().flatMap(List::stream).mapToLong(Long::longValue).toArray();
+            Arrays.sort(all);
+            return new Result(mode, all, errors.sum(), duration);
+        }
+    }
+
+    private record Result(String mode, long[] sortedNanos, long errors, Duration duration) {
+
+        long requests() {
+            return sortedNanos.length;
+        }
+
+        double throughput() {
+            return sortedNanos.length / (duration.toMillis() / 1000.0);
+        }
+
+        double percentileMillis(double percentile) {
+            if (sortedNanos.length == 0) {
+                return 0;
+            }
+            int index = (int) Math.ceil(percentile / 100.0 * sortedNanos.length) - 1;
+            return sortedNanos[Math.max(index, 0)] / 1_000_000.0;
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.example.juniemvc.it;
+
+import com.example.juniemvc.web.RequestConcurrencyLimitFilter;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = "spring.threads.virtual.enabled=true")
+class VirtualThreadModeIntegrationTest {
+
+    @Autowired
+    TestRestTemplate restTemplate;
+
+    @Autowired
+    FilterRegistrationBean<RequestConcurrencyLimitFilter> requestConcurrencyLimitFilter;
+
+    @Autowired
+    AsyncTaskExecutor applicationTaskExecutor;
+
+    @Test
+    void api_should_serve_requests_behind_the_concurrency_limit() {
+        ResponseEntity<Map> response = restTemplate.getForEntity("/api/v1/beers?size=1", Map.class);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(requestConcurrencyLimitFilter.getUrlPatterns()).containsExactly("/api/*");
+    }
+
+    @Test
+    void async_executor_should_run_on_limited_virtual_threads() throws Exception {
+        assertThat(applicationTaskExecutor).isInstanceOfSatisfying(SimpleAsyncTaskExecutor.class,
+                executor -> assertThat(executor.getConcurrencyLimit()).isEqualTo(20));
+        assertThat(applicationTaskExecutor.submit(() -> Thread.currentThread().isVirtual()).get()).isTrue();
+    }
+}
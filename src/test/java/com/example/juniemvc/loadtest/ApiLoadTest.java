@@ -0,0 +1,62 @@
+package com.example.juniemvc.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.assertj.core.api.SoftAssertions;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Load test of the REST API against the latency and throughput budgets in loadtest.properties.
+ *
+ * Not part of the regular build; run with {@code mvn -Pload-test test}, overriding settings as needed
+ * (-Dloadtest.rate=200 -Dloadtest.duration=60s). Requests are sent at a fixed rate and their latencies
+ * count from the time they were due, so a slow server shows in the p99s rather than in a lower offered
+ * load; the throughput budget checks that the clients kept up with the rate at all.
+ */
+@Tag("load")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = "spring.jpa.show-sql=false")
+class ApiLoadTest {
+
+    @LocalServerPort
+    int port;
+
+    @Autowired
+    ObjectMapper objectMapper;
+
+    @Test
+    void api_should_meet_latency_and_throughput_budgets() throws Exception {
+        LoadTestSettings settings = LoadTestSettings.load();
+        LoadReport report;
+        try (ExecutorService clientThreads = Executors.newVirtualThreadPerTaskExecutor()) {
+            HttpClient http = HttpClient.newBuilder()
+                    .executor(clientThreads)
+                    .connectTimeout(Duration.ofSeconds(10))
+                    .build();
+            LoadDriver driver = LoadDriver.seed(http, clientThreads, "http://localhost:" + port, objectMapper, settings);
+            driver.run(settings.warmup());
+            report = driver.run(settings.duration());
+        }
+        report.print(System.out);
+
+        SoftAssertions softly = new SoftAssertions();
+        settings.mix().forEach((endpoint, weight) -> {
+            if (weight == 0) {
+                return;
+            }
+            softly.assertThat(report.count(endpoint)).as("%s requests", endpoint.label()).isPositive();
+            softly.assertThat(report.errors(endpoint)).as("%s errors", endpoint.label()).isZero();
+            softly.assertThat(report.p99(endpoint)).as("%s p99", endpoint.label())
+                    .isLessThanOrEqualTo(settings.p99Budgets().get(endpoint));
+        });
+        softly.assertThat(report.throughput()).as("throughput (req/s)").isGreaterThanOrEqualTo(settings.minThroughput());
+        softly.assertAll();
+    }
+}
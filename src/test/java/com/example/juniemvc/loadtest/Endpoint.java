@@ -0,0 +1,32 @@
+package com.example.juniemvc.loadtest;
+
+import java.util.Locale;
+
+/**
+ * The API operations the load test drives. {@link #key()} names the endpoint in loadtest.properties.
+ */
+enum Endpoint {
+
+    LIST_BEERS("GET /api/v1/beers"),
+    GET_BEER("GET /api/v1/beers/{id}"),
+    LIST_ORDERS("GET /api/v1/orders"),
+    GET_ORDER("GET /api/v1/orders/{id}"),
+    CREATE_ORDER("POST /api/v1/orders"),
+    ADD_LINE("POST /api/v1/orders/{id}/lines"),
+    UPDATE_LINE("PUT /api/v1/orders/{id}/lines/{lineId}"),
+    DELETE_LINE("DELETE /api/v1/orders/{id}/lines/{lineId}");
+
+    private final String label;
+
+    Endpoint(String label) {
+        this.label = label;
+    }
+
+    String label() {
+        return label;
+    }
+
+    String key() {
+        return name().toLowerCase(Locale.ROOT).replace('_', '-');
+    }
+}
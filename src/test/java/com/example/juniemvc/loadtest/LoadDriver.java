@@ -0,0 +1,238 @@
+package com.example.juniemvc.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Drives the REST API with a weighted request mix at a fixed request rate, spread over a fixed number of
+ * clients, and records two latency histograms per endpoint: from the time the schedule meant the request to
+ * be sent, and from the time it was sent. Each client sends its requests at fixed intervals and one at a
+ * time; when a slow response makes it fall behind, it sends the delayed ones back to back, and they count
+ * from their scheduled time. A stall therefore shows in the latencies of all the requests it held up, not of
+ * one request only (coordinated omission), and the p99 is not flattered by a server that slows its clients.
+ *
+ * Line operations of a client only touch orders that client owns (a share of the seeded orders plus the
+ * ones it creates), so every line it updates or deletes is one it added itself.
+ */
+final class LoadDriver {
+
+    private static final String JSON = "application/json";
+
+    private final HttpClient http;
+    private final ExecutorService clientThreads;
+    private final String baseUrl;
+    private final ObjectMapper objectMapper;
+    private final LoadTestSettings settings;
+    private final List<Integer> beerIds;
+    private final List<Integer> orderIds;
+    private final Endpoint[] weightedEndpoints;
+
+    private LoadDriver(HttpClient http, ExecutorService clientThreads, String baseUrl, ObjectMapper objectMapper,
+                       LoadTestSettings settings, List<Integer> beerIds, List<Integer> orderIds) {
+        this.http = http;
+        this.clientThreads = clientThreads;
+        this.baseUrl = baseUrl;
+        this.objectMapper = objectMapper;
+        this.settings = settings;
+        this.beerIds = beerIds;
+        this.orderIds = orderIds;
+        List<Endpoint> weighted = new ArrayList<>();
+        settings.mix().forEach((endpoint, weight) -> {
+            for (int i = 0; i < weight; i++) {
+                weighted.add(endpoint);
+            }
+        });
+        this.weightedEndpoints = weighted.toArray(Endpoint[]::new);
+    }
+
+    /**
+     * Creates the beers and orders the run works on, through the API.
+     */
+    static LoadDriver seed(HttpClient http, ExecutorService clientThreads, String baseUrl, ObjectMapper objectMapper,
+                           LoadTestSettings settings) throws IOException, InterruptedException {
+        LoadDriver seeder = new LoadDriver(http, clientThreads, baseUrl, objectMapper, settings, List.of(), List.of());
+        List<Integer> beerIds = new ArrayList<>();
+        for (int i = 0; i < settings.seedBeers(); i++) {
+            String beer = "{\"beerName\":\"Load %d\",\"beerStyle\":\"LAGER\",\"upc\":\"LOAD-%d\",\"quantityOnHand\":1000,\"price\":2.50}"
+                    .formatted(i, i);
+            beerIds.add(seeder.created(seeder.send(post("/api/v1/beers", beer, baseUrl))).get("id").asInt());
+        }
+        List<Integer> orderIds = new ArrayList<>();
+        for (int i = 0; i < settings.seedOrders(); i++) {
+            String order = "{\"customerRef\":\"LOAD-%d\",\"lines\":[%s,%s]}".formatted(i,
+                    line(beerIds.get(i % beerIds.size()), 1), line(beerIds.get((i + 1) % beerIds.size()), 2));
+            orderIds.add(seeder.created(seeder.send(post("/api/v1/orders", order, baseUrl))).get("id").asInt());
+        }
+        return new LoadDriver(http, clientThreads, baseUrl, objectMapper, settings, beerIds, orderIds);
+    }
+
+    LoadReport run(Duration duration) throws InterruptedException {
+        Map<Endpoint, Histogram> histograms = new EnumMap<>(Endpoint.class);
+        Map<Endpoint, Histogram> serviceTimes = new EnumMap<>(Endpoint.class);
+        Map<Endpoint, LongAdder> errors = new EnumMap<>(Endpoint.class);
+        for (Endpoint endpoint : Endpoint.values()) {
+            histograms.put(endpoint, new ConcurrentHistogram(3));
+            serviceTimes.put(endpoint, new ConcurrentHistogram(3));
+            errors.put(endpoint, new LongAdder());
+        }
+
+        // each client sends every interval; the clients' schedules are staggered across one interval
+        long interval = Math.round(settings.concurrency() * 1_000_000_000.0 / settings.rate());
+        long begin = System.nanoTime();
+        long deadline = begin + duration.toNanos();
+        CountDownLatch done = new CountDownLatch(settings.concurrency());
+        for (int c = 0; c < settings.concurrency(); c++) {
+            Client client = new Client(c);
+            long firstSend = begin + interval * c / settings.concurrency();
+            clientThreads.execute(() -> {
+                try {
+                    for (long scheduled = firstSend; scheduled < deadline; scheduled += interval) {
+                        long wait = scheduled - System.nanoTime();
+                        if (wait > 0) {
+                            TimeUnit.NANOSECONDS.sleep(wait);
+                        }
+                        Endpoint endpoint = client.next();
+                        long sent = System.nanoTime();
+                        boolean ok = client.execute(endpoint);
+                        long received = System.nanoTime();
+                        histograms.get(endpoint).recordValue(received - scheduled);
+                        serviceTimes.get(endpoint).recordValue(received - sent);
+                        if (!ok) {
+                            errors.get(endpoint).increment();
+                        }
+                    }
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        done.await();
+        // clients that fell behind finish their scheduled requests after the deadline
+        Duration elapsed = Duration.ofNanos(System.nanoTime() - begin);
+
+        Map<Endpoint, Long> errorCounts = new EnumMap<>(Endpoint.class);
+        errors.forEach((endpoint, count) -> errorCounts.put(endpoint, count.sum()));
+        return new LoadReport(histograms, serviceTimes, errorCounts, elapsed);
+    }
+
+    private final class Client {
+
+        private final List<Integer> ownOrders = new ArrayList<>();
+        private final Deque<int[]> ownLines = new ArrayDeque<>();
+
+        Client(int index) {
+            for (int i = index; i < orderIds.size(); i += settings.concurrency()) {
+                ownOrders.add(orderIds.get(i));
+            }
+        }
+
+        Endpoint next() {
+            Endpoint endpoint = weightedEndpoints[ThreadLocalRandom.current().nextInt(weightedEndpoints.length)];
+            boolean needsLine = endpoint == Endpoint.UPDATE_LINE || endpoint == Endpoint.DELETE_LINE;
+            return needsLine && ownLines.isEmpty() ? Endpoint.ADD_LINE : endpoint;
+        }
+
+        // true when the response has the expected status
+        boolean execute(Endpoint endpoint) throws InterruptedException {
+            try {
+                return switch (endpoint) {
+                    case LIST_BEERS -> send(get("/api/v1/beers?size=25")).statusCode() == 200;
+                    case GET_BEER -> send(get("/api/v1/beers/" + any(beerIds))).statusCode() == 200;
+                    case LIST_ORDERS -> send(get("/api/v1/orders?size=25&page=" + ThreadLocalRandom.current().nextInt(4)))
+                            .statusCode() == 200;
+                    case GET_ORDER -> send(get("/api/v1/orders/" + any(orderIds))).statusCode() == 200;
+                    case CREATE_ORDER -> {
+                        HttpResponse<String> response = send(post("/api/v1/orders",
+                                "{\"customerRef\":\"LOAD\",\"lines\":[%s]}".formatted(line(any(beerIds), 1)), baseUrl));
+                        if (response.statusCode() != 201) {
+                            yield false;
+                        }
+                        ownOrders.add(objectMapper.readTree(response.body()).get("id").asInt());
+                        yield true;
+                    }
+                    case ADD_LINE -> {
+                        Integer orderId = any(ownOrders);
+                        HttpResponse<String> response = send(post("/api/v1/orders/" + orderId + "/lines",
+                                line(any(beerIds), 1), baseUrl));
+                        if (response.statusCode() != 201) {
+                            yield false;
+                        }
+                        ownLines.push(new int[]{orderId, objectMapper.readTree(response.body()).get("id").asInt()});
+                        yield true;
+                    }
+                    case UPDATE_LINE -> {
+                        int[] line = ownLines.peek();
+                        yield send(HttpRequest.newBuilder(uri("/api/v1/orders/" + line[0] + "/lines/" + line[1], baseUrl))
+                                .header("Content-Type", JSON)
+                                .PUT(HttpRequest.BodyPublishers.ofString(line(any(beerIds), 2)))
+                                .build()).statusCode() == 200;
+                    }
+                    case DELETE_LINE -> {
+                        int[] line = ownLines.pop();
+                        yield send(HttpRequest.newBuilder(uri("/api/v1/orders/" + line[0] + "/lines/" + line[1], baseUrl))
+                                .DELETE()
+                                .build()).statusCode() == 204;
+                    }
+                };
+            } catch (IOException ex) {
+                return false;
+            }
+        }
+
+        private HttpRequest get(String path) {
+            return HttpRequest.newBuilder(uri(path, baseUrl)).GET().build();
+        }
+    }
+
+    private HttpResponse<String> send(HttpRequest request) throws IOException, InterruptedException {
+        return http.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private JsonNode created(HttpResponse<String> response) throws IOException {
+        if (response.statusCode() != 201) {
+            throw new IllegalStateException("Seeding failed with " + response.statusCode() + ": " + response.body());
+        }
+        return objectMapper.readTree(response.body());
+    }
+
+    private static HttpRequest post(String path, String json, String baseUrl) {
+        return HttpRequest.newBuilder(uri(path, baseUrl))
+                .header("Content-Type", JSON)
+                .POST(HttpRequest.BodyPublishers.ofString(json))
+                .build();
+    }
+
+    private static URI uri(String path, String baseUrl) {
+        return URI.create(baseUrl + path);
+    }
+
+    private static String line(Integer beerId, int quantity) {
+        return "{\"beerId\":%d,\"orderQuantity\":%d}".formatted(beerId, quantity);
+    }
+
+    private static Integer any(List<Integer> ids) {
+        return ids.get(ThreadLocalRandom.current().nextInt(ids.size()));
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.juniemvc.loadtest;
+
+import org.HdrHistogram.Histogram;
+
+import java.io.PrintStream;
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * Latency distributions (nanoseconds) and error counts of one measured run, per endpoint. {@code histograms}
+ * count from the time a request was scheduled to be sent, which the budgets apply to; {@code serviceTimes}
+ * from the time it was sent, for comparison only: where the two part, requests waited on their client.
+ */
+record LoadReport(Map<Endpoint, Histogram> histograms, Map<Endpoint, Histogram> serviceTimes,
+                  Map<Endpoint, Long> errors, Duration duration) {
+
+    long count(Endpoint endpoint) {
+        return histograms.get(endpoint).getTotalCount();
+    }
+
+    Duration p99(Endpoint endpoint) {
+        return Duration.ofNanos(histograms.get(endpoint).getValueAtPercentile(99));
+    }
+
+    long errors(Endpoint endpoint) {
+        return errors.get(endpoint);
+    }
+
+    double throughput() {
+        long total = histograms.values().stream().mapToLong(Histogram::getTotalCount).sum();
+        return total / (duration.toMillis() / 1000.0);
+    }
+
+    void print(PrintStream out) {
+        out.printf("%n%-42s %8s %9s %9s %9s %9s %9s %13s %7s%n",
+                "endpoint", "count", "req/s", "p50 ms", "p90 ms", "p99 ms", "max ms", "sent p99 ms", "errors");
+        histograms.forEach((endpoint, histogram) -> out.printf("%-42s %8d %9.1f %9.2f %9.2f %9.2f %9.2f %13.2f %7d%n",
+                endpoint.label(),
+                histogram.getTotalCount(),
+                histogram.getTotalCount() / (duration.toMillis() / 1000.0),
+                millis(histogram.getValueAtPercentile(50)),
+                millis(histogram.getValueAtPercentile(90)),
+                millis(histogram.getValueAtPercentile(99)),
+                millis(histogram.getMaxValue()),
+                millis(serviceTimes.get(endpoint).getValueAtPercentile(99)),
+                errors.get(endpoint)));
+        out.printf("%-42s %8s %9.1f%n", "total", "", throughput());
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.juniemvc.loadtest;
+
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.support.PropertiesLoaderUtils;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Load test settings from loadtest.properties; any key can be overridden with a system property
+ * of the same name (-Dloadtest.concurrency=64).
+ *
+ * @param concurrency   clients, each with at most one request in flight
+ * @param rate          requests per second sent over all clients, on a fixed schedule
+ * @param warmup        unmeasured run before the measurement
+ * @param duration      measured run
+ * @param seedBeers     beers created before the run
+ * @param seedOrders    orders created before the run (at least one per client)
+ * @param mix           relative weight of each endpoint in the request mix; 0 leaves it out
+ * @param p99Budgets    maximum p99 latency per endpoint
+ * @param minThroughput minimum overall throughput in requests per second
+ */
+record LoadTestSettings(int concurrency, double rate, Duration warmup, Duration duration, int seedBeers,
+                        int seedOrders, Map<Endpoint, Integer> mix, Map<Endpoint, Duration> p99Budgets,
+                        double minThroughput) {
+
+    private static final String PREFIX = "loadtest.";
+
+    static LoadTestSettings load() {
+        Properties properties;
+        try {
+            properties = PropertiesLoaderUtils.loadProperties(new ClassPathResource("loadtest.properties"));
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        System.getProperties().stringPropertyNames().stream()
+                .filter(name -> name.startsWith(PREFIX))
+                .forEach(name -> properties.setProperty(name, System.getProperty(name)));
+
+        Map<Endpoint, Integer> mix = new EnumMap<>(Endpoint.class);
+        Map<Endpoint, Duration> p99Budgets = new EnumMap<>(Endpoint.class);
+        for (Endpoint endpoint : Endpoint.values()) {
+            mix.put(endpoint, Integer.parseInt(required(properties, "mix." + endpoint.key())));
+            p99Budgets.put(endpoint, duration(properties, "budget." + endpoint.key() + ".p99"));
+        }
+        int concurrency = Integer.parseInt(required(properties, "concurrency"));
+        return new LoadTestSettings(concurrency,
+                Double.parseDouble(required(properties, "rate")),
+                duration(properties, "warmup"),
+                duration(properties, "duration"),
+                Integer.parseInt(required(properties, "seed.beers")),
+                Math.max(concurrency, Integer.parseInt(required(properties, "seed.orders"))),
+                mix,
+                p99Budgets,
+                Double.parseDouble(required(properties, "budget.min-throughput")));
+    }
+
+    private static Duration duration(Properties properties, String key) {
+        return DurationStyle.detectAndParse(required(properties, key));
+    }
+
+    private static String required(Properties properties, String key) {
+        String value = properties.getProperty(PREFIX + key);
+        if (value == null) {
+            throw new IllegalStateException("Missing load test setting " + PREFIX + key);
+        }
+        return value.trim();
+    }
+}
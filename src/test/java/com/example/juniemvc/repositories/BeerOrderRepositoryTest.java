@@ -49,7 +49,7 @@ class BeerOrderRepositoryTest {
         order.addLine(line);
 
         // when
-        BeerOrder saved = beerOrderRepository.save(order);
+        BeerOrder saved = beerOrderRepository.saveAndFlush(order);
 
         // then
         assertThat(saved.getId()).isNotNull();
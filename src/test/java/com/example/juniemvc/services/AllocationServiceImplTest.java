@@ -0,0 +1,255 @@
+package com.example.juniemvc.services;
+
+import com.example.juniemvc.entities.Beer;
+import com.example.juniemvc.entities.enums.LineStatus;
+import com.example.juniemvc.entities.enums.OrderStatus;
+import com.example.juniemvc.models.AllocationResult;
+import com.example.juniemvc.models.BeerDto;
+import com.example.juniemvc.models.BeerOrderDto;
+import com.example.juniemvc.models.BeerOrderLineDto;
+import com.example.juniemvc.repositories.BeerRepository;
+import com.example.juniemvc.repositories.OrderPipelineRepository;
+import jakarta.persistence.EntityNotFoundException;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
+
+@SpringBootTest
+class AllocationServiceImplTest {
+
+    @Autowired
+    AllocationService allocationService;
+
+    @Autowired
+    BeerOrderService beerOrderService;
+
+    @Autowired
+    BeerService beerService;
+
+    @Autowired
+    BeerRepository beerRepository;
+
+    @Autowired
+    OrderPipelineRepository pipelineRepository;
+
+    @Test
+    void allocate_should_reserve_stock_and_mark_order_allocated() {
+        Integer lager = newBeer(10);
+        Integer stout = newBeer(5);
+        // warm the second-level cache so a stale entry would show up below
+        assertThat(beerService.getBeerById(lager)).map(BeerDto::getQuantityOnHand).contains(10);
+        BeerOrderDto order = newOrder(line(lager, 4), line(stout, 5), line(lager, 6));
+
+        AllocationResult result = allocationService.allocate(order.getId());
+
+        assertThat(result.getStatus()).isEqualTo(OrderStatus.ALLOCATED);
+        assertThat(result.getAllocatedLines()).isEqualTo(3);
+        assertThat(result.getBackorderedLines()).isZero();
+
+        BeerOrderDto allocated = beerOrderService.getById(order.getId());
+        assertThat(allocated.getStatus()).isEqualTo(OrderStatus.ALLOCATED);
+        assertThat(allocated.getVersion()).isGreaterThan(order.getVersion());
+        assertThat(allocated.getLines()).allSatisfy(l -> {
+            assertThat(l.getStatus()).isEqualTo(LineStatus.ALLOCATED);
+            assertThat(l.getQuantityAllocated()).isEqualTo(l.getOrderQuantity());
+        });
+        assertThat(beerService.getBeerById(lager)).map(BeerDto::getQuantityOnHand).contains(0);
+        assertThat(beerService.getBeerById(stout)).map(BeerDto::getQuantityOnHand).contains(0);
+    }
+
+    @Test
+    void short_lines_should_be_backordered_and_allocated_after_restock() {
+        Integer lager = newBeer(10);
+        Integer stout = newBeer(2);
+        BeerOrderDto order = newOrder(line(lager, 3), line(stout, 5));
+
+        AllocationResult first = allocationService.allocate(order.getId());
+
+        assertThat(first.getStatus()).isEqualTo(OrderStatus.ALLOCATION_PENDING);
+        assertThat(first.getAllocatedLines()).isEqualTo(1);
+        assertThat(first.getBackorderedLines()).isEqualTo(1);
+        assertThat(beerService.getBeerById(lager)).map(BeerDto::getQuantityOnHand).contains(7);
+        assertThat(beerService.getBeerById(stout)).map(BeerDto::getQuantityOnHand).contains(2);
+        assertThat(beerOrderService.getById(order.getId()).getLines())
+                .extracting(BeerOrderLineDto::getBeerId, BeerOrderLineDto::getStatus)
+                .containsExactlyInAnyOrder(
+                        tuple(lager, LineStatus.ALLOCATED),
+                        tuple(stout, LineStatus.BACKORDERED));
+
+        Beer restocked = beerRepository.findById(stout).orElseThrow();
+        restocked.setQuantityOnHand(20);
+        beerRepository.saveAndFlush(restocked);
+
+        AllocationResult second = allocationService.allocate(order.getId());
+
+        // only the backordered line is looked at again
+        assertThat(second.getStatus()).isEqualTo(OrderStatus.ALLOCATED);
+        assertThat(second.getAllocatedLines()).isEqualTo(1);
+        assertThat(beerService.getBeerById(lager)).map(BeerDto::getQuantityOnHand).contains(7);
+        assertThat(beerService.getBeerById(stout)).map(BeerDto::getQuantityOnHand).contains(15);
+    }
+
+    @Test
+    void allocated_order_should_be_returned_unchanged() {
+        Integer lager = newBeer(10);
+        BeerOrderDto order = newOrder(line(lager, 4));
+        allocationService.allocate(order.getId());
+
+        AllocationResult again = allocationService.allocate(order.getId());
+
+        assertThat(again.getStatus()).isEqualTo(OrderStatus.ALLOCATED);
+        assertThat(again.getAllocatedLines()).isZero();
+        assertThat(beerService.getBeerById(lager)).map(BeerDto::getQuantityOnHand).contains(6);
+    }
+
+    @Test
+    void cancelled_or_missing_order_should_be_rejected() {
+        BeerOrderDto order = newOrder(line(newBeer(10), 1));
+        beerOrderService.patch(order.getId(), BeerOrderDto.builder().status(OrderStatus.CANCELLED).build());
+
+        assertThatThrownBy(() -> allocationService.allocate(order.getId()))
+                .isInstanceOf(OrderStatusConflictException.class);
+        assertThatThrownBy(() -> allocationService.allocate(Integer.MAX_VALUE))
+                .isInstanceOf(EntityNotFoundException.class);
+    }
+
+    @Test
+    void new_order_failing_validation_should_not_be_allocated() {
+        BeerOrderDto order = newOrder();
+
+        assertThatThrownBy(() -> allocationService.allocate(order.getId()))
+                .isInstanceOf(OrderStatusConflictException.class)
+                .hasMessageContaining("NEW");
+        assertThat(beerOrderService.getById(order.getId()).getStatus()).isEqualTo(OrderStatus.NEW);
+    }
+
+    @Test
+    void order_claimed_by_the_pipeline_should_be_left_to_it() {
+        Integer lager = newBeer(10);
+        BeerOrderDto order = newOrder(line(lager, 4));
+        // what the pipeline's validation and allocation claims do to the order
+        pipelineRepository.advance(List.of(order.getId()), OrderStatus.NEW, OrderStatus.VALIDATED);
+        pipelineRepository.advance(List.of(order.getId()), OrderStatus.VALIDATED, OrderStatus.ALLOCATION_PENDING);
+
+        assertThatThrownBy(() -> allocationService.allocate(order.getId()))
+                .isInstanceOf(OrderStatusConflictException.class)
+                .hasMessageContaining("ALLOCATION_PENDING");
+        assertThat(allocationService.allocateClaimed(order.getId()).getStatus()).isEqualTo(OrderStatus.ALLOCATED);
+        assertThat(beerService.getBeerById(lager)).map(BeerDto::getQuantityOnHand).contains(6);
+    }
+
+    @Test
+    void concurrent_allocations_of_one_beer_should_neither_conflict_nor_oversell() throws Exception {
+        Integer hot = newBeer(150);
+        List<Integer> orderIds = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            orderIds.add(newOrder(line(hot, 1)).getId());
+        }
+
+        List<Future<AllocationResult>> futures = new ArrayList<>();
+        try (ExecutorService executor = Executors.newFixedThreadPool(8)) {
+            for (Integer orderId : orderIds) {
+                futures.add(executor.submit(() -> allocationService.allocate(orderId)));
+            }
+        }
+
+        int allocated = 0;
+        for (Future<AllocationResult> future : futures) {
+            // get() rethrows any failure, so a single optimistic lock conflict fails the test
+            allocated += future.get().getAllocatedLines();
+        }
+        assertThat(allocated).isEqualTo(150);
+        assertThat(beerService.getBeerById(hot)).map(BeerDto::getQuantityOnHand).contains(0);
+    }
+
+    @Test
+    void striped_beer_should_report_total_and_allocate_across_slots() {
+        Integer hot = newBeer(10);
+        assertThat(beerService.stripeInventory(hot, 4)).map(BeerDto::getQuantityOnHand).contains(10);
+        // slots hold 3, 3, 2, 2: at most one of them can serve 3 after the first line, none can serve 4
+        BeerOrderDto order = newOrder(line(hot, 3), line(hot, 3), line(hot, 4));
+
+        AllocationResult result = allocationService.allocate(order.getId());
+
+        assertThat(result.getStatus()).isEqualTo(OrderStatus.ALLOCATED);
+        assertThat(result.getAllocatedLines()).isEqualTo(3);
+        assertThat(beerService.getBeerById(hot)).map(BeerDto::getQuantityOnHand).contains(0);
+
+        BeerOrderDto shortOrder = newOrder(line(hot, 1));
+        assertThat(allocationService.allocate(shortOrder.getId()).getBackorderedLines()).isEqualTo(1);
+    }
+
+    @Test
+    void striped_beer_should_take_new_stock_and_fold_back_into_one_counter() {
+        Integer hot = newBeer(10);
+        beerService.stripeInventory(hot, 8);
+        BeerDto striped = beerService.getBeerById(hot).orElseThrow();
+
+        striped.setQuantityOnHand(50);
+        beerService.updateBeer(hot, striped);
+        assertThat(beerService.getBeerById(hot)).map(BeerDto::getQuantityOnHand).contains(50);
+
+        allocationService.allocate(newOrder(line(hot, 20)).getId());
+
+        assertThat(beerService.stripeInventory(hot, 1)).map(BeerDto::getQuantityOnHand).contains(30);
+        assertThat(beerRepository.findById(hot)).map(Beer::getQuantityOnHand).contains(30);
+    }
+
+    @Test
+    void concurrent_allocations_of_a_striped_beer_should_neither_conflict_nor_oversell() throws Exception {
+        Integer hot = newBeer(150);
+        beerService.stripeInventory(hot, 8);
+        List<Integer> orderIds = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            orderIds.add(newOrder(line(hot, 1)).getId());
+        }
+
+        List<Future<AllocationResult>> futures = new ArrayList<>();
+        try (ExecutorService executor = Executors.newFixedThreadPool(8)) {
+            for (Integer orderId : orderIds) {
+                futures.add(executor.submit(() -> allocationService.allocate(orderId)));
+            }
+        }
+
+        int allocated = 0;
+        for (Future<AllocationResult> future : futures) {
+            allocated += future.get().getAllocatedLines();
+        }
+        // runs dry slot by slot: fallbacks and rebalances must still hand out every unit exactly once
+        assertThat(allocated).isEqualTo(150);
+        assertThat(beerService.getBeerById(hot)).map(BeerDto::getQuantityOnHand).contains(0);
+    }
+
+    private Integer newBeer(int quantityOnHand) {
+        return beerRepository.save(Beer.builder()
+                .beerName("Alloc Ale")
+                .beerStyle("ALE")
+                .upc("ALLOC-1-" + UUID.randomUUID())
+                .quantityOnHand(quantityOnHand)
+                .price(new BigDecimal("4.20"))
+                .build()).getId();
+    }
+
+    private BeerOrderDto newOrder(BeerOrderLineDto... lines) {
+        return beerOrderService.create(BeerOrderDto.builder()
+                .customerRef("ALLOC")
+                .lines(List.of(lines))
+                .build());
+    }
+
+    private static BeerOrderLineDto line(Integer beerId, int quantity) {
+        return BeerOrderLineDto.builder().beerId(beerId).orderQuantity(quantity).build();
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.juniemvc.services;
+
+import com.example.juniemvc.models.BeerAdjustment;
+import com.example.juniemvc.models.BeerAdjustmentReport;
+import com.example.juniemvc.models.BeerDto;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest(properties = "juniemvc.beer-adjustment.chunk-size=2")
+class BeerAdjustmentServiceImplTest {
+
+    @Autowired
+    BeerAdjustmentService beerAdjustmentService;
+
+    @Autowired
+    BeerService beerService;
+
+    @Test
+    void adjust_should_apply_deltas_and_prices_by_id_and_upc() {
+        BeerDto first = newBeer(10);
+        BeerDto second = newBeer(3);
+        // cached before the adjustment writes the rows with plain SQL
+        beerService.getBeerById(first.getId());
+
+        BeerAdjustmentReport report = beerAdjustmentService.adjust(List.of(
+                BeerAdjustment.builder().id(first.getId()).quantityDelta(5).build(),
+                BeerAdjustment.builder().upc(first.getUpc()).price(new BigDecimal("2.50")).build(),
+                BeerAdjustment.builder().id(second.getId()).quantityDelta(-4).build(),
+                BeerAdjustment.builder().id(-1).quantityDelta(1).build(),
+                BeerAdjustment.builder().upc(second.getUpc()).quantityDelta(7).build()));
+
+        assertThat(report.getRequested()).isEqualTo(5);
+        assertThat(report.getAdjusted()).isEqualTo(3);
+        assertThat(report.getNotFound()).isEqualTo(1);
+        assertThat(report.getInsufficientStock()).isEqualTo(1);
+        assertThat(report.getFailed()).isZero();
+
+        BeerDto adjustedFirst = beerService.getBeerById(first.getId()).orElseThrow();
+        assertThat(adjustedFirst.getQuantityOnHand()).isEqualTo(15);
+        assertThat(adjustedFirst.getPrice()).isEqualByComparingTo("2.50");
+        assertThat(adjustedFirst.getVersion()).isEqualTo(first.getVersion() + 1);
+        assertThat(adjustedFirst.getUpdateDate()).isNotNull();
+        BeerDto adjustedSecond = beerService.getBeerById(second.getId()).orElseThrow();
+        assertThat(adjustedSecond.getQuantityOnHand()).isEqualTo(10);
+        assertThat(adjustedSecond.getVersion()).isEqualTo(second.getVersion() + 1);
+    }
+
+    @Test
+    void adjust_should_spread_the_delta_of_a_striped_beer_over_its_slots() {
+        BeerDto beer = newBeer(8);
+        int version = beerService.stripeInventory(beer.getId(), 4).orElseThrow().getVersion();
+
+        BeerAdjustmentReport report = beerAdjustmentService.adjust(List.of(
+                BeerAdjustment.builder().id(beer.getId()).quantityDelta(6).build(),
+                BeerAdjustment.builder().id(beer.getId()).quantityDelta(-20).build()));
+
+        assertThat(report.getInsufficientStock()).isEqualTo(2);
+        beerAdjustmentService.adjust(List.of(BeerAdjustment.builder().id(beer.getId()).quantityDelta(6).build()));
+        BeerDto adjusted = beerService.getBeerById(beer.getId()).orElseThrow();
+        assertThat(adjusted.getQuantityOnHand()).isEqualTo(14);
+        assertThat(adjusted.getVersion()).isEqualTo(version + 1);
+    }
+
+    @Test
+    void adjust_should_reject_an_invalid_entry_before_applying_any() {
+        BeerDto beer = newBeer(1);
+
+        assertThatThrownBy(() -> beerAdjustmentService.adjust(List.of(
+                BeerAdjustment.builder().id(beer.getId()).quantityDelta(1).build(),
+                BeerAdjustment.builder().id(beer.getId()).upc(beer.getUpc()).quantityDelta(1).build())))
+                .isInstanceOf(InvalidRequestException.class)
+                .hasMessage("adjustments[1]: exactly one of id and upc is required");
+        assertThat(beerService.getBeerById(beer.getId()).orElseThrow().getQuantityOnHand()).isEqualTo(1);
+    }
+
+    private BeerDto newBeer(int quantityOnHand) {
+        return beerService.saveBeer(BeerDto.builder()
+                .beerName("Adjusted Ale")
+                .beerStyle("ALE")
+                .upc("ADJ-" + UUID.randomUUID())
+                .quantityOnHand(quantityOnHand)
+                .price(new BigDecimal("2.00"))
+                .build());
+    }
+}
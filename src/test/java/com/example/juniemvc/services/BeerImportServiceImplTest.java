@@ -0,0 +1,142 @@
+package com.example.juniemvc.services;
+
+import com.example.juniemvc.models.BeerDto;
+import com.example.juniemvc.models.BeerImportError;
+import com.example.juniemvc.models.BeerImportFormat;
+import com.example.juniemvc.models.BeerImportReport;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest(properties = "juniemvc.beer-import.chunk-size=3")
+class BeerImportServiceImplTest {
+
+    @Autowired
+    BeerImportService beerImportService;
+
+    @Autowired
+    BeerService beerService;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Test
+    void csv_import_should_upsert_by_upc_and_report_bad_rows_by_line() throws Exception {
+        String prefix = "IMP-" + UUID.randomUUID().toString().substring(0, 8);
+        BeerDto existing = beerService.saveBeer(BeerDto.builder()
+                .beerName("Old Name")
+                .beerStyle("LAGER")
+                .upc(prefix + "-1")
+                .quantityOnHand(5)
+                .price(new BigDecimal("2.00"))
+                .build());
+        // cached before the import writes the row with plain SQL
+        beerService.getBeerById(existing.getId());
+
+        String csv = """
+                upc,beerName,beerStyle,quantityOnHand,price
+                %1$s-1,"Renamed, Again",LAGER,7,2.00
+                %1$s-2,"Quoted \"\"Stout\"\"",STOUT,10,4.50
+                %1$s-3,No Price,PILSNER,3,
+
+                %1$s-4,Bad Quantity,ALE,many,1.00
+                %1$s-5,"Multi
+                Line",ALE,1,1.00
+                %1$s-2,Second Time,STOUT,11,4.50
+                %1$s-6,Too,Many,Fields,1,2
+                """.formatted(prefix);
+
+        BeerImportReport report = beerImportService.importBeers(new StringReader(csv), BeerImportFormat.CSV);
+
+        assertThat(report.getRows()).isEqualTo(7);
+        assertThat(report.getInserted()).isEqualTo(2);
+        assertThat(report.getUpdated()).isEqualTo(2);
+        assertThat(report.getFailed()).isEqualTo(3);
+        assertThat(report.getErrors()).extracting(BeerImportError::getLine).containsExactly(4L, 6L, 10L);
+        assertThat(report.getErrors().get(0).getMessages()).containsExactly("price: must not be null");
+        assertThat(report.getErrors().get(1).getMessages()).containsExactly("quantityOnHand: not a number 'many'");
+
+        BeerDto renamed = beerService.getBeerById(existing.getId()).orElseThrow();
+        assertThat(renamed.getBeerName()).isEqualTo("Renamed, Again");
+        assertThat(renamed.getQuantityOnHand()).isEqualTo(7);
+        assertThat(renamed.getVersion()).isEqualTo(existing.getVersion() + 1);
+    }
+
+    @Test
+    void ndjson_import_of_the_same_rows_twice_should_leave_them_unchanged() throws Exception {
+        String prefix = "IMP-" + UUID.randomUUID().toString().substring(0, 8);
+        StringBuilder ndjson = new StringBuilder();
+        for (int i = 0; i < 10; i++) {
+            ndjson.append("""
+                    {"beerName":"Bulk %d","beerStyle":"IPA","upc":"%s-%d","quantityOnHand":%d,"price":3.25}
+                    """.formatted(i, prefix, i, i));
+        }
+        ndjson.append("{not json}\n");
+
+        BeerImportReport first = beerImportService.importBeers(new StringReader(ndjson.toString()), BeerImportFormat.NDJSON);
+        BeerImportReport second = beerImportService.importBeers(new StringReader(ndjson.toString()), BeerImportFormat.NDJSON);
+
+        assertThat(first.getInserted()).isEqualTo(10);
+        assertThat(first.getFailed()).isEqualTo(1);
+        assertThat(first.getErrors().getFirst().getLine()).isEqualTo(11);
+        assertThat(second.getUnchanged()).isEqualTo(10);
+        assertThat(second.getInserted() + second.getUpdated()).isZero();
+    }
+
+    @Test
+    void concurrent_imports_of_the_same_new_upcs_should_insert_each_once() throws Exception {
+        String prefix = "IMP-" + UUID.randomUUID().toString().substring(0, 8);
+        StringBuilder ndjson = new StringBuilder();
+        for (int i = 0; i < 9; i++) {
+            ndjson.append("""
+                    {"beerName":"Race %d","beerStyle":"IPA","upc":"%s-%d","quantityOnHand":%d,"price":3.25}
+                    """.formatted(i, prefix, i, i));
+        }
+        int imports = 4;
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<BeerImportReport>> reports = new ArrayList<>();
+        try (ExecutorService executor = Executors.newFixedThreadPool(imports)) {
+            for (int i = 0; i < imports; i++) {
+                reports.add(executor.submit(() -> {
+                    start.await();
+                    return beerImportService.importBeers(new StringReader(ndjson.toString()), BeerImportFormat.NDJSON);
+                }));
+            }
+            start.countDown();
+            long inserted = 0;
+            for (Future<BeerImportReport> report : reports) {
+                BeerImportReport done = report.get(30, TimeUnit.SECONDS);
+                assertThat(done.getFailed()).isZero();
+                inserted += done.getInserted();
+            }
+            assertThat(inserted).isEqualTo(9);
+        }
+
+        assertThat(jdbcTemplate.queryForList("select upc from beer where upc like ?", String.class, prefix + "-%"))
+                .hasSize(9)
+                .doesNotHaveDuplicates();
+    }
+
+    @Test
+    void csv_with_an_unknown_column_should_be_rejected_before_importing() {
+        assertThatThrownBy(() -> beerImportService.importBeers(
+                new StringReader("upc,beerName,colour\nX,Y,Z\n"), BeerImportFormat.CSV))
+                .isInstanceOf(InvalidRequestException.class)
+                .hasMessageContaining("'colour'");
+    }
+}
@@ -5,20 +5,43 @@ import com.example.juniemvc.entities.enums.LineStatus;
 import com.example.juniemvc.entities.enums.OrderStatus;
 import com.example.juniemvc.models.BeerOrderDto;
 import com.example.juniemvc.models.BeerOrderLineDto;
+import com.example.juniemvc.models.BeerOrderQuery;
+import com.example.juniemvc.models.CursorPage;
 import com.example.juniemvc.repositories.BeerRepository;
+import com.example.juniemvc.web.SqlStatementBudgetExtension;
+import com.example.juniemvc.web.SqlStatementRecorder;
+import jakarta.persistence.EntityManagerFactory;
 import jakarta.persistence.EntityNotFoundException;
+import jakarta.persistence.OptimisticLockException;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
 
 import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.OptionalLong;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 @SpringBootTest
+@ExtendWith(SqlStatementBudgetExtension.class)
 class BeerOrderServiceImplTest {
 
     @Autowired
@@ -27,6 +50,9 @@ class BeerOrderServiceImplTest {
     @Autowired
     BeerRepository beerRepository;
 
+    @Autowired
+    EntityManagerFactory entityManagerFactory;
+
     Integer beerId;
 
     @BeforeEach
@@ -34,7 +60,7 @@ class BeerOrderServiceImplTest {
         Beer beer = beerRepository.save(Beer.builder()
                 .beerName("Svc Lager")
                 .beerStyle("LAGER")
-                .upc("SVC-1")
+                .upc("SVC-1-" + UUID.randomUUID())
                 .quantityOnHand(50)
                 .price(new BigDecimal("5.45"))
                 .build());
@@ -75,4 +101,518 @@ class BeerOrderServiceImplTest {
         assertThatThrownBy(() -> beerOrderService.create(dto))
                 .isInstanceOf(EntityNotFoundException.class);
     }
+
+    @Test
+    void create_should_report_every_missing_beer_at_once() {
+        BeerOrderDto dto = BeerOrderDto.builder()
+                .lines(List.of(
+                        BeerOrderLineDto.builder().beerId(beerId).orderQuantity(1).build(),
+                        BeerOrderLineDto.builder().beerId(999_998).orderQuantity(1).build(),
+                        BeerOrderLineDto.builder().beerId(999_999).orderQuantity(1).build()))
+                .build();
+
+        assertThatThrownBy(() -> beerOrderService.create(dto))
+                .isInstanceOfSatisfying(BeersNotFoundException.class,
+                        ex -> assertThat(ex.getMissingBeerIds()).containsExactly(999_998, 999_999));
+    }
+
+    @Test
+    void create_should_issue_a_fixed_number_of_selects_regardless_of_line_count(SqlStatementRecorder sql) {
+        createOrderWithNewBeers(1, sql);
+        long smallOrderSelects = sql.counts().selects();
+        createOrderWithNewBeers(50, sql);
+        long largeOrderSelects = sql.counts().selects();
+
+        assertThat(largeOrderSelects).isEqualTo(smallOrderSelects);
+    }
+
+    @Test
+    void create_should_batch_line_inserts(SqlStatementRecorder sql) {
+        BeerOrderDto created = createOrderWithNewBeers(120, sql);
+
+        assertThat(created.getLines()).hasSize(120);
+        // one prepared statement per table; the 120 line inserts are executed through it in batches of 50
+        assertThat(sql.counts().count("insert")).isEqualTo(2);
+    }
+
+    @Test
+    void create_should_resolve_beers_from_second_level_cache(SqlStatementRecorder sql) {
+        BeerOrderDto dto = BeerOrderDto.builder()
+                .customerRef("CACHE-1")
+                .lines(List.of(BeerOrderLineDto.builder().beerId(beerId).orderQuantity(1).build()))
+                .build();
+        // warm the region (beers are also cached on insert)
+        beerOrderService.create(dto);
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        sql.reset();
+
+        beerOrderService.create(dto);
+
+        assertThat(statistics.getDomainDataRegionStatistics(Beer.CACHE_REGION).getHitCount()).isPositive();
+        assertThat(sql.counts().selects()).isZero();
+    }
+
+    @Test
+    void getById_should_read_dto_from_one_join_without_managed_entities(SqlStatementRecorder sql) {
+        BeerOrderDto created = beerOrderService.create(BeerOrderDto.builder()
+                .customerRef("READ-1")
+                .paymentAmount(new BigDecimal("3.00"))
+                .lines(List.of(
+                        BeerOrderLineDto.builder().beerId(beerId).orderQuantity(4).build(),
+                        BeerOrderLineDto.builder().beerId(beerId).orderQuantity(5).build()))
+                .build());
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        BeerOrderDto read = sql.expectAtMost(1, () -> beerOrderService.getById(created.getId()));
+
+        assertThat(read.getCustomerRef()).isEqualTo("READ-1");
+        assertThat(read.getVersion()).isEqualTo(created.getVersion());
+        assertThat(read.getLines()).extracting(BeerOrderLineDto::getOrderQuantity).containsExactly(4, 5);
+        assertThat(read.getLines()).allSatisfy(l -> {
+            assertThat(l.getBeerId()).isEqualTo(beerId);
+            assertThat(l.getStatus()).isEqualTo(LineStatus.NEW);
+        });
+        assertThat(statistics.getEntityLoadCount()).isZero();
+    }
+
+    @Test
+    void getById_should_fail_when_order_missing() {
+        assertThatThrownBy(() -> beerOrderService.getById(999_999))
+                .isInstanceOf(EntityNotFoundException.class);
+    }
+
+    @Test
+    void list_should_load_a_page_without_per_order_or_per_line_queries(SqlStatementRecorder sql) {
+        for (int i = 0; i < 5; i++) {
+            beerOrderService.create(BeerOrderDto.builder()
+                    .customerRef("LIST-" + i)
+                    .lines(List.of(
+                            BeerOrderLineDto.builder().beerId(beerId).orderQuantity(1).build(),
+                            BeerOrderLineDto.builder().beerId(beerId).orderQuantity(2).build()))
+                    .build());
+        }
+
+        // id page, optional count, one fetch of orders with lines and beers
+        Page<BeerOrderDto> page = sql.expectAtMost(3, () -> beerOrderService.list(BeerOrderQuery.builder().build(), PageRequest.of(0, 200, Sort.by("id"))));
+
+        assertThat(page.getContent()).hasSizeGreaterThanOrEqualTo(5);
+        assertThat(page.getContent()).extracting(BeerOrderDto::getId).isSorted();
+        assertThat(page.getContent())
+                .filteredOn(o -> o.getCustomerRef() != null && o.getCustomerRef().startsWith("LIST-"))
+                .allSatisfy(o -> assertThat(o.getLines()).hasSize(2));
+    }
+
+    @Test
+    void list_should_filter_by_status_customer_ref_and_created_date() {
+        String customerRef = "SEARCH-" + UUID.randomUUID();
+        LocalDateTime before = LocalDateTime.now().minusMinutes(1);
+        List<Integer> ids = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            ids.add(beerOrderService.create(BeerOrderDto.builder()
+                    .customerRef(customerRef)
+                    .lines(List.of(BeerOrderLineDto.builder().beerId(beerId).orderQuantity(1).build()))
+                    .build()).getId());
+        }
+        beerOrderService.patch(ids.get(1), BeerOrderDto.builder().status(OrderStatus.CANCELLED).build());
+        BeerOrderQuery byCustomer = BeerOrderQuery.builder().customerRef(customerRef).build();
+
+        assertThat(beerOrderService.list(byCustomer, PageRequest.of(0, 25)).getContent())
+                .extracting(BeerOrderDto::getId).containsExactlyElementsOf(ids);
+        assertThat(beerOrderService.list(byCustomer.toBuilder().statuses(Set.of(OrderStatus.CANCELLED)).build(),
+                PageRequest.of(0, 25)).getContent())
+                .extracting(BeerOrderDto::getId).containsExactly(ids.get(1));
+        Page<BeerOrderDto> firstTwo = beerOrderService.list(byCustomer.toBuilder()
+                .statuses(Set.of(OrderStatus.NEW, OrderStatus.CANCELLED)).createdFrom(before).build(), PageRequest.of(0, 2));
+        assertThat(firstTwo.getContent()).extracting(BeerOrderDto::getId).containsExactly(ids.get(0), ids.get(1));
+        assertThat(firstTwo.getTotalElements()).isEqualTo(3);
+        assertThat(beerOrderService.list(byCustomer.toBuilder().createdTo(before).build(), PageRequest.of(0, 25)))
+                .isEmpty();
+
+        Page<BeerOrderDto> cancelledSince = beerOrderService.list(BeerOrderQuery.builder()
+                .statuses(Set.of(OrderStatus.CANCELLED)).updatedFrom(before).build(), PageRequest.of(0, 200));
+        assertThat(cancelledSince.getContent()).extracting(BeerOrderDto::getId).contains(ids.get(1))
+                .doesNotContain(ids.get(0), ids.get(2));
+    }
+
+    @Test
+    void several_statuses_should_be_merged_in_page_order() {
+        LocalDateTime start = LocalDateTime.now().truncatedTo(ChronoUnit.MILLIS);
+        List<Integer> ids = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            ids.add(beerOrderService.create(BeerOrderDto.builder()
+                    .customerRef("MERGE-" + UUID.randomUUID())
+                    .lines(List.of(BeerOrderLineDto.builder().beerId(beerId).orderQuantity(1).build()))
+                    .build()).getId());
+        }
+        beerOrderService.patch(ids.get(0), BeerOrderDto.builder().status(OrderStatus.CANCELLED).build());
+        beerOrderService.patch(ids.get(2), BeerOrderDto.builder().status(OrderStatus.CANCELLED).build());
+        BeerOrderQuery query = BeerOrderQuery.builder()
+                .statuses(Set.of(OrderStatus.NEW, OrderStatus.CANCELLED)).createdFrom(start).build();
+
+        Page<BeerOrderDto> secondPage = beerOrderService.list(query, PageRequest.of(1, 2));
+        assertThat(secondPage.getContent()).extracting(BeerOrderDto::getId).containsExactly(ids.get(2), ids.get(3));
+        assertThat(secondPage.getTotalElements()).isEqualTo(4);
+
+        CursorPage<BeerOrderDto> first = beerOrderService.scroll(query, null, 3);
+        assertThat(first.getContent()).extracting(BeerOrderDto::getId).containsExactlyElementsOf(ids.subList(0, 3));
+        assertThat(beerOrderService.scroll(query, first.getNextCursor(), 3).getContent())
+                .extracting(BeerOrderDto::getId).containsExactly(ids.get(3));
+    }
+
+    @Test
+    void update_date_pages_should_shift_when_an_order_is_updated_but_created_date_pages_not() {
+        LocalDateTime start = LocalDateTime.now().truncatedTo(ChronoUnit.MILLIS);
+        List<Integer> ids = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            ids.add(beerOrderService.create(BeerOrderDto.builder()
+                    .customerRef("SHIFT-" + UUID.randomUUID())
+                    .lines(List.of(BeerOrderLineDto.builder().beerId(beerId).orderQuantity(1).build()))
+                    .build()).getId());
+        }
+        Set<OrderStatus> statuses = Set.of(OrderStatus.NEW, OrderStatus.CANCELLED);
+        BeerOrderQuery byUpdated = BeerOrderQuery.builder().statuses(statuses).updatedFrom(start).build();
+        BeerOrderQuery byCreated = BeerOrderQuery.builder().statuses(statuses).createdFrom(start).build();
+        assertThat(beerOrderService.list(byUpdated, PageRequest.of(0, 2)).getContent())
+                .extracting(BeerOrderDto::getId).containsExactly(ids.get(0), ids.get(1));
+
+        beerOrderService.patch(ids.get(0), BeerOrderDto.builder().status(OrderStatus.CANCELLED).build());
+
+        assertThat(beerOrderService.list(byUpdated, PageRequest.of(0, 2)).getContent())
+                .extracting(BeerOrderDto::getId).containsExactly(ids.get(1), ids.get(2));
+        assertThat(beerOrderService.list(byUpdated, PageRequest.of(1, 2)).getContent())
+                .extracting(BeerOrderDto::getId).containsExactly(ids.get(0));
+        assertThat(beerOrderService.list(byCreated, PageRequest.of(0, 2)).getContent())
+                .extracting(BeerOrderDto::getId).containsExactly(ids.get(0), ids.get(1));
+    }
+
+    @Test
+    void scroll_should_seek_pages_in_created_order_without_a_count(SqlStatementRecorder sql) {
+        String customerRef = "SCROLL-" + UUID.randomUUID();
+        List<Integer> ids = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            ids.add(beerOrderService.create(BeerOrderDto.builder()
+                    .customerRef(customerRef)
+                    .lines(List.of(BeerOrderLineDto.builder().beerId(beerId).orderQuantity(1).build()))
+                    .build()).getId());
+        }
+        BeerOrderQuery query = BeerOrderQuery.builder().customerRef(customerRef).build();
+
+        List<Integer> scrolled = new ArrayList<>();
+        String cursor = null;
+        do {
+            String after = cursor;
+            // id page, order/line rows
+            CursorPage<BeerOrderDto> page = sql.expectAtMost(2, () -> beerOrderService.scroll(query, after, 2));
+            page.getContent().forEach(order -> scrolled.add(order.getId()));
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+
+        assertThat(scrolled).containsExactlyElementsOf(ids);
+        assertThatThrownBy(() -> beerOrderService.scroll(query, "bm90LWEtY3Vyc29y", 2))
+                .isInstanceOf(InvalidRequestException.class)
+                .hasMessage("Malformed cursor");
+    }
+
+    @Test
+    void estimate_count_should_serve_the_cached_total_until_it_is_recounted() throws Exception {
+        String customerRef = "ESTIMATE-" + UUID.randomUUID();
+        BeerOrderDto order = BeerOrderDto.builder()
+                .customerRef(customerRef)
+                .lines(List.of(BeerOrderLineDto.builder().beerId(beerId).orderQuantity(1).build()))
+                .build();
+        beerOrderService.create(order);
+        BeerOrderQuery query = BeerOrderQuery.builder().customerRef(customerRef).build();
+
+        // the first request does not wait for the count
+        OptionalLong estimate = beerOrderService.estimateCount(query);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (estimate.isEmpty() && System.nanoTime() < deadline) {
+            Thread.sleep(20);
+            estimate = beerOrderService.estimateCount(query);
+        }
+        assertThat(estimate).hasValue(1);
+        beerOrderService.create(order);
+
+        // within the refresh interval
+        assertThat(beerOrderService.estimateCount(query)).hasValue(1);
+        assertThat(beerOrderService.slice(query, PageRequest.of(0, 25)).getContent()).hasSize(2);
+    }
+
+    @Test
+    void estimates_should_run_no_more_counts_at_a_time_than_allowed() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        List<BeerOrderQuery> counted = new CopyOnWriteArrayList<>();
+        BeerOrderQuery first = BeerOrderQuery.builder().customerRef("BOUND-1").build();
+        BeerOrderQuery second = BeerOrderQuery.builder().customerRef("BOUND-2").build();
+        try (OrderCountEstimates estimates = new OrderCountEstimates(query -> {
+            counted.add(query);
+            try {
+                release.await();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            return 7;
+        }, Duration.ofMinutes(1), 10, 1)) {
+            assertThat(estimates.estimate(first)).isEmpty();
+            assertThat(estimates.estimate(second)).isEmpty();
+            release.countDown();
+
+            OptionalLong estimate = estimates.estimate(first);
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (estimate.isEmpty() && System.nanoTime() < deadline) {
+                Thread.sleep(20);
+                estimate = estimates.estimate(first);
+            }
+            assertThat(estimate).hasValue(7);
+            // the second filter was left to a later request while the first was counted
+            assertThat(counted).containsExactly(first);
+        }
+    }
+
+    @Test
+    void list_should_reject_a_range_that_ends_before_it_starts() {
+        LocalDateTime now = LocalDateTime.now();
+        BeerOrderQuery query = BeerOrderQuery.builder().createdFrom(now).createdTo(now.minusDays(1)).build();
+
+        assertThatThrownBy(() -> beerOrderService.list(query, PageRequest.of(0, 25)))
+                .isInstanceOf(InvalidRequestException.class)
+                .hasMessageContaining("createdFrom");
+    }
+
+    // resets the statement counters right before the order is created
+    private BeerOrderDto createOrderWithNewBeers(int lineCount, SqlStatementRecorder sql) {
+        List<Integer> beerIds = new ArrayList<>();
+        for (int i = 0; i < lineCount; i++) {
+            beerIds.add(beerRepository.save(Beer.builder()
+                    .beerName("Count " + i)
+                    .beerStyle("LAGER")
+                    .upc("CNT-" + i + "-" + UUID.randomUUID())
+                    .quantityOnHand(5)
+                    .price(new BigDecimal("1.00"))
+                    .build()).getId());
+        }
+        BeerOrderDto dto = BeerOrderDto.builder()
+                .customerRef("COUNT-" + lineCount)
+                .lines(beerIds.stream()
+                        .map(id -> BeerOrderLineDto.builder().beerId(id).orderQuantity(1).build())
+                        .toList())
+                .build();
+
+        sql.reset();
+        return beerOrderService.create(dto);
+    }
+
+    @Test
+    void export_should_stream_every_order_once_with_all_lines() {
+        for (int i = 0; i < 3; i++) {
+            List<BeerOrderLineDto> lines = new ArrayList<>();
+            for (int j = 0; j <= i; j++) {
+                lines.add(BeerOrderLineDto.builder().beerId(beerId).orderQuantity(j + 1).build());
+            }
+            beerOrderService.create(BeerOrderDto.builder()
+                    .customerRef("EXPORT-" + i)
+                    .lines(lines)
+                    .build());
+        }
+
+        List<BeerOrderDto> exported = new ArrayList<>();
+        long count = beerOrderService.exportOrders(exported::add);
+
+        assertThat(count).isEqualTo(exported.size());
+        List<BeerOrderDto> mine = exported.stream()
+                .filter(o -> o.getCustomerRef() != null && o.getCustomerRef().startsWith("EXPORT-"))
+                .toList();
+        assertThat(mine).extracting(BeerOrderDto::getCustomerRef)
+                .containsExactly("EXPORT-0", "EXPORT-1", "EXPORT-2");
+        assertThat(mine).extracting(o -> o.getLines().size()).containsExactly(1, 2, 3);
+        assertThat(mine.get(2).getLines()).allSatisfy(l -> assertThat(l.getBeerId()).isEqualTo(beerId));
+    }
+
+    @Test
+    void export_should_keep_every_line_of_orders_beyond_one_page() {
+        String prefix = "PAGED-EXPORT-" + UUID.randomUUID() + "-";
+        int orders = 520;
+        for (int i = 0; i < orders; i++) {
+            beerOrderService.create(BeerOrderDto.builder()
+                    .customerRef(prefix + i)
+                    .lines(List.of(
+                            BeerOrderLineDto.builder().beerId(beerId).orderQuantity(1).build(),
+                            BeerOrderLineDto.builder().beerId(beerId).orderQuantity(2).build(),
+                            BeerOrderLineDto.builder().beerId(beerId).orderQuantity(3).build()))
+                    .build());
+        }
+
+        List<BeerOrderDto> exported = new ArrayList<>();
+        long count = beerOrderService.exportOrders(exported::add);
+
+        assertThat(count).isEqualTo(exported.size()).isGreaterThan(500);
+        assertThat(exported).extracting(BeerOrderDto::getId).isSorted().doesNotHaveDuplicates();
+        List<BeerOrderDto> mine = exported.stream()
+                .filter(o -> o.getCustomerRef() != null && o.getCustomerRef().startsWith(prefix))
+                .toList();
+        assertThat(mine).hasSize(orders).allSatisfy(o -> assertThat(o.getLines())
+                .extracting(BeerOrderLineDto::getOrderQuantity).containsExactly(1, 2, 3));
+    }
+
+    @Test
+    void update_should_reject_a_stale_version() {
+        BeerOrderDto created = beerOrderService.create(BeerOrderDto.builder()
+                .customerRef("VERSION-STALE")
+                .lines(List.of(BeerOrderLineDto.builder().beerId(beerId).orderQuantity(1).build()))
+                .build());
+        BeerOrderDto stale = created.toBuilder().customerRef("VERSION-STALE-2").version(created.getVersion() + 1).build();
+
+        assertThatThrownBy(() -> beerOrderService.update(created.getId(), stale))
+                .isInstanceOf(OptimisticLockException.class);
+        assertThat(beerOrderService.getById(created.getId()).getCustomerRef()).isEqualTo("VERSION-STALE");
+    }
+
+    @Test
+    void line_changes_should_bump_the_order_version() {
+        BeerOrderDto created = beerOrderService.create(BeerOrderDto.builder()
+                .customerRef("VERSION-LINES")
+                .lines(List.of(BeerOrderLineDto.builder().beerId(beerId).orderQuantity(1).build()))
+                .build());
+
+        BeerOrderLineDto added = beerOrderService.addLine(created.getId(),
+                BeerOrderLineDto.builder().beerId(beerId).orderQuantity(2).build());
+        Integer afterAdd = beerOrderService.getVersion(created.getId()).orElseThrow();
+        assertThat(afterAdd).isGreaterThan(created.getVersion());
+        assertThat(beerOrderService.getById(created.getId()).getLines())
+                .extracting(BeerOrderLineDto::getId).contains(added.getId());
+
+        beerOrderService.deleteLine(created.getId(), added.getId());
+        assertThat(beerOrderService.getVersion(created.getId())).contains(afterAdd + 1);
+        assertThat(beerOrderService.getById(created.getId()).getLines()).hasSize(1);
+    }
+
+    @Test
+    void line_endpoints_should_only_touch_lines_of_the_given_order() {
+        BeerOrderDto mine = beerOrderService.create(BeerOrderDto.builder()
+                .customerRef("LINES-MINE")
+                .lines(List.of(BeerOrderLineDto.builder().beerId(beerId).orderQuantity(1).build()))
+                .build());
+        BeerOrderDto other = beerOrderService.create(BeerOrderDto.builder()
+                .customerRef("LINES-OTHER")
+                .lines(List.of(BeerOrderLineDto.builder().beerId(beerId).orderQuantity(7).build()))
+                .build());
+        Integer foreignLineId = other.getLines().get(0).getId();
+
+        assertThatThrownBy(() -> beerOrderService.updateLine(mine.getId(), foreignLineId,
+                BeerOrderLineDto.builder().orderQuantity(3).build()))
+                .isInstanceOf(EntityNotFoundException.class)
+                .hasMessageContaining("not found in order");
+        assertThatThrownBy(() -> beerOrderService.deleteLine(mine.getId(), foreignLineId))
+                .isInstanceOf(EntityNotFoundException.class)
+                .hasMessageContaining("not found in order");
+        // a client-sent id never makes a new line replace an existing one
+        BeerOrderLineDto added = beerOrderService.addLine(mine.getId(),
+                BeerOrderLineDto.builder().id(foreignLineId).beerId(beerId).orderQuantity(2).build());
+
+        assertThat(added.getId()).isNotEqualTo(foreignLineId);
+        assertThat(beerOrderService.getById(other.getId())).satisfies(unchanged -> {
+            assertThat(unchanged.getVersion()).isEqualTo(other.getVersion());
+            assertThat(unchanged.getLines()).extracting(BeerOrderLineDto::getOrderQuantity).containsExactly(7);
+        });
+        assertThat(beerOrderService.getVersion(mine.getId())).contains(mine.getVersion() + 1);
+        assertThatThrownBy(() -> beerOrderService.addLine(999_999,
+                BeerOrderLineDto.builder().beerId(beerId).orderQuantity(1).build()))
+                .isInstanceOf(EntityNotFoundException.class);
+    }
+
+    @Test
+    void update_line_should_reference_a_new_beer_without_loading_it(SqlStatementRecorder sql) {
+        BeerOrderDto order = beerOrderService.create(BeerOrderDto.builder()
+                .customerRef("LINES-BEER")
+                .lines(List.of(BeerOrderLineDto.builder().beerId(beerId).orderQuantity(1).build()))
+                .build());
+        Integer lineId = order.getLines().get(0).getId();
+        Integer otherBeerId = beerRepository.save(Beer.builder()
+                .beerName("Svc Stout")
+                .beerStyle("STOUT")
+                .upc("SVC-2-" + UUID.randomUUID())
+                .quantityOnHand(5)
+                .price(new BigDecimal("6.10"))
+                .build()).getId();
+
+        // version bump, line, update
+        BeerOrderLineDto updated = sql.expectAtMost(3, () -> beerOrderService.updateLine(order.getId(), lineId,
+                BeerOrderLineDto.builder().beerId(otherBeerId).build()));
+
+        assertThat(updated.getBeerId()).isEqualTo(otherBeerId);
+        assertThatThrownBy(() -> beerOrderService.updateLine(order.getId(), lineId,
+                BeerOrderLineDto.builder().beerId(999_999).build()))
+                .isInstanceOf(BeersNotFoundException.class);
+        assertThat(beerOrderService.getById(order.getId())).satisfies(unchanged -> {
+            assertThat(unchanged.getVersion()).isEqualTo(order.getVersion() + 1);
+            assertThat(unchanged.getLines()).extracting(BeerOrderLineDto::getBeerId).containsExactly(otherBeerId);
+        });
+    }
+
+    @Test
+    void update_should_reconcile_lines_by_id(SqlStatementRecorder sql) {
+        BeerOrderDto created = beerOrderService.create(BeerOrderDto.builder()
+                .customerRef("RECONCILE")
+                .lines(List.of(
+                        BeerOrderLineDto.builder().beerId(beerId).orderQuantity(1).build(),
+                        BeerOrderLineDto.builder().beerId(beerId).orderQuantity(2).build(),
+                        BeerOrderLineDto.builder().beerId(beerId).orderQuantity(3).build()))
+                .build());
+        List<BeerOrderLineDto> lines = created.getLines();
+
+        // one line changed, one unchanged, one left out, one new
+        sql.reset();
+        BeerOrderDto updated = beerOrderService.update(created.getId(), created.toBuilder()
+                .lines(List.of(
+                        lines.get(0).toBuilder().orderQuantity(10).build(),
+                        lines.get(1),
+                        BeerOrderLineDto.builder().beerId(beerId).orderQuantity(4).build()))
+                .build());
+
+        assertThat(updated.getLines()).extracting(BeerOrderLineDto::getId)
+                .startsWith(lines.get(0).getId(), lines.get(1).getId())
+                .doesNotContain(lines.get(2).getId())
+                .hasSize(3);
+        assertThat(updated.getLines()).extracting(BeerOrderLineDto::getOrderQuantity).containsExactly(10, 2, 4);
+        assertThat(updated.getLines().get(1).getVersion()).isEqualTo(lines.get(1).getVersion());
+        assertThat(updated.getVersion()).isEqualTo(created.getVersion() + 1);
+        // changed line and order version; new line; removed line
+        assertThat(sql.counts().count("update")).isEqualTo(2);
+        assertThat(sql.counts().count("insert")).isEqualTo(1);
+        assertThat(sql.counts().count("delete")).isEqualTo(1);
+    }
+
+    @Test
+    void update_without_changes_should_write_nothing(SqlStatementRecorder sql) {
+        BeerOrderDto created = beerOrderService.create(BeerOrderDto.builder()
+                .customerRef("RECONCILE-NOOP")
+                .paymentAmount(new BigDecimal("12.50"))
+                .lines(List.of(BeerOrderLineDto.builder().beerId(beerId).orderQuantity(1).build()))
+                .build());
+
+        sql.reset();
+        BeerOrderDto same = beerOrderService.update(created.getId(),
+                created.toBuilder().paymentAmount(new BigDecimal("12.5")).build());
+
+        assertThat(same.getVersion()).isEqualTo(created.getVersion());
+        assertThat(sql.counts().count("update") + sql.counts().count("insert") + sql.counts().count("delete")).isZero();
+    }
+
+    @Test
+    void update_should_reject_a_line_of_another_order() {
+        BeerOrderDto mine = beerOrderService.create(BeerOrderDto.builder()
+                .customerRef("RECONCILE-MINE")
+                .lines(List.of(BeerOrderLineDto.builder().beerId(beerId).orderQuantity(1).build()))
+                .build());
+        BeerOrderDto other = beerOrderService.create(BeerOrderDto.builder()
+                .customerRef("RECONCILE-OTHER")
+                .lines(List.of(BeerOrderLineDto.builder().beerId(beerId).orderQuantity(1).build()))
+                .build());
+
+        assertThatThrownBy(() -> beerOrderService.update(mine.getId(), mine.toBuilder().lines(other.getLines()).build()))
+                .isInstanceOf(EntityNotFoundException.class);
+        assertThat(beerOrderService.getById(mine.getId()).getLines()).isEqualTo(mine.getLines());
+    }
 }
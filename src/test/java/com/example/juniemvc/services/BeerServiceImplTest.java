@@ -3,23 +3,37 @@ package com.example.juniemvc.services;
 import com.example.juniemvc.entities.Beer;
 import com.example.juniemvc.mappers.BeerMapper;
 import com.example.juniemvc.models.BeerDto;
+import com.example.juniemvc.models.BeerQuery;
+import com.example.juniemvc.models.BeerSort;
+import com.example.juniemvc.models.CursorPage;
 import com.example.juniemvc.repositories.BeerRepository;
+import com.example.juniemvc.repositories.InventorySlotRepository;
+import jakarta.persistence.Cache;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.LockModeType;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mapstruct.factory.Mappers;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Window;
+import org.springframework.data.jpa.domain.Specification;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.times;
 import org.mockito.ArgumentCaptor;
@@ -30,6 +44,15 @@ class BeerServiceImplTest {
     @Mock
     BeerRepository beerRepository;
 
+    @Mock
+    InventorySlotRepository slotRepository;
+
+    @Mock
+    EntityManager entityManager;
+
+    @Mock
+    OutboxRecorder outboxRecorder;
+
     BeerServiceImpl beerService;
 
     BeerMapper mapper = Mappers.getMapper(BeerMapper.class);
@@ -58,7 +81,7 @@ class BeerServiceImplTest {
 
     @BeforeEach
     void setUp() {
-        beerService = new BeerServiceImpl(beerRepository, mapper);
+        beerService = new BeerServiceImpl(beerRepository, mapper, slotRepository, entityManager, outboxRecorder);
     }
 
     @Test
@@ -70,6 +93,7 @@ class BeerServiceImplTest {
         BeerDto result = beerService.saveBeer(toCreate);
         assertThat(result.getId()).isEqualTo(1);
         verify(beerRepository).save(any(Beer.class));
+        verify(outboxRecorder).record(eq(OutboxEventType.BEER_CREATED), eq(1), eq(result));
     }
 
     @Test
@@ -124,12 +148,46 @@ class BeerServiceImplTest {
     }
 
     @Test
-    void getAllBeers() {
-        given(beerRepository.findAll()).willReturn(List.of(sampleEntity(1), sampleEntity(2)));
+    void listBeers_mapsWindowAndEmitsNextCursor() {
+        Window<Beer> window = Window.from(List.of(sampleEntity(1), sampleEntity(2)), ScrollPosition::offset, true);
+        given(beerRepository.findBy(any(Specification.class), any())).willReturn(window);
+
+        CursorPage<BeerDto> page = beerService.listBeers(BeerQuery.builder().size(2).build());
+        assertThat(page.getContent()).extracting(BeerDto::getId).containsExactly(1, 2);
+        assertThat(page.getSize()).isEqualTo(2);
+        assertThat(page.getNextCursor()).isNotNull();
+        assertThat(BeerServiceImpl.decodeCursor(page.getNextCursor(), BeerSort.ID))
+                .isEqualTo(ScrollPosition.forward(Map.of("id", 2)));
+    }
+
+    @Test
+    void listBeers_lastPageHasNoCursor() {
+        Window<Beer> window = Window.from(List.of(sampleEntity(1)), ScrollPosition::offset, false);
+        given(beerRepository.findBy(any(Specification.class), any())).willReturn(window);
 
-        List<BeerDto> list = beerService.getAllBeers();
-        assertThat(list).hasSize(2);
-        assertThat(list).extracting(BeerDto::getId).containsExactly(1, 2);
+        CursorPage<BeerDto> page = beerService.listBeers(BeerQuery.builder().size(500).build());
+        assertThat(page.getSize()).isEqualTo(BeerServiceImpl.MAX_PAGE_SIZE);
+        assertThat(page.getNextCursor()).isNull();
+    }
+
+    @Test
+    void listBeers_rejectsCursorOfOtherSortKey() {
+        String idCursor = BeerServiceImpl.encodeCursor(sampleEntity(3), BeerSort.ID);
+
+        assertThatThrownBy(() -> beerService.listBeers(BeerQuery.builder()
+                .sort(BeerSort.BEER_NAME)
+                .cursor(idCursor)
+                .build()))
+                .isInstanceOf(InvalidRequestException.class);
+    }
+
+    @Test
+    void listBeers_beerNameCursorRoundTrips() {
+        Beer last = sampleEntity(8);
+        last.setBeerName("Pipe|Ale");
+
+        ScrollPosition position = BeerServiceImpl.decodeCursor(BeerServiceImpl.encodeCursor(last, BeerSort.BEER_NAME), BeerSort.BEER_NAME);
+        assertThat(position).isEqualTo(ScrollPosition.forward(Map.of("id", 8, "beerName", "Pipe|Ale")));
     }
 
     @Test
@@ -160,6 +218,47 @@ class BeerServiceImplTest {
         assertThat(savedArg.getUpdateDate()).isEqualTo(LocalDateTime.of(2024,1,2,0,0));
     }
 
+    @Test
+    void updateBeer_striped_should_spread_new_stock_over_slots() {
+        Beer existing = sampleEntity(5);
+        existing.setQuantityOnHand(0);
+        existing.setStripedQuantity(30);
+        BeerDto update = sampleDto(null);
+        update.setQuantityOnHand(40);
+
+        EntityManagerFactory entityManagerFactory = mock(EntityManagerFactory.class);
+        Cache cache = mock(Cache.class);
+        given(entityManager.getEntityManagerFactory()).willReturn(entityManagerFactory);
+        given(entityManagerFactory.getCache()).willReturn(cache);
+        given(beerRepository.findById(eq(5))).willReturn(Optional.of(existing));
+        given(beerRepository.save(any(Beer.class))).willAnswer(inv -> inv.getArgument(0));
+
+        Optional<BeerDto> res = beerService.updateBeer(5, update);
+
+        verify(slotRepository).setTotal(5, 40);
+        verify(entityManager).lock(existing, LockModeType.PESSIMISTIC_FORCE_INCREMENT);
+        verify(cache).evict(Beer.class, 5);
+        assertThat(existing.getQuantityOnHand()).isZero();
+        assertThat(res).map(BeerDto::getQuantityOnHand).contains(40);
+    }
+
+    @Test
+    void getBeerById_should_report_striped_stock_as_total() {
+        Beer striped = sampleEntity(6);
+        striped.setQuantityOnHand(0);
+        striped.setStripedQuantity(25);
+        given(beerRepository.findById(eq(6))).willReturn(Optional.of(striped));
+
+        assertThat(beerService.getBeerById(6)).map(BeerDto::getQuantityOnHand).contains(25);
+    }
+
+    @Test
+    void stripeInventory_should_reject_out_of_range_counts() {
+        assertThatThrownBy(() -> beerService.stripeInventory(1, 0)).isInstanceOf(InvalidRequestException.class);
+        assertThatThrownBy(() -> beerService.stripeInventory(1, BeerService.MAX_INVENTORY_STRIPES + 1))
+                .isInstanceOf(InvalidRequestException.class);
+    }
+
     @Test
     void updateBeer_notFound() {
         BeerDto update = sampleDto(null);
@@ -0,0 +1,174 @@
+package com.example.juniemvc.services;
+
+import com.example.juniemvc.entities.Beer;
+import com.example.juniemvc.entities.enums.OrderStatus;
+import com.example.juniemvc.models.BeerOrderDto;
+import com.example.juniemvc.models.BeerOrderLineDto;
+import com.example.juniemvc.repositories.BeerRepository;
+import com.example.juniemvc.repositories.OrderPipelineRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// events are counted in the outbox, so the relay must not publish (and delete) them meanwhile
+@SpringBootTest(properties = "juniemvc.outbox.relay-enabled=false")
+class OrderPipelineServiceImplTest {
+
+    @Autowired
+    OrderPipelineService orderPipelineService;
+
+    @Autowired
+    OrderPipelineRepository pipelineRepository;
+
+    @Autowired
+    BeerOrderService beerOrderService;
+
+    @Autowired
+    BeerRepository beerRepository;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Test
+    void validation_should_advance_valid_orders_and_cancel_invalid_ones() {
+        Integer beerId = newBeer(100);
+        BeerOrderDto valid = newOrder(line(beerId, 2));
+        BeerOrderDto empty = newOrder();
+
+        drain(orderPipelineService::validateBatch);
+
+        assertThat(beerOrderService.getById(valid.getId()).getStatus()).isEqualTo(OrderStatus.VALIDATED);
+        assertThat(beerOrderService.getById(empty.getId()).getStatus()).isEqualTo(OrderStatus.CANCELLED);
+    }
+
+    @Test
+    void allocation_should_allocate_validated_orders_and_keep_backordered_ones_leased() {
+        Integer beerId = newBeer(5);
+        BeerOrderDto fits = newOrder(line(beerId, 5));
+        // short whichever of the two, allocated concurrently, goes first
+        BeerOrderDto backordered = newOrder(line(beerId, 6));
+        drain(orderPipelineService::validateBatch);
+
+        drain(orderPipelineService::allocateBatch);
+
+        assertThat(beerOrderService.getById(fits.getId()).getStatus()).isEqualTo(OrderStatus.ALLOCATED);
+        assertThat(beerOrderService.getById(backordered.getId()).getStatus()).isEqualTo(OrderStatus.ALLOCATION_PENDING);
+        // backed off, whatever the lease: not claimed again yet
+        assertThat(pipelineRepository.claim(OrderStatus.VALIDATED, OrderStatus.ALLOCATION_PENDING, Duration.ZERO, 1000))
+                .doesNotContain(backordered.getId());
+    }
+
+    @Test
+    void backordered_orders_should_be_retried_after_a_doubling_back_off_without_repeating_their_event() {
+        Integer beerId = newBeer(1);
+        Integer orderId = newOrder(line(beerId, 2)).getId();
+        drain(orderPipelineService::validateBatch);
+        drain(orderPipelineService::allocateBatch);
+        BeerOrderDto backordered = beerOrderService.getById(orderId);
+        assertThat(backordered.getStatus()).isEqualTo(OrderStatus.ALLOCATION_PENDING);
+        // juniemvc.pipeline.backorder-retry
+        assertThat(millisUntilNextAttempt(orderId)).isBetween(20_000L, 30_000L);
+
+        jdbcTemplate.update("update beer_order set next_attempt_date = localtimestamp where id = ?", orderId);
+        drain(orderPipelineService::allocateBatch);
+
+        // still short: nothing written but the next attempt, which is twice as far off
+        assertThat(beerOrderService.getById(orderId).getVersion()).isEqualTo(backordered.getVersion());
+        assertThat(millisUntilNextAttempt(orderId)).isBetween(50_000L, 60_000L);
+        assertThat(jdbcTemplate.queryForObject(
+                "select count(*) from outbox_event where aggregate_id = ? and event_type = 'ORDER_BACKORDERED'",
+                Integer.class, orderId)).isEqualTo(1);
+
+        Beer restocked = beerRepository.findById(beerId).orElseThrow();
+        restocked.setQuantityOnHand(2);
+        beerRepository.saveAndFlush(restocked);
+        jdbcTemplate.update("update beer_order set next_attempt_date = localtimestamp where id = ?", orderId);
+        drain(orderPipelineService::allocateBatch);
+
+        assertThat(beerOrderService.getById(orderId).getStatus()).isEqualTo(OrderStatus.ALLOCATED);
+    }
+
+    @Test
+    void concurrent_claims_should_skip_locked_orders() throws Exception {
+        Integer beerId = newBeer(100);
+        List<Integer> orderIds = List.of(newOrder(line(beerId, 1)).getId(), newOrder(line(beerId, 1)).getId());
+        drain(orderPipelineService::validateBatch);
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        CountDownLatch claimed = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        // first claimer keeps its transaction, and so its row locks, open
+        CompletableFuture<List<Integer>> first = CompletableFuture.supplyAsync(() -> tx.execute(status -> {
+            List<Integer> ids = pipelineRepository.claim(OrderStatus.VALIDATED, OrderStatus.ALLOCATION_PENDING, Duration.ofMinutes(1), 1000);
+            claimed.countDown();
+            await(release);
+            return ids;
+        }));
+        await(claimed);
+        List<Integer> second = pipelineRepository.claim(OrderStatus.VALIDATED, OrderStatus.ALLOCATION_PENDING, Duration.ofMinutes(1), 1000);
+        release.countDown();
+
+        assertThat(first.get(10, TimeUnit.SECONDS)).containsAll(orderIds);
+        assertThat(second).doesNotContainAnyElementsOf(orderIds);
+    }
+
+    private static void drain(IntSupplier stage) {
+        // other test classes share the database and may have left orders behind
+        while (stage.getAsInt() > 0) {
+            // next batch
+        }
+    }
+
+    private long millisUntilNextAttempt(Integer orderId) {
+        return jdbcTemplate.queryForObject(
+                "select datediff(millisecond, localtimestamp, next_attempt_date) from beer_order where id = ?",
+                Long.class, orderId);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            assertThat(latch.await(10, TimeUnit.SECONDS)).isTrue();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private Integer newBeer(int quantityOnHand) {
+        return beerRepository.save(Beer.builder()
+                .beerName("Pipeline Pils")
+                .beerStyle("PILSNER")
+                .upc("PIPE-1-" + UUID.randomUUID())
+                .quantityOnHand(quantityOnHand)
+                .price(new BigDecimal("3.90"))
+                .build()).getId();
+    }
+
+    private BeerOrderDto newOrder(BeerOrderLineDto... lines) {
+        return beerOrderService.create(BeerOrderDto.builder()
+                .customerRef("PIPELINE")
+                .lines(List.of(lines))
+                .build());
+    }
+
+    private static BeerOrderLineDto line(Integer beerId, int quantity) {
+        return BeerOrderLineDto.builder().beerId(beerId).orderQuantity(quantity).build();
+    }
+}
@@ -0,0 +1,295 @@
+package com.example.juniemvc.services;
+
+import com.example.juniemvc.entities.Beer;
+import com.example.juniemvc.models.BeerDto;
+import com.example.juniemvc.models.BeerOrderDto;
+import com.example.juniemvc.models.BeerOrderLineDto;
+import com.example.juniemvc.outbox.OutboxSink;
+import com.example.juniemvc.repositories.BeerChangeRepository;
+import com.example.juniemvc.repositories.OutboxEvent;
+import com.example.juniemvc.repositories.OutboxRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.OptimisticLockException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest(properties = {
+        "juniemvc.outbox.relay-enabled=false",
+        "juniemvc.outbox.sink=custom"
+})
+class OutboxRelayTest {
+
+    @Autowired
+    OutboxRelay outboxRelay;
+
+    @Autowired
+    OutboxRepository outboxRepository;
+
+    @Autowired
+    RecordingSink sink;
+
+    @Autowired
+    BeerService beerService;
+
+    @Autowired
+    BeerOrderService beerOrderService;
+
+    @Autowired
+    AllocationService allocationService;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @Autowired
+    ObjectMapper objectMapper;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @Autowired
+    OutboxRecorder outboxRecorder;
+
+    @Autowired
+    BeerChangeRepository beerChangeRepository;
+
+    @Autowired
+    EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void drainOutbox() {
+        // other tests of this context leave events behind
+        sink.failing = false;
+        while (outboxRelay.relayBatch() > 0) {
+            // next batch
+        }
+        sink.events.clear();
+    }
+
+    @Test
+    void changes_should_be_relayed_in_order_per_aggregate() throws Exception {
+        Integer beerId = newBeer(10).getId();
+        BeerOrderDto order = beerOrderService.create(BeerOrderDto.builder()
+                .customerRef("OUTBOX")
+                .lines(List.of(line(beerId, 2)))
+                .build());
+        beerOrderService.addLine(order.getId(), line(beerId, 3));
+        beerOrderService.patch(order.getId(), BeerOrderDto.builder().customerRef("OUTBOX-2").build());
+        allocationService.allocate(order.getId());
+
+        assertThat(outboxRelay.relayBatch()).isEqualTo(6);
+
+        assertThat(eventsOf("BeerOrder", order.getId())).extracting(OutboxEvent::eventType).containsExactly(
+                "ORDER_CREATED", "ORDER_LINE_ADDED", "ORDER_UPDATED", "ORDER_ALLOCATED");
+        assertThat(payloadField(eventsOf("BeerOrder", order.getId()).get(1), "orderQuantity")).isEqualTo(3);
+        List<Integer> versions = eventsOf("BeerOrder", order.getId()).stream()
+                .filter(event -> List.of("ORDER_CREATED", "ORDER_UPDATED").contains(event.eventType()))
+                .map(event -> payloadField(event, "version"))
+                .toList();
+        assertThat(versions).isSorted().doesNotHaveDuplicates();
+        assertThat(eventsOf("Beer", beerId)).extracting(OutboxEvent::eventType)
+                .containsExactly("BEER_CREATED", "INVENTORY_RESERVED");
+        assertThat(payloadField(eventsOf("Beer", beerId).get(1), "quantity")).isEqualTo(5);
+        assertThat(outboxRepository.backlog().pending()).isZero();
+    }
+
+    @Test
+    void rolled_back_change_should_leave_no_event() {
+        BeerDto beer = newBeer(10);
+        beer.setVersion(beer.getVersion() + 1);
+
+        assertThatThrownBy(() -> beerService.updateBeer(beer.getId(), beer)).isInstanceOf(OptimisticLockException.class);
+
+        outboxRelay.relayBatch();
+        assertThat(eventsOf("Beer", beer.getId())).extracting(OutboxEvent::eventType).containsExactly("BEER_CREATED");
+    }
+
+    @Test
+    void failed_batch_should_stay_in_the_outbox_and_be_published_again() {
+        Integer beerId = newBeer(10).getId();
+        sink.failing = true;
+
+        assertThatThrownBy(() -> outboxRelay.relayBatch()).isInstanceOf(IllegalStateException.class);
+        assertThat(outboxRepository.backlog().pending()).isEqualTo(1);
+        assertThat(outboxRepository.backlog().oldestAge()).isGreaterThanOrEqualTo(Duration.ZERO);
+
+        sink.failing = false;
+        assertThat(outboxRelay.relayBatch()).isEqualTo(1);
+        assertThat(eventsOf("Beer", beerId)).hasSize(1);
+    }
+
+    @Test
+    void backlog_gauges_should_be_sampled_by_the_relay_not_per_scrape() {
+        newBeer(10);
+
+        assertThat(meterRegistry.get("juniemvc.outbox.pending").gauge().value())
+                .as("as of the batch that drained the outbox").isZero();
+        assertThat(outboxRelay.relayBatch()).isEqualTo(1);
+        assertThat(meterRegistry.get("juniemvc.outbox.pending").gauge().value()).isZero();
+        assertThat(meterRegistry.get("juniemvc.outbox.oldest.age").timeGauge().value(TimeUnit.MILLISECONDS)).isZero();
+    }
+
+    @Test
+    void concurrent_relay_should_not_overtake_an_aggregate_claimed_elsewhere() throws Exception {
+        BeerDto first = newBeer(10);
+        first.setBeerName("Outbox Ale II");
+        beerService.updateBeer(first.getId(), first);
+        Integer other = newBeer(5).getId();
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        CountDownLatch claimed = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        // another relay holds the oldest event (first's BEER_CREATED) without publishing it yet
+        CompletableFuture<List<OutboxEvent>> held = CompletableFuture.supplyAsync(() -> tx.execute(status -> {
+            List<OutboxEvent> events = outboxRepository.claim(1);
+            claimed.countDown();
+            await(release);
+            status.setRollbackOnly();
+            return events;
+        }));
+        await(claimed);
+        int relayed = outboxRelay.relayBatch();
+        release.countDown();
+
+        assertThat(held.get(10, TimeUnit.SECONDS)).extracting(OutboxEvent::aggregateId).containsExactly(first.getId());
+        // first's BEER_UPDATED must wait for its BEER_CREATED; the other beer is not held up
+        assertThat(relayed).isEqualTo(1);
+        assertThat(sink.events).extracting(OutboxEvent::aggregateId).containsExactly(other);
+
+        assertThat(outboxRelay.relayBatch()).isEqualTo(2);
+        assertThat(eventsOf("Beer", first.getId())).extracting(OutboxEvent::eventType)
+                .containsExactly("BEER_CREATED", "BEER_UPDATED");
+    }
+
+    @Test
+    void only_the_relay_holding_the_lease_should_publish() {
+        RecordingSink otherSink = new RecordingSink();
+        OutboxRelay otherNode = new OutboxRelay(outboxRepository, otherSink, List.of(), transactionManager,
+                new SimpleMeterRegistry(), false, 10, Duration.ofMillis(50), Duration.ofSeconds(10));
+        try {
+            Integer beerId = newBeer(10).getId();
+
+            assertThat(otherNode.relayBatch()).as("lease held by the context's relay").isZero();
+
+            outboxRelay.stop();
+            assertThat(otherNode.relayBatch()).isEqualTo(1);
+            assertThat(otherSink.events).extracting(OutboxEvent::aggregateId).containsExactly(beerId);
+
+            newBeer(5);
+            assertThat(outboxRelay.relayBatch()).as("lease taken over").isZero();
+            assertThat(otherNode.relayBatch()).isEqualTo(1);
+        } finally {
+            otherNode.stop();
+        }
+    }
+
+    @Test
+    void a_beer_changed_on_another_node_should_be_evicted_from_the_cache_once_relayed() {
+        BeerDto beer = newBeer(10);
+        // this node's invalidator, polled by hand from the end of the log
+        BeerCacheInvalidator invalidator = new BeerCacheInvalidator(beerChangeRepository, entityManagerFactory,
+                Duration.ofHours(1));
+        invalidator.evictChanges();
+        assertThat(beerService.getBeerById(beer.getId())).map(BeerDto::getQuantityOnHand).contains(10);
+
+        // as another node changes it: plain SQL and an event, nothing evicted on this node
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            jdbcTemplate.update("update beer set quantity_on_hand = 3, version = version + 1 where id = ?", beer.getId());
+            outboxRecorder.record(OutboxEventType.BEER_UPDATED, beer.getId(), Map.of("id", beer.getId()));
+        });
+        assertThat(beerService.getBeerById(beer.getId())).as("cached").map(BeerDto::getQuantityOnHand).contains(10);
+
+        while (outboxRelay.relayBatch() > 0) {
+            // next batch
+        }
+        assertThat(invalidator.evictChanges()).isPositive();
+
+        assertThat(entityManagerFactory.getCache().contains(Beer.class, beer.getId())).isFalse();
+        assertThat(beerService.getBeerById(beer.getId())).map(BeerDto::getQuantityOnHand).contains(3);
+    }
+
+    private List<OutboxEvent> eventsOf(String aggregateType, Integer aggregateId) {
+        return sink.events.stream()
+                .filter(event -> event.aggregateType().equals(aggregateType) && event.aggregateId().equals(aggregateId))
+                .toList();
+    }
+
+    private int payloadField(OutboxEvent event, String field) {
+        try {
+            return objectMapper.readTree(event.payload()).get(field).asInt();
+        } catch (Exception ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private BeerDto newBeer(int quantityOnHand) {
+        return beerService.saveBeer(BeerDto.builder()
+                .beerName("Outbox Ale")
+                .beerStyle("ALE")
+                .upc("OUTBOX-1-" + UUID.randomUUID())
+                .quantityOnHand(quantityOnHand)
+                .price(new BigDecimal("4.10"))
+                .build());
+    }
+
+    private static BeerOrderLineDto line(Integer beerId, int quantity) {
+        return BeerOrderLineDto.builder().beerId(beerId).orderQuantity(quantity).build();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            assertThat(latch.await(10, TimeUnit.SECONDS)).isTrue();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    static class RecordingSink implements OutboxSink {
+
+        final List<OutboxEvent> events = new CopyOnWriteArrayList<>();
+        volatile boolean failing;
+
+        @Override
+        public void publish(List<OutboxEvent> batch) {
+            if (failing) {
+                throw new IllegalStateException("Sink unavailable");
+            }
+            events.addAll(batch);
+        }
+    }
+
+    @TestConfiguration
+    static class SinkConfig {
+
+        @Bean
+        RecordingSink recordingSink() {
+            return new RecordingSink();
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.juniemvc.web;
+
+import org.junit.jupiter.api.extension.AfterTestExecutionCallback;
+import org.junit.jupiter.api.extension.BeforeTestExecutionCallback;
+import org.junit.jupiter.api.extension.ExtensionContext;
+import org.junit.jupiter.api.extension.ParameterContext;
+import org.junit.jupiter.api.extension.ParameterResolver;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * SQL statement budgets for tests of a Spring context with SqlStatementCounter registered.
+ *
+ * A test method annotated with {@link SqlStatementBudget} fails when its body (not @BeforeEach) executes
+ * more statements than the budget. Test methods can also take a {@link SqlStatementRecorder} parameter to
+ * count or bound single operations.
+ */
+public class SqlStatementBudgetExtension implements BeforeTestExecutionCallback, AfterTestExecutionCallback, ParameterResolver {
+
+    private static final ExtensionContext.Namespace NAMESPACE = ExtensionContext.Namespace.create(SqlStatementBudgetExtension.class);
+    private static final String START = "start";
+
+    @Override
+    public void beforeTestExecution(ExtensionContext context) {
+        context.getStore(NAMESPACE).put(START, SqlStatementCounter.totals());
+    }
+
+    @Override
+    public void afterTestExecution(ExtensionContext context) {
+        SqlStatementCounts start = context.getStore(NAMESPACE).remove(START, SqlStatementCounts.class);
+        SqlStatementBudget budget = context.getRequiredTestMethod().getAnnotation(SqlStatementBudget.class);
+        if (budget == null || start == null || context.getExecutionException().isPresent()) {
+            return;
+        }
+        SqlStatementCounts executed = SqlStatementCounter.totals().minus(start);
+        assertThat(executed.total())
+                .as("SQL statements executed by %s: %s", context.getDisplayName(), executed)
+                .isLessThanOrEqualTo(budget.value());
+    }
+
+    @Override
+    public boolean supportsParameter(ParameterContext parameterContext, ExtensionContext extensionContext) {
+        return parameterContext.getParameter().getType() == SqlStatementRecorder.class;
+    }
+
+    @Override
+    public Object resolveParameter(ParameterContext parameterContext, ExtensionContext extensionContext) {
+        return new SqlStatementRecorder();
+    }
+}
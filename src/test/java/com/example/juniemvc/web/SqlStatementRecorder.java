@@ -0,0 +1,39 @@
+package com.example.juniemvc.web;
+
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Counts the SQL statements executed since it was created or last reset, on any thread, so it also
+ * sees what an embedded server runs for a request. Injected by {@link SqlStatementBudgetExtension}.
+ */
+public final class SqlStatementRecorder {
+
+    private SqlStatementCounts baseline;
+
+    SqlStatementRecorder() {
+        reset();
+    }
+
+    public void reset() {
+        baseline = SqlStatementCounter.totals();
+    }
+
+    public SqlStatementCounts counts() {
+        return SqlStatementCounter.totals().minus(baseline);
+    }
+
+    /**
+     * Runs one operation and fails if it executed more than {@code maxStatements} SQL statements.
+     */
+    public <T> T expectAtMost(int maxStatements, Supplier<T> operation) {
+        SqlStatementCounts before = SqlStatementCounter.totals();
+        T result = operation.get();
+        SqlStatementCounts executed = SqlStatementCounter.totals().minus(before);
+        assertThat(executed.total())
+                .as("SQL statements executed by the operation: %s", executed)
+                .isLessThanOrEqualTo(maxStatements);
+        return result;
+    }
+}